@@ -0,0 +1,268 @@
+package com.google.android.exoplayer2;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.PriorityTaskManager;
+import com.google.android.exoplayer2.util.Util;
+
+public class AdaptiveLoadControl extends DefaultLoadControl {
+  public static final int DEFAULT_MIN_BURST_DURATION_MS = 20000;
+  public static final int DEFAULT_REBUFFER_PENALTY_MS = 5000;
+  public static final int DEFAULT_MAX_REBUFFER_PENALTY_MS = 20000;
+  public static final float DEFAULT_THROUGHPUT_SAFETY_FACTOR = 1.5F;
+  private static final float MIN_LOW_WATERMARK_SCALE = 0.5F;
+  private static final float MAX_LOW_WATERMARK_SCALE = 2.0F;
+  private static final long MIN_BUFFERED_DURATION_FOR_BITRATE_US = 1000000L;
+  @Nullable
+  private final BandwidthMeter bandwidthMeter;
+  private final long minBurstDurationUs;
+  private final long rebufferPenaltyUs;
+  private final long maxRebufferPenaltyUs;
+  private final float throughputSafetyFactor;
+  private final Clock clock;
+  private boolean lastStartWasRebuffering;
+  private long loadingStartTimeMs;
+  private volatile long mediaBitrateEstimate;
+  private volatile long lowWatermarkUs;
+  private volatile long highWatermarkUs;
+  private volatile int rebufferCount;
+  private volatile int loadingBurstCount;
+  private volatile long totalLoadingTimeMs;
+
+  public AdaptiveLoadControl() {
+    this(new DefaultLoadControl.Builder(), (BandwidthMeter)null, 20000, 5000, 20000, 1.5F, Clock.DEFAULT);
+  }
+
+  public AdaptiveLoadControl(Allocator allocator, @Nullable BandwidthMeter bandwidthMeter) {
+    this((new DefaultLoadControl.Builder()).setAllocator(allocator), bandwidthMeter, 20000, 5000, 20000, 1.5F, Clock.DEFAULT);
+  }
+
+  protected AdaptiveLoadControl(DefaultLoadControl.Builder loadControlBuilder, @Nullable BandwidthMeter bandwidthMeter, int minBurstDurationMs, int rebufferPenaltyMs, int maxRebufferPenaltyMs, float throughputSafetyFactor, Clock clock) {
+    super(loadControlBuilder);
+    assertGreaterOrEqual(minBurstDurationMs, 0, "minBurstDurationMs", "0");
+    assertGreaterOrEqual(rebufferPenaltyMs, 0, "rebufferPenaltyMs", "0");
+    assertGreaterOrEqual(maxRebufferPenaltyMs, 0, "maxRebufferPenaltyMs", "0");
+    Assertions.checkArgument(throughputSafetyFactor > 0.0F);
+    this.bandwidthMeter = bandwidthMeter;
+    this.minBurstDurationUs = C.msToUs((long)minBurstDurationMs);
+    this.rebufferPenaltyUs = C.msToUs((long)rebufferPenaltyMs);
+    this.maxRebufferPenaltyUs = C.msToUs((long)maxRebufferPenaltyMs);
+    this.throughputSafetyFactor = throughputSafetyFactor;
+    this.clock = clock;
+    this.mediaBitrateEstimate = -1L;
+    this.lowWatermarkUs = this.getMinBufferUs();
+    this.highWatermarkUs = this.getMaxBufferUs();
+  }
+
+  public void onPrepared() {
+    super.onPrepared();
+    this.resetState();
+  }
+
+  public void onStopped() {
+    super.onStopped();
+    this.resetState();
+  }
+
+  public void onReleased() {
+    super.onReleased();
+    this.resetState();
+  }
+
+  public boolean shouldContinueLoading(long bufferedDurationUs, float playbackSpeed) {
+    int totalBytesAllocated = this.getAllocator().getTotalBytesAllocated();
+    int targetBufferSize = this.getEffectiveTargetBufferSize();
+    boolean memoryBudgetReached = totalBytesAllocated >= targetBufferSize;
+    this.updateMediaBitrateEstimate(bufferedDurationUs, totalBytesAllocated);
+    this.updateWatermarks(targetBufferSize);
+    long lowWatermarkUs = getMediaDurationForPlayoutThreshold(this.lowWatermarkUs, playbackSpeed, this.highWatermarkUs);
+    boolean isBuffering = this.isBuffering();
+    if (this.isOverBufferGrant(totalBytesAllocated, bufferedDurationUs)) {
+      isBuffering = false;
+    } else if (bufferedDurationUs < lowWatermarkUs) {
+      isBuffering = !memoryBudgetReached || bufferedDurationUs < this.getBufferForPlaybackAfterRebufferUs();
+    } else if (bufferedDurationUs >= this.highWatermarkUs || memoryBudgetReached) {
+      isBuffering = false;
+    }
+
+    this.updateBuffering(isBuffering);
+    return isBuffering;
+  }
+
+  public boolean shouldStartPlayback(long bufferedDurationUs, float playbackSpeed, boolean rebuffering) {
+    if (rebuffering && !this.lastStartWasRebuffering) {
+      ++this.rebufferCount;
+    }
+
+    this.lastStartWasRebuffering = rebuffering;
+    boolean startPlayback = super.shouldStartPlayback(bufferedDurationUs, playbackSpeed, rebuffering);
+    if (startPlayback) {
+      this.lastStartWasRebuffering = false;
+    }
+
+    return startPlayback;
+  }
+
+  public int getRebufferCount() {
+    return this.rebufferCount;
+  }
+
+  public int getLoadingBurstCount() {
+    return this.loadingBurstCount;
+  }
+
+  public long getTotalLoadingTimeMs() {
+    long totalLoadingTimeMs = this.totalLoadingTimeMs;
+    return this.isBuffering() ? totalLoadingTimeMs + (this.clock.elapsedRealtime() - this.loadingStartTimeMs) : totalLoadingTimeMs;
+  }
+
+  public long getMediaBitrateEstimate() {
+    return this.mediaBitrateEstimate;
+  }
+
+  public long getLowWatermarkUs() {
+    return this.lowWatermarkUs;
+  }
+
+  public long getHighWatermarkUs() {
+    return this.highWatermarkUs;
+  }
+
+  protected void onBufferingChanged(boolean isBuffering) {
+    long nowMs = this.clock.elapsedRealtime();
+    if (isBuffering) {
+      this.loadingStartTimeMs = nowMs;
+      ++this.loadingBurstCount;
+    } else {
+      this.totalLoadingTimeMs += nowMs - this.loadingStartTimeMs;
+    }
+
+  }
+
+  private void updateMediaBitrateEstimate(long bufferedDurationUs, int totalBytesAllocated) {
+    if (bufferedDurationUs >= 1000000L && totalBytesAllocated > 0) {
+      this.mediaBitrateEstimate = (long)totalBytesAllocated * 8000000L / bufferedDurationUs;
+    }
+
+  }
+
+  private void updateWatermarks(int targetBufferSize) {
+    long bufferForPlaybackAfterRebufferUs = this.getBufferForPlaybackAfterRebufferUs();
+    long highWatermarkUs = this.getMaxBufferUs();
+    long mediaBitrate = this.mediaBitrateEstimate;
+    if (mediaBitrate > 0L && targetBufferSize > 0) {
+      long memoryLimitedDurationUs = (long)targetBufferSize * 8000000L / mediaBitrate;
+      highWatermarkUs = Math.max(bufferForPlaybackAfterRebufferUs, Math.min(highWatermarkUs, memoryLimitedDurationUs));
+    }
+
+    float lowWatermarkScale = 1.0F;
+    long bandwidthEstimate = this.bandwidthMeter == null ? -1L : this.bandwidthMeter.getBitrateEstimate();
+    if (mediaBitrate > 0L && bandwidthEstimate > 0L) {
+      float throughputRatio = (float)bandwidthEstimate / (float)mediaBitrate;
+      lowWatermarkScale = Util.constrainValue(this.throughputSafetyFactor / throughputRatio, 0.5F, 2.0F);
+    }
+
+    long rebufferPenaltyUs = Math.min(this.maxRebufferPenaltyUs, (long)this.rebufferCount * this.rebufferPenaltyUs);
+    long lowWatermarkUs = (long)((float)this.getMinBufferUs() * lowWatermarkScale) + rebufferPenaltyUs;
+    lowWatermarkUs = Math.min(lowWatermarkUs, highWatermarkUs - this.minBurstDurationUs);
+    this.lowWatermarkUs = Math.max(Math.min(bufferForPlaybackAfterRebufferUs, highWatermarkUs), lowWatermarkUs);
+    this.highWatermarkUs = highWatermarkUs;
+  }
+
+  private void resetState() {
+    this.lastStartWasRebuffering = false;
+    this.rebufferCount = 0;
+    this.mediaBitrateEstimate = -1L;
+  }
+
+  public static final class Builder {
+    private final DefaultLoadControl.Builder loadControlBuilder = new DefaultLoadControl.Builder();
+    @Nullable
+    private BandwidthMeter bandwidthMeter = null;
+    private int minBurstDurationMs = 20000;
+    private int rebufferPenaltyMs = 5000;
+    private int maxRebufferPenaltyMs = 20000;
+    private float throughputSafetyFactor = 1.5F;
+    private Clock clock;
+    private boolean createAdaptiveLoadControlCalled;
+
+    public Builder() {
+      this.clock = Clock.DEFAULT;
+    }
+
+    public AdaptiveLoadControl.Builder setAllocator(Allocator allocator) {
+      Assertions.checkState(!this.createAdaptiveLoadControlCalled);
+      this.loadControlBuilder.setAllocator(allocator);
+      return this;
+    }
+
+    public AdaptiveLoadControl.Builder setBandwidthMeter(@Nullable BandwidthMeter bandwidthMeter) {
+      Assertions.checkState(!this.createAdaptiveLoadControlCalled);
+      this.bandwidthMeter = bandwidthMeter;
+      return this;
+    }
+
+    public AdaptiveLoadControl.Builder setBufferDurationsMs(int minBufferMs, int maxBufferMs, int bufferForPlaybackMs, int bufferForPlaybackAfterRebufferMs) {
+      Assertions.checkState(!this.createAdaptiveLoadControlCalled);
+      this.loadControlBuilder.setBufferDurationsMs(minBufferMs, maxBufferMs, bufferForPlaybackMs, bufferForPlaybackAfterRebufferMs);
+      return this;
+    }
+
+    public AdaptiveLoadControl.Builder setTargetBufferBytes(int targetBufferBytes) {
+      Assertions.checkState(!this.createAdaptiveLoadControlCalled);
+      this.loadControlBuilder.setTargetBufferBytes(targetBufferBytes);
+      return this;
+    }
+
+    public AdaptiveLoadControl.Builder setMinBurstDurationMs(int minBurstDurationMs) {
+      Assertions.checkState(!this.createAdaptiveLoadControlCalled);
+      this.minBurstDurationMs = minBurstDurationMs;
+      return this;
+    }
+
+    public AdaptiveLoadControl.Builder setRebufferPenaltyMs(int rebufferPenaltyMs, int maxRebufferPenaltyMs) {
+      Assertions.checkState(!this.createAdaptiveLoadControlCalled);
+      this.rebufferPenaltyMs = rebufferPenaltyMs;
+      this.maxRebufferPenaltyMs = maxRebufferPenaltyMs;
+      return this;
+    }
+
+    public AdaptiveLoadControl.Builder setThroughputSafetyFactor(float throughputSafetyFactor) {
+      Assertions.checkState(!this.createAdaptiveLoadControlCalled);
+      this.throughputSafetyFactor = throughputSafetyFactor;
+      return this;
+    }
+
+    public AdaptiveLoadControl.Builder setPriorityTaskManager(@Nullable PriorityTaskManager priorityTaskManager) {
+      Assertions.checkState(!this.createAdaptiveLoadControlCalled);
+      this.loadControlBuilder.setPriorityTaskManager(priorityTaskManager);
+      return this;
+    }
+
+    public AdaptiveLoadControl.Builder setBackBuffer(int backBufferDurationMs, boolean retainBackBufferFromKeyframe) {
+      Assertions.checkState(!this.createAdaptiveLoadControlCalled);
+      this.loadControlBuilder.setBackBuffer(backBufferDurationMs, retainBackBufferFromKeyframe);
+      return this;
+    }
+
+    public AdaptiveLoadControl.Builder setBufferMemoryArbiter(BufferMemoryArbiter bufferMemoryArbiter, int bufferPriority) {
+      Assertions.checkState(!this.createAdaptiveLoadControlCalled);
+      this.loadControlBuilder.setBufferMemoryArbiter(bufferMemoryArbiter, bufferPriority);
+      return this;
+    }
+
+    public AdaptiveLoadControl.Builder setClock(Clock clock) {
+      Assertions.checkState(!this.createAdaptiveLoadControlCalled);
+      this.clock = clock;
+      return this;
+    }
+
+    public AdaptiveLoadControl createAdaptiveLoadControl() {
+      this.createAdaptiveLoadControlCalled = true;
+      return new AdaptiveLoadControl(this.loadControlBuilder, this.bandwidthMeter, this.minBurstDurationMs, this.rebufferPenaltyMs, this.maxRebufferPenaltyMs, this.throughputSafetyFactor, this.clock);
+    }
+  }
+}
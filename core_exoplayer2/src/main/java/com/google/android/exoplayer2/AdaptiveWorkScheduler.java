@@ -0,0 +1,60 @@
+package com.google.android.exoplayer2;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.util.Clock;
+
+final class AdaptiveWorkScheduler {
+  private final Clock clock;
+  private volatile long wakeupCount;
+  private volatile long wastedWakeupCount;
+
+  public AdaptiveWorkScheduler(Clock clock) {
+    this.clock = clock;
+  }
+
+  public long getWakeupCount() {
+    return this.wakeupCount;
+  }
+
+  public long getWastedWakeupCount() {
+    return this.wastedWakeupCount;
+  }
+
+  public void onWakeup(boolean isPlaying, long nextWorkElapsedRealtimeUs) {
+    ++this.wakeupCount;
+    if (isPlaying && this.isBeforeNextWork(nextWorkElapsedRealtimeUs)) {
+      ++this.wastedWakeupCount;
+    }
+
+  }
+
+  public long getIntervalMs(long nextWorkElapsedRealtimeUs, long nextMessageDelayUs) {
+    long intervalUs = 100000L;
+    if (nextWorkElapsedRealtimeUs != 9223372036854775807L) {
+      long nowElapsedRealtimeUs = this.clock.elapsedRealtime() * 1000L;
+      if (nextWorkElapsedRealtimeUs == -9223372036854775807L || nextWorkElapsedRealtimeUs <= nowElapsedRealtimeUs) {
+        return 10L;
+      }
+
+      intervalUs = Math.min(intervalUs, nextWorkElapsedRealtimeUs - nowElapsedRealtimeUs);
+    }
+
+    if (nextMessageDelayUs != -9223372036854775807L) {
+      intervalUs = Math.min(intervalUs, Math.max(0L, nextMessageDelayUs));
+    }
+
+    return Math.max(1L, intervalUs / 1000L);
+  }
+
+  private boolean isBeforeNextWork(long nextWorkElapsedRealtimeUs) {
+    return nextWorkElapsedRealtimeUs != -9223372036854775807L && nextWorkElapsedRealtimeUs > this.clock.elapsedRealtime() * 1000L + 1000L;
+  }
+
+  public static long getEarlierNextWork(long nextWorkElapsedRealtimeUs, long rendererNextWorkElapsedRealtimeUs) {
+    return nextWorkElapsedRealtimeUs != -9223372036854775807L && rendererNextWorkElapsedRealtimeUs != -9223372036854775807L ? Math.min(nextWorkElapsedRealtimeUs, rendererNextWorkElapsedRealtimeUs) : -9223372036854775807L;
+  }
+
+  public static long getNextMessageDelayUs(@Nullable PendingMessageQueue.PendingMessageInfo nextInfo, int playingPeriodIndex, long positionUs, float playbackSpeed) {
+    return nextInfo != null && nextInfo.resolvedPeriodUid != null && nextInfo.resolvedPeriodIndex == playingPeriodIndex ? (long)((float)(nextInfo.resolvedPeriodTimeUs - positionUs) / playbackSpeed) : -9223372036854775807L;
+  }
+}
@@ -85,6 +85,10 @@ public abstract class BaseRenderer implements Renderer, RendererCapabilities {
     return this.streamIsFinal;
   }
 
+  public long getNextWorkElapsedRealtimeUs() {
+    return this.isEnded() ? 9223372036854775807L : -9223372036854775807L;
+  }
+
   public final void maybeThrowStreamError() throws IOException {
     this.stream.maybeThrowError();
   }
@@ -0,0 +1,232 @@
+package com.google.android.exoplayer2;
+
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.util.Assertions;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+public final class BufferMemoryArbiter {
+  public static final int PRIORITY_FOREGROUND = 0;
+  public static final int PRIORITY_PREVIEW = 1;
+  public static final int PRIORITY_BACKGROUND = 2;
+  private static final int PRIORITY_COUNT = 3;
+  private static final Comparator<BufferMemoryArbiter.Entry> DEMAND_COMPARATOR = (first, second) -> {
+    return Integer.compare(first.demandBytes, second.demandBytes);
+  };
+  private final ArrayList<BufferMemoryArbiter.Entry> entries;
+  private final ArrayList<BufferMemoryArbiter.Entry> priorityEntries;
+  private final ArrayList<BufferMemoryArbiter.Entry> pendingGrants;
+  private int totalBudgetBytes;
+  private int totalGrantedBytes;
+
+  public BufferMemoryArbiter(int totalBudgetBytes) {
+    Assertions.checkArgument(totalBudgetBytes >= 0);
+    this.totalBudgetBytes = totalBudgetBytes;
+    this.entries = new ArrayList();
+    this.priorityEntries = new ArrayList();
+    this.pendingGrants = new ArrayList();
+  }
+
+  public void setTotalBudgetBytes(int totalBudgetBytes) {
+    Assertions.checkArgument(totalBudgetBytes >= 0);
+    synchronized(this) {
+      this.totalBudgetBytes = totalBudgetBytes;
+      this.redistribute();
+    }
+
+    this.dispatchPendingGrants();
+  }
+
+  public synchronized int getTotalBudgetBytes() {
+    return this.totalBudgetBytes;
+  }
+
+  public synchronized int getTotalGrantedBytes() {
+    return this.totalGrantedBytes;
+  }
+
+  public void register(BufferMemoryArbiter.Participant participant, int priority) {
+    Assertions.checkArgument(priority >= 0 && priority < 3);
+    Looper looper = Looper.myLooper();
+    synchronized(this) {
+      BufferMemoryArbiter.Entry entry = this.getEntry(participant);
+      if (entry == null) {
+        entry = new BufferMemoryArbiter.Entry(participant);
+        this.entries.add(entry);
+      }
+
+      entry.handler = looper != null ? new Handler(looper) : null;
+      entry.priority = priority;
+      this.redistribute();
+    }
+
+    this.dispatchPendingGrants();
+  }
+
+  public void unregister(BufferMemoryArbiter.Participant participant) {
+    synchronized(this) {
+      BufferMemoryArbiter.Entry entry = this.getEntry(participant);
+      if (entry == null) {
+        return;
+      }
+
+      this.entries.remove(entry);
+      this.redistribute();
+    }
+
+    this.dispatchPendingGrants();
+  }
+
+  public void setPriority(BufferMemoryArbiter.Participant participant, int priority) {
+    Assertions.checkArgument(priority >= 0 && priority < 3);
+    synchronized(this) {
+      BufferMemoryArbiter.Entry entry = this.getEntry(participant);
+      if (entry == null || entry.priority == priority) {
+        return;
+      }
+
+      entry.priority = priority;
+      this.redistribute();
+    }
+
+    this.dispatchPendingGrants();
+  }
+
+  public void setDemand(BufferMemoryArbiter.Participant participant, int demandBytes) {
+    demandBytes = Math.max(0, demandBytes);
+    synchronized(this) {
+      BufferMemoryArbiter.Entry entry = this.getEntry(participant);
+      if (entry == null || entry.demandBytes == demandBytes) {
+        return;
+      }
+
+      entry.demandBytes = demandBytes;
+      this.redistribute();
+    }
+
+    this.dispatchPendingGrants();
+  }
+
+  public synchronized int getGrantedBytes(BufferMemoryArbiter.Participant participant) {
+    BufferMemoryArbiter.Entry entry = this.getEntry(participant);
+    return entry == null ? 0 : entry.grantedBytes;
+  }
+
+  @Nullable
+  private BufferMemoryArbiter.Entry getEntry(BufferMemoryArbiter.Participant participant) {
+    for(int i = 0; i < this.entries.size(); ++i) {
+      BufferMemoryArbiter.Entry entry = (BufferMemoryArbiter.Entry)this.entries.get(i);
+      if (entry.participant.get() == participant) {
+        return entry;
+      }
+    }
+
+    return null;
+  }
+
+  private void redistribute() {
+    for(int i = this.entries.size() - 1; i >= 0; --i) {
+      if (((BufferMemoryArbiter.Entry)this.entries.get(i)).participant.get() == null) {
+        this.entries.remove(i);
+      }
+    }
+
+    int remainingBytes = this.totalBudgetBytes;
+
+    for(int priority = 0; priority < 3; ++priority) {
+      this.priorityEntries.clear();
+
+      for(int i = 0; i < this.entries.size(); ++i) {
+        BufferMemoryArbiter.Entry entry = (BufferMemoryArbiter.Entry)this.entries.get(i);
+        if (entry.priority == priority) {
+          this.priorityEntries.add(entry);
+        }
+      }
+
+      Collections.sort(this.priorityEntries, DEMAND_COMPARATOR);
+      int entryCount = this.priorityEntries.size();
+
+      for(int i = 0; i < entryCount; ++i) {
+        BufferMemoryArbiter.Entry entry = (BufferMemoryArbiter.Entry)this.priorityEntries.get(i);
+        int grantedBytes = 0;
+        if (priority != 2) {
+          int fairShareBytes = remainingBytes / (entryCount - i);
+          grantedBytes = Math.min(entry.demandBytes, fairShareBytes);
+          remainingBytes -= grantedBytes;
+        }
+
+        if (entry.grantedBytes != grantedBytes) {
+          entry.grantedBytes = grantedBytes;
+          if (!this.pendingGrants.contains(entry)) {
+            this.pendingGrants.add(entry);
+          }
+        }
+      }
+    }
+
+    this.priorityEntries.clear();
+    this.totalGrantedBytes = this.totalBudgetBytes - remainingBytes;
+  }
+
+  private void dispatchPendingGrants() {
+    BufferMemoryArbiter.Entry[] grants;
+    synchronized(this) {
+      if (this.pendingGrants.isEmpty()) {
+        return;
+      }
+
+      grants = (BufferMemoryArbiter.Entry[])this.pendingGrants.toArray(new BufferMemoryArbiter.Entry[0]);
+      this.pendingGrants.clear();
+    }
+
+    for(int i = 0; i < grants.length; ++i) {
+      BufferMemoryArbiter.Entry entry = grants[i];
+      Handler handler = entry.handler;
+      if (handler != null && handler.getLooper() != Looper.myLooper()) {
+        handler.post(entry);
+      } else {
+        entry.run();
+      }
+    }
+
+  }
+
+  private final class Entry implements Runnable {
+    public final WeakReference<BufferMemoryArbiter.Participant> participant;
+    @Nullable
+    public Handler handler;
+    public int priority;
+    public int demandBytes;
+    public int grantedBytes;
+    private int deliveredBytes;
+
+    public Entry(BufferMemoryArbiter.Participant participant) {
+      this.participant = new WeakReference(participant);
+      this.grantedBytes = -1;
+      this.deliveredBytes = -1;
+    }
+
+    public void run() {
+      BufferMemoryArbiter.Participant participant = (BufferMemoryArbiter.Participant)this.participant.get();
+      int grantedBytes;
+      synchronized(BufferMemoryArbiter.this) {
+        if (participant == null || !BufferMemoryArbiter.this.entries.contains(this) || this.grantedBytes == this.deliveredBytes) {
+          return;
+        }
+
+        grantedBytes = this.grantedBytes;
+        this.deliveredBytes = grantedBytes;
+      }
+
+      participant.onBufferBudgetChanged(grantedBytes);
+    }
+  }
+
+  public interface Participant {
+    void onBufferBudgetChanged(int var1);
+  }
+}
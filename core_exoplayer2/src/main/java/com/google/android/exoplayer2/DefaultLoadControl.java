@@ -1,5 +1,6 @@
 package com.google.android.exoplayer2;
 
+import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.source.TrackGroupArray;
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
 import com.google.android.exoplayer2.upstream.Allocator;
@@ -17,7 +18,7 @@ public class DefaultLoadControl implements LoadControl {
   public static final boolean DEFAULT_PRIORITIZE_TIME_OVER_SIZE_THRESHOLDS = true;
   public static final int DEFAULT_BACK_BUFFER_DURATION_MS = 0;
   public static final boolean DEFAULT_RETAIN_BACK_BUFFER_FROM_KEYFRAME = false;
-  private final DefaultAllocator allocator;
+  private final Allocator allocator;
   private final long minBufferUs;
   private final long maxBufferUs;
   private final long bufferForPlaybackUs;
@@ -27,7 +28,13 @@ public class DefaultLoadControl implements LoadControl {
   private final PriorityTaskManager priorityTaskManager;
   private final long backBufferDurationUs;
   private final boolean retainBackBufferFromKeyframe;
-  private int targetBufferSize;
+  @Nullable
+  private final BufferMemoryArbiter bufferMemoryArbiter;
+  @Nullable
+  private final BufferMemoryArbiter.Participant bufferMemoryParticipant;
+  private volatile int targetBufferSize;
+  private volatile int grantedBufferSize;
+  private volatile int bufferPriority;
   private boolean isBuffering;
 
   public DefaultLoadControl() {
@@ -36,29 +43,38 @@ public class DefaultLoadControl implements LoadControl {
 
   /** @deprecated */
   @Deprecated
-  public DefaultLoadControl(DefaultAllocator allocator) {
+  public DefaultLoadControl(Allocator allocator) {
     this(allocator, 15000, 50000, 2500, 5000, -1, true);
   }
 
   /** @deprecated */
   @Deprecated
-  public DefaultLoadControl(DefaultAllocator allocator, int minBufferMs, int maxBufferMs, int bufferForPlaybackMs, int bufferForPlaybackAfterRebufferMs, int targetBufferBytes, boolean prioritizeTimeOverSizeThresholds) {
+  public DefaultLoadControl(Allocator allocator, int minBufferMs, int maxBufferMs, int bufferForPlaybackMs, int bufferForPlaybackAfterRebufferMs, int targetBufferBytes, boolean prioritizeTimeOverSizeThresholds) {
     this(allocator, minBufferMs, maxBufferMs, bufferForPlaybackMs, bufferForPlaybackAfterRebufferMs, targetBufferBytes, prioritizeTimeOverSizeThresholds, (PriorityTaskManager)null);
   }
 
   /** @deprecated */
   @Deprecated
-  public DefaultLoadControl(DefaultAllocator allocator, int minBufferMs, int maxBufferMs, int bufferForPlaybackMs, int bufferForPlaybackAfterRebufferMs, int targetBufferBytes, boolean prioritizeTimeOverSizeThresholds, PriorityTaskManager priorityTaskManager) {
+  public DefaultLoadControl(Allocator allocator, int minBufferMs, int maxBufferMs, int bufferForPlaybackMs, int bufferForPlaybackAfterRebufferMs, int targetBufferBytes, boolean prioritizeTimeOverSizeThresholds, PriorityTaskManager priorityTaskManager) {
     this(allocator, minBufferMs, maxBufferMs, bufferForPlaybackMs, bufferForPlaybackAfterRebufferMs, targetBufferBytes, prioritizeTimeOverSizeThresholds, priorityTaskManager, 0, false);
   }
 
-  protected DefaultLoadControl(DefaultAllocator allocator, int minBufferMs, int maxBufferMs, int bufferForPlaybackMs, int bufferForPlaybackAfterRebufferMs, int targetBufferBytes, boolean prioritizeTimeOverSizeThresholds, PriorityTaskManager priorityTaskManager, int backBufferDurationMs, boolean retainBackBufferFromKeyframe) {
+  protected DefaultLoadControl(Allocator allocator, int minBufferMs, int maxBufferMs, int bufferForPlaybackMs, int bufferForPlaybackAfterRebufferMs, int targetBufferBytes, boolean prioritizeTimeOverSizeThresholds, PriorityTaskManager priorityTaskManager, int backBufferDurationMs, boolean retainBackBufferFromKeyframe) {
+    this(allocator, minBufferMs, maxBufferMs, bufferForPlaybackMs, bufferForPlaybackAfterRebufferMs, targetBufferBytes, prioritizeTimeOverSizeThresholds, priorityTaskManager, backBufferDurationMs, retainBackBufferFromKeyframe, (BufferMemoryArbiter)null, 0);
+  }
+
+  protected DefaultLoadControl(DefaultLoadControl.Builder builder) {
+    this(builder.allocator != null ? builder.allocator : new DefaultAllocator(true, 65536), builder.minBufferMs, builder.maxBufferMs, builder.bufferForPlaybackMs, builder.bufferForPlaybackAfterRebufferMs, builder.targetBufferBytes, builder.prioritizeTimeOverSizeThresholds, builder.priorityTaskManager, builder.backBufferDurationMs, builder.retainBackBufferFromKeyframe, builder.bufferMemoryArbiter, builder.bufferPriority);
+  }
+
+  protected DefaultLoadControl(Allocator allocator, int minBufferMs, int maxBufferMs, int bufferForPlaybackMs, int bufferForPlaybackAfterRebufferMs, int targetBufferBytes, boolean prioritizeTimeOverSizeThresholds, PriorityTaskManager priorityTaskManager, int backBufferDurationMs, boolean retainBackBufferFromKeyframe, @Nullable BufferMemoryArbiter bufferMemoryArbiter, int bufferPriority) {
     assertGreaterOrEqual(bufferForPlaybackMs, 0, "bufferForPlaybackMs", "0");
     assertGreaterOrEqual(bufferForPlaybackAfterRebufferMs, 0, "bufferForPlaybackAfterRebufferMs", "0");
     assertGreaterOrEqual(minBufferMs, bufferForPlaybackMs, "minBufferMs", "bufferForPlaybackMs");
     assertGreaterOrEqual(minBufferMs, bufferForPlaybackAfterRebufferMs, "minBufferMs", "bufferForPlaybackAfterRebufferMs");
     assertGreaterOrEqual(maxBufferMs, minBufferMs, "maxBufferMs", "minBufferMs");
     assertGreaterOrEqual(backBufferDurationMs, 0, "backBufferDurationMs", "0");
+    Assertions.checkArgument(!allocator.isDirect(), "Direct allocations are not supported by sample queues");
     this.allocator = allocator;
     this.minBufferUs = C.msToUs((long)minBufferMs);
     this.maxBufferUs = C.msToUs((long)maxBufferMs);
@@ -69,15 +85,32 @@ public class DefaultLoadControl implements LoadControl {
     this.priorityTaskManager = priorityTaskManager;
     this.backBufferDurationUs = C.msToUs((long)backBufferDurationMs);
     this.retainBackBufferFromKeyframe = retainBackBufferFromKeyframe;
+    this.bufferMemoryArbiter = bufferMemoryArbiter;
+    this.bufferPriority = bufferPriority;
+    this.grantedBufferSize = 2147483647;
+    this.bufferMemoryParticipant = bufferMemoryArbiter != null ? this::onBufferBudgetChanged : null;
+
   }
 
   public void onPrepared() {
+    if (this.bufferMemoryArbiter != null) {
+      int bufferPriority = this.bufferPriority;
+      this.bufferMemoryArbiter.register(this.bufferMemoryParticipant, bufferPriority);
+      if (this.bufferPriority != bufferPriority) {
+        this.bufferMemoryArbiter.setPriority(this.bufferMemoryParticipant, this.bufferPriority);
+      }
+    }
+
     this.reset(false);
   }
 
   public void onTracksSelected(Renderer[] renderers, TrackGroupArray trackGroups, TrackSelectionArray trackSelections) {
     this.targetBufferSize = this.targetBufferBytesOverwrite == -1 ? this.calculateTargetBufferSize(renderers, trackSelections) : this.targetBufferBytesOverwrite;
-    this.allocator.setTargetBufferSize(this.targetBufferSize);
+    if (this.bufferMemoryArbiter != null) {
+      this.bufferMemoryArbiter.setDemand(this.bufferMemoryParticipant, this.targetBufferSize);
+    }
+
+    this.allocator.setTargetBufferSize(this.getEffectiveTargetBufferSize());
   }
 
   public void onStopped() {
@@ -86,6 +119,20 @@ public class DefaultLoadControl implements LoadControl {
 
   public void onReleased() {
     this.reset(true);
+    if (this.bufferMemoryArbiter != null) {
+      this.bufferMemoryArbiter.unregister(this.bufferMemoryParticipant);
+    }
+
+  }
+
+  public void setBufferPriority(int bufferPriority) {
+    Assertions.checkState(this.bufferMemoryArbiter != null);
+    this.bufferPriority = bufferPriority;
+    this.bufferMemoryArbiter.setPriority(this.bufferMemoryParticipant, bufferPriority);
+  }
+
+  public int getBufferPriority() {
+    return this.bufferPriority;
   }
 
   public Allocator getAllocator() {
@@ -101,35 +148,26 @@ public class DefaultLoadControl implements LoadControl {
   }
 
   public boolean shouldContinueLoading(long bufferedDurationUs, float playbackSpeed) {
-    boolean targetBufferSizeReached = this.allocator.getTotalBytesAllocated() >= this.targetBufferSize;
-    boolean wasBuffering = this.isBuffering;
-    long minBufferUs = this.minBufferUs;
-    if (playbackSpeed > 1.0F) {
-      long mediaDurationMinBufferUs = Util.getMediaDurationForPlayoutDuration(minBufferUs, playbackSpeed);
-      minBufferUs = Math.min(mediaDurationMinBufferUs, this.maxBufferUs);
-    }
-
-    if (bufferedDurationUs < minBufferUs) {
-      this.isBuffering = this.prioritizeTimeOverSizeThresholds || !targetBufferSizeReached;
+    int totalBytesAllocated = this.allocator.getTotalBytesAllocated();
+    boolean targetBufferSizeReached = totalBytesAllocated >= this.getEffectiveTargetBufferSize();
+    long minBufferUs = getMediaDurationForPlayoutThreshold(this.minBufferUs, playbackSpeed, this.maxBufferUs);
+    boolean isBuffering = this.isBuffering;
+    if (this.isOverBufferGrant(totalBytesAllocated, bufferedDurationUs)) {
+      isBuffering = false;
+    } else if (bufferedDurationUs < minBufferUs) {
+      isBuffering = this.prioritizeTimeOverSizeThresholds || !targetBufferSizeReached;
     } else if (bufferedDurationUs >= this.maxBufferUs || targetBufferSizeReached) {
-      this.isBuffering = false;
-    }
-
-    if (this.priorityTaskManager != null && this.isBuffering != wasBuffering) {
-      if (this.isBuffering) {
-        this.priorityTaskManager.add(0);
-      } else {
-        this.priorityTaskManager.remove(0);
-      }
+      isBuffering = false;
     }
 
-    return this.isBuffering;
+    this.updateBuffering(isBuffering);
+    return isBuffering;
   }
 
   public boolean shouldStartPlayback(long bufferedDurationUs, float playbackSpeed, boolean rebuffering) {
     bufferedDurationUs = Util.getPlayoutDurationForMediaDuration(bufferedDurationUs, playbackSpeed);
     long minBufferDurationUs = rebuffering ? this.bufferForPlaybackAfterRebufferUs : this.bufferForPlaybackUs;
-    return minBufferDurationUs <= 0L || bufferedDurationUs >= minBufferDurationUs || !this.prioritizeTimeOverSizeThresholds && this.allocator.getTotalBytesAllocated() >= this.targetBufferSize;
+    return minBufferDurationUs <= 0L || bufferedDurationUs >= minBufferDurationUs || !this.prioritizeTimeOverSizeThresholds && this.allocator.getTotalBytesAllocated() >= this.getEffectiveTargetBufferSize();
   }
 
   protected int calculateTargetBufferSize(Renderer[] renderers, TrackSelectionArray trackSelectionArray) {
@@ -144,25 +182,81 @@ public class DefaultLoadControl implements LoadControl {
     return targetBufferSize;
   }
 
+  protected final long getMinBufferUs() {
+    return this.minBufferUs;
+  }
+
+  protected final long getMaxBufferUs() {
+    return this.maxBufferUs;
+  }
+
+  protected final long getBufferForPlaybackAfterRebufferUs() {
+    return this.bufferForPlaybackAfterRebufferUs;
+  }
+
+  protected final int getEffectiveTargetBufferSize() {
+    return Math.min(this.targetBufferSize, this.grantedBufferSize);
+  }
+
+  protected final boolean isOverBufferGrant(int totalBytesAllocated, long bufferedDurationUs) {
+    return totalBytesAllocated >= this.grantedBufferSize && bufferedDurationUs >= Math.max(this.bufferForPlaybackUs, this.bufferForPlaybackAfterRebufferUs);
+  }
+
+  protected final boolean isBuffering() {
+    return this.isBuffering;
+  }
+
+  protected final void updateBuffering(boolean isBuffering) {
+    if (this.isBuffering != isBuffering) {
+      this.isBuffering = isBuffering;
+      if (this.priorityTaskManager != null) {
+        if (isBuffering) {
+          this.priorityTaskManager.add(0);
+        } else {
+          this.priorityTaskManager.remove(0);
+        }
+      }
+
+      this.onBufferingChanged(isBuffering);
+    }
+  }
+
+  protected void onBufferingChanged(boolean isBuffering) {
+  }
+
+  protected static long getMediaDurationForPlayoutThreshold(long thresholdUs, float playbackSpeed, long maxThresholdUs) {
+    if (playbackSpeed > 1.0F) {
+      long mediaDurationThresholdUs = Util.getMediaDurationForPlayoutDuration(thresholdUs, playbackSpeed);
+      return Math.min(mediaDurationThresholdUs, maxThresholdUs);
+    } else {
+      return thresholdUs;
+    }
+  }
+
+  private void onBufferBudgetChanged(int grantedBufferSize) {
+    this.grantedBufferSize = grantedBufferSize;
+    this.allocator.setTargetBufferSize(this.getEffectiveTargetBufferSize());
+  }
+
   private void reset(boolean resetAllocator) {
     this.targetBufferSize = 0;
-    if (this.priorityTaskManager != null && this.isBuffering) {
-      this.priorityTaskManager.remove(0);
+    if (this.bufferMemoryArbiter != null) {
+      this.bufferMemoryArbiter.setDemand(this.bufferMemoryParticipant, 0);
     }
 
-    this.isBuffering = false;
+    this.updateBuffering(false);
     if (resetAllocator) {
       this.allocator.reset();
     }
 
   }
 
-  private static void assertGreaterOrEqual(int value1, int value2, String name1, String name2) {
+  protected static void assertGreaterOrEqual(int value1, int value2, String name1, String name2) {
     Assertions.checkArgument(value1 >= value2, name1 + " cannot be less than " + name2);
   }
 
   public static final class Builder {
-    private DefaultAllocator allocator = null;
+    private Allocator allocator = null;
     private int minBufferMs = 15000;
     private int maxBufferMs = 50000;
     private int bufferForPlaybackMs = 2500;
@@ -172,12 +266,14 @@ public class DefaultLoadControl implements LoadControl {
     private PriorityTaskManager priorityTaskManager = null;
     private int backBufferDurationMs = 0;
     private boolean retainBackBufferFromKeyframe = false;
+    private BufferMemoryArbiter bufferMemoryArbiter = null;
+    private int bufferPriority = 0;
     private boolean createDefaultLoadControlCalled;
 
     public Builder() {
     }
 
-    public DefaultLoadControl.Builder setAllocator(DefaultAllocator allocator) {
+    public DefaultLoadControl.Builder setAllocator(Allocator allocator) {
       Assertions.checkState(!this.createDefaultLoadControlCalled);
       this.allocator = allocator;
       return this;
@@ -217,13 +313,16 @@ public class DefaultLoadControl implements LoadControl {
       return this;
     }
 
+    public DefaultLoadControl.Builder setBufferMemoryArbiter(BufferMemoryArbiter bufferMemoryArbiter, int bufferPriority) {
+      Assertions.checkState(!this.createDefaultLoadControlCalled);
+      this.bufferMemoryArbiter = bufferMemoryArbiter;
+      this.bufferPriority = bufferPriority;
+      return this;
+    }
+
     public DefaultLoadControl createDefaultLoadControl() {
       this.createDefaultLoadControlCalled = true;
-      if (this.allocator == null) {
-        this.allocator = new DefaultAllocator(true, 65536);
-      }
-
-      return new DefaultLoadControl(this.allocator, this.minBufferMs, this.maxBufferMs, this.bufferForPlaybackMs, this.bufferForPlaybackAfterRebufferMs, this.targetBufferBytes, this.prioritizeTimeOverSizeThresholds, this.priorityTaskManager, this.backBufferDurationMs, this.retainBackBufferFromKeyframe);
+      return new DefaultLoadControl(this);
     }
   }
 }
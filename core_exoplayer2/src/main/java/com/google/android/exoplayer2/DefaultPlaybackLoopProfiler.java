@@ -0,0 +1,82 @@
+package com.google.android.exoplayer2;
+
+import com.google.android.exoplayer2.util.LatencyHistogram;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public final class DefaultPlaybackLoopProfiler implements PlaybackLoopProfiler {
+  private static final int MAX_RENDERER_COUNT = 16;
+  private final LatencyHistogram[] phaseHistograms;
+  private final AtomicReferenceArray<LatencyHistogram> rendererHistograms;
+  private final int[] rendererTrackTypes;
+
+  public DefaultPlaybackLoopProfiler() {
+    this.phaseHistograms = new LatencyHistogram[6];
+
+    for(int i = 0; i < 6; ++i) {
+      this.phaseHistograms[i] = new LatencyHistogram();
+    }
+
+    this.rendererHistograms = new AtomicReferenceArray(16);
+    this.rendererTrackTypes = new int[16];
+  }
+
+  public void onPhaseEnded(int phase, long durationNs) {
+    this.phaseHistograms[phase].record(durationNs);
+  }
+
+  public void onRenderEnded(int rendererIndex, int trackType, long durationNs) {
+    if (rendererIndex >= 0 && rendererIndex < 16) {
+      LatencyHistogram histogram = (LatencyHistogram)this.rendererHistograms.get(rendererIndex);
+      if (histogram == null) {
+        this.rendererTrackTypes[rendererIndex] = trackType;
+        histogram = new LatencyHistogram();
+        this.rendererHistograms.set(rendererIndex, histogram);
+      }
+
+      histogram.record(durationNs);
+    }
+  }
+
+  public PlaybackLoopProfiler.Snapshot getSnapshot() {
+    LatencyHistogram.Snapshot[] phaseSnapshots = new LatencyHistogram.Snapshot[6];
+
+    for(int i = 0; i < 6; ++i) {
+      phaseSnapshots[i] = this.phaseHistograms[i].getSnapshot();
+    }
+
+    int rendererCount = 0;
+
+    for(int i = 0; i < 16; ++i) {
+      if (this.rendererHistograms.get(i) != null) {
+        rendererCount = i + 1;
+      }
+    }
+
+    LatencyHistogram.Snapshot[] rendererSnapshots = new LatencyHistogram.Snapshot[rendererCount];
+    int[] trackTypes = new int[rendererCount];
+
+    for(int i = 0; i < rendererCount; ++i) {
+      LatencyHistogram histogram = (LatencyHistogram)this.rendererHistograms.get(i);
+      if (histogram != null) {
+        rendererSnapshots[i] = histogram.getSnapshot();
+        trackTypes[i] = this.rendererTrackTypes[i];
+      }
+    }
+
+    return new PlaybackLoopProfiler.Snapshot(phaseSnapshots, rendererSnapshots, trackTypes);
+  }
+
+  public void reset() {
+    for(int i = 0; i < 6; ++i) {
+      this.phaseHistograms[i].reset();
+    }
+
+    for(int i = 0; i < 16; ++i) {
+      LatencyHistogram histogram = (LatencyHistogram)this.rendererHistograms.get(i);
+      if (histogram != null) {
+        histogram.reset();
+      }
+    }
+
+  }
+}
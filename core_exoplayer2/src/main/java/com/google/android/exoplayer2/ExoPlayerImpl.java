@@ -251,6 +251,22 @@ final class ExoPlayerImpl extends BasePlayer implements ExoPlayer {
     return this.playbackParameters;
   }
 
+  public void setPlaybackLoopProfiler(@Nullable PlaybackLoopProfiler playbackLoopProfiler) {
+    this.internalPlayer.setPlaybackLoopProfiler(playbackLoopProfiler);
+  }
+
+  public void setAdaptiveWorkSchedulingEnabled(boolean enabled) {
+    this.internalPlayer.setAdaptiveWorkSchedulingEnabled(enabled);
+  }
+
+  public long getPlaybackLoopWakeupCount() {
+    return this.internalPlayer.getWakeupCount();
+  }
+
+  public long getPlaybackLoopWastedWakeupCount() {
+    return this.internalPlayer.getWastedWakeupCount();
+  }
+
   public void setSeekParameters(@Nullable SeekParameters seekParameters) {
     if (seekParameters == null) {
       seekParameters = SeekParameters.DEFAULT;
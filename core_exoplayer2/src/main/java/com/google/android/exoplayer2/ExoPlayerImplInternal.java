@@ -7,7 +7,6 @@ import android.os.Message;
 import android.os.SystemClock;
 import android.os.Handler.Callback;
 import android.util.Pair;
-import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.DefaultMediaClock.PlaybackParameterListener;
 import com.google.android.exoplayer2.PlayerMessage.Sender;
@@ -31,9 +30,6 @@ import com.google.android.exoplayer2.util.Log;
 import com.google.android.exoplayer2.util.TraceUtil;
 import com.google.android.exoplayer2.util.Util;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Iterator;
 
 final class ExoPlayerImplInternal implements Callback, com.google.android.exoplayer2.source.MediaPeriod.Callback, InvalidationListener, SourceInfoRefreshListener, PlaybackParameterListener, Sender {
   private static final String TAG = "ExoPlayerImplInternal";
@@ -57,9 +53,13 @@ final class ExoPlayerImplInternal implements Callback, com.google.android.exopla
   private static final int MSG_SEND_MESSAGE = 14;
   private static final int MSG_SEND_MESSAGE_TO_TARGET_THREAD = 15;
   private static final int MSG_PLAYBACK_PARAMETERS_CHANGED_INTERNAL = 16;
+  private static final int MSG_SET_ADAPTIVE_WORK_SCHEDULING = 17;
+  private static final int MSG_SET_PLAYBACK_LOOP_PROFILER = 18;
   private static final int PREPARING_SOURCE_INTERVAL_MS = 10;
   private static final int RENDERING_INTERVAL_MS = 10;
   private static final int IDLE_INTERVAL_MS = 1000;
+  private static final int MIN_ADAPTIVE_RENDERING_INTERVAL_MS = 1;
+  private static final int MAX_ADAPTIVE_RENDERING_INTERVAL_MS = 100;
   private final Renderer[] renderers;
   private final RendererCapabilities[] rendererCapabilities;
   private final TrackSelector trackSelector;
@@ -76,7 +76,7 @@ final class ExoPlayerImplInternal implements Callback, com.google.android.exopla
   private final boolean retainBackBufferFromKeyframe;
   private final DefaultMediaClock mediaClock;
   private final ExoPlayerImplInternal.PlaybackInfoUpdate playbackInfoUpdate;
-  private final ArrayList<ExoPlayerImplInternal.PendingMessageInfo> pendingMessages;
+  private final PendingMessageQueue pendingMessages;
   private final Clock clock;
   private final MediaPeriodQueue queue;
   private SeekParameters seekParameters;
@@ -91,7 +91,10 @@ final class ExoPlayerImplInternal implements Callback, com.google.android.exopla
   private int pendingPrepareCount;
   private ExoPlayerImplInternal.SeekPosition pendingInitialSeekPosition;
   private long rendererPositionUs;
-  private int nextPendingMessageIndex;
+  private boolean adaptiveWorkScheduling;
+  @Nullable
+  private PlaybackLoopProfiler playbackLoopProfiler;
+  private final AdaptiveWorkScheduler adaptiveWorkScheduler;
 
   public ExoPlayerImplInternal(Renderer[] renderers, TrackSelector trackSelector, TrackSelectorResult emptyTrackSelectorResult, LoadControl loadControl, BandwidthMeter bandwidthMeter, boolean playWhenReady, int repeatMode, boolean shuffleModeEnabled, Handler eventHandler, ExoPlayer player, Clock clock) {
     this.renderers = renderers;
@@ -105,6 +108,7 @@ final class ExoPlayerImplInternal implements Callback, com.google.android.exopla
     this.eventHandler = eventHandler;
     this.player = player;
     this.clock = clock;
+    this.adaptiveWorkScheduler = new AdaptiveWorkScheduler(clock);
     this.queue = new MediaPeriodQueue();
     this.backBufferDurationUs = loadControl.getBackBufferDurationUs();
     this.retainBackBufferFromKeyframe = loadControl.retainBackBufferFromKeyframe();
@@ -119,7 +123,7 @@ final class ExoPlayerImplInternal implements Callback, com.google.android.exopla
     }
 
     this.mediaClock = new DefaultMediaClock(this, clock);
-    this.pendingMessages = new ArrayList();
+    this.pendingMessages = new PendingMessageQueue();
     this.enabledRenderers = new Renderer[0];
     this.window = new Window();
     this.period = new Period();
@@ -157,6 +161,22 @@ final class ExoPlayerImplInternal implements Callback, com.google.android.exopla
     this.handler.obtainMessage(5, seekParameters).sendToTarget();
   }
 
+  public void setAdaptiveWorkSchedulingEnabled(boolean enabled) {
+    this.handler.obtainMessage(17, enabled ? 1 : 0, 0).sendToTarget();
+  }
+
+  public void setPlaybackLoopProfiler(@Nullable PlaybackLoopProfiler playbackLoopProfiler) {
+    this.handler.obtainMessage(18, playbackLoopProfiler).sendToTarget();
+  }
+
+  public long getWakeupCount() {
+    return this.adaptiveWorkScheduler.getWakeupCount();
+  }
+
+  public long getWastedWakeupCount() {
+    return this.adaptiveWorkScheduler.getWastedWakeupCount();
+  }
+
   public void stop(boolean reset) {
     this.handler.obtainMessage(6, reset ? 1 : 0, 0).sendToTarget();
   }
@@ -268,6 +288,12 @@ final class ExoPlayerImplInternal implements Callback, com.google.android.exopla
         case 16:
           this.handlePlaybackParameters((PlaybackParameters)msg.obj);
           break;
+        case 17:
+          this.setAdaptiveWorkSchedulingInternal(msg.arg1 != 0);
+          break;
+        case 18:
+          this.playbackLoopProfiler = (PlaybackLoopProfiler)msg.obj;
+          break;
         default:
           return false;
       }
@@ -418,35 +444,83 @@ final class ExoPlayerImplInternal implements Callback, com.google.android.exopla
     }
   }
 
+  private void setAdaptiveWorkSchedulingInternal(boolean enabled) {
+    this.adaptiveWorkScheduling = enabled;
+    if (this.playWhenReady && this.playbackInfo.playbackState == 3) {
+      this.handler.sendEmptyMessage(2);
+    }
+
+  }
+
   private void doSomeWork() throws ExoPlaybackException, IOException {
     long operationStartTimeMs = this.clock.uptimeMillis();
+    PlaybackLoopProfiler profiler = this.playbackLoopProfiler;
+    long iterationStartTimeNs = profiler != null ? System.nanoTime() : 0L;
     this.updatePeriods();
+    long phaseStartTimeNs = profiler != null ? this.endProfilerPhase(profiler, 1, iterationStartTimeNs) : 0L;
     if (!this.queue.hasPlayingPeriod()) {
+      this.adaptiveWorkScheduler.onWakeup(false, -9223372036854775807L);
       this.maybeThrowPeriodPrepareError();
       this.scheduleNextWork(operationStartTimeMs, 10L);
+      if (profiler != null) {
+        this.endProfilerPhase(profiler, 0, iterationStartTimeNs);
+      }
     } else {
       MediaPeriodHolder playingPeriodHolder = this.queue.getPlayingPeriod();
       TraceUtil.beginSection("doSomeWork");
       this.updatePlaybackPositions();
+      if (profiler != null) {
+        phaseStartTimeNs = this.endProfilerPhase(profiler, 2, phaseStartTimeNs);
+      }
+
       long rendererPositionElapsedRealtimeUs = SystemClock.elapsedRealtime() * 1000L;
+      this.adaptiveWorkScheduler.onWakeup(this.enabledRenderers.length != 0 && this.playbackInfo.playbackState == 3 && this.playWhenReady, this.getNextRendererWorkElapsedRealtimeUs());
+
       playingPeriodHolder.mediaPeriod.discardBuffer(this.playbackInfo.positionUs - this.backBufferDurationUs, this.retainBackBufferFromKeyframe);
+      if (profiler != null) {
+        phaseStartTimeNs = this.endProfilerPhase(profiler, 3, phaseStartTimeNs);
+      }
+
       boolean renderersEnded = true;
       boolean renderersReadyOrEnded = true;
+      long renderDurationNs = 0L;
+      long maybeThrowStreamErrorDurationNs = 0L;
+      boolean maybeThrowStreamErrorCalled = false;
       Renderer[] var8 = this.enabledRenderers;
       int var9 = var8.length;
 
       for(int var10 = 0; var10 < var9; ++var10) {
         Renderer renderer = var8[var10];
-        renderer.render(this.rendererPositionUs, rendererPositionElapsedRealtimeUs);
+        if (profiler != null) {
+          long renderStartTimeNs = System.nanoTime();
+          renderer.render(this.rendererPositionUs, rendererPositionElapsedRealtimeUs);
+          long rendererDurationNs = System.nanoTime() - renderStartTimeNs;
+          profiler.onRenderEnded(this.getRendererIndex(renderer), renderer.getTrackType(), rendererDurationNs);
+          renderDurationNs += rendererDurationNs;
+        } else {
+          renderer.render(this.rendererPositionUs, rendererPositionElapsedRealtimeUs);
+        }
+
         renderersEnded = renderersEnded && renderer.isEnded();
         boolean rendererReadyOrEnded = renderer.isReady() || renderer.isEnded() || this.rendererWaitingForNextStream(renderer);
         if (!rendererReadyOrEnded) {
-          renderer.maybeThrowStreamError();
+          if (profiler != null) {
+            long maybeThrowStartTimeNs = System.nanoTime();
+            renderer.maybeThrowStreamError();
+            maybeThrowStreamErrorDurationNs += System.nanoTime() - maybeThrowStartTimeNs;
+            maybeThrowStreamErrorCalled = true;
+          } else {
+            renderer.maybeThrowStreamError();
+          }
         }
 
         renderersReadyOrEnded = renderersReadyOrEnded && rendererReadyOrEnded;
       }
 
+      if (profiler != null) {
+        profiler.onPhaseEnded(4, renderDurationNs);
+      }
+
       if (!renderersReadyOrEnded) {
         this.maybeThrowPeriodPrepareError();
       }
@@ -477,6 +551,10 @@ final class ExoPlayerImplInternal implements Callback, com.google.android.exopla
       }
 
       if (this.playbackInfo.playbackState == 2) {
+        if (profiler != null) {
+          phaseStartTimeNs = System.nanoTime();
+        }
+
         Renderer[] var15 = this.enabledRenderers;
         int var16 = var15.length;
 
@@ -484,6 +562,15 @@ final class ExoPlayerImplInternal implements Callback, com.google.android.exopla
           Renderer renderer = var15[var17];
           renderer.maybeThrowStreamError();
         }
+
+        if (profiler != null) {
+          maybeThrowStreamErrorDurationNs += System.nanoTime() - phaseStartTimeNs;
+          maybeThrowStreamErrorCalled = true;
+        }
+      }
+
+      if (profiler != null && maybeThrowStreamErrorCalled) {
+        profiler.onPhaseEnded(5, maybeThrowStreamErrorDurationNs);
       }
 
       if ((!this.playWhenReady || this.playbackInfo.playbackState != 3) && this.playbackInfo.playbackState != 2) {
@@ -492,14 +579,52 @@ final class ExoPlayerImplInternal implements Callback, com.google.android.exopla
         } else {
           this.handler.removeMessages(2);
         }
+      } else if (this.adaptiveWorkScheduling && this.playWhenReady && this.playbackInfo.playbackState == 3) {
+        this.scheduleNextWork(operationStartTimeMs, this.getAdaptiveRenderingIntervalMs());
       } else {
         this.scheduleNextWork(operationStartTimeMs, 10L);
       }
 
+      if (profiler != null) {
+        this.endProfilerPhase(profiler, 0, iterationStartTimeNs);
+      }
+
       TraceUtil.endSection();
     }
   }
 
+  private long endProfilerPhase(PlaybackLoopProfiler profiler, int phase, long phaseStartTimeNs) {
+    long nowNs = System.nanoTime();
+    profiler.onPhaseEnded(phase, nowNs - phaseStartTimeNs);
+    return nowNs;
+  }
+
+  private int getRendererIndex(Renderer renderer) {
+    for(int i = 0; i < this.renderers.length; ++i) {
+      if (this.renderers[i] == renderer) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  private long getNextRendererWorkElapsedRealtimeUs() {
+    long nextWorkElapsedRealtimeUs = 9223372036854775807L;
+
+    for(int i = 0; i < this.enabledRenderers.length; ++i) {
+      nextWorkElapsedRealtimeUs = AdaptiveWorkScheduler.getEarlierNextWork(nextWorkElapsedRealtimeUs, this.enabledRenderers[i].getNextWorkElapsedRealtimeUs());
+    }
+
+    return nextWorkElapsedRealtimeUs;
+  }
+
+  private long getAdaptiveRenderingIntervalMs() {
+    int playingPeriodIndex = this.playbackInfo.timeline.getIndexOfPeriod(this.playbackInfo.periodId.periodUid);
+    long nextMessageDelayUs = AdaptiveWorkScheduler.getNextMessageDelayUs(this.pendingMessages.getNextMessage(), playingPeriodIndex, this.playbackInfo.positionUs, this.mediaClock.getPlaybackParameters().speed);
+    return this.adaptiveWorkScheduler.getIntervalMs(this.getNextRendererWorkElapsedRealtimeUs(), nextMessageDelayUs);
+  }
+
   private void scheduleNextWork(long thisOperationStartTimeMs, long intervalMs) {
     this.handler.removeMessages(2);
     this.handler.sendEmptyMessageAtTime(2, thisOperationStartTimeMs + intervalMs);
@@ -681,15 +806,7 @@ final class ExoPlayerImplInternal implements Callback, com.google.android.exopla
 
     if (resetState) {
       this.queue.setTimeline(Timeline.EMPTY);
-      Iterator var10 = this.pendingMessages.iterator();
-
-      while(var10.hasNext()) {
-        ExoPlayerImplInternal.PendingMessageInfo pendingMessageInfo = (ExoPlayerImplInternal.PendingMessageInfo)var10.next();
-        pendingMessageInfo.message.markAsProcessed(false);
-      }
-
       this.pendingMessages.clear();
-      this.nextPendingMessageIndex = 0;
     }
 
     MediaPeriodId mediaPeriodId = resetPosition ? this.playbackInfo.getDummyFirstMediaPeriodId(this.shuffleModeEnabled, this.window) : this.playbackInfo.periodId;
@@ -707,15 +824,14 @@ final class ExoPlayerImplInternal implements Callback, com.google.android.exopla
     if (message.getPositionMs() == -9223372036854775807L) {
       this.sendMessageToTarget(message);
     } else if (this.mediaSource != null && this.pendingPrepareCount <= 0) {
-      ExoPlayerImplInternal.PendingMessageInfo pendingMessageInfo = new ExoPlayerImplInternal.PendingMessageInfo(message);
+      PendingMessageQueue.PendingMessageInfo pendingMessageInfo = new PendingMessageQueue.PendingMessageInfo(message);
       if (this.resolvePendingMessagePosition(pendingMessageInfo)) {
         this.pendingMessages.add(pendingMessageInfo);
-        Collections.sort(this.pendingMessages);
       } else {
         message.markAsProcessed(false);
       }
     } else {
-      this.pendingMessages.add(new ExoPlayerImplInternal.PendingMessageInfo(message));
+      this.pendingMessages.addUnresolved(message);
     }
 
   }
@@ -756,17 +872,10 @@ final class ExoPlayerImplInternal implements Callback, com.google.android.exopla
   }
 
   private void resolvePendingMessagePositions() {
-    for(int i = this.pendingMessages.size() - 1; i >= 0; --i) {
-      if (!this.resolvePendingMessagePosition((ExoPlayerImplInternal.PendingMessageInfo)this.pendingMessages.get(i))) {
-        ((ExoPlayerImplInternal.PendingMessageInfo)this.pendingMessages.get(i)).message.markAsProcessed(false);
-        this.pendingMessages.remove(i);
-      }
-    }
-
-    Collections.sort(this.pendingMessages);
+    this.pendingMessages.resolvePositions(this::resolvePendingMessagePosition);
   }
 
-  private boolean resolvePendingMessagePosition(ExoPlayerImplInternal.PendingMessageInfo pendingMessageInfo) {
+  private boolean resolvePendingMessagePosition(PendingMessageQueue.PendingMessageInfo pendingMessageInfo) {
     if (pendingMessageInfo.resolvedPeriodUid == null) {
       Pair<Object, Long> periodPosition = this.resolveSeekPosition(new ExoPlayerImplInternal.SeekPosition(pendingMessageInfo.message.getTimeline(), pendingMessageInfo.message.getWindowIndex(), C.msToUs(pendingMessageInfo.message.getPositionMs())), false);
       if (periodPosition == null) {
@@ -793,25 +902,7 @@ final class ExoPlayerImplInternal implements Callback, com.google.android.exopla
       }
 
       int currentPeriodIndex = this.playbackInfo.timeline.getIndexOfPeriod(this.playbackInfo.periodId.periodUid);
-
-      for(ExoPlayerImplInternal.PendingMessageInfo previousInfo = this.nextPendingMessageIndex > 0 ? (ExoPlayerImplInternal.PendingMessageInfo)this.pendingMessages.get(this.nextPendingMessageIndex - 1) : null; previousInfo != null && (previousInfo.resolvedPeriodIndex > currentPeriodIndex || previousInfo.resolvedPeriodIndex == currentPeriodIndex && previousInfo.resolvedPeriodTimeUs > oldPeriodPositionUs); previousInfo = this.nextPendingMessageIndex > 0 ? (ExoPlayerImplInternal.PendingMessageInfo)this.pendingMessages.get(this.nextPendingMessageIndex - 1) : null) {
-        --this.nextPendingMessageIndex;
-      }
-
-      ExoPlayerImplInternal.PendingMessageInfo nextInfo;
-      for(nextInfo = this.nextPendingMessageIndex < this.pendingMessages.size() ? (ExoPlayerImplInternal.PendingMessageInfo)this.pendingMessages.get(this.nextPendingMessageIndex) : null; nextInfo != null && nextInfo.resolvedPeriodUid != null && (nextInfo.resolvedPeriodIndex < currentPeriodIndex || nextInfo.resolvedPeriodIndex == currentPeriodIndex && nextInfo.resolvedPeriodTimeUs <= oldPeriodPositionUs); nextInfo = this.nextPendingMessageIndex < this.pendingMessages.size() ? (ExoPlayerImplInternal.PendingMessageInfo)this.pendingMessages.get(this.nextPendingMessageIndex) : null) {
-        ++this.nextPendingMessageIndex;
-      }
-
-      for(; nextInfo != null && nextInfo.resolvedPeriodUid != null && nextInfo.resolvedPeriodIndex == currentPeriodIndex && nextInfo.resolvedPeriodTimeUs > oldPeriodPositionUs && nextInfo.resolvedPeriodTimeUs <= newPeriodPositionUs; nextInfo = this.nextPendingMessageIndex < this.pendingMessages.size() ? (ExoPlayerImplInternal.PendingMessageInfo)this.pendingMessages.get(this.nextPendingMessageIndex) : null) {
-        this.sendMessageToTarget(nextInfo.message);
-        if (!nextInfo.message.getDeleteAfterDelivery() && !nextInfo.message.isCanceled()) {
-          ++this.nextPendingMessageIndex;
-        } else {
-          this.pendingMessages.remove(this.nextPendingMessageIndex);
-        }
-      }
-
+      this.pendingMessages.deliverMessages(currentPeriodIndex, oldPeriodPositionUs, newPeriodPositionUs, this::sendMessageToTarget);
     }
   }
 
@@ -1439,35 +1530,6 @@ final class ExoPlayerImplInternal implements Callback, com.google.android.exopla
     }
   }
 
-  private static final class PendingMessageInfo implements Comparable<ExoPlayerImplInternal.PendingMessageInfo> {
-    public final PlayerMessage message;
-    public int resolvedPeriodIndex;
-    public long resolvedPeriodTimeUs;
-    @Nullable
-    public Object resolvedPeriodUid;
-
-    public PendingMessageInfo(PlayerMessage message) {
-      this.message = message;
-    }
-
-    public void setResolvedPosition(int periodIndex, long periodTimeUs, Object periodUid) {
-      this.resolvedPeriodIndex = periodIndex;
-      this.resolvedPeriodTimeUs = periodTimeUs;
-      this.resolvedPeriodUid = periodUid;
-    }
-
-    public int compareTo(@NonNull ExoPlayerImplInternal.PendingMessageInfo other) {
-      if (this.resolvedPeriodUid == null != (other.resolvedPeriodUid == null)) {
-        return this.resolvedPeriodUid != null ? -1 : 1;
-      } else if (this.resolvedPeriodUid == null) {
-        return 0;
-      } else {
-        int comparePeriodIndex = this.resolvedPeriodIndex - other.resolvedPeriodIndex;
-        return comparePeriodIndex != 0 ? comparePeriodIndex : Util.compareLong(this.resolvedPeriodTimeUs, other.resolvedPeriodTimeUs);
-      }
-    }
-  }
-
   private static final class SeekPosition {
     public final Timeline timeline;
     public final int windowIndex;
@@ -104,6 +104,10 @@ public abstract class NoSampleRenderer implements Renderer, RendererCapabilities
     return true;
   }
 
+  public long getNextWorkElapsedRealtimeUs() {
+    return 9223372036854775807L;
+  }
+
   public int supportsFormat(Format format) throws ExoPlaybackException {
     return 0;
   }
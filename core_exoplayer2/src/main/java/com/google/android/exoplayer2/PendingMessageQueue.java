@@ -0,0 +1,174 @@
+package com.google.android.exoplayer2;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.util.Util;
+import java.util.ArrayList;
+
+final class PendingMessageQueue {
+  private final ArrayList<PendingMessageQueue.PendingMessageInfo> messages = new ArrayList();
+  private int nextMessageIndex;
+
+  public PendingMessageQueue() {
+  }
+
+  public boolean isEmpty() {
+    return this.messages.isEmpty();
+  }
+
+  public int size() {
+    return this.messages.size();
+  }
+
+  @Nullable
+  public PendingMessageQueue.PendingMessageInfo getNextMessage() {
+    return this.nextMessageIndex < this.messages.size() ? (PendingMessageQueue.PendingMessageInfo)this.messages.get(this.nextMessageIndex) : null;
+  }
+
+  public void addUnresolved(PlayerMessage message) {
+    this.messages.add(new PendingMessageQueue.PendingMessageInfo(message));
+  }
+
+  public void add(PendingMessageQueue.PendingMessageInfo pendingMessageInfo) {
+    int insertionIndex = this.findInsertionIndex(pendingMessageInfo, this.messages.size());
+    this.messages.add(insertionIndex, pendingMessageInfo);
+    if (insertionIndex < this.nextMessageIndex) {
+      ++this.nextMessageIndex;
+    }
+
+  }
+
+  public void clear() {
+    for(int i = 0; i < this.messages.size(); ++i) {
+      ((PendingMessageQueue.PendingMessageInfo)this.messages.get(i)).message.markAsProcessed(false);
+    }
+
+    this.messages.clear();
+    this.nextMessageIndex = 0;
+  }
+
+  public void resolvePositions(PendingMessageQueue.Resolver resolver) {
+    int size = this.messages.size();
+    int writeIndex = 0;
+    int readIndex = 0;
+
+    try {
+      while(readIndex < size) {
+        PendingMessageQueue.PendingMessageInfo pendingMessageInfo = (PendingMessageQueue.PendingMessageInfo)this.messages.get(readIndex);
+        if (resolver.resolvePosition(pendingMessageInfo)) {
+          int insertionIndex = this.findInsertionIndex(pendingMessageInfo, writeIndex);
+          for(int i = writeIndex; i > insertionIndex; --i) {
+            this.messages.set(i, this.messages.get(i - 1));
+          }
+
+          this.messages.set(insertionIndex, pendingMessageInfo);
+          ++writeIndex;
+        } else {
+          pendingMessageInfo.message.markAsProcessed(false);
+        }
+
+        ++readIndex;
+      }
+    } finally {
+      this.messages.subList(writeIndex, readIndex).clear();
+      this.nextMessageIndex = Math.min(this.nextMessageIndex, writeIndex);
+    }
+
+  }
+
+  public void deliverMessages(int periodIndex, long fromPositionUs, long toPositionUs, PendingMessageQueue.Deliverer deliverer) throws ExoPlaybackException {
+    int readIndex = this.findNextMessageIndex(periodIndex, fromPositionUs);
+    int writeIndex = readIndex;
+    int size = this.messages.size();
+
+    try {
+      while(readIndex < size) {
+        PendingMessageQueue.PendingMessageInfo nextInfo = (PendingMessageQueue.PendingMessageInfo)this.messages.get(readIndex);
+        if (nextInfo.resolvedPeriodUid == null || nextInfo.resolvedPeriodIndex != periodIndex || nextInfo.resolvedPeriodTimeUs > toPositionUs) {
+          break;
+        }
+
+        deliverer.deliver(nextInfo.message);
+        if (!nextInfo.message.getDeleteAfterDelivery() && !nextInfo.message.isCanceled()) {
+          this.messages.set(writeIndex++, nextInfo);
+        }
+
+        ++readIndex;
+      }
+    } finally {
+      this.messages.subList(writeIndex, readIndex).clear();
+      this.nextMessageIndex = writeIndex;
+    }
+
+  }
+
+  private int findNextMessageIndex(int periodIndex, long periodPositionUs) {
+    int low = 0;
+    int high = this.messages.size();
+
+    while(low < high) {
+      int mid = low + high >>> 1;
+      PendingMessageQueue.PendingMessageInfo info = (PendingMessageQueue.PendingMessageInfo)this.messages.get(mid);
+      if (info.resolvedPeriodUid == null || info.resolvedPeriodIndex > periodIndex || info.resolvedPeriodIndex == periodIndex && info.resolvedPeriodTimeUs > periodPositionUs) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+
+    return low;
+  }
+
+  private int findInsertionIndex(PendingMessageQueue.PendingMessageInfo pendingMessageInfo, int size) {
+    int low = 0;
+    int high = size;
+
+    while(low < high) {
+      int mid = low + high >>> 1;
+      if (((PendingMessageQueue.PendingMessageInfo)this.messages.get(mid)).compareTo(pendingMessageInfo) > 0) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+
+    return low;
+  }
+
+  public interface Deliverer {
+    void deliver(PlayerMessage var1) throws ExoPlaybackException;
+  }
+
+  public interface Resolver {
+    boolean resolvePosition(PendingMessageQueue.PendingMessageInfo var1);
+  }
+
+  public static final class PendingMessageInfo implements Comparable<PendingMessageQueue.PendingMessageInfo> {
+    public final PlayerMessage message;
+    public int resolvedPeriodIndex;
+    public long resolvedPeriodTimeUs;
+    @Nullable
+    public Object resolvedPeriodUid;
+
+    public PendingMessageInfo(PlayerMessage message) {
+      this.message = message;
+    }
+
+    public void setResolvedPosition(int periodIndex, long periodTimeUs, Object periodUid) {
+      this.resolvedPeriodIndex = periodIndex;
+      this.resolvedPeriodTimeUs = periodTimeUs;
+      this.resolvedPeriodUid = periodUid;
+    }
+
+    public int compareTo(@NonNull PendingMessageQueue.PendingMessageInfo other) {
+      if (this.resolvedPeriodUid == null != (other.resolvedPeriodUid == null)) {
+        return this.resolvedPeriodUid != null ? -1 : 1;
+      } else if (this.resolvedPeriodUid == null) {
+        return 0;
+      } else {
+        int comparePeriodIndex = this.resolvedPeriodIndex - other.resolvedPeriodIndex;
+        return comparePeriodIndex != 0 ? comparePeriodIndex : Util.compareLong(this.resolvedPeriodTimeUs, other.resolvedPeriodTimeUs);
+      }
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package com.google.android.exoplayer2;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.util.LatencyHistogram;
+
+public interface PlaybackLoopProfiler {
+  int PHASE_DO_SOME_WORK = 0;
+  int PHASE_UPDATE_PERIODS = 1;
+  int PHASE_UPDATE_PLAYBACK_POSITIONS = 2;
+  int PHASE_DISCARD_BUFFER = 3;
+  int PHASE_RENDER = 4;
+  int PHASE_MAYBE_THROW_STREAM_ERROR = 5;
+  int PHASE_COUNT = 6;
+
+  void onPhaseEnded(int var1, long var2);
+
+  void onRenderEnded(int var1, int var2, long var3);
+
+  PlaybackLoopProfiler.Snapshot getSnapshot();
+
+  public static final class Snapshot {
+    private final LatencyHistogram.Snapshot[] phaseSnapshots;
+    private final LatencyHistogram.Snapshot[] rendererSnapshots;
+    private final int[] rendererTrackTypes;
+
+    public Snapshot(LatencyHistogram.Snapshot[] phaseSnapshots, LatencyHistogram.Snapshot[] rendererSnapshots, int[] rendererTrackTypes) {
+      this.phaseSnapshots = phaseSnapshots;
+      this.rendererSnapshots = rendererSnapshots;
+      this.rendererTrackTypes = rendererTrackTypes;
+    }
+
+    public LatencyHistogram.Snapshot getPhaseSnapshot(int phase) {
+      return this.phaseSnapshots[phase];
+    }
+
+    public int getRendererCount() {
+      return this.rendererSnapshots.length;
+    }
+
+    @Nullable
+    public LatencyHistogram.Snapshot getRendererSnapshot(int rendererIndex) {
+      return this.rendererSnapshots[rendererIndex];
+    }
+
+    public int getRendererTrackType(int rendererIndex) {
+      return this.rendererTrackTypes[rendererIndex];
+    }
+  }
+}
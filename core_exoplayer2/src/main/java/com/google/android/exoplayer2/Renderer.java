@@ -13,6 +13,7 @@ public interface Renderer extends Target {
   int STATE_DISABLED = 0;
   int STATE_ENABLED = 1;
   int STATE_STARTED = 2;
+  long NEXT_WORK_IDLE = 9223372036854775807L;
 
   int getTrackType();
 
@@ -49,6 +50,10 @@ public interface Renderer extends Target {
 
   boolean isReady();
 
+  default long getNextWorkElapsedRealtimeUs() {
+    return -9223372036854775807L;
+  }
+
   boolean isEnded();
 
   void stop() throws ExoPlaybackException;
@@ -687,6 +687,24 @@ public class SimpleExoPlayer extends BasePlayer implements ExoPlayer, AudioCompo
     return this.player.getPlaybackParameters();
   }
 
+  public void setPlaybackLoopProfiler(@Nullable PlaybackLoopProfiler playbackLoopProfiler) {
+    this.verifyApplicationThread();
+    this.player.setPlaybackLoopProfiler(playbackLoopProfiler);
+  }
+
+  public void setAdaptiveWorkSchedulingEnabled(boolean enabled) {
+    this.verifyApplicationThread();
+    this.player.setAdaptiveWorkSchedulingEnabled(enabled);
+  }
+
+  public long getPlaybackLoopWakeupCount() {
+    return this.player.getPlaybackLoopWakeupCount();
+  }
+
+  public long getPlaybackLoopWastedWakeupCount() {
+    return this.player.getPlaybackLoopWastedWakeupCount();
+  }
+
   public void setSeekParameters(@Nullable SeekParameters seekParameters) {
     this.verifyApplicationThread();
     this.player.setSeekParameters(seekParameters);
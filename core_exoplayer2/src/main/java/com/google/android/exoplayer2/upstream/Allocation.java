@@ -1,11 +1,50 @@
 package com.google.android.exoplayer2.upstream;
 
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.util.Util;
+import java.nio.ByteBuffer;
+
 public final class Allocation {
   public final byte[] data;
   public final int offset;
+  @Nullable
+  private final ByteBuffer buffer;
 
   public Allocation(byte[] data, int offset) {
     this.data = data;
     this.offset = offset;
+    this.buffer = null;
+  }
+
+  public Allocation(ByteBuffer buffer) {
+    this.buffer = buffer.slice();
+    if (buffer.hasArray()) {
+      this.data = buffer.array();
+      this.offset = buffer.arrayOffset() + buffer.position();
+    } else {
+      this.data = Util.EMPTY_BYTE_ARRAY;
+      this.offset = 0;
+    }
+
+  }
+
+  public boolean isDirect() {
+    return this.buffer != null && !this.buffer.hasArray();
+  }
+
+  @Nullable
+  public ByteBuffer getByteBuffer() {
+    return this.buffer == null ? null : this.buffer.duplicate();
+  }
+
+  public ByteBuffer asByteBuffer(int length) {
+    if (this.buffer != null) {
+      ByteBuffer view = this.buffer.duplicate();
+      view.clear();
+      view.limit(length);
+      return view.slice();
+    } else {
+      return ByteBuffer.wrap(this.data, this.offset, length).slice();
+    }
   }
-}
\ No newline at end of file
+}
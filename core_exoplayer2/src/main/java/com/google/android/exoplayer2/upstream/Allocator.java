@@ -13,4 +13,14 @@ public interface Allocator {
   int getTotalBytesAllocated();
 
   int getIndividualAllocationLength();
+
+  default void reset() {
+  }
+
+  default void setTargetBufferSize(int var1) {
+  }
+
+  default boolean isDirect() {
+    return false;
+  }
 }
\ No newline at end of file
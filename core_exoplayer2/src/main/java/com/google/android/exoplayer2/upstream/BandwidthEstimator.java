@@ -0,0 +1,11 @@
+package com.google.android.exoplayer2.upstream;
+
+public interface BandwidthEstimator {
+  long ESTIMATE_NOT_AVAILABLE = -9223372036854775807L;
+
+  void addSample(long bytesTransferred, long elapsedTimeMs, long nowMs);
+
+  long getBandwidthEstimate();
+
+  void reset();
+}
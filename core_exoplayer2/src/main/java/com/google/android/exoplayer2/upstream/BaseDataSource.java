@@ -1,6 +1,8 @@
 package com.google.android.exoplayer2.upstream;
 
+import android.os.SystemClock;
 import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
 import java.util.ArrayList;
 
@@ -10,6 +12,10 @@ public abstract class BaseDataSource implements DataSource {
   private int listenerCount;
   @Nullable
   private DataSpec dataSpec;
+  private int batchBytesThreshold;
+  private long batchIntervalMs;
+  private int pendingBytesTransferred;
+  private long lastBytesTransferredFlushMs;
 
   protected BaseDataSource(boolean isNetwork) {
     this.isNetwork = isNetwork;
@@ -24,6 +30,13 @@ public abstract class BaseDataSource implements DataSource {
 
   }
 
+  public final void setTransferBatching(int batchBytesThreshold, long batchIntervalMs) {
+    Assertions.checkArgument(batchBytesThreshold >= 0 && batchIntervalMs >= 0L);
+    this.flushBytesTransferred();
+    this.batchBytesThreshold = batchBytesThreshold;
+    this.batchIntervalMs = batchIntervalMs;
+  }
+
   protected final void transferInitializing(DataSpec dataSpec) {
     for(int i = 0; i < this.listenerCount; ++i) {
       ((TransferListener)this.listeners.get(i)).onTransferInitializing(this, dataSpec, this.isNetwork);
@@ -33,6 +46,10 @@ public abstract class BaseDataSource implements DataSource {
 
   protected final void transferStarted(DataSpec dataSpec) {
     this.dataSpec = dataSpec;
+    this.pendingBytesTransferred = 0;
+    if (this.batchIntervalMs > 0L) {
+      this.lastBytesTransferredFlushMs = SystemClock.elapsedRealtime();
+    }
 
     for(int i = 0; i < this.listenerCount; ++i) {
       ((TransferListener)this.listeners.get(i)).onTransferStart(this, dataSpec, this.isNetwork);
@@ -41,15 +58,37 @@ public abstract class BaseDataSource implements DataSource {
   }
 
   protected final void bytesTransferred(int bytesTransferred) {
-    DataSpec dataSpec = (DataSpec)Util.castNonNull(this.dataSpec);
+    if (this.listenerCount == 0) {
+      return;
+    }
 
-    for(int i = 0; i < this.listenerCount; ++i) {
-      ((TransferListener)this.listeners.get(i)).onBytesTransferred(this, dataSpec, this.isNetwork, bytesTransferred);
+    if (this.batchBytesThreshold == 0 && this.batchIntervalMs == 0L) {
+      this.dispatchBytesTransferred(bytesTransferred);
+      return;
+    }
+
+    if (this.pendingBytesTransferred > 2147483647 - bytesTransferred) {
+      this.flushBytesTransferred();
+    }
+
+    this.pendingBytesTransferred += bytesTransferred;
+    if (this.batchBytesThreshold > 0 && this.pendingBytesTransferred >= this.batchBytesThreshold) {
+      this.flushBytesTransferred();
+      if (this.batchIntervalMs > 0L) {
+        this.lastBytesTransferredFlushMs = SystemClock.elapsedRealtime();
+      }
+    } else if (this.batchIntervalMs > 0L) {
+      long nowMs = SystemClock.elapsedRealtime();
+      if (nowMs - this.lastBytesTransferredFlushMs >= this.batchIntervalMs) {
+        this.flushBytesTransferred();
+        this.lastBytesTransferredFlushMs = nowMs;
+      }
     }
 
   }
 
   protected final void transferEnded() {
+    this.flushBytesTransferred();
     DataSpec dataSpec = (DataSpec)Util.castNonNull(this.dataSpec);
 
     for(int i = 0; i < this.listenerCount; ++i) {
@@ -58,5 +97,23 @@ public abstract class BaseDataSource implements DataSource {
 
     this.dataSpec = null;
   }
+
+  private void flushBytesTransferred() {
+    if (this.pendingBytesTransferred > 0) {
+      int bytesTransferred = this.pendingBytesTransferred;
+      this.pendingBytesTransferred = 0;
+      this.dispatchBytesTransferred(bytesTransferred);
+    }
+
+  }
+
+  private void dispatchBytesTransferred(int bytesTransferred) {
+    DataSpec dataSpec = (DataSpec)Util.castNonNull(this.dataSpec);
+
+    for(int i = 0; i < this.listenerCount; ++i) {
+      ((TransferListener)this.listeners.get(i)).onBytesTransferred(this, dataSpec, this.isNetwork, bytesTransferred);
+    }
+
+  }
 }
 
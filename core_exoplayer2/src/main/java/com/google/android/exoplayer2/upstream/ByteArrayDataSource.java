@@ -4,6 +4,7 @@ import android.net.Uri;
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.util.Assertions;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public final class ByteArrayDataSource extends BaseDataSource {
   private final byte[] data;
@@ -49,6 +50,21 @@ public final class ByteArrayDataSource extends BaseDataSource {
     }
   }
 
+  public int read(ByteBuffer buffer) throws IOException {
+    if (!buffer.hasRemaining()) {
+      return 0;
+    } else if (this.bytesRemaining == 0) {
+      return -1;
+    } else {
+      int readLength = Math.min(buffer.remaining(), this.bytesRemaining);
+      buffer.put(this.data, this.readPosition, readLength);
+      this.readPosition += readLength;
+      this.bytesRemaining -= readLength;
+      this.bytesTransferred(readLength);
+      return readLength;
+    }
+  }
+
   @Nullable
   public Uri getUri() {
     return this.uri;
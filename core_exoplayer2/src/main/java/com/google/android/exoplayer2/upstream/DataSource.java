@@ -3,6 +3,7 @@ package com.google.android.exoplayer2.upstream;
 import android.net.Uri;
 import androidx.annotation.Nullable;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -14,6 +15,24 @@ public interface DataSource {
 
   int read(byte[] var1, int var2, int var3) throws IOException;
 
+  default int read(ByteBuffer buffer) throws IOException {
+    int bytesRead;
+    if (buffer.hasArray()) {
+      bytesRead = this.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+      if (bytesRead > 0) {
+        buffer.position(buffer.position() + bytesRead);
+      }
+    } else {
+      byte[] scratch = ReadScratch.get();
+      bytesRead = this.read(scratch, 0, Math.min(buffer.remaining(), scratch.length));
+      if (bytesRead > 0) {
+        buffer.put(scratch, 0, bytesRead);
+      }
+    }
+
+    return bytesRead;
+  }
+
   @Nullable
   Uri getUri();
 
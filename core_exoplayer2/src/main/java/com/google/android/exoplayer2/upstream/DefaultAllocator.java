@@ -2,18 +2,22 @@ package com.google.android.exoplayer2.upstream;
 
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public final class DefaultAllocator implements Allocator {
   private static final int AVAILABLE_EXTRA_CAPACITY = 100;
+  private static final int MAGAZINE_CAPACITY = 8;
   private final boolean trimOnReset;
   private final int individualAllocationSize;
   private final byte[] initialAllocationBlock;
-  private final Allocation[] singleAllocationReleaseHolder;
-  private int targetBufferSize;
-  private int allocatedCount;
-  private int availableCount;
-  private Allocation[] availableAllocations;
+  private final AtomicInteger allocatedCount;
+  private final AtomicReference<DefaultAllocator.Magazine> depot;
+  private final ThreadLocal<DefaultAllocator.Magazine> threadMagazines;
+  private final ArrayList<DefaultAllocator.Magazine> allThreadMagazines;
+  private volatile int targetBufferSize;
 
   public DefaultAllocator(boolean trimOnReset, int individualAllocationSize) {
     this(trimOnReset, individualAllocationSize, 0);
@@ -24,25 +28,40 @@ public final class DefaultAllocator implements Allocator {
     Assertions.checkArgument(initialAllocationCount >= 0);
     this.trimOnReset = trimOnReset;
     this.individualAllocationSize = individualAllocationSize;
-    this.availableCount = initialAllocationCount;
-    this.availableAllocations = new Allocation[initialAllocationCount + 100];
+    this.allocatedCount = new AtomicInteger();
+    this.depot = new AtomicReference();
+    this.allThreadMagazines = new ArrayList();
+    this.threadMagazines = new ThreadLocal<DefaultAllocator.Magazine>() {
+      protected DefaultAllocator.Magazine initialValue() {
+        DefaultAllocator.Magazine magazine = new DefaultAllocator.Magazine(8);
+        magazine.owner = Thread.currentThread();
+        synchronized(DefaultAllocator.this.allThreadMagazines) {
+          DefaultAllocator.this.allThreadMagazines.add(magazine);
+          return magazine;
+        }
+      }
+    };
     if (initialAllocationCount > 0) {
       this.initialAllocationBlock = new byte[initialAllocationCount * individualAllocationSize];
+      Allocation[] initialAllocations = new Allocation[initialAllocationCount];
 
       for(int i = 0; i < initialAllocationCount; ++i) {
         int allocationOffset = i * individualAllocationSize;
-        this.availableAllocations[i] = new Allocation(this.initialAllocationBlock, allocationOffset);
+        initialAllocations[i] = new Allocation(this.initialAllocationBlock, allocationOffset);
       }
+
+      this.pushAllToDepot(initialAllocations, initialAllocationCount);
     } else {
       this.initialAllocationBlock = null;
     }
 
-    this.singleAllocationReleaseHolder = new Allocation[1];
   }
 
   public synchronized void reset() {
     if (this.trimOnReset) {
       this.setTargetBufferSize(0);
+    } else {
+      this.drainThreadMagazines();
     }
 
   }
@@ -56,80 +75,181 @@ public final class DefaultAllocator implements Allocator {
 
   }
 
-  public synchronized Allocation allocate() {
-    ++this.allocatedCount;
-    Allocation allocation;
-    if (this.availableCount > 0) {
-      allocation = this.availableAllocations[--this.availableCount];
-      this.availableAllocations[this.availableCount] = null;
-    } else {
-      allocation = new Allocation(new byte[this.individualAllocationSize], 0);
-    }
+  public Allocation allocate() {
+    this.allocatedCount.incrementAndGet();
+    DefaultAllocator.Magazine magazine = (DefaultAllocator.Magazine)this.threadMagazines.get();
+    synchronized(magazine) {
+      if (magazine.size == 0) {
+        DefaultAllocator.Magazine full = this.popFromDepot();
+        if (full == null) {
+          return new Allocation(new byte[this.individualAllocationSize], 0);
+        }
 
-    return allocation;
-  }
+        magazine.allocations = full.allocations;
+        magazine.size = full.size;
+      }
 
-  public synchronized void release(Allocation allocation) {
-    this.singleAllocationReleaseHolder[0] = allocation;
-    this.release(this.singleAllocationReleaseHolder);
+      Allocation allocation = magazine.allocations[--magazine.size];
+      magazine.allocations[magazine.size] = null;
+      return allocation;
+    }
   }
 
-  public synchronized void release(Allocation[] allocations) {
-    if (this.availableCount + allocations.length >= this.availableAllocations.length) {
-      this.availableAllocations = (Allocation[])Arrays.copyOf(this.availableAllocations, Math.max(this.availableAllocations.length * 2, this.availableCount + allocations.length));
-    }
+  public void release(Allocation allocation) {
+    this.releaseToMagazine(allocation);
+    this.allocatedCount.decrementAndGet();
+  }
 
+  public void release(Allocation[] allocations) {
     Allocation[] var2 = allocations;
     int var3 = allocations.length;
 
     for(int var4 = 0; var4 < var3; ++var4) {
       Allocation allocation = var2[var4];
-      this.availableAllocations[this.availableCount++] = allocation;
+      this.releaseToMagazine(allocation);
     }
 
-    this.allocatedCount -= allocations.length;
-    this.notifyAll();
+    this.allocatedCount.addAndGet(-allocations.length);
   }
 
   public synchronized void trim() {
-    int targetAllocationCount = Util.ceilDivide(this.targetBufferSize, this.individualAllocationSize);
-    int targetAvailableCount = Math.max(0, targetAllocationCount - this.allocatedCount);
-    if (targetAvailableCount < this.availableCount) {
-      if (this.initialAllocationBlock != null) {
-        int lowIndex = 0;
-        int highIndex = this.availableCount - 1;
-
-        while(lowIndex <= highIndex) {
-          Allocation lowAllocation = this.availableAllocations[lowIndex];
-          if (lowAllocation.data == this.initialAllocationBlock) {
-            ++lowIndex;
-          } else {
-            Allocation highAllocation = this.availableAllocations[highIndex];
-            if (highAllocation.data != this.initialAllocationBlock) {
-              --highIndex;
+    this.drainThreadMagazines();
+    DefaultAllocator.Magazine available = (DefaultAllocator.Magazine)this.depot.getAndSet(null);
+    int availableCount = 0;
+
+    for(DefaultAllocator.Magazine entry = available; entry != null; entry = entry.next) {
+      availableCount += entry.size;
+    }
+
+    if (availableCount != 0) {
+      Allocation[] availableAllocations = new Allocation[availableCount];
+      availableCount = 0;
+
+      for(DefaultAllocator.Magazine entry = available; entry != null; entry = entry.next) {
+        System.arraycopy(entry.allocations, 0, availableAllocations, availableCount, entry.size);
+        availableCount += entry.size;
+      }
+
+      int targetAllocationCount = Util.ceilDivide(this.targetBufferSize, this.individualAllocationSize);
+      int targetAvailableCount = Math.max(0, targetAllocationCount - this.allocatedCount.get());
+      if (targetAvailableCount < availableCount) {
+        if (this.initialAllocationBlock != null) {
+          int lowIndex = 0;
+          int highIndex = availableCount - 1;
+
+          while(lowIndex <= highIndex) {
+            Allocation lowAllocation = availableAllocations[lowIndex];
+            if (lowAllocation.data == this.initialAllocationBlock) {
+              ++lowIndex;
             } else {
-              this.availableAllocations[lowIndex++] = highAllocation;
-              this.availableAllocations[highIndex--] = lowAllocation;
+              Allocation highAllocation = availableAllocations[highIndex];
+              if (highAllocation.data != this.initialAllocationBlock) {
+                --highIndex;
+              } else {
+                availableAllocations[lowIndex++] = highAllocation;
+                availableAllocations[highIndex--] = lowAllocation;
+              }
             }
           }
-        }
 
-        targetAvailableCount = Math.max(targetAvailableCount, lowIndex);
-        if (targetAvailableCount >= this.availableCount) {
-          return;
+          targetAvailableCount = Math.max(targetAvailableCount, lowIndex);
         }
+
+        availableCount = Math.min(availableCount, targetAvailableCount);
       }
 
-      Arrays.fill(this.availableAllocations, targetAvailableCount, this.availableCount, (Object)null);
-      this.availableCount = targetAvailableCount;
+      this.pushAllToDepot(availableAllocations, availableCount);
     }
   }
 
-  public synchronized int getTotalBytesAllocated() {
-    return this.allocatedCount * this.individualAllocationSize;
+  public int getTotalBytesAllocated() {
+    return this.allocatedCount.get() * this.individualAllocationSize;
   }
 
   public int getIndividualAllocationLength() {
     return this.individualAllocationSize;
   }
+
+  private void releaseToMagazine(Allocation allocation) {
+    DefaultAllocator.Magazine magazine = (DefaultAllocator.Magazine)this.threadMagazines.get();
+    synchronized(magazine) {
+      if (magazine.size == magazine.allocations.length) {
+        this.pushToDepot(magazine.allocations, magazine.size);
+        magazine.allocations = new Allocation[8];
+        magazine.size = 0;
+      }
+
+      magazine.allocations[magazine.size++] = allocation;
+    }
+  }
+
+  private void drainThreadMagazines() {
+    synchronized(this.allThreadMagazines) {
+      Iterator var2 = this.allThreadMagazines.iterator();
+
+      while(var2.hasNext()) {
+        DefaultAllocator.Magazine magazine = (DefaultAllocator.Magazine)var2.next();
+        synchronized(magazine) {
+          if (magazine.size > 0) {
+            this.pushToDepot(magazine.allocations, magazine.size);
+            magazine.allocations = new Allocation[8];
+            magazine.size = 0;
+          }
+        }
+
+        if (!magazine.owner.isAlive()) {
+          var2.remove();
+        }
+      }
+
+    }
+  }
+
+  private void pushAllToDepot(Allocation[] allocations, int count) {
+    for(int i = 0; i < count; i += 8) {
+      int size = Math.min(8, count - i);
+      Allocation[] magazineAllocations = new Allocation[8];
+      System.arraycopy(allocations, i, magazineAllocations, 0, size);
+      this.pushToDepot(magazineAllocations, size);
+    }
+
+  }
+
+  private void pushToDepot(Allocation[] allocations, int size) {
+    DefaultAllocator.Magazine entry = new DefaultAllocator.Magazine(allocations, size);
+
+    do {
+      entry.next = (DefaultAllocator.Magazine)this.depot.get();
+    } while(!this.depot.compareAndSet(entry.next, entry));
+
+  }
+
+  private DefaultAllocator.Magazine popFromDepot() {
+    DefaultAllocator.Magazine entry;
+    do {
+      entry = (DefaultAllocator.Magazine)this.depot.get();
+      if (entry == null) {
+        return null;
+      }
+    } while(!this.depot.compareAndSet(entry, entry.next));
+
+    entry.next = null;
+    return entry;
+  }
+
+  private static final class Magazine {
+    public Allocation[] allocations;
+    public int size;
+    public DefaultAllocator.Magazine next;
+    public Thread owner;
+
+    public Magazine(int capacity) {
+      this(new Allocation[capacity], 0);
+    }
+
+    public Magazine(Allocation[] allocations, int size) {
+      this.allocations = allocations;
+      this.size = size;
+    }
+  }
 }
@@ -8,12 +8,13 @@ import com.google.android.exoplayer2.upstream.BandwidthMeter.EventListener;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Clock;
 import com.google.android.exoplayer2.util.EventDispatcher;
-import com.google.android.exoplayer2.util.SlidingPercentile;
 import com.google.android.exoplayer2.util.Util;
 import com.google.android.exoplayer2.util.EventDispatcher.Event;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DefaultBandwidthMeter implements BandwidthMeter, TransferListener {
   public static final Map<String, int[]> DEFAULT_INITIAL_BITRATE_COUNTRY_GROUPS = createInitialBitrateCountryGroupAssignment();
@@ -26,23 +27,23 @@ public class DefaultBandwidthMeter implements BandwidthMeter, TransferListener {
   private static final int ELAPSED_MILLIS_FOR_ESTIMATE = 2000;
   private static final int BYTES_TRANSFERRED_FOR_ESTIMATE = 524288;
   private final EventDispatcher<EventListener> eventDispatcher;
-  private final SlidingPercentile slidingPercentile;
+  private final EventDispatcher<DefaultBandwidthMeter.EstimatorEventListener> estimatorEventDispatcher;
+  private final BandwidthEstimator bandwidthEstimator;
+  private final BandwidthEstimator[] secondaryBandwidthEstimators;
   private final Clock clock;
+  private final AtomicLong sampleBytesTransferred;
   private int streamCount;
   private long sampleStartTimeMs;
-  private long sampleBytesTransferred;
-  private long totalElapsedTimeMs;
-  private long totalBytesTransferred;
-  protected long bitrateEstimate;
+  protected volatile long bitrateEstimate;
 
   public DefaultBandwidthMeter() {
-    this(1000000L, 2000, Clock.DEFAULT);
+    this(1000000L, new PercentileBandwidthEstimator(2000), new BandwidthEstimator[0], Clock.DEFAULT);
   }
 
   /** @deprecated */
   @Deprecated
   public DefaultBandwidthMeter(Handler eventHandler, EventListener eventListener) {
-    this(1000000L, 2000, Clock.DEFAULT);
+    this(1000000L, new PercentileBandwidthEstimator(2000), new BandwidthEstimator[0], Clock.DEFAULT);
     if (eventHandler != null && eventListener != null) {
       this.addEventListener(eventHandler, eventListener);
     }
@@ -52,21 +53,24 @@ public class DefaultBandwidthMeter implements BandwidthMeter, TransferListener {
   /** @deprecated */
   @Deprecated
   public DefaultBandwidthMeter(Handler eventHandler, EventListener eventListener, int maxWeight) {
-    this(1000000L, maxWeight, Clock.DEFAULT);
+    this(1000000L, new PercentileBandwidthEstimator(maxWeight), new BandwidthEstimator[0], Clock.DEFAULT);
     if (eventHandler != null && eventListener != null) {
       this.addEventListener(eventHandler, eventListener);
     }
 
   }
 
-  private DefaultBandwidthMeter(long initialBitrateEstimate, int maxWeight, Clock clock) {
+  private DefaultBandwidthMeter(long initialBitrateEstimate, BandwidthEstimator bandwidthEstimator, BandwidthEstimator[] secondaryBandwidthEstimators, Clock clock) {
     this.eventDispatcher = new EventDispatcher();
-    this.slidingPercentile = new SlidingPercentile(maxWeight);
+    this.estimatorEventDispatcher = new EventDispatcher();
+    this.bandwidthEstimator = bandwidthEstimator;
+    this.secondaryBandwidthEstimators = secondaryBandwidthEstimators;
     this.clock = clock;
+    this.sampleBytesTransferred = new AtomicLong();
     this.bitrateEstimate = initialBitrateEstimate;
   }
 
-  public synchronized long getBitrateEstimate() {
+  public long getBitrateEstimate() {
     return this.bitrateEstimate;
   }
 
@@ -83,6 +87,14 @@ public class DefaultBandwidthMeter implements BandwidthMeter, TransferListener {
     this.eventDispatcher.removeListener(eventListener);
   }
 
+  public void addEstimatorEventListener(Handler eventHandler, DefaultBandwidthMeter.EstimatorEventListener eventListener) {
+    this.estimatorEventDispatcher.addListener(eventHandler, eventListener);
+  }
+
+  public void removeEstimatorEventListener(DefaultBandwidthMeter.EstimatorEventListener eventListener) {
+    this.estimatorEventDispatcher.removeListener(eventListener);
+  }
+
   public void onTransferInitializing(DataSource source, DataSpec dataSpec, boolean isNetwork) {
   }
 
@@ -96,9 +108,9 @@ public class DefaultBandwidthMeter implements BandwidthMeter, TransferListener {
     }
   }
 
-  public synchronized void onBytesTransferred(DataSource source, DataSpec dataSpec, boolean isNetwork, int bytes) {
+  public void onBytesTransferred(DataSource source, DataSpec dataSpec, boolean isNetwork, int bytes) {
     if (isNetwork) {
-      this.sampleBytesTransferred += (long)bytes;
+      this.sampleBytesTransferred.addAndGet((long)bytes);
     }
   }
 
@@ -107,22 +119,28 @@ public class DefaultBandwidthMeter implements BandwidthMeter, TransferListener {
       Assertions.checkState(this.streamCount > 0);
       long nowMs = this.clock.elapsedRealtime();
       int sampleElapsedTimeMs = (int)(nowMs - this.sampleStartTimeMs);
-      this.totalElapsedTimeMs += (long)sampleElapsedTimeMs;
-      this.totalBytesTransferred += this.sampleBytesTransferred;
-      if (sampleElapsedTimeMs > 0) {
-        float bitsPerSecond = (float)(this.sampleBytesTransferred * 8000L / (long)sampleElapsedTimeMs);
-        this.slidingPercentile.addSample((int)Math.sqrt((double)this.sampleBytesTransferred), bitsPerSecond);
-        if (this.totalElapsedTimeMs >= 2000L || this.totalBytesTransferred >= 524288L) {
-          this.bitrateEstimate = (long)this.slidingPercentile.getPercentile(0.5F);
+      long sampleBytesTransferred = this.sampleBytesTransferred.getAndSet(0L);
+      this.bandwidthEstimator.addSample(sampleBytesTransferred, (long)sampleElapsedTimeMs, nowMs);
+      long estimate = this.bandwidthEstimator.getBandwidthEstimate();
+      if (estimate != -9223372036854775807L) {
+        this.bitrateEstimate = estimate;
+        this.notifyBandwidthEstimate(this.bandwidthEstimator, true, estimate);
+      }
+
+      for(int i = 0; i < this.secondaryBandwidthEstimators.length; ++i) {
+        BandwidthEstimator secondaryBandwidthEstimator = this.secondaryBandwidthEstimators[i];
+        secondaryBandwidthEstimator.addSample(sampleBytesTransferred, (long)sampleElapsedTimeMs, nowMs);
+        long secondaryEstimate = secondaryBandwidthEstimator.getBandwidthEstimate();
+        if (secondaryEstimate != -9223372036854775807L) {
+          this.notifyBandwidthEstimate(secondaryBandwidthEstimator, false, secondaryEstimate);
         }
       }
 
-      this.notifyBandwidthSample(sampleElapsedTimeMs, this.sampleBytesTransferred, this.bitrateEstimate);
+      this.notifyBandwidthSample(sampleElapsedTimeMs, sampleBytesTransferred, this.bitrateEstimate);
       if (--this.streamCount > 0) {
         this.sampleStartTimeMs = nowMs;
       }
 
-      this.sampleBytesTransferred = 0L;
     }
   }
 
@@ -132,6 +150,12 @@ public class DefaultBandwidthMeter implements BandwidthMeter, TransferListener {
     });
   }
 
+  private void notifyBandwidthEstimate(BandwidthEstimator estimator, boolean isPrimary, long bitrate) {
+    this.estimatorEventDispatcher.dispatch((listener) -> {
+      listener.onBandwidthEstimate(estimator, isPrimary, bitrate);
+    });
+  }
+
   private static Map<String, int[]> createInitialBitrateCountryGroupAssignment() {
     HashMap<String, int[]> countryGroupAssignment = new HashMap();
     countryGroupAssignment.put("AD", new int[]{1, 0, 0, 0});
@@ -377,6 +401,10 @@ public class DefaultBandwidthMeter implements BandwidthMeter, TransferListener {
     return Collections.unmodifiableMap(countryGroupAssignment);
   }
 
+  public interface EstimatorEventListener {
+    void onBandwidthEstimate(BandwidthEstimator var1, boolean var2, long var3);
+  }
+
   public static final class Builder {
     @Nullable
     private final Context context;
@@ -386,6 +414,10 @@ public class DefaultBandwidthMeter implements BandwidthMeter, TransferListener {
     private EventListener eventListener;
     private SparseArray<Long> initialBitrateEstimates;
     private int slidingWindowMaxWeight;
+    private boolean slidingWindowMaxWeightSet;
+    @Nullable
+    private BandwidthEstimator bandwidthEstimator;
+    private final ArrayList<BandwidthEstimator> secondaryBandwidthEstimators;
     private Clock clock;
 
     /** @deprecated */
@@ -398,6 +430,7 @@ public class DefaultBandwidthMeter implements BandwidthMeter, TransferListener {
       this.context = context == null ? null : context.getApplicationContext();
       this.initialBitrateEstimates = getInitialBitrateEstimatesForCountry(Util.getCountryCode(context));
       this.slidingWindowMaxWeight = 2000;
+      this.secondaryBandwidthEstimators = new ArrayList();
       this.clock = Clock.DEFAULT;
     }
 
@@ -409,7 +442,20 @@ public class DefaultBandwidthMeter implements BandwidthMeter, TransferListener {
     }
 
     public DefaultBandwidthMeter.Builder setSlidingWindowMaxWeight(int slidingWindowMaxWeight) {
+      Assertions.checkState(this.bandwidthEstimator == null, "The sliding window only applies to the default estimator");
       this.slidingWindowMaxWeight = slidingWindowMaxWeight;
+      this.slidingWindowMaxWeightSet = true;
+      return this;
+    }
+
+    public DefaultBandwidthMeter.Builder setBandwidthEstimator(BandwidthEstimator bandwidthEstimator) {
+      Assertions.checkState(!this.slidingWindowMaxWeightSet, "The sliding window only applies to the default estimator");
+      this.bandwidthEstimator = (BandwidthEstimator)Assertions.checkNotNull(bandwidthEstimator);
+      return this;
+    }
+
+    public DefaultBandwidthMeter.Builder addSecondaryBandwidthEstimator(BandwidthEstimator bandwidthEstimator) {
+      this.secondaryBandwidthEstimators.add(Assertions.checkNotNull(bandwidthEstimator));
       return this;
     }
 
@@ -442,7 +488,9 @@ public class DefaultBandwidthMeter implements BandwidthMeter, TransferListener {
         initialBitrateEstimate = (Long)this.initialBitrateEstimates.get(0);
       }
 
-      DefaultBandwidthMeter bandwidthMeter = new DefaultBandwidthMeter(initialBitrateEstimate, this.slidingWindowMaxWeight, this.clock);
+      BandwidthEstimator bandwidthEstimator = this.bandwidthEstimator != null ? this.bandwidthEstimator : new PercentileBandwidthEstimator(this.slidingWindowMaxWeight);
+      BandwidthEstimator[] secondaryBandwidthEstimators = (BandwidthEstimator[])this.secondaryBandwidthEstimators.toArray(new BandwidthEstimator[0]);
+      DefaultBandwidthMeter bandwidthMeter = new DefaultBandwidthMeter(initialBitrateEstimate, bandwidthEstimator, secondaryBandwidthEstimators, this.clock);
       if (this.eventHandler != null && this.eventListener != null) {
         bandwidthMeter.addEventListener(this.eventHandler, this.eventListener);
       }
@@ -0,0 +1,76 @@
+package com.google.android.exoplayer2.upstream;
+
+import com.google.android.exoplayer2.util.Assertions;
+
+public final class EwmaBandwidthEstimator implements BandwidthEstimator {
+  public static final long DEFAULT_FAST_HALF_LIFE_MS = 2000L;
+  public static final long DEFAULT_SLOW_HALF_LIFE_MS = 5000L;
+  public static final long DEFAULT_MIN_BYTES_TRANSFERRED = 131072L;
+  public static final long DEFAULT_MIN_SAMPLE_BYTES = 16000L;
+  private final EwmaBandwidthEstimator.Ewma fast;
+  private final EwmaBandwidthEstimator.Ewma slow;
+  private final long minBytesTransferred;
+  private final long minSampleBytes;
+  private long totalBytesTransferred;
+
+  public EwmaBandwidthEstimator() {
+    this(2000L, 5000L, 131072L, 16000L);
+  }
+
+  public EwmaBandwidthEstimator(long fastHalfLifeMs, long slowHalfLifeMs, long minBytesTransferred, long minSampleBytes) {
+    Assertions.checkArgument(fastHalfLifeMs > 0L && slowHalfLifeMs > 0L);
+    this.fast = new EwmaBandwidthEstimator.Ewma(fastHalfLifeMs);
+    this.slow = new EwmaBandwidthEstimator.Ewma(slowHalfLifeMs);
+    this.minBytesTransferred = minBytesTransferred;
+    this.minSampleBytes = minSampleBytes;
+  }
+
+  public void addSample(long bytesTransferred, long elapsedTimeMs, long nowMs) {
+    if (elapsedTimeMs > 0L && bytesTransferred >= this.minSampleBytes) {
+      double bitsPerSecond = (double)bytesTransferred * 8000.0D / (double)elapsedTimeMs;
+      this.fast.add(elapsedTimeMs, bitsPerSecond);
+      this.slow.add(elapsedTimeMs, bitsPerSecond);
+      this.totalBytesTransferred += bytesTransferred;
+    }
+  }
+
+  public long getBandwidthEstimate() {
+    if (this.totalBytesTransferred < this.minBytesTransferred) {
+      return -9223372036854775807L;
+    } else {
+      return (long)Math.min(this.fast.getEstimate(), this.slow.getEstimate());
+    }
+  }
+
+  public void reset() {
+    this.fast.reset();
+    this.slow.reset();
+    this.totalBytesTransferred = 0L;
+  }
+
+  private static final class Ewma {
+    private final double alpha;
+    private double estimate;
+    private double totalWeightMs;
+
+    public Ewma(long halfLifeMs) {
+      this.alpha = Math.exp(Math.log(0.5D) / (double)halfLifeMs);
+    }
+
+    public void add(long weightMs, double value) {
+      double adjustedAlpha = Math.pow(this.alpha, (double)weightMs);
+      this.estimate = value * (1.0D - adjustedAlpha) + adjustedAlpha * this.estimate;
+      this.totalWeightMs += (double)weightMs;
+    }
+
+    public double getEstimate() {
+      double zeroFactor = 1.0D - Math.pow(this.alpha, this.totalWeightMs);
+      return this.estimate / zeroFactor;
+    }
+
+    public void reset() {
+      this.estimate = 0.0D;
+      this.totalWeightMs = 0.0D;
+    }
+  }
+}
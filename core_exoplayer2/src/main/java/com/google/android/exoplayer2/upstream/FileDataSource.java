@@ -5,6 +5,7 @@ import androidx.annotation.Nullable;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 
 public final class FileDataSource extends BaseDataSource {
   @Nullable
@@ -69,6 +70,33 @@ public final class FileDataSource extends BaseDataSource {
     }
   }
 
+  public int read(ByteBuffer buffer) throws FileDataSource.FileDataSourceException {
+    if (!buffer.hasRemaining()) {
+      return 0;
+    } else if (this.bytesRemaining == 0L) {
+      return -1;
+    } else {
+      int limit = buffer.limit();
+
+      int bytesRead;
+      try {
+        buffer.limit(buffer.position() + (int)Math.min(this.bytesRemaining, (long)buffer.remaining()));
+        bytesRead = this.file.getChannel().read(buffer);
+      } catch (IOException var8) {
+        throw new FileDataSource.FileDataSourceException(var8);
+      } finally {
+        buffer.limit(limit);
+      }
+
+      if (bytesRead > 0) {
+        this.bytesRemaining -= (long)bytesRead;
+        this.bytesTransferred(bytesRead);
+      }
+
+      return bytesRead;
+    }
+  }
+
   @Nullable
   public Uri getUri() {
     return this.uri;
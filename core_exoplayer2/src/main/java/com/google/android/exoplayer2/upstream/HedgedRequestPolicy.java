@@ -0,0 +1,116 @@
+package com.google.android.exoplayer2.upstream;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.SlidingPercentile;
+import java.util.HashMap;
+
+public final class HedgedRequestPolicy {
+  public static final float DEFAULT_LATENCY_PERCENTILE = 0.95F;
+  public static final long DEFAULT_MIN_HEDGE_DELAY_MS = 50L;
+  public static final long DEFAULT_MAX_HEDGE_DELAY_MS = 8000L;
+  public static final float DEFAULT_MAX_HEDGE_RATIO = 0.05F;
+  public static final int DEFAULT_MIN_SAMPLES = 10;
+  public static final int DEFAULT_MAX_SAMPLES_PER_HOST = 100;
+  private static final float MAX_HEDGE_TOKENS = 5.0F;
+  private static final int MAX_ABANDONED_ATTEMPTS = 4;
+  private final float latencyPercentile;
+  private final long minHedgeDelayMs;
+  private final long maxHedgeDelayMs;
+  private final float maxHedgeRatio;
+  private final int minSamples;
+  private final int maxSamplesPerHost;
+  private final HashMap<String, HedgedRequestPolicy.HostLatency> hostLatencies;
+  private float hedgeTokens;
+  private long requestCount;
+  private long hedgeCount;
+  private long hedgeWinCount;
+  private int abandonedAttemptCount;
+
+  public HedgedRequestPolicy() {
+    this(0.95F, 50L, 8000L, 0.05F, 10, 100);
+  }
+
+  public HedgedRequestPolicy(float latencyPercentile, long minHedgeDelayMs, long maxHedgeDelayMs, float maxHedgeRatio, int minSamples, int maxSamplesPerHost) {
+    Assertions.checkArgument(latencyPercentile > 0.0F && latencyPercentile <= 1.0F);
+    Assertions.checkArgument(maxHedgeRatio >= 0.0F && maxHedgeRatio <= 1.0F);
+    this.latencyPercentile = latencyPercentile;
+    this.minHedgeDelayMs = minHedgeDelayMs;
+    this.maxHedgeDelayMs = maxHedgeDelayMs;
+    this.maxHedgeRatio = maxHedgeRatio;
+    this.minSamples = minSamples;
+    this.maxSamplesPerHost = maxSamplesPerHost;
+    this.hostLatencies = new HashMap();
+  }
+
+  public synchronized long onRequestStarted(@Nullable String host) {
+    ++this.requestCount;
+    this.hedgeTokens = Math.min(5.0F, this.hedgeTokens + this.maxHedgeRatio);
+    HedgedRequestPolicy.HostLatency hostLatency = (HedgedRequestPolicy.HostLatency)this.hostLatencies.get(host == null ? "" : host);
+    if (hostLatency != null && hostLatency.sampleCount >= this.minSamples && this.hedgeTokens >= 1.0F) {
+      long delayMs = (long)hostLatency.latencies.getPercentile(this.latencyPercentile);
+      return Math.max(this.minHedgeDelayMs, Math.min(this.maxHedgeDelayMs, delayMs));
+    } else {
+      return -9223372036854775807L;
+    }
+  }
+
+  public synchronized boolean tryAcquireHedge() {
+    if (this.hedgeTokens < 1.0F || this.abandonedAttemptCount >= 4) {
+      return false;
+    } else {
+      --this.hedgeTokens;
+      ++this.hedgeCount;
+      return true;
+    }
+  }
+
+  public synchronized void onFirstByteLatency(@Nullable String host, long latencyMs) {
+    String hostKey = host == null ? "" : host;
+    HedgedRequestPolicy.HostLatency hostLatency = (HedgedRequestPolicy.HostLatency)this.hostLatencies.get(hostKey);
+    if (hostLatency == null) {
+      hostLatency = new HedgedRequestPolicy.HostLatency(this.maxSamplesPerHost);
+      this.hostLatencies.put(hostKey, hostLatency);
+    }
+
+    hostLatency.latencies.addSample(1, (float)latencyMs);
+    ++hostLatency.sampleCount;
+  }
+
+  public synchronized void onHedgeWon() {
+    ++this.hedgeWinCount;
+  }
+
+  public synchronized void onAttemptAbandoned() {
+    ++this.abandonedAttemptCount;
+  }
+
+  public synchronized void onAbandonedAttemptCompleted() {
+    --this.abandonedAttemptCount;
+  }
+
+  public synchronized long getRequestCount() {
+    return this.requestCount;
+  }
+
+  public synchronized long getHedgeCount() {
+    return this.hedgeCount;
+  }
+
+  public synchronized long getHedgeWinCount() {
+    return this.hedgeWinCount;
+  }
+
+  public synchronized int getAbandonedAttemptCount() {
+    return this.abandonedAttemptCount;
+  }
+
+  private static final class HostLatency {
+    public final SlidingPercentile latencies;
+    public int sampleCount;
+
+    public HostLatency(int maxSamples) {
+      this.latencies = new SlidingPercentile(maxSamples);
+    }
+  }
+}
@@ -0,0 +1,391 @@
+package com.google.android.exoplayer2.upstream;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.upstream.DataSource.Factory;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public final class HedgingDataSource implements DataSource {
+  private final Factory upstreamFactory;
+  private final HedgedRequestPolicy hedgedRequestPolicy;
+  private final ExecutorService executorService;
+  @Nullable
+  private final HedgingDataSource.HedgeUriProvider hedgeUriProvider;
+  private final ArrayList<TransferListener> transferListeners;
+  @Nullable
+  private DataSource upstream;
+
+  public HedgingDataSource(Factory upstreamFactory, HedgedRequestPolicy hedgedRequestPolicy, ExecutorService executorService) {
+    this(upstreamFactory, hedgedRequestPolicy, executorService, (HedgingDataSource.HedgeUriProvider)null);
+  }
+
+  public HedgingDataSource(Factory upstreamFactory, HedgedRequestPolicy hedgedRequestPolicy, ExecutorService executorService, @Nullable HedgingDataSource.HedgeUriProvider hedgeUriProvider) {
+    this.upstreamFactory = (Factory)Assertions.checkNotNull(upstreamFactory);
+    this.hedgedRequestPolicy = (HedgedRequestPolicy)Assertions.checkNotNull(hedgedRequestPolicy);
+    this.executorService = (ExecutorService)Assertions.checkNotNull(executorService);
+    this.hedgeUriProvider = hedgeUriProvider;
+    this.transferListeners = new ArrayList();
+  }
+
+  public void addTransferListener(TransferListener transferListener) {
+    this.transferListeners.add(transferListener);
+  }
+
+  public long open(DataSpec dataSpec) throws IOException {
+    Assertions.checkState(this.upstream == null);
+    if (dataSpec.httpMethod == 1 && dataSpec.httpBody == null) {
+      return this.openHedged(dataSpec);
+    } else {
+      this.upstream = this.createUpstream();
+      return this.upstream.open(dataSpec);
+    }
+  }
+
+  private long openHedged(DataSpec dataSpec) throws IOException {
+    String host = dataSpec.uri.getHost();
+    long hedgeDelayMs = this.hedgedRequestPolicy.onRequestStarted(host);
+    if (hedgeDelayMs == -9223372036854775807L) {
+      this.upstream = this.createUpstream();
+      long startTimeMs = SystemClock.elapsedRealtime();
+      long length = this.upstream.open(dataSpec);
+      this.hedgedRequestPolicy.onFirstByteLatency(host, SystemClock.elapsedRealtime() - startTimeMs);
+      return length;
+    } else {
+      ExecutorCompletionService<HedgingDataSource.Attempt> completionService = new ExecutorCompletionService(this.executorService);
+      HedgingDataSource.Attempt primary = new HedgingDataSource.Attempt(dataSpec, false);
+      HedgingDataSource.Attempt hedge = null;
+      completionService.submit(primary);
+      int outstandingAttempts = 1;
+
+      try {
+        Future<HedgingDataSource.Attempt> completed = completionService.poll(hedgeDelayMs, TimeUnit.MILLISECONDS);
+        if (completed == null) {
+          if (this.hedgedRequestPolicy.tryAcquireHedge()) {
+            Uri hedgeUri = this.hedgeUriProvider != null ? this.hedgeUriProvider.getHedgeUri(dataSpec) : null;
+            hedge = new HedgingDataSource.Attempt(hedgeUri != null ? dataSpec.withUri(hedgeUri) : dataSpec, true);
+            completionService.submit(hedge);
+            ++outstandingAttempts;
+          }
+
+          completed = completionService.take();
+        }
+
+        IOException error = null;
+        RuntimeException unexpectedError = null;
+
+        while(true) {
+          --outstandingAttempts;
+          HedgingDataSource.Attempt attempt = getAttempt(completed);
+          if (!attempt.isFailed()) {
+            HedgingDataSource.Attempt loser = attempt == primary ? hedge : primary;
+            if (loser != null) {
+              loser.abandon();
+            }
+
+            if (attempt.isHedge) {
+              this.hedgedRequestPolicy.onHedgeWon();
+            }
+
+            attempt.transferListener.startForwarding();
+            this.upstream = attempt.dataSource;
+            return attempt.length;
+          }
+
+          if (attempt.unexpectedError != null) {
+            if (unexpectedError == null) {
+              unexpectedError = attempt.unexpectedError;
+            }
+          } else if (error == null) {
+            error = attempt.error;
+          }
+
+          if (outstandingAttempts == 0) {
+            if (unexpectedError != null) {
+              throw unexpectedError;
+            }
+
+            throw error;
+          }
+
+          completed = completionService.take();
+        }
+      } catch (InterruptedException var13) {
+        abandonAll(primary, hedge);
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      } catch (IOException var14) {
+        abandonAll(primary, hedge);
+        throw var14;
+      } catch (RuntimeException var15) {
+        abandonAll(primary, hedge);
+        throw var15;
+      }
+    }
+  }
+
+  public int read(byte[] buffer, int offset, int readLength) throws IOException {
+    return ((DataSource)Assertions.checkNotNull(this.upstream)).read(buffer, offset, readLength);
+  }
+
+  public int read(ByteBuffer buffer) throws IOException {
+    return ((DataSource)Assertions.checkNotNull(this.upstream)).read(buffer);
+  }
+
+  @Nullable
+  public Uri getUri() {
+    return this.upstream == null ? null : this.upstream.getUri();
+  }
+
+  public Map<String, List<String>> getResponseHeaders() {
+    return this.upstream == null ? Collections.emptyMap() : this.upstream.getResponseHeaders();
+  }
+
+  public void close() throws IOException {
+    if (this.upstream != null) {
+      try {
+        this.upstream.close();
+      } finally {
+        this.upstream = null;
+      }
+    }
+
+  }
+
+  private DataSource createUpstream() {
+    DataSource dataSource = this.upstreamFactory.createDataSource();
+
+    for(int i = 0; i < this.transferListeners.size(); ++i) {
+      dataSource.addTransferListener((TransferListener)this.transferListeners.get(i));
+    }
+
+    return dataSource;
+  }
+
+  private static void abandonAll(HedgingDataSource.Attempt primary, @Nullable HedgingDataSource.Attempt hedge) {
+    primary.abandon();
+    if (hedge != null) {
+      hedge.abandon();
+    }
+
+  }
+
+  private static HedgingDataSource.Attempt getAttempt(Future<HedgingDataSource.Attempt> future) throws IOException, InterruptedException {
+    try {
+      return (HedgingDataSource.Attempt)future.get();
+    } catch (ExecutionException var2) {
+      Throwable cause = var2.getCause();
+      if (cause instanceof Error) {
+        throw (Error)cause;
+      } else {
+        throw new IllegalStateException(cause);
+      }
+    }
+  }
+
+  private final class Attempt implements Callable<HedgingDataSource.Attempt> {
+    public final DataSource dataSource;
+    public final DataSpec dataSpec;
+    public final boolean isHedge;
+    public final HedgingDataSource.AttemptTransferListener transferListener;
+    public long length;
+    @Nullable
+    public IOException error;
+    @Nullable
+    public RuntimeException unexpectedError;
+    private boolean completed;
+    private boolean abandoned;
+
+    public Attempt(DataSpec dataSpec, boolean isHedge) {
+      this.dataSource = HedgingDataSource.this.upstreamFactory.createDataSource();
+      this.dataSpec = dataSpec;
+      this.isHedge = isHedge;
+      this.transferListener = HedgingDataSource.this.new AttemptTransferListener();
+      this.dataSource.addTransferListener(this.transferListener);
+    }
+
+    public HedgingDataSource.Attempt call() {
+      synchronized(this) {
+        if (this.abandoned) {
+          this.completed = true;
+          HedgingDataSource.this.hedgedRequestPolicy.onAbandonedAttemptCompleted();
+          return this;
+        }
+      }
+
+      String host = this.dataSpec.uri.getHost();
+      long startTimeMs = SystemClock.elapsedRealtime();
+
+      try {
+        this.length = this.dataSource.open(this.dataSpec);
+        HedgingDataSource.this.hedgedRequestPolicy.onFirstByteLatency(host, SystemClock.elapsedRealtime() - startTimeMs);
+      } catch (IOException var7) {
+        this.error = var7;
+      } catch (RuntimeException var8) {
+        this.unexpectedError = var8;
+      }
+
+      boolean closeNow;
+      synchronized(this) {
+        this.completed = true;
+        closeNow = this.abandoned || this.isFailed();
+        if (this.abandoned) {
+          HedgingDataSource.this.hedgedRequestPolicy.onAbandonedAttemptCompleted();
+        }
+      }
+
+      if (closeNow) {
+        this.transferListener.stopForwarding();
+        Util.closeQuietly(this.dataSource);
+      }
+
+      return this;
+    }
+
+    public void abandon() {
+      this.transferListener.stopForwarding();
+      boolean closeNow;
+      synchronized(this) {
+        if (this.abandoned) {
+          return;
+        }
+
+        this.abandoned = true;
+        closeNow = this.completed && !this.isFailed();
+        if (!this.completed) {
+          HedgingDataSource.this.hedgedRequestPolicy.onAttemptAbandoned();
+        }
+      }
+
+      if (closeNow) {
+        Util.closeQuietly(this.dataSource);
+      }
+
+    }
+
+    public synchronized boolean isFailed() {
+      return this.error != null || this.unexpectedError != null;
+    }
+  }
+
+  private final class AttemptTransferListener implements TransferListener {
+    private final ArrayList<HedgingDataSource.TransferEvent> pendingEvents = new ArrayList();
+    private boolean forwarding;
+    private boolean stopped;
+
+    public AttemptTransferListener() {
+    }
+
+    public void onTransferInitializing(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+      this.onTransferEvent(new HedgingDataSource.TransferEvent(0, source, dataSpec, isNetwork, 0));
+    }
+
+    public void onTransferStart(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+      this.onTransferEvent(new HedgingDataSource.TransferEvent(1, source, dataSpec, isNetwork, 0));
+    }
+
+    public void onBytesTransferred(DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
+      this.onTransferEvent(new HedgingDataSource.TransferEvent(2, source, dataSpec, isNetwork, bytesTransferred));
+    }
+
+    public void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+      this.onTransferEvent(new HedgingDataSource.TransferEvent(3, source, dataSpec, isNetwork, 0));
+    }
+
+    public void startForwarding() {
+      HedgingDataSource.TransferEvent[] events;
+      synchronized(this) {
+        if (this.stopped) {
+          return;
+        }
+
+        events = (HedgingDataSource.TransferEvent[])this.pendingEvents.toArray(new HedgingDataSource.TransferEvent[0]);
+        this.pendingEvents.clear();
+        this.forwarding = true;
+      }
+
+      for(int i = 0; i < events.length; ++i) {
+        this.dispatch(events[i]);
+      }
+
+    }
+
+    public synchronized void stopForwarding() {
+      this.stopped = true;
+      this.forwarding = false;
+      this.pendingEvents.clear();
+    }
+
+    private void onTransferEvent(HedgingDataSource.TransferEvent event) {
+      synchronized(this) {
+        if (this.stopped) {
+          return;
+        }
+
+        if (!this.forwarding) {
+          this.pendingEvents.add(event);
+          return;
+        }
+      }
+
+      this.dispatch(event);
+    }
+
+    private void dispatch(HedgingDataSource.TransferEvent event) {
+      ArrayList<TransferListener> listeners = HedgingDataSource.this.transferListeners;
+
+      for(int i = 0; i < listeners.size(); ++i) {
+        TransferListener listener = (TransferListener)listeners.get(i);
+        switch(event.type) {
+        case 0:
+          listener.onTransferInitializing(event.source, event.dataSpec, event.isNetwork);
+          break;
+        case 1:
+          listener.onTransferStart(event.source, event.dataSpec, event.isNetwork);
+          break;
+        case 2:
+          listener.onBytesTransferred(event.source, event.dataSpec, event.isNetwork, event.bytesTransferred);
+          break;
+        default:
+          listener.onTransferEnd(event.source, event.dataSpec, event.isNetwork);
+        }
+      }
+
+    }
+  }
+
+  private static final class TransferEvent {
+    public final int type;
+    public final DataSource source;
+    public final DataSpec dataSpec;
+    public final boolean isNetwork;
+    public final int bytesTransferred;
+
+    public TransferEvent(int type, DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
+      this.type = type;
+      this.source = source;
+      this.dataSpec = dataSpec;
+      this.isNetwork = isNetwork;
+      this.bytesTransferred = bytesTransferred;
+    }
+  }
+
+  public interface HedgeUriProvider {
+    @Nullable
+    Uri getHedgeUri(DataSpec var1);
+  }
+}
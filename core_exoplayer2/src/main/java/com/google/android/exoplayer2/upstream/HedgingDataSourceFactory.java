@@ -0,0 +1,28 @@
+package com.google.android.exoplayer2.upstream;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.upstream.DataSource.Factory;
+import java.util.concurrent.ExecutorService;
+
+public final class HedgingDataSourceFactory implements Factory {
+  private final Factory upstreamFactory;
+  private final HedgedRequestPolicy hedgedRequestPolicy;
+  private final ExecutorService executorService;
+  @Nullable
+  private final HedgingDataSource.HedgeUriProvider hedgeUriProvider;
+
+  public HedgingDataSourceFactory(Factory upstreamFactory, HedgedRequestPolicy hedgedRequestPolicy, ExecutorService executorService) {
+    this(upstreamFactory, hedgedRequestPolicy, executorService, (HedgingDataSource.HedgeUriProvider)null);
+  }
+
+  public HedgingDataSourceFactory(Factory upstreamFactory, HedgedRequestPolicy hedgedRequestPolicy, ExecutorService executorService, @Nullable HedgingDataSource.HedgeUriProvider hedgeUriProvider) {
+    this.upstreamFactory = upstreamFactory;
+    this.hedgedRequestPolicy = hedgedRequestPolicy;
+    this.executorService = executorService;
+    this.hedgeUriProvider = hedgeUriProvider;
+  }
+
+  public HedgingDataSource createDataSource() {
+    return new HedgingDataSource(this.upstreamFactory, this.hedgedRequestPolicy, this.executorService, this.hedgeUriProvider);
+  }
+}
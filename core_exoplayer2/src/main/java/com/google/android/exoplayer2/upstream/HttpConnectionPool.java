@@ -0,0 +1,418 @@
+package com.google.android.exoplayer2.upstream;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URL;
+import java.net.Proxy.Type;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+public final class HttpConnectionPool {
+  public static final int DEFAULT_MAX_IDLE_CONNECTIONS_PER_HOST = 5;
+  public static final long DEFAULT_KEEP_ALIVE_DURATION_MS = 300000L;
+  private final int maxIdleConnectionsPerHost;
+  private final long keepAliveDurationMs;
+  private final HashMap<String, ArrayDeque<HttpConnectionPool.Connection>> idleConnections;
+  private final ArrayList<HttpConnectionPool.Pipeline> pipelines;
+  private int idleConnectionCount;
+  private long connectionsCreated;
+  private long connectionsReused;
+  private long connectionsEvicted;
+
+  public HttpConnectionPool() {
+    this(5, 300000L);
+  }
+
+  public HttpConnectionPool(int maxIdleConnectionsPerHost, long keepAliveDurationMs) {
+    Assertions.checkArgument(maxIdleConnectionsPerHost >= 0);
+    this.maxIdleConnectionsPerHost = maxIdleConnectionsPerHost;
+    this.keepAliveDurationMs = keepAliveDurationMs;
+    this.idleConnections = new HashMap();
+    this.pipelines = new ArrayList();
+  }
+
+  public HttpConnectionPool.Connection acquire(String scheme, String host, int port, int connectTimeoutMillis) throws IOException {
+    Proxy proxy = selectProxy(scheme, host, port);
+    String address = scheme + "://" + host + ":" + port;
+    if (proxy.type() != Type.DIRECT) {
+      address = address + " via " + proxy;
+    }
+
+    while(true) {
+      HttpConnectionPool.Connection connection;
+      synchronized(this) {
+        this.evictIdleConnections(System.currentTimeMillis());
+        ArrayDeque<HttpConnectionPool.Connection> connections = (ArrayDeque)this.idleConnections.get(address);
+        connection = connections != null ? (HttpConnectionPool.Connection)connections.pollFirst() : null;
+        if (connection == null) {
+          break;
+        }
+
+        --this.idleConnectionCount;
+      }
+
+      boolean healthy = connection.isHealthy();
+      synchronized(this) {
+        if (healthy) {
+          ++this.connectionsReused;
+          connection.reused = true;
+          return connection;
+        }
+
+        ++this.connectionsEvicted;
+      }
+
+      connection.close();
+    }
+
+    HttpConnectionPool.Connection connection = HttpConnectionPool.Connection.open(address, scheme, host, port, proxy, connectTimeoutMillis);
+    synchronized(this) {
+      ++this.connectionsCreated;
+      return connection;
+    }
+  }
+
+  public void release(HttpConnectionPool.Connection connection) {
+    if (this.keepAliveDurationMs > 0L && !connection.socket.isClosed()) {
+      synchronized(this) {
+        ArrayDeque<HttpConnectionPool.Connection> connections = (ArrayDeque)this.idleConnections.get(connection.address);
+        if (connections == null) {
+          connections = new ArrayDeque();
+          this.idleConnections.put(connection.address, connections);
+        }
+
+        if (connections.size() < this.maxIdleConnectionsPerHost) {
+          connection.idleSinceMs = System.currentTimeMillis();
+          connections.addFirst(connection);
+          ++this.idleConnectionCount;
+          return;
+        }
+
+        ++this.connectionsEvicted;
+      }
+    }
+
+    connection.close();
+  }
+
+  public void releasePipeline(Object owner, HttpConnectionPool.Connection connection, URL url, ArrayDeque<DataSpec> dataSpecs, Map<String, String> requestProperties) {
+    HttpConnectionPool.Pipeline previousPipeline = null;
+    if (this.keepAliveDurationMs > 0L && !connection.socket.isClosed()) {
+      synchronized(this) {
+        previousPipeline = this.removePipeline(owner);
+        HttpConnectionPool.Pipeline pipeline = new HttpConnectionPool.Pipeline(owner, connection, url, new ArrayDeque(dataSpecs), requestProperties);
+        pipeline.idleSinceMs = System.currentTimeMillis();
+        this.pipelines.add(pipeline);
+      }
+    } else {
+      connection.close();
+    }
+
+    if (previousPipeline != null) {
+      previousPipeline.connection.close();
+    }
+
+  }
+
+  @Nullable
+  public synchronized HttpConnectionPool.Pipeline acquirePipeline(Object owner) {
+    this.evictIdleConnections(System.currentTimeMillis());
+    return this.removePipeline(owner);
+  }
+
+  public void discardPipeline(Object owner) {
+    HttpConnectionPool.Pipeline pipeline;
+    synchronized(this) {
+      pipeline = this.removePipeline(owner);
+    }
+
+    if (pipeline != null) {
+      pipeline.connection.close();
+    }
+
+  }
+
+  public synchronized int getPipelineCount() {
+    return this.pipelines.size();
+  }
+
+  public synchronized void evictIdleConnections() {
+    this.evictIdleConnections(System.currentTimeMillis());
+  }
+
+  public synchronized void evictAll() {
+    this.evictIdleConnections(9223372036854775807L);
+  }
+
+  public synchronized int getIdleConnectionCount() {
+    return this.idleConnectionCount;
+  }
+
+  public synchronized long getConnectionsCreated() {
+    return this.connectionsCreated;
+  }
+
+  public synchronized long getConnectionsReused() {
+    return this.connectionsReused;
+  }
+
+  public synchronized long getConnectionsEvicted() {
+    return this.connectionsEvicted;
+  }
+
+  @Nullable
+  private HttpConnectionPool.Pipeline removePipeline(Object owner) {
+    for(int i = 0; i < this.pipelines.size(); ++i) {
+      HttpConnectionPool.Pipeline pipeline = (HttpConnectionPool.Pipeline)this.pipelines.get(i);
+      if (pipeline.owner.get() == owner) {
+        return (HttpConnectionPool.Pipeline)this.pipelines.remove(i);
+      }
+    }
+
+    return null;
+  }
+
+  private void evictIdleConnections(long nowMs) {
+    for(int i = this.pipelines.size() - 1; i >= 0; --i) {
+      HttpConnectionPool.Pipeline pipeline = (HttpConnectionPool.Pipeline)this.pipelines.get(i);
+      if (pipeline.owner.get() == null || nowMs - pipeline.idleSinceMs >= this.keepAliveDurationMs) {
+        this.pipelines.remove(i);
+        ++this.connectionsEvicted;
+        pipeline.connection.close();
+      }
+    }
+
+    if (this.idleConnectionCount != 0) {
+      Iterator var3 = this.idleConnections.values().iterator();
+
+      while(var3.hasNext()) {
+        ArrayDeque<HttpConnectionPool.Connection> connections = (ArrayDeque)var3.next();
+
+        HttpConnectionPool.Connection connection;
+        while((connection = (HttpConnectionPool.Connection)connections.peekLast()) != null && nowMs - connection.idleSinceMs >= this.keepAliveDurationMs) {
+          connections.pollLast();
+          --this.idleConnectionCount;
+          ++this.connectionsEvicted;
+          connection.close();
+        }
+
+        if (connections.isEmpty()) {
+          var3.remove();
+        }
+      }
+
+    }
+  }
+
+  private static Proxy selectProxy(String scheme, String host, int port) {
+    ProxySelector proxySelector = ProxySelector.getDefault();
+    if (proxySelector == null) {
+      return Proxy.NO_PROXY;
+    } else {
+      List proxies;
+      try {
+        proxies = proxySelector.select(new URI(scheme, (String)null, host, port, (String)null, (String)null, (String)null));
+      } catch (Exception var7) {
+        return Proxy.NO_PROXY;
+      }
+
+      if (proxies != null) {
+        Iterator var5 = proxies.iterator();
+
+        while(var5.hasNext()) {
+          Proxy proxy = (Proxy)var5.next();
+          if (proxy.type() == Type.DIRECT) {
+            return Proxy.NO_PROXY;
+          }
+
+          if (proxy.address() instanceof InetSocketAddress) {
+            return proxy;
+          }
+        }
+      }
+
+      return Proxy.NO_PROXY;
+    }
+  }
+
+  public static final class Pipeline {
+    public final HttpConnectionPool.Connection connection;
+    public final URL url;
+    public final ArrayDeque<DataSpec> dataSpecs;
+    public final Map<String, String> requestProperties;
+    private final WeakReference<Object> owner;
+    private long idleSinceMs;
+
+    private Pipeline(Object owner, HttpConnectionPool.Connection connection, URL url, ArrayDeque<DataSpec> dataSpecs, Map<String, String> requestProperties) {
+      this.owner = new WeakReference(owner);
+      this.connection = connection;
+      this.url = url;
+      this.dataSpecs = dataSpecs;
+      this.requestProperties = requestProperties;
+    }
+  }
+
+  public static final class Connection {
+    public final String address;
+    public final Socket socket;
+    public final InputStream inputStream;
+    public final OutputStream outputStream;
+    public final boolean viaHttpProxy;
+    public boolean reused;
+    private long idleSinceMs;
+
+    private Connection(String address, Socket socket, boolean viaHttpProxy) throws IOException {
+      this.address = address;
+      this.socket = socket;
+      this.viaHttpProxy = viaHttpProxy;
+      this.inputStream = new BufferedInputStream(socket.getInputStream(), 16384);
+      this.outputStream = new BufferedOutputStream(socket.getOutputStream(), 8192);
+    }
+
+    private static HttpConnectionPool.Connection open(String address, String scheme, String host, int port, Proxy proxy, int connectTimeoutMillis) throws IOException {
+      boolean https = "https".equals(scheme);
+      boolean viaHttpProxy = proxy.type() == Type.HTTP;
+      Socket socket = proxy.type() == Type.SOCKS ? new Socket(proxy) : new Socket();
+
+      try {
+        socket.setTcpNoDelay(true);
+        SocketAddress socketAddress;
+        if (viaHttpProxy) {
+          InetSocketAddress proxyAddress = (InetSocketAddress)proxy.address();
+          socketAddress = proxyAddress.isUnresolved() ? new InetSocketAddress(proxyAddress.getHostString(), proxyAddress.getPort()) : proxyAddress;
+        } else if (proxy.type() == Type.SOCKS) {
+          socketAddress = InetSocketAddress.createUnresolved(host, port);
+        } else {
+          socketAddress = new InetSocketAddress(host, port);
+        }
+
+        socket.connect(socketAddress, connectTimeoutMillis);
+        if (viaHttpProxy && https) {
+          openTunnel(socket, host, port);
+        }
+
+        if (https) {
+          SSLSocket sslSocket = (SSLSocket)((SSLSocketFactory)SSLSocketFactory.getDefault()).createSocket(socket, host, port, true);
+          socket = sslSocket;
+          sslSocket.startHandshake();
+          if (!HttpsURLConnection.getDefaultHostnameVerifier().verify(host, sslSocket.getSession())) {
+            throw new SSLPeerUnverifiedException("Hostname " + host + " not verified");
+          }
+        }
+
+        return new HttpConnectionPool.Connection(address, socket, viaHttpProxy && !https);
+      } catch (IOException var7) {
+        closeQuietly(socket);
+        throw var7;
+      }
+    }
+
+    public void close() {
+      closeQuietly(this.socket);
+    }
+
+    private static void openTunnel(Socket socket, String host, int port) throws IOException {
+      String authority = host + ":" + port;
+      OutputStream outputStream = socket.getOutputStream();
+      outputStream.write(Util.getUtf8Bytes("CONNECT " + authority + " HTTP/1.1\r\nHost: " + authority + "\r\n\r\n"));
+      outputStream.flush();
+      InputStream inputStream = socket.getInputStream();
+      StringBuilder statusLine = new StringBuilder();
+      int lineLength = 0;
+      boolean inStatusLine = true;
+
+      while(true) {
+        int c = inputStream.read();
+        if (c == -1) {
+          throw new ProtocolException("Proxy closed the connection during CONNECT");
+        }
+
+        if (c == 10) {
+          if (lineLength == 0) {
+            String[] parts = statusLine.toString().trim().split(" ", 3);
+            if (parts.length >= 2 && parts[0].startsWith("HTTP/") && parts[1].equals("200")) {
+              return;
+            }
+
+            throw new ProtocolException("Unexpected proxy CONNECT response: " + statusLine);
+          }
+
+          inStatusLine = false;
+          lineLength = 0;
+        } else if (c != 13) {
+          if (inStatusLine) {
+            if (statusLine.length() >= 16384) {
+              throw new ProtocolException("Proxy status line too long");
+            }
+
+            statusLine.append((char)c);
+          }
+
+          ++lineLength;
+        }
+      }
+    }
+
+    private boolean isHealthy() {
+      if (!this.socket.isClosed() && !this.socket.isInputShutdown() && !this.socket.isOutputShutdown()) {
+        try {
+          if (this.inputStream.available() != 0) {
+            return false;
+          } else {
+            int soTimeout = this.socket.getSoTimeout();
+
+            boolean var2;
+            try {
+              this.socket.setSoTimeout(1);
+              this.inputStream.read();
+              var2 = false;
+            } finally {
+              this.socket.setSoTimeout(soTimeout);
+            }
+
+            return var2;
+          }
+        } catch (SocketTimeoutException var8) {
+          return true;
+        } catch (IOException var9) {
+          return false;
+        }
+      } else {
+        return false;
+      }
+    }
+
+    private static void closeQuietly(@Nullable Socket socket) {
+      if (socket != null) {
+        try {
+          socket.close();
+        } catch (IOException var2) {
+        }
+      }
+
+    }
+  }
+}
@@ -0,0 +1,294 @@
+package com.google.android.exoplayer2.upstream;
+
+import com.google.android.exoplayer2.util.Assertions;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+public final class LoadScheduler {
+  public static final int PRIORITY_PLAYBACK = 0;
+  public static final int PRIORITY_PREFETCH = 1;
+  public static final int PRIORITY_METADATA = 2;
+  private static final int PRIORITY_COUNT = 3;
+  private final String threadNamePrefix;
+  private final int maxWorkerCount;
+  private final Object lock;
+  private final LinkedHashMap<Object, ArrayDeque<LoadScheduler.SerialExecutor>>[] readyQueues;
+  private final ArrayList<Thread> workers;
+  private final long[] dispatchedTaskCounts;
+  private final long[] totalQueueWaitNs;
+  private final long[] maxQueueWaitNs;
+  private int idleWorkerCount;
+  private int busyBackgroundWorkerCount;
+  private int readyCount;
+  private boolean released;
+
+  public LoadScheduler(int maxWorkerCount, String threadNamePrefix) {
+    Assertions.checkArgument(maxWorkerCount > 0);
+    this.maxWorkerCount = maxWorkerCount;
+    this.threadNamePrefix = threadNamePrefix;
+    this.lock = new Object();
+    this.readyQueues = new LinkedHashMap[3];
+
+    for(int i = 0; i < 3; ++i) {
+      this.readyQueues[i] = new LinkedHashMap();
+    }
+
+    this.workers = new ArrayList();
+    this.dispatchedTaskCounts = new long[3];
+    this.totalQueueWaitNs = new long[3];
+    this.maxQueueWaitNs = new long[3];
+  }
+
+  public Executor createExecutor(Object group, int priority) {
+    Assertions.checkArgument(priority >= 0 && priority < 3);
+    return new LoadScheduler.SerialExecutor(Assertions.checkNotNull(group), priority);
+  }
+
+  public void release() {
+    synchronized(this.lock) {
+      this.released = true;
+      this.lock.notifyAll();
+    }
+  }
+
+  public long getDispatchedTaskCount(int priority) {
+    synchronized(this.lock) {
+      return this.dispatchedTaskCounts[priority];
+    }
+  }
+
+  public long getTotalQueueWaitUs(int priority) {
+    synchronized(this.lock) {
+      return this.totalQueueWaitNs[priority] / 1000L;
+    }
+  }
+
+  public long getMaxQueueWaitUs(int priority) {
+    synchronized(this.lock) {
+      return this.maxQueueWaitNs[priority] / 1000L;
+    }
+  }
+
+  public long getAverageQueueWaitUs(int priority) {
+    synchronized(this.lock) {
+      long count = this.dispatchedTaskCounts[priority];
+      return count == 0L ? 0L : this.totalQueueWaitNs[priority] / count / 1000L;
+    }
+  }
+
+  public int getQueuedExecutorCount() {
+    synchronized(this.lock) {
+      return this.readyCount;
+    }
+  }
+
+  public void resetMetrics() {
+    synchronized(this.lock) {
+      for(int i = 0; i < 3; ++i) {
+        this.dispatchedTaskCounts[i] = 0L;
+        this.totalQueueWaitNs[i] = 0L;
+        this.maxQueueWaitNs[i] = 0L;
+      }
+
+    }
+  }
+
+  private void enqueueLocked(LoadScheduler.SerialExecutor executor) {
+    executor.readyTimeNs = System.nanoTime();
+    LinkedHashMap<Object, ArrayDeque<LoadScheduler.SerialExecutor>> readyQueue = this.readyQueues[executor.priority];
+    ArrayDeque<LoadScheduler.SerialExecutor> groupQueue = (ArrayDeque)readyQueue.get(executor.group);
+    if (groupQueue == null) {
+      groupQueue = new ArrayDeque();
+      readyQueue.put(executor.group, groupQueue);
+    }
+
+    groupQueue.add(executor);
+    ++this.readyCount;
+    if (this.idleWorkerCount > 0) {
+      this.lock.notify();
+    } else if (this.workers.size() < this.maxWorkerCount) {
+      this.startWorkerLocked();
+    }
+
+  }
+
+  private void startWorkerLocked() {
+    Thread worker = new Thread(this::runWorker, this.threadNamePrefix + ":" + this.workers.size());
+    this.workers.add(worker);
+    worker.start();
+  }
+
+  private boolean removeLocked(LoadScheduler.SerialExecutor executor) {
+    LinkedHashMap<Object, ArrayDeque<LoadScheduler.SerialExecutor>> readyQueue = this.readyQueues[executor.priority];
+    ArrayDeque<LoadScheduler.SerialExecutor> groupQueue = (ArrayDeque)readyQueue.get(executor.group);
+    if (groupQueue != null && groupQueue.remove(executor)) {
+      if (groupQueue.isEmpty()) {
+        readyQueue.remove(executor.group);
+      }
+
+      --this.readyCount;
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  private LoadScheduler.SerialExecutor pollLocked() {
+    int maxBackgroundWorkerCount = this.maxWorkerCount > 1 ? this.maxWorkerCount - 1 : 1;
+
+    for(int priority = 0; priority < 3; ++priority) {
+      if (priority != 0 && this.busyBackgroundWorkerCount >= maxBackgroundWorkerCount) {
+        return null;
+      }
+
+      LinkedHashMap<Object, ArrayDeque<LoadScheduler.SerialExecutor>> readyQueue = this.readyQueues[priority];
+      Iterator<ArrayDeque<LoadScheduler.SerialExecutor>> var3 = readyQueue.values().iterator();
+      if (var3.hasNext()) {
+        ArrayDeque<LoadScheduler.SerialExecutor> groupQueue = (ArrayDeque)var3.next();
+        LoadScheduler.SerialExecutor executor = (LoadScheduler.SerialExecutor)groupQueue.poll();
+        readyQueue.remove(executor.group);
+        if (!groupQueue.isEmpty()) {
+          readyQueue.put(executor.group, groupQueue);
+        }
+
+        --this.readyCount;
+        if (priority != 0) {
+          ++this.busyBackgroundWorkerCount;
+        }
+
+        long waitNs = System.nanoTime() - executor.readyTimeNs;
+        ++this.dispatchedTaskCounts[priority];
+        this.totalQueueWaitNs[priority] += waitNs;
+        this.maxQueueWaitNs[priority] = Math.max(this.maxQueueWaitNs[priority], waitNs);
+        return executor;
+      }
+    }
+
+    return null;
+  }
+
+  private void onExecutorFinishedLocked(LoadScheduler.SerialExecutor executor) {
+    if (executor.priority != 0) {
+      --this.busyBackgroundWorkerCount;
+    }
+
+  }
+
+  private void runWorker() {
+    while(true) {
+      LoadScheduler.SerialExecutor executor;
+      synchronized(this.lock) {
+        while(true) {
+          executor = this.pollLocked();
+          if (executor != null) {
+            break;
+          }
+
+          if (this.released) {
+            this.workers.remove(Thread.currentThread());
+            return;
+          }
+
+          ++this.idleWorkerCount;
+
+          try {
+            this.lock.wait();
+          } catch (InterruptedException var6) {
+          } finally {
+            --this.idleWorkerCount;
+          }
+        }
+      }
+
+      try {
+        executor.runNext();
+      } catch (Throwable var9) {
+        synchronized(this.lock) {
+          this.onExecutorFinishedLocked(executor);
+          this.workers.remove(Thread.currentThread());
+          if (this.readyCount > 0) {
+            this.startWorkerLocked();
+          }
+        }
+
+        throw var9;
+      }
+
+      synchronized(this.lock) {
+        this.onExecutorFinishedLocked(executor);
+      }
+
+      Thread.interrupted();
+    }
+  }
+
+  final class SerialExecutor implements Executor {
+    private final Object group;
+    private final int priority;
+    private final ArrayDeque<Runnable> tasks;
+    private boolean scheduled;
+    private long readyTimeNs;
+
+    private SerialExecutor(Object group, int priority) {
+      this.group = group;
+      this.priority = priority;
+      this.tasks = new ArrayDeque();
+    }
+
+    public void execute(Runnable task) {
+      synchronized(LoadScheduler.this.lock) {
+        if (LoadScheduler.this.released && !this.scheduled) {
+          throw new RejectedExecutionException("LoadScheduler released");
+        }
+
+        this.tasks.add(task);
+        if (!this.scheduled) {
+          this.scheduled = true;
+          LoadScheduler.this.enqueueLocked(this);
+        }
+
+      }
+    }
+
+    public boolean remove(Runnable task) {
+      synchronized(LoadScheduler.this.lock) {
+        if (!this.tasks.remove(task)) {
+          return false;
+        } else {
+          if (this.tasks.isEmpty() && this.scheduled && LoadScheduler.this.removeLocked(this)) {
+            this.scheduled = false;
+          }
+
+          return true;
+        }
+      }
+    }
+
+    private void runNext() {
+      Runnable task;
+      synchronized(LoadScheduler.this.lock) {
+        task = (Runnable)this.tasks.poll();
+      }
+
+      try {
+        if (task != null) {
+          task.run();
+        }
+      } finally {
+        synchronized(LoadScheduler.this.lock) {
+          if (!this.tasks.isEmpty()) {
+            LoadScheduler.this.enqueueLocked(this);
+          } else {
+            this.scheduled = false;
+          }
+
+        }
+      }
+
+    }
+  }
+}
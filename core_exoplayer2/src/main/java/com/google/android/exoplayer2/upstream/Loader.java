@@ -11,7 +11,9 @@ import com.google.android.exoplayer2.util.Log;
 import com.google.android.exoplayer2.util.TraceUtil;
 import com.google.android.exoplayer2.util.Util;
 import java.io.IOException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 public final class Loader implements LoaderErrorThrower {
   private static final int ACTION_TYPE_RETRY = 0;
@@ -22,12 +24,20 @@ public final class Loader implements LoaderErrorThrower {
   public static final Loader.LoadErrorAction RETRY_RESET_ERROR_COUNT = createRetryAction(true, -9223372036854775807L);
   public static final Loader.LoadErrorAction DONT_RETRY = new Loader.LoadErrorAction(2, -9223372036854775807L);
   public static final Loader.LoadErrorAction DONT_RETRY_FATAL = new Loader.LoadErrorAction(3, -9223372036854775807L);
+  @Nullable
   private final ExecutorService downloadExecutorService;
+  private final Executor downloadExecutor;
   private Loader.LoadTask<? extends Loader.Loadable> currentTask;
   private IOException fatalError;
 
   public Loader(String threadName) {
     this.downloadExecutorService = Util.newSingleThreadExecutor(threadName);
+    this.downloadExecutor = this.downloadExecutorService;
+  }
+
+  public Loader(LoadScheduler loadScheduler, Object group, int priority) {
+    this.downloadExecutorService = null;
+    this.downloadExecutor = loadScheduler.createExecutor(group, priority);
   }
 
   public static Loader.LoadErrorAction createRetryAction(boolean resetErrorCount, long retryDelayMillis) {
@@ -61,10 +71,19 @@ public final class Loader implements LoaderErrorThrower {
     }
 
     if (callback != null) {
-      this.downloadExecutorService.execute(new Loader.ReleaseTask(callback));
+      Loader.ReleaseTask releaseTask = new Loader.ReleaseTask(callback);
+
+      try {
+        this.downloadExecutor.execute(releaseTask);
+      } catch (RejectedExecutionException var4) {
+        releaseTask.run();
+      }
+    }
+
+    if (this.downloadExecutorService != null) {
+      this.downloadExecutorService.shutdown();
     }
 
-    this.downloadExecutorService.shutdown();
   }
 
   public void maybeThrowError() throws IOException {
@@ -149,8 +168,16 @@ public final class Loader implements LoaderErrorThrower {
       } else {
         this.canceled = true;
         this.loadable.cancelLoad();
-        if (this.executorThread != null) {
-          this.executorThread.interrupt();
+        if (Loader.this.downloadExecutor instanceof LoadScheduler.SerialExecutor && ((LoadScheduler.SerialExecutor)Loader.this.downloadExecutor).remove(this)) {
+          if (!released) {
+            this.sendEmptyMessage(2);
+          }
+        } else {
+          synchronized(this) {
+            if (this.executorThread != null) {
+              this.executorThread.interrupt();
+            }
+          }
         }
       }
 
@@ -164,6 +191,17 @@ public final class Loader implements LoaderErrorThrower {
     }
 
     public void run() {
+      try {
+        this.runLoad();
+      } finally {
+        synchronized(this) {
+          this.executorThread = null;
+        }
+      }
+
+    }
+
+    private void runLoad() {
       try {
         this.executorThread = Thread.currentThread();
         if (!this.canceled) {
@@ -256,7 +294,7 @@ public final class Loader implements LoaderErrorThrower {
 
     private void execute() {
       this.currentError = null;
-      Loader.this.downloadExecutorService.execute(Loader.this.currentTask);
+      Loader.this.downloadExecutor.execute(Loader.this.currentTask);
     }
 
     private void finish() {
@@ -0,0 +1,163 @@
+package com.google.android.exoplayer2.upstream;
+
+import com.google.android.exoplayer2.util.Assertions;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+public final class MappedFileCache {
+  public static final int DEFAULT_MAX_UNREFERENCED_MAPPINGS = 16;
+  public static final long DEFAULT_MAX_MAPPED_BYTES = 134217728L;
+  private final int maxUnreferencedMappings;
+  private final long maxMappedBytes;
+  private final LinkedHashMap<String, MappedFileCache.Mapping> mappings;
+  private int unreferencedMappingCount;
+  private long mappedBytes;
+
+  public MappedFileCache() {
+    this(16, 134217728L);
+  }
+
+  public MappedFileCache(int maxUnreferencedMappings) {
+    this(maxUnreferencedMappings, 134217728L);
+  }
+
+  public MappedFileCache(int maxUnreferencedMappings, long maxMappedBytes) {
+    Assertions.checkArgument(maxUnreferencedMappings >= 0);
+    Assertions.checkArgument(maxMappedBytes >= 0L);
+    this.maxUnreferencedMappings = maxUnreferencedMappings;
+    this.maxMappedBytes = maxMappedBytes;
+    this.mappings = new LinkedHashMap(16, 0.75F, true);
+  }
+
+  public synchronized MappedFileCache.Mapping acquire(File file) throws IOException {
+    String path = file.getAbsolutePath();
+    long length = file.length();
+    long lastModified = file.lastModified();
+    MappedFileCache.Mapping mapping = (MappedFileCache.Mapping)this.mappings.get(path);
+    if (mapping != null) {
+      if (mapping.length == length && mapping.lastModified == lastModified) {
+        if (mapping.referenceCount++ == 0) {
+          --this.unreferencedMappingCount;
+        }
+
+        return mapping;
+      }
+
+      this.mappings.remove(path);
+      this.detach(mapping);
+    } else {
+      this.removeMappingsOfMissingFiles();
+    }
+
+    mapping = new MappedFileCache.Mapping(map(file, length), length, lastModified);
+    mapping.referenceCount = 1;
+    this.mappings.put(path, mapping);
+    this.mappedBytes += length;
+    this.trim(this.maxUnreferencedMappings);
+    return mapping;
+  }
+
+  public synchronized void release(MappedFileCache.Mapping mapping) {
+    Assertions.checkState(mapping.referenceCount > 0);
+    if (--mapping.referenceCount == 0) {
+      if (mapping.detached) {
+        this.discard(mapping);
+      } else {
+        ++this.unreferencedMappingCount;
+        this.trim(this.maxUnreferencedMappings);
+      }
+    }
+
+  }
+
+  public synchronized void invalidate(File file) {
+    MappedFileCache.Mapping mapping = (MappedFileCache.Mapping)this.mappings.remove(file.getAbsolutePath());
+    if (mapping != null) {
+      this.detach(mapping);
+    }
+
+  }
+
+  public synchronized void clear() {
+    this.trim(0);
+  }
+
+  public synchronized long getMappedBytes() {
+    return this.mappedBytes;
+  }
+
+  private void trim(int maxUnreferencedMappings) {
+    Iterator var2 = this.mappings.values().iterator();
+
+    while((this.unreferencedMappingCount > maxUnreferencedMappings || this.mappedBytes > this.maxMappedBytes) && var2.hasNext()) {
+      MappedFileCache.Mapping mapping = (MappedFileCache.Mapping)var2.next();
+      if (mapping.referenceCount == 0) {
+        var2.remove();
+        --this.unreferencedMappingCount;
+        this.discard(mapping);
+      }
+    }
+
+  }
+
+  private void removeMappingsOfMissingFiles() {
+    Iterator var1 = this.mappings.entrySet().iterator();
+
+    while(var1.hasNext()) {
+      Entry<String, MappedFileCache.Mapping> entry = (Entry)var1.next();
+      if (!(new File((String)entry.getKey())).exists()) {
+        var1.remove();
+        this.detach((MappedFileCache.Mapping)entry.getValue());
+      }
+    }
+
+  }
+
+  private void detach(MappedFileCache.Mapping mapping) {
+    if (mapping.referenceCount == 0) {
+      --this.unreferencedMappingCount;
+      this.discard(mapping);
+    } else {
+      mapping.detached = true;
+    }
+
+  }
+
+  private void discard(MappedFileCache.Mapping mapping) {
+    mapping.detached = true;
+    this.mappedBytes -= mapping.length;
+  }
+
+  private static MappedByteBuffer map(File file, long length) throws IOException {
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+
+    MappedByteBuffer var4;
+    try {
+      var4 = randomAccessFile.getChannel().map(MapMode.READ_ONLY, 0L, length);
+    } finally {
+      randomAccessFile.close();
+    }
+
+    return var4;
+  }
+
+  public static final class Mapping {
+    final MappedByteBuffer buffer;
+    final long length;
+    final long lastModified;
+    int referenceCount;
+    boolean detached;
+
+    private Mapping(MappedByteBuffer buffer, long length, long lastModified) {
+      this.buffer = buffer;
+      this.length = length;
+      this.lastModified = lastModified;
+    }
+  }
+}
@@ -0,0 +1,136 @@
+package com.google.android.exoplayer2.upstream;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.upstream.FileDataSource.FileDataSourceException;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public final class MappedFileDataSource extends BaseDataSource {
+  private static final long MAX_MAPPED_FILE_SIZE = 2147483647L;
+  private final MappedFileCache mappedFileCache;
+  @Nullable
+  private MappedFileCache.Mapping mapping;
+  @Nullable
+  private ByteBuffer buffer;
+  @Nullable
+  private FileDataSource fallbackDataSource;
+  @Nullable
+  private Uri uri;
+  private long bytesRemaining;
+  private boolean opened;
+
+  public MappedFileDataSource() {
+    this(new MappedFileCache());
+  }
+
+  public MappedFileDataSource(MappedFileCache mappedFileCache) {
+    super(false);
+    this.mappedFileCache = mappedFileCache;
+  }
+
+  public long open(DataSpec dataSpec) throws FileDataSourceException {
+    this.uri = dataSpec.uri;
+    this.transferInitializing(dataSpec);
+    File file = new File(dataSpec.uri.getPath());
+    if (file.length() > 2147483647L) {
+      this.fallbackDataSource = new FileDataSource();
+      this.bytesRemaining = this.fallbackDataSource.open(dataSpec);
+    } else {
+      try {
+        this.mapping = this.mappedFileCache.acquire(file);
+        long fileLength = this.mapping.length;
+        this.bytesRemaining = dataSpec.length == -1L ? fileLength - dataSpec.position : dataSpec.length;
+        if (this.bytesRemaining < 0L || dataSpec.position + this.bytesRemaining > fileLength) {
+          throw new EOFException();
+        }
+
+        this.buffer = this.mapping.buffer.duplicate();
+        this.buffer.position((int)dataSpec.position);
+        this.buffer.limit((int)(dataSpec.position + this.bytesRemaining));
+      } catch (IOException var7) {
+        this.releaseMapping();
+        throw new FileDataSourceException(var7);
+      }
+    }
+
+    this.opened = true;
+    this.transferStarted(dataSpec);
+    return this.bytesRemaining;
+  }
+
+  public int read(byte[] buffer, int offset, int readLength) throws FileDataSourceException {
+    if (this.fallbackDataSource != null) {
+      return this.onBytesRead(this.fallbackDataSource.read(buffer, offset, readLength));
+    } else if (readLength == 0) {
+      return 0;
+    } else if (this.bytesRemaining == 0L) {
+      return -1;
+    } else {
+      int bytesRead = (int)Math.min(this.bytesRemaining, (long)readLength);
+      this.buffer.get(buffer, offset, bytesRead);
+      return this.onBytesRead(bytesRead);
+    }
+  }
+
+  public int read(ByteBuffer target) throws FileDataSourceException {
+    if (this.fallbackDataSource != null) {
+      return this.onBytesRead(this.fallbackDataSource.read(target));
+    } else if (!target.hasRemaining()) {
+      return 0;
+    } else if (this.bytesRemaining == 0L) {
+      return -1;
+    } else {
+      int bytesRead = (int)Math.min(this.bytesRemaining, (long)target.remaining());
+      ByteBuffer source = this.buffer.duplicate();
+      source.limit(source.position() + bytesRead);
+      target.put(source);
+      this.buffer.position(this.buffer.position() + bytesRead);
+      return this.onBytesRead(bytesRead);
+    }
+  }
+
+  @Nullable
+  public Uri getUri() {
+    return this.uri;
+  }
+
+  public void close() throws FileDataSourceException {
+    this.uri = null;
+    this.buffer = null;
+
+    try {
+      if (this.fallbackDataSource != null) {
+        this.fallbackDataSource.close();
+      }
+    } finally {
+      this.fallbackDataSource = null;
+      this.releaseMapping();
+      if (this.opened) {
+        this.opened = false;
+        this.transferEnded();
+      }
+
+    }
+
+  }
+
+  private int onBytesRead(int bytesRead) {
+    if (bytesRead > 0) {
+      this.bytesRemaining -= (long)bytesRead;
+      this.bytesTransferred(bytesRead);
+    }
+
+    return bytesRead;
+  }
+
+  private void releaseMapping() {
+    if (this.mapping != null) {
+      this.mappedFileCache.release(this.mapping);
+      this.mapping = null;
+    }
+
+  }
+}
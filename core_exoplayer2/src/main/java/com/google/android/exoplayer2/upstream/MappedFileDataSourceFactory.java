@@ -0,0 +1,28 @@
+package com.google.android.exoplayer2.upstream;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.upstream.DataSource.Factory;
+
+public final class MappedFileDataSourceFactory implements Factory {
+  private final MappedFileCache mappedFileCache;
+  @Nullable
+  private final TransferListener listener;
+
+  public MappedFileDataSourceFactory() {
+    this(new MappedFileCache(), (TransferListener)null);
+  }
+
+  public MappedFileDataSourceFactory(MappedFileCache mappedFileCache, @Nullable TransferListener listener) {
+    this.mappedFileCache = mappedFileCache;
+    this.listener = listener;
+  }
+
+  public DataSource createDataSource() {
+    MappedFileDataSource dataSource = new MappedFileDataSource(this.mappedFileCache);
+    if (this.listener != null) {
+      dataSource.addTransferListener(this.listener);
+    }
+
+    return dataSource;
+  }
+}
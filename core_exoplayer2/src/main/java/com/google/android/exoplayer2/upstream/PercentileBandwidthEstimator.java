@@ -0,0 +1,57 @@
+package com.google.android.exoplayer2.upstream;
+
+import com.google.android.exoplayer2.util.SlidingPercentile;
+
+public final class PercentileBandwidthEstimator implements BandwidthEstimator {
+  public static final int DEFAULT_SLIDING_WINDOW_MAX_WEIGHT = 2000;
+  public static final float DEFAULT_PERCENTILE = 0.5F;
+  public static final long DEFAULT_MIN_ELAPSED_TIME_MS = 2000L;
+  public static final long DEFAULT_MIN_BYTES_TRANSFERRED = 524288L;
+  private final float percentile;
+  private final long minElapsedTimeMs;
+  private final long minBytesTransferred;
+  private final SlidingPercentile slidingPercentile;
+  private long totalElapsedTimeMs;
+  private long totalBytesTransferred;
+  private long bandwidthEstimate;
+
+  public PercentileBandwidthEstimator() {
+    this(2000, 0.5F, 2000L, 524288L);
+  }
+
+  public PercentileBandwidthEstimator(int maxWeight) {
+    this(maxWeight, 0.5F, 2000L, 524288L);
+  }
+
+  public PercentileBandwidthEstimator(int maxWeight, float percentile, long minElapsedTimeMs, long minBytesTransferred) {
+    this.percentile = percentile;
+    this.minElapsedTimeMs = minElapsedTimeMs;
+    this.minBytesTransferred = minBytesTransferred;
+    this.slidingPercentile = new SlidingPercentile(maxWeight);
+    this.bandwidthEstimate = -9223372036854775807L;
+  }
+
+  public void addSample(long bytesTransferred, long elapsedTimeMs, long nowMs) {
+    this.totalElapsedTimeMs += elapsedTimeMs;
+    this.totalBytesTransferred += bytesTransferred;
+    if (elapsedTimeMs > 0L) {
+      float bitsPerSecond = (float)(bytesTransferred * 8000L / elapsedTimeMs);
+      this.slidingPercentile.addSample((int)Math.sqrt((double)bytesTransferred), bitsPerSecond);
+      if (this.totalElapsedTimeMs >= this.minElapsedTimeMs || this.totalBytesTransferred >= this.minBytesTransferred) {
+        this.bandwidthEstimate = (long)this.slidingPercentile.getPercentile(this.percentile);
+      }
+    }
+
+  }
+
+  public long getBandwidthEstimate() {
+    return this.bandwidthEstimate;
+  }
+
+  public void reset() {
+    this.slidingPercentile.reset();
+    this.totalElapsedTimeMs = 0L;
+    this.totalBytesTransferred = 0L;
+    this.bandwidthEstimate = -9223372036854775807L;
+  }
+}
@@ -0,0 +1,852 @@
+package com.google.android.exoplayer2.upstream;
+
+import android.annotation.TargetApi;
+import android.net.Uri;
+import android.security.NetworkSecurityPolicy;
+import android.text.TextUtils;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.upstream.HttpDataSource.HttpDataSourceException;
+import com.google.android.exoplayer2.upstream.HttpDataSource.InvalidContentTypeException;
+import com.google.android.exoplayer2.upstream.HttpDataSource.InvalidResponseCodeException;
+import com.google.android.exoplayer2.upstream.HttpDataSource.RequestProperties;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.Predicate;
+import com.google.android.exoplayer2.util.Util;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.NoRouteToHostException;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.net.UnknownServiceException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.Map.Entry;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class PooledHttpDataSource extends BaseDataSource implements HttpDataSource {
+  private static final String TAG = "PooledHttpDataSource";
+  private static final int MAX_REDIRECTS = 20;
+  private static final int MAX_HEADER_LINE_LENGTH = 16384;
+  private static final long MAX_BYTES_TO_DRAIN = 2048L;
+  private static final Pattern CONTENT_RANGE_HEADER = Pattern.compile("^bytes (\\d+)-(\\d+)/(\\d+)$");
+  private final HttpConnectionPool connectionPool;
+  private final String userAgent;
+  @Nullable
+  private final Predicate<String> contentTypePredicate;
+  private final int connectTimeoutMillis;
+  private final int readTimeoutMillis;
+  private final boolean allowCrossProtocolRedirects;
+  @Nullable
+  private final RequestProperties defaultRequestProperties;
+  private final RequestProperties requestProperties;
+  private final int pipelineDepth;
+  private final ArrayDeque<DataSpec> pipelinedDataSpecs;
+  private final Object pipelineOwner;
+  private int effectivePipelineDepth;
+  @Nullable
+  private URL pipelineUrl;
+  @Nullable
+  private Map<String, String> pipelineRequestProperties;
+  @Nullable
+  private DataSpec dataSpec;
+  @Nullable
+  private Uri uri;
+  @Nullable
+  private HttpConnectionPool.Connection connection;
+  @Nullable
+  private PooledHttpDataSource.BodyInputStream inputStream;
+  private Map<String, List<String>> responseHeaders;
+  private int responseCode;
+  private String responseMessage;
+  private boolean keepAlive;
+  private boolean opened;
+  private long bytesToSkip;
+  private long bytesToRead;
+  private long bytesSkipped;
+  private long bytesRead;
+
+  public PooledHttpDataSource(HttpConnectionPool connectionPool, String userAgent, @Nullable Predicate<String> contentTypePredicate) {
+    this(connectionPool, userAgent, contentTypePredicate, 8000, 8000, false, (RequestProperties)null);
+  }
+
+  public PooledHttpDataSource(HttpConnectionPool connectionPool, String userAgent, @Nullable Predicate<String> contentTypePredicate, int connectTimeoutMillis, int readTimeoutMillis, boolean allowCrossProtocolRedirects, @Nullable RequestProperties defaultRequestProperties) {
+    this(connectionPool, userAgent, contentTypePredicate, connectTimeoutMillis, readTimeoutMillis, allowCrossProtocolRedirects, defaultRequestProperties, 0);
+  }
+
+  public PooledHttpDataSource(HttpConnectionPool connectionPool, String userAgent, @Nullable Predicate<String> contentTypePredicate, int connectTimeoutMillis, int readTimeoutMillis, boolean allowCrossProtocolRedirects, @Nullable RequestProperties defaultRequestProperties, int pipelineDepth) {
+    super(true);
+    Assertions.checkArgument(pipelineDepth >= 0);
+    this.connectionPool = (HttpConnectionPool)Assertions.checkNotNull(connectionPool);
+    this.userAgent = Assertions.checkNotEmpty(userAgent);
+    Assertions.checkArgument(isValidHeaderValue(userAgent), "Invalid user agent");
+    this.contentTypePredicate = contentTypePredicate;
+    this.connectTimeoutMillis = connectTimeoutMillis;
+    this.readTimeoutMillis = readTimeoutMillis;
+    this.allowCrossProtocolRedirects = allowCrossProtocolRedirects;
+    this.defaultRequestProperties = defaultRequestProperties;
+    this.requestProperties = new RequestProperties();
+    this.responseHeaders = Collections.emptyMap();
+    this.pipelineDepth = pipelineDepth;
+    this.pipelinedDataSpecs = new ArrayDeque();
+    this.pipelineOwner = new Object();
+    this.effectivePipelineDepth = Math.min(1, pipelineDepth);
+  }
+
+  @Nullable
+  public Uri getUri() {
+    return this.uri;
+  }
+
+  public Map<String, List<String>> getResponseHeaders() {
+    return this.responseHeaders;
+  }
+
+  public void setRequestProperty(String name, String value) {
+    Assertions.checkNotNull(name);
+    Assertions.checkNotNull(value);
+    Assertions.checkArgument(isValidHeaderName(name), "Invalid request property name");
+    Assertions.checkArgument(isValidHeaderValue(value), "Invalid request property value");
+    this.requestProperties.set(name, value);
+  }
+
+  public void clearRequestProperty(String name) {
+    Assertions.checkNotNull(name);
+    this.requestProperties.remove(name);
+  }
+
+  public void clearAllRequestProperties() {
+    this.requestProperties.clear();
+  }
+
+  public long open(DataSpec dataSpec) throws HttpDataSourceException {
+    this.dataSpec = dataSpec;
+    this.bytesRead = 0L;
+    this.bytesSkipped = 0L;
+    this.transferInitializing(dataSpec);
+
+    try {
+      if (!this.openPipelinedResponse(dataSpec)) {
+        this.executeRequestFollowingRedirects(dataSpec);
+      }
+    } catch (IOException var8) {
+      this.closeConnectionQuietly(false);
+      throw new HttpDataSourceException("Unable to connect to " + dataSpec.uri.toString(), var8, dataSpec, 1);
+    }
+
+    if (this.responseCode >= 200 && this.responseCode <= 299) {
+      String contentType = getHeaderField(this.responseHeaders, "Content-Type");
+      if (this.contentTypePredicate != null && !this.contentTypePredicate.evaluate(contentType)) {
+        this.closeConnectionQuietly(true);
+        throw new InvalidContentTypeException(contentType, dataSpec);
+      } else {
+        this.bytesToSkip = this.responseCode == 200 && dataSpec.position != 0L ? dataSpec.position : 0L;
+        if (dataSpec.length != -1L) {
+          this.bytesToRead = dataSpec.length;
+        } else {
+          long contentLength = getContentLength(this.responseHeaders);
+          this.bytesToRead = contentLength != -1L ? contentLength - this.bytesToSkip : -1L;
+        }
+
+        this.maybeExtendPipeline(dataSpec);
+        this.opened = true;
+        this.transferStarted(dataSpec);
+        return this.bytesToRead;
+      }
+    } else {
+      Map<String, List<String>> headers = this.responseHeaders;
+      this.closeConnectionQuietly(true);
+      InvalidResponseCodeException exception = new InvalidResponseCodeException(this.responseCode, this.responseMessage, headers, dataSpec);
+      if (this.responseCode == 416) {
+        exception.initCause(new DataSourceException(0));
+      }
+
+      throw exception;
+    }
+  }
+
+  public int read(byte[] buffer, int offset, int readLength) throws HttpDataSourceException {
+    try {
+      this.skipInternal();
+      return this.readInternal(buffer, offset, readLength);
+    } catch (IOException var5) {
+      throw new HttpDataSourceException(var5, this.dataSpec, 2);
+    }
+  }
+
+  public void close() throws HttpDataSourceException {
+    try {
+      this.closeConnectionQuietly(true);
+    } finally {
+      this.uri = null;
+      if (this.opened) {
+        this.opened = false;
+        this.transferEnded();
+      }
+
+    }
+
+  }
+
+  protected final long bytesSkipped() {
+    return this.bytesSkipped;
+  }
+
+  protected final long bytesRead() {
+    return this.bytesRead;
+  }
+
+  protected final long bytesRemaining() {
+    return this.bytesToRead == -1L ? this.bytesToRead : this.bytesToRead - this.bytesRead;
+  }
+
+  public void releasePipeline() {
+    this.connectionPool.discardPipeline(this.pipelineOwner);
+  }
+
+  private boolean openPipelinedResponse(DataSpec dataSpec) {
+    this.pipelinedDataSpecs.clear();
+    HttpConnectionPool.Pipeline pipeline = this.connectionPool.acquirePipeline(this.pipelineOwner);
+    if (pipeline == null) {
+      return false;
+    } else {
+      DataSpec pipelinedDataSpec = (DataSpec)pipeline.dataSpecs.peekFirst();
+      HttpConnectionPool.Connection connection = pipeline.connection;
+      if (pipelinedDataSpec != null && dataSpec.httpMethod == 1 && dataSpec.httpBody == null && pipelinedDataSpec.uri.equals(dataSpec.uri) && pipelinedDataSpec.position == dataSpec.position && pipelinedDataSpec.length == dataSpec.length && pipeline.requestProperties.equals(this.getRequestPropertiesSnapshot())) {
+        pipeline.dataSpecs.pollFirst();
+
+        try {
+          connection.socket.setSoTimeout(this.readTimeoutMillis);
+          this.readResponseHead(connection.inputStream);
+          this.connection = connection;
+          this.pipelineUrl = pipeline.url;
+          this.pipelineRequestProperties = pipeline.requestProperties;
+          this.pipelinedDataSpecs.addAll(pipeline.dataSpecs);
+          this.uri = Uri.parse(pipeline.url.toString());
+          this.inputStream = this.createBodyInputStream(connection.inputStream, 1);
+          this.effectivePipelineDepth = Math.min(this.pipelineDepth, this.effectivePipelineDepth + 1);
+          return true;
+        } catch (IOException var6) {
+          this.connection = null;
+          this.pipelinedDataSpecs.clear();
+          connection.close();
+          return false;
+        }
+      } else {
+        connection.close();
+        this.effectivePipelineDepth = Math.max(1, this.effectivePipelineDepth / 2);
+        return false;
+      }
+    }
+  }
+
+  private void maybeExtendPipeline(DataSpec dataSpec) {
+    if (this.effectivePipelineDepth != 0 && this.responseCode == 206 && this.keepAlive && dataSpec.httpMethod == 1 && dataSpec.httpBody == null && dataSpec.length != -1L) {
+      long contentLength = getTotalContentLength(this.responseHeaders);
+      DataSpec lastDataSpec = this.pipelinedDataSpecs.isEmpty() ? dataSpec : (DataSpec)this.pipelinedDataSpecs.peekLast();
+      Map<String, String> requestProperties = this.getRequestPropertiesSnapshot();
+      if (!this.pipelinedDataSpecs.isEmpty() && !requestProperties.equals(this.pipelineRequestProperties)) {
+        return;
+      }
+
+      this.pipelineRequestProperties = requestProperties;
+
+      try {
+        this.pipelineUrl = new URL(this.uri.toString());
+
+        while(this.pipelinedDataSpecs.size() < this.effectivePipelineDepth) {
+          long nextPosition = lastDataSpec.position + lastDataSpec.length;
+          long nextLength = contentLength != -1L ? Math.min(lastDataSpec.length, contentLength - nextPosition) : lastDataSpec.length;
+          if (nextLength <= 0L) {
+            break;
+          }
+
+          DataSpec nextDataSpec = lastDataSpec.subrange(lastDataSpec.length, nextLength);
+          this.writeRequest(this.connection, this.pipelineUrl, 1, (byte[])null, nextDataSpec.position, nextDataSpec.length);
+          this.pipelinedDataSpecs.addLast(nextDataSpec);
+          lastDataSpec = nextDataSpec;
+        }
+      } catch (IOException var10) {
+        Log.w("PooledHttpDataSource", "Failed to pipeline requests", var10);
+        this.keepAlive = false;
+        this.pipelinedDataSpecs.clear();
+      }
+
+    }
+  }
+
+  private void executeRequestFollowingRedirects(DataSpec dataSpec) throws IOException {
+    URL url = new URL(dataSpec.uri.toString());
+    int httpMethod = dataSpec.httpMethod;
+    byte[] httpBody = dataSpec.httpBody;
+    int redirectCount = 0;
+
+    while(true) {
+      this.executeRequest(url, httpMethod, httpBody, dataSpec.position, dataSpec.length);
+      String location = getHeaderField(this.responseHeaders, "Location");
+      boolean redirect = this.responseCode == 300 || this.responseCode == 301 || this.responseCode == 302 || this.responseCode == 303 || (this.responseCode == 307 || this.responseCode == 308) && httpMethod != 2;
+      if (!redirect || location == null) {
+        return;
+      }
+
+      URL redirectUrl = new URL(url, location);
+      String protocol = redirectUrl.getProtocol();
+      if (!"https".equals(protocol) && !"http".equals(protocol)) {
+        throw new ProtocolException("Unsupported protocol redirect: " + protocol);
+      }
+
+      if (!this.allowCrossProtocolRedirects && !protocol.equals(url.getProtocol())) {
+        return;
+      }
+
+      if (++redirectCount > 20) {
+        throw new NoRouteToHostException("Too many redirects: " + redirectCount);
+      }
+
+      this.closeConnectionQuietly(true);
+      if (httpMethod == 2) {
+        httpMethod = 1;
+        httpBody = null;
+      }
+
+      url = redirectUrl;
+    }
+  }
+
+  private void executeRequest(URL url, int httpMethod, @Nullable byte[] httpBody, long position, long length) throws IOException {
+    String scheme = url.getProtocol();
+    String host = url.getHost();
+    int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+    if ("http".equals(scheme) && !isCleartextTrafficPermitted(host)) {
+      throw new UnknownServiceException("Cleartext HTTP traffic to " + host + " not permitted");
+    }
+
+    this.checkRequest(url);
+
+    while(true) {
+      HttpConnectionPool.Connection connection = this.connectionPool.acquire(scheme, host, port, this.connectTimeoutMillis);
+
+      try {
+        connection.socket.setSoTimeout(this.readTimeoutMillis);
+        this.writeRequest(connection, url, httpMethod, httpBody, position, length);
+        this.readResponseHead(connection.inputStream);
+      } catch (IOException var12) {
+        connection.close();
+        if (connection.reused && httpBody == null) {
+          continue;
+        }
+
+        throw var12;
+      }
+
+      this.connection = connection;
+      this.uri = Uri.parse(url.toString());
+      this.inputStream = this.createBodyInputStream(connection.inputStream, httpMethod);
+      return;
+    }
+  }
+
+  private void checkRequest(URL url) throws ProtocolException {
+    String file = url.getFile();
+
+    for(int i = 0; i < file.length(); ++i) {
+      char c = file.charAt(i);
+      if (c <= ' ' || c == 127) {
+        throw new ProtocolException("Invalid request target: " + file);
+      }
+    }
+
+    if (this.defaultRequestProperties != null) {
+      checkRequestProperties(this.defaultRequestProperties.getSnapshot());
+    }
+
+    checkRequestProperties(this.requestProperties.getSnapshot());
+  }
+
+  private Map<String, String> getRequestPropertiesSnapshot() {
+    HashMap<String, String> requestProperties = new HashMap();
+    if (this.defaultRequestProperties != null) {
+      requestProperties.putAll(this.defaultRequestProperties.getSnapshot());
+    }
+
+    requestProperties.putAll(this.requestProperties.getSnapshot());
+    return requestProperties;
+  }
+
+  private void writeRequest(HttpConnectionPool.Connection connection, URL url, int httpMethod, @Nullable byte[] httpBody, long position, long length) throws IOException {
+    StringBuilder request = new StringBuilder();
+    String file = TextUtils.isEmpty(url.getFile()) ? "/" : url.getFile();
+    request.append(DataSpec.getStringForHttpMethod(httpMethod)).append(' ');
+    if (connection.viaHttpProxy) {
+      request.append(url.getProtocol()).append("://").append(url.getAuthority());
+    }
+
+    request.append(file).append(" HTTP/1.1\r\n");
+    request.append("Host: ").append(url.getHost());
+    if (url.getPort() != -1 && url.getPort() != url.getDefaultPort()) {
+      request.append(':').append(url.getPort());
+    }
+
+    request.append("\r\n");
+    Iterator var11;
+    Entry property;
+    if (this.defaultRequestProperties != null) {
+      var11 = this.defaultRequestProperties.getSnapshot().entrySet().iterator();
+
+      while(var11.hasNext()) {
+        property = (Entry)var11.next();
+        request.append((String)property.getKey()).append(": ").append((String)property.getValue()).append("\r\n");
+      }
+    }
+
+    var11 = this.requestProperties.getSnapshot().entrySet().iterator();
+
+    while(var11.hasNext()) {
+      property = (Entry)var11.next();
+      request.append((String)property.getKey()).append(": ").append((String)property.getValue()).append("\r\n");
+    }
+
+    if (position != 0L || length != -1L) {
+      request.append("Range: bytes=").append(position).append('-');
+      if (length != -1L) {
+        request.append(position + length - 1L);
+      }
+
+      request.append("\r\n");
+    }
+
+    request.append("User-Agent: ").append(this.userAgent).append("\r\n");
+    request.append("Accept-Encoding: identity\r\n");
+    request.append("Connection: keep-alive\r\n");
+    if (httpBody != null) {
+      request.append("Content-Length: ").append(httpBody.length).append("\r\n");
+    }
+
+    request.append("\r\n");
+    OutputStream outputStream = connection.outputStream;
+    outputStream.write(Util.getUtf8Bytes(request.toString()));
+    if (httpBody != null) {
+      outputStream.write(httpBody);
+    }
+
+    outputStream.flush();
+  }
+
+  private void readResponseHead(InputStream inputStream) throws IOException {
+    String statusLine;
+    do {
+      statusLine = readLine(inputStream);
+      if (!statusLine.startsWith("HTTP/")) {
+        throw new ProtocolException("Unexpected status line: " + statusLine);
+      }
+
+      String[] parts = statusLine.split(" ", 3);
+      if (parts.length < 2) {
+        throw new ProtocolException("Unexpected status line: " + statusLine);
+      }
+
+      try {
+        this.responseCode = Integer.parseInt(parts[1]);
+      } catch (NumberFormatException var9) {
+        throw new ProtocolException("Unexpected status line: " + statusLine);
+      }
+
+      this.responseMessage = parts.length > 2 ? parts[2] : "";
+      TreeMap<String, List<String>> headers = new TreeMap(String.CASE_INSENSITIVE_ORDER);
+
+      String line;
+      while(!(line = readLine(inputStream)).isEmpty()) {
+        int separator = line.indexOf(58);
+        if (separator > 0) {
+          String name = line.substring(0, separator).trim();
+          List<String> values = (List)headers.get(name);
+          if (values == null) {
+            values = new ArrayList(1);
+            headers.put(name, values);
+          }
+
+          values.add(line.substring(separator + 1).trim());
+        }
+      }
+
+      this.responseHeaders = Collections.unmodifiableMap(headers);
+    } while(this.responseCode >= 100 && this.responseCode < 200);
+
+    String connectionHeader = getHeaderField(this.responseHeaders, "Connection");
+    this.keepAlive = statusLine.startsWith("HTTP/1.1") ? !"close".equalsIgnoreCase(connectionHeader) : "keep-alive".equalsIgnoreCase(connectionHeader);
+  }
+
+  private PooledHttpDataSource.BodyInputStream createBodyInputStream(InputStream inputStream, int httpMethod) throws IOException {
+    if (httpMethod != 3 && this.responseCode != 204 && this.responseCode != 304) {
+      String transferEncoding = getHeaderField(this.responseHeaders, "Transfer-Encoding");
+      if (transferEncoding != null && Util.toLowerInvariant(transferEncoding).contains("chunked")) {
+        return new PooledHttpDataSource.ChunkedInputStream(inputStream);
+      } else {
+        String contentLengthHeader = getHeaderField(this.responseHeaders, "Content-Length");
+        if (contentLengthHeader != null) {
+          try {
+            return new PooledHttpDataSource.FixedLengthInputStream(inputStream, Long.parseLong(contentLengthHeader.trim()));
+          } catch (NumberFormatException var6) {
+            throw new ProtocolException("Unexpected Content-Length [" + contentLengthHeader + "]");
+          }
+        } else {
+          this.keepAlive = false;
+          return new PooledHttpDataSource.FixedLengthInputStream(inputStream, 9223372036854775807L);
+        }
+      }
+    } else {
+      return new PooledHttpDataSource.FixedLengthInputStream(inputStream, 0L);
+    }
+  }
+
+  private void skipInternal() throws IOException {
+    if (this.bytesSkipped != this.bytesToSkip) {
+      byte[] skipBuffer = new byte[4096];
+
+      while(this.bytesSkipped != this.bytesToSkip) {
+        int readLength = (int)Math.min(this.bytesToSkip - this.bytesSkipped, (long)skipBuffer.length);
+        int read = this.inputStream.read(skipBuffer, 0, readLength);
+        if (Thread.currentThread().isInterrupted()) {
+          throw new InterruptedIOException();
+        }
+
+        if (read == -1) {
+          throw new EOFException();
+        }
+
+        this.bytesSkipped += (long)read;
+        this.bytesTransferred(read);
+      }
+
+    }
+  }
+
+  private int readInternal(byte[] buffer, int offset, int readLength) throws IOException {
+    if (readLength == 0) {
+      return 0;
+    } else {
+      if (this.bytesToRead != -1L) {
+        long bytesRemaining = this.bytesToRead - this.bytesRead;
+        if (bytesRemaining == 0L) {
+          return -1;
+        }
+
+        readLength = (int)Math.min((long)readLength, bytesRemaining);
+      }
+
+      int read = this.inputStream.read(buffer, offset, readLength);
+      if (read == -1) {
+        if (this.bytesToRead != -1L) {
+          throw new EOFException();
+        } else {
+          return -1;
+        }
+      } else {
+        this.bytesRead += (long)read;
+        this.bytesTransferred(read);
+        return read;
+      }
+    }
+  }
+
+  private void closeConnectionQuietly(boolean allowReuse) {
+    HttpConnectionPool.Connection connection = this.connection;
+    PooledHttpDataSource.BodyInputStream inputStream = this.inputStream;
+    this.connection = null;
+    this.inputStream = null;
+    if (connection != null) {
+      boolean reusable = false;
+      if (allowReuse && this.keepAlive) {
+        try {
+          reusable = inputStream.drain(2048L);
+        } catch (IOException var6) {
+          Log.w("PooledHttpDataSource", "Failed to drain response body", var6);
+        }
+      }
+
+      if (reusable && !this.pipelinedDataSpecs.isEmpty()) {
+        this.connectionPool.releasePipeline(this.pipelineOwner, connection, this.pipelineUrl, this.pipelinedDataSpecs, this.pipelineRequestProperties);
+      } else if (reusable) {
+        this.connectionPool.release(connection);
+      } else {
+        connection.close();
+      }
+
+      this.pipelinedDataSpecs.clear();
+
+    }
+  }
+
+  private static String readLine(InputStream inputStream) throws IOException {
+    StringBuilder line = new StringBuilder();
+
+    while(true) {
+      int c = inputStream.read();
+      if (c == -1) {
+        throw new EOFException();
+      }
+
+      if (c == 10) {
+        int length = line.length();
+        if (length > 0 && line.charAt(length - 1) == '\r') {
+          line.setLength(length - 1);
+        }
+
+        return line.toString();
+      }
+
+      if (line.length() >= 16384) {
+        throw new ProtocolException("Header line too long");
+      }
+
+      line.append((char)c);
+    }
+  }
+
+  private static void checkRequestProperties(Map<String, String> requestProperties) throws ProtocolException {
+    Iterator var1 = requestProperties.entrySet().iterator();
+
+    Entry property;
+    do {
+      if (!var1.hasNext()) {
+        return;
+      }
+
+      property = (Entry)var1.next();
+      if (!isValidHeaderName((String)property.getKey())) {
+        throw new ProtocolException("Invalid request property name: " + property.getKey());
+      }
+    } while(isValidHeaderValue((String)property.getValue()));
+
+    throw new ProtocolException("Invalid request property value for " + property.getKey());
+  }
+
+  private static boolean isValidHeaderName(String name) {
+    if (name.isEmpty()) {
+      return false;
+    } else {
+      for(int i = 0; i < name.length(); ++i) {
+        char c = name.charAt(i);
+        if ((c < 'a' || c > 'z') && (c < 'A' || c > 'Z') && (c < '0' || c > '9') && "!#$%&'*+-.^_`|~".indexOf(c) == -1) {
+          return false;
+        }
+      }
+
+      return true;
+    }
+  }
+
+  private static boolean isValidHeaderValue(String value) {
+    for(int i = 0; i < value.length(); ++i) {
+      char c = value.charAt(i);
+      if (c < ' ' && c != '\t' || c >= 127) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private static boolean isCleartextTrafficPermitted(String host) {
+    if (Util.SDK_INT >= 24) {
+      return isCleartextTrafficPermittedV24(host);
+    } else {
+      return Util.SDK_INT < 23 || isCleartextTrafficPermittedV23();
+    }
+  }
+
+  @TargetApi(24)
+  private static boolean isCleartextTrafficPermittedV24(String host) {
+    return NetworkSecurityPolicy.getInstance().isCleartextTrafficPermitted(host);
+  }
+
+  @TargetApi(23)
+  private static boolean isCleartextTrafficPermittedV23() {
+    return NetworkSecurityPolicy.getInstance().isCleartextTrafficPermitted();
+  }
+
+  @Nullable
+  private static String getHeaderField(Map<String, List<String>> headers, String name) {
+    List<String> values = (List)headers.get(name);
+    return values != null && !values.isEmpty() ? (String)values.get(values.size() - 1) : null;
+  }
+
+  private static long getTotalContentLength(Map<String, List<String>> headers) {
+    String contentRangeHeader = getHeaderField(headers, "Content-Range");
+    if (!TextUtils.isEmpty(contentRangeHeader)) {
+      Matcher matcher = CONTENT_RANGE_HEADER.matcher(contentRangeHeader);
+      if (matcher.find()) {
+        try {
+          return Long.parseLong(matcher.group(3));
+        } catch (NumberFormatException var3) {
+        }
+      }
+    }
+
+    return -1L;
+  }
+
+  private static long getContentLength(Map<String, List<String>> headers) {
+    long contentLength = -1L;
+    String contentLengthHeader = getHeaderField(headers, "Content-Length");
+    if (!TextUtils.isEmpty(contentLengthHeader)) {
+      try {
+        contentLength = Long.parseLong(contentLengthHeader);
+      } catch (NumberFormatException var9) {
+        Log.e("PooledHttpDataSource", "Unexpected Content-Length [" + contentLengthHeader + "]");
+      }
+    }
+
+    String contentRangeHeader = getHeaderField(headers, "Content-Range");
+    if (!TextUtils.isEmpty(contentRangeHeader)) {
+      Matcher matcher = CONTENT_RANGE_HEADER.matcher(contentRangeHeader);
+      if (matcher.find()) {
+        try {
+          long contentLengthFromRange = Long.parseLong(matcher.group(2)) - Long.parseLong(matcher.group(1)) + 1L;
+          if (contentLength < 0L) {
+            contentLength = contentLengthFromRange;
+          } else if (contentLength != contentLengthFromRange) {
+            Log.w("PooledHttpDataSource", "Inconsistent headers [" + contentLengthHeader + "] [" + contentRangeHeader + "]");
+            contentLength = Math.max(contentLength, contentLengthFromRange);
+          }
+        } catch (NumberFormatException var8) {
+          Log.e("PooledHttpDataSource", "Unexpected Content-Range [" + contentRangeHeader + "]");
+        }
+      }
+    }
+
+    return contentLength;
+  }
+
+  private static final class ChunkedInputStream extends PooledHttpDataSource.BodyInputStream {
+    private long chunkBytesRemaining;
+    private boolean finished;
+
+    public ChunkedInputStream(InputStream source) {
+      super(source);
+    }
+
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      if (this.finished) {
+        return -1;
+      } else {
+        if (this.chunkBytesRemaining == 0L) {
+          this.readChunkHeader();
+          if (this.finished) {
+            return -1;
+          }
+        }
+
+        int read = this.source.read(buffer, offset, (int)Math.min((long)length, this.chunkBytesRemaining));
+        if (read == -1) {
+          throw new EOFException();
+        } else {
+          this.chunkBytesRemaining -= (long)read;
+          return read;
+        }
+      }
+    }
+
+    public boolean isComplete() {
+      return this.finished;
+    }
+
+    private void readChunkHeader() throws IOException {
+      String line = PooledHttpDataSource.readLine(this.source);
+      if (line.isEmpty()) {
+        line = PooledHttpDataSource.readLine(this.source);
+      }
+
+      int extensionIndex = line.indexOf(59);
+      String size = extensionIndex != -1 ? line.substring(0, extensionIndex) : line;
+
+      try {
+        this.chunkBytesRemaining = Long.parseLong(size.trim(), 16);
+      } catch (NumberFormatException var5) {
+        throw new ProtocolException("Unexpected chunk size: " + line);
+      }
+
+      if (this.chunkBytesRemaining == 0L) {
+        while(!PooledHttpDataSource.readLine(this.source).isEmpty()) {
+        }
+
+        this.finished = true;
+      }
+
+    }
+  }
+
+  private static final class FixedLengthInputStream extends PooledHttpDataSource.BodyInputStream {
+    private long bytesRemaining;
+
+    public FixedLengthInputStream(InputStream source, long length) {
+      super(source);
+      this.bytesRemaining = length;
+    }
+
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      if (this.bytesRemaining == 0L) {
+        return -1;
+      } else {
+        int read = this.source.read(buffer, offset, (int)Math.min((long)length, this.bytesRemaining));
+        if (read == -1) {
+          if (this.bytesRemaining != 9223372036854775807L) {
+            throw new EOFException();
+          }
+
+          this.bytesRemaining = 0L;
+          return -1;
+        } else {
+          if (this.bytesRemaining != 9223372036854775807L) {
+            this.bytesRemaining -= (long)read;
+          }
+
+          return read;
+        }
+      }
+    }
+
+    public boolean isComplete() {
+      return this.bytesRemaining == 0L;
+    }
+  }
+
+  private abstract static class BodyInputStream extends InputStream {
+    protected final InputStream source;
+
+    public BodyInputStream(InputStream source) {
+      this.source = source;
+    }
+
+    public int read() throws IOException {
+      byte[] singleByte = new byte[1];
+      return this.read(singleByte, 0, 1) == -1 ? -1 : singleByte[0] & 255;
+    }
+
+    public abstract boolean isComplete();
+
+    public boolean drain(long maxBytesToDrain) throws IOException {
+      byte[] drainBuffer = new byte[(int)Math.min(maxBytesToDrain + 1L, 4096L)];
+
+      int read;
+      for(long drained = 0L; !this.isComplete() && drained <= maxBytesToDrain; drained += (long)read) {
+        read = this.read(drainBuffer, 0, drainBuffer.length);
+        if (read == -1) {
+          break;
+        }
+      }
+
+      return this.isComplete();
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package com.google.android.exoplayer2.upstream;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.upstream.HttpDataSource.BaseFactory;
+import com.google.android.exoplayer2.upstream.HttpDataSource.RequestProperties;
+import com.google.android.exoplayer2.util.Predicate;
+
+public final class PooledHttpDataSourceFactory extends BaseFactory {
+  private final HttpConnectionPool connectionPool;
+  private final String userAgent;
+  @Nullable
+  private final TransferListener listener;
+  private final int connectTimeoutMillis;
+  private final int readTimeoutMillis;
+  private final boolean allowCrossProtocolRedirects;
+  private final int pipelineDepth;
+
+  public PooledHttpDataSourceFactory(String userAgent) {
+    this(new HttpConnectionPool(), userAgent, (TransferListener)null, 8000, 8000, false);
+  }
+
+  public PooledHttpDataSourceFactory(HttpConnectionPool connectionPool, String userAgent, @Nullable TransferListener listener, int connectTimeoutMillis, int readTimeoutMillis, boolean allowCrossProtocolRedirects) {
+    this(connectionPool, userAgent, listener, connectTimeoutMillis, readTimeoutMillis, allowCrossProtocolRedirects, 0);
+  }
+
+  public PooledHttpDataSourceFactory(HttpConnectionPool connectionPool, String userAgent, @Nullable TransferListener listener, int connectTimeoutMillis, int readTimeoutMillis, boolean allowCrossProtocolRedirects, int pipelineDepth) {
+    this.connectionPool = connectionPool;
+    this.userAgent = userAgent;
+    this.listener = listener;
+    this.connectTimeoutMillis = connectTimeoutMillis;
+    this.readTimeoutMillis = readTimeoutMillis;
+    this.allowCrossProtocolRedirects = allowCrossProtocolRedirects;
+    this.pipelineDepth = pipelineDepth;
+  }
+
+  public HttpConnectionPool getConnectionPool() {
+    return this.connectionPool;
+  }
+
+  protected PooledHttpDataSource createDataSourceInternal(RequestProperties defaultRequestProperties) {
+    PooledHttpDataSource dataSource = new PooledHttpDataSource(this.connectionPool, this.userAgent, (Predicate)null, this.connectTimeoutMillis, this.readTimeoutMillis, this.allowCrossProtocolRedirects, defaultRequestProperties, this.pipelineDepth);
+    if (this.listener != null) {
+      dataSource.addTransferListener(this.listener);
+    }
+
+    return dataSource;
+  }
+}
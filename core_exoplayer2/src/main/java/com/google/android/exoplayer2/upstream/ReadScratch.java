@@ -0,0 +1,15 @@
+package com.google.android.exoplayer2.upstream;
+
+final class ReadScratch {
+  private static final int SCRATCH_SIZE = 16384;
+  private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> {
+    return new byte[16384];
+  });
+
+  private ReadScratch() {
+  }
+
+  public static byte[] get() {
+    return (byte[])SCRATCH.get();
+  }
+}
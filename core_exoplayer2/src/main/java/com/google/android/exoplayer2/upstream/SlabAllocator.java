@@ -0,0 +1,215 @@
+package com.google.android.exoplayer2.upstream;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+public final class SlabAllocator implements Allocator {
+  public static final int DEFAULT_ALLOCATIONS_PER_SLAB = 32;
+  private final boolean trimOnReset;
+  private final int individualAllocationSize;
+  private final int allocationsPerSlab;
+  private final boolean directSlabs;
+  @Nullable
+  private final File mappedSlabDirectory;
+  private final ArrayList<SlabAllocator.Slab> slabs;
+  private final IdentityHashMap<Allocation, SlabAllocator.Slab> slabsByAllocation;
+  private final Allocation[] singleAllocationReleaseHolder;
+  private int targetBufferSize;
+  private int allocatedCount;
+  private int availableCount;
+  private Allocation[] availableAllocations;
+
+  public SlabAllocator(boolean trimOnReset, int individualAllocationSize) {
+    this(trimOnReset, individualAllocationSize, 32, false, (File)null);
+  }
+
+  public SlabAllocator(boolean trimOnReset, int individualAllocationSize, int allocationsPerSlab) {
+    this(trimOnReset, individualAllocationSize, allocationsPerSlab, false, (File)null);
+  }
+
+  public SlabAllocator(boolean trimOnReset, int individualAllocationSize, int allocationsPerSlab, boolean directSlabs, @Nullable File mappedSlabDirectory) {
+    Assertions.checkArgument(individualAllocationSize > 0);
+    Assertions.checkArgument(allocationsPerSlab > 0);
+    this.trimOnReset = trimOnReset;
+    this.individualAllocationSize = individualAllocationSize;
+    this.allocationsPerSlab = allocationsPerSlab;
+    this.directSlabs = directSlabs || mappedSlabDirectory != null;
+    this.mappedSlabDirectory = mappedSlabDirectory;
+    this.slabs = new ArrayList();
+    this.slabsByAllocation = new IdentityHashMap();
+    this.singleAllocationReleaseHolder = new Allocation[1];
+    this.availableAllocations = new Allocation[allocationsPerSlab];
+  }
+
+  public synchronized void reset() {
+    if (this.trimOnReset) {
+      this.setTargetBufferSize(0);
+    }
+
+  }
+
+  public synchronized void setTargetBufferSize(int targetBufferSize) {
+    boolean targetBufferSizeReduced = targetBufferSize < this.targetBufferSize;
+    this.targetBufferSize = targetBufferSize;
+    if (targetBufferSizeReduced) {
+      this.trim();
+    }
+
+  }
+
+  public synchronized Allocation allocate() {
+    if (this.availableCount == 0) {
+      this.addSlab();
+    }
+
+    Allocation allocation = this.availableAllocations[--this.availableCount];
+    this.availableAllocations[this.availableCount] = null;
+    --((SlabAllocator.Slab)this.slabsByAllocation.get(allocation)).availableCount;
+    ++this.allocatedCount;
+    return allocation;
+  }
+
+  public synchronized void release(Allocation allocation) {
+    this.singleAllocationReleaseHolder[0] = allocation;
+    this.release(this.singleAllocationReleaseHolder);
+  }
+
+  public synchronized void release(Allocation[] allocations) {
+    if (this.availableCount + allocations.length > this.availableAllocations.length) {
+      this.availableAllocations = (Allocation[])Arrays.copyOf(this.availableAllocations, Math.max(this.availableAllocations.length * 2, this.availableCount + allocations.length));
+    }
+
+    Allocation[] var2 = allocations;
+    int var3 = allocations.length;
+
+    for(int var4 = 0; var4 < var3; ++var4) {
+      Allocation allocation = var2[var4];
+      SlabAllocator.Slab slab = (SlabAllocator.Slab)this.slabsByAllocation.get(allocation);
+      Assertions.checkArgument(slab != null);
+      ++slab.availableCount;
+      this.availableAllocations[this.availableCount++] = allocation;
+    }
+
+    this.allocatedCount -= allocations.length;
+  }
+
+  public synchronized void trim() {
+    int targetAllocationCount = Util.ceilDivide(this.targetBufferSize, this.individualAllocationSize);
+    int targetAvailableCount = Math.max(0, targetAllocationCount - this.allocatedCount);
+    int removableCount = this.availableCount - targetAvailableCount;
+    if (removableCount >= this.allocationsPerSlab) {
+      int removedCount = 0;
+
+      for(int i = this.slabs.size() - 1; i >= 0 && removableCount - removedCount >= this.allocationsPerSlab; --i) {
+        SlabAllocator.Slab slab = (SlabAllocator.Slab)this.slabs.get(i);
+        if (slab.availableCount == this.allocationsPerSlab) {
+          slab.released = true;
+          this.slabs.remove(i);
+          removedCount += this.allocationsPerSlab;
+        }
+      }
+
+      if (removedCount != 0) {
+        int newAvailableCount = 0;
+
+        for(int i = 0; i < this.availableCount; ++i) {
+          Allocation allocation = this.availableAllocations[i];
+          if (((SlabAllocator.Slab)this.slabsByAllocation.get(allocation)).released) {
+            this.slabsByAllocation.remove(allocation);
+          } else {
+            this.availableAllocations[newAvailableCount++] = allocation;
+          }
+        }
+
+        Arrays.fill(this.availableAllocations, newAvailableCount, this.availableCount, (Object)null);
+        this.availableCount = newAvailableCount;
+      }
+    }
+  }
+
+  public synchronized int getTotalBytesAllocated() {
+    return this.allocatedCount * this.individualAllocationSize;
+  }
+
+  public synchronized long getTotalSlabBytes() {
+    return (long)this.slabs.size() * (long)this.allocationsPerSlab * (long)this.individualAllocationSize;
+  }
+
+  public int getIndividualAllocationLength() {
+    return this.individualAllocationSize;
+  }
+
+  public boolean isDirect() {
+    return this.directSlabs;
+  }
+
+  private void addSlab() {
+    ByteBuffer slabBuffer = this.createSlabBuffer(this.allocationsPerSlab * this.individualAllocationSize);
+    SlabAllocator.Slab slab = new SlabAllocator.Slab();
+    this.slabs.add(slab);
+    if (this.availableAllocations.length < this.allocationsPerSlab) {
+      this.availableAllocations = (Allocation[])Arrays.copyOf(this.availableAllocations, this.allocationsPerSlab);
+    }
+
+    for(int i = this.allocationsPerSlab - 1; i >= 0; --i) {
+      slabBuffer.clear();
+      slabBuffer.position(i * this.individualAllocationSize);
+      slabBuffer.limit((i + 1) * this.individualAllocationSize);
+      Allocation allocation = new Allocation(slabBuffer.slice());
+      this.slabsByAllocation.put(allocation, slab);
+      this.availableAllocations[this.availableCount++] = allocation;
+    }
+
+    slab.availableCount = this.allocationsPerSlab;
+  }
+
+  private ByteBuffer createSlabBuffer(int size) {
+    if (!this.directSlabs) {
+      return ByteBuffer.allocate(size);
+    } else if (this.mappedSlabDirectory != null) {
+      File slabFile = null;
+
+      try {
+        slabFile = File.createTempFile("slab", (String)null, this.mappedSlabDirectory);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(slabFile, "rw");
+
+        ByteBuffer var5;
+        try {
+          FileChannel channel = randomAccessFile.getChannel();
+          var5 = channel.map(MapMode.READ_WRITE, 0L, (long)size);
+        } finally {
+          randomAccessFile.close();
+        }
+
+        return var5;
+      } catch (IOException var15) {
+        return ByteBuffer.allocateDirect(size);
+      } finally {
+        if (slabFile != null) {
+          slabFile.delete();
+        }
+
+      }
+    } else {
+      return ByteBuffer.allocateDirect(size);
+    }
+  }
+
+  private static final class Slab {
+    public int availableCount;
+    public boolean released;
+
+    private Slab() {
+    }
+  }
+}
@@ -6,6 +6,7 @@ import com.google.android.exoplayer2.upstream.DataSink;
 import com.google.android.exoplayer2.upstream.DataSpec;
 import com.google.android.exoplayer2.util.Assertions;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 
@@ -14,6 +15,8 @@ public final class TeeDataSource implements DataSource {
   private final DataSink dataSink;
   private boolean dataSinkNeedsClosing;
   private long bytesRemaining;
+  @Nullable
+  private byte[] scratch;
 
   public TeeDataSource(DataSource upstream, DataSink dataSink) {
     this.upstream = (DataSource)Assertions.checkNotNull(upstream);
@@ -55,6 +58,35 @@ public final class TeeDataSource implements DataSource {
     }
   }
 
+  public int read(ByteBuffer buffer) throws IOException {
+    if (this.bytesRemaining == 0L) {
+      return -1;
+    } else {
+      int position = buffer.position();
+      int bytesRead = this.upstream.read(buffer);
+      if (bytesRead > 0) {
+        if (buffer.hasArray()) {
+          this.dataSink.write(buffer.array(), buffer.arrayOffset() + position, bytesRead);
+        } else {
+          if (this.scratch == null || this.scratch.length < bytesRead) {
+            this.scratch = new byte[bytesRead];
+          }
+
+          ByteBuffer readData = buffer.duplicate();
+          readData.position(position);
+          readData.get(this.scratch, 0, bytesRead);
+          this.dataSink.write(this.scratch, 0, bytesRead);
+        }
+
+        if (this.bytesRemaining != -1L) {
+          this.bytesRemaining -= (long)bytesRead;
+        }
+      }
+
+      return bytesRead;
+    }
+  }
+
   @Nullable
   public Uri getUri() {
     return this.upstream.getUri();
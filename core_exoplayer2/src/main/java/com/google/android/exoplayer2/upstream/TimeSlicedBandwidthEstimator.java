@@ -0,0 +1,90 @@
+package com.google.android.exoplayer2.upstream;
+
+import com.google.android.exoplayer2.util.Assertions;
+import java.util.Arrays;
+
+public final class TimeSlicedBandwidthEstimator implements BandwidthEstimator {
+  public static final long DEFAULT_SLICE_DURATION_MS = 500L;
+  public static final int DEFAULT_SLICE_COUNT = 10;
+  public static final long DEFAULT_MIN_BUSY_TIME_MS = 500L;
+  private final long sliceDurationMs;
+  private final long minBusyTimeMs;
+  private final long[] sliceIndices;
+  private final double[] sliceBytes;
+  private final double[] sliceBusyTimeMs;
+  private long latestSliceIndex;
+
+  public TimeSlicedBandwidthEstimator() {
+    this(500L, 10, 500L);
+  }
+
+  public TimeSlicedBandwidthEstimator(long sliceDurationMs, int sliceCount, long minBusyTimeMs) {
+    Assertions.checkArgument(sliceDurationMs > 0L && sliceCount > 0);
+    this.sliceDurationMs = sliceDurationMs;
+    this.minBusyTimeMs = minBusyTimeMs;
+    this.sliceIndices = new long[sliceCount];
+    this.sliceBytes = new double[sliceCount];
+    this.sliceBusyTimeMs = new double[sliceCount];
+    this.reset();
+  }
+
+  public void addSample(long bytesTransferred, long elapsedTimeMs, long nowMs) {
+    if (elapsedTimeMs <= 0L) {
+      return;
+    }
+
+    long startMs = Math.max(nowMs - elapsedTimeMs, nowMs - this.sliceDurationMs * (long)this.sliceIndices.length);
+    double bytesPerMs = (double)bytesTransferred / (double)elapsedTimeMs;
+    long positionMs = startMs;
+
+    while(positionMs < nowMs) {
+      long sliceIndex = positionMs / this.sliceDurationMs;
+      long sliceEndMs = Math.min(nowMs, (sliceIndex + 1L) * this.sliceDurationMs);
+      long durationMs = sliceEndMs - positionMs;
+      int slot = this.getSlot(sliceIndex);
+      if (slot != -1) {
+        this.sliceBytes[slot] += bytesPerMs * (double)durationMs;
+        this.sliceBusyTimeMs[slot] += (double)durationMs;
+      }
+
+      positionMs = sliceEndMs;
+    }
+
+    this.latestSliceIndex = Math.max(this.latestSliceIndex, (nowMs - 1L) / this.sliceDurationMs);
+  }
+
+  public long getBandwidthEstimate() {
+    double bytes = 0.0D;
+    double busyTimeMs = 0.0D;
+    long oldestSliceIndex = this.latestSliceIndex - (long)this.sliceIndices.length;
+
+    for(int i = 0; i < this.sliceIndices.length; ++i) {
+      if (this.sliceIndices[i] > oldestSliceIndex) {
+        bytes += this.sliceBytes[i];
+        busyTimeMs += Math.min(this.sliceBusyTimeMs[i], (double)this.sliceDurationMs);
+      }
+    }
+
+    return busyTimeMs >= (double)this.minBusyTimeMs && busyTimeMs > 0.0D ? (long)(bytes * 8000.0D / busyTimeMs) : -9223372036854775807L;
+  }
+
+  public void reset() {
+    Arrays.fill(this.sliceIndices, -1L);
+    Arrays.fill(this.sliceBytes, 0.0D);
+    Arrays.fill(this.sliceBusyTimeMs, 0.0D);
+    this.latestSliceIndex = -1L;
+  }
+
+  private int getSlot(long sliceIndex) {
+    int slot = (int)(sliceIndex % (long)this.sliceIndices.length);
+    if (this.sliceIndices[slot] > sliceIndex) {
+      return -1;
+    } else if (this.sliceIndices[slot] != sliceIndex) {
+      this.sliceIndices[slot] = sliceIndex;
+      this.sliceBytes[slot] = 0.0D;
+      this.sliceBusyTimeMs[slot] = 0.0D;
+    }
+
+    return slot;
+  }
+}
@@ -16,6 +16,7 @@ import java.io.InterruptedIOException;
 import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -144,36 +145,63 @@ public final class CacheDataSource implements DataSource {
         }
 
         int bytesRead = this.currentDataSource.read(buffer, offset, readLength);
-        if (bytesRead != -1) {
-          if (this.isReadingFromCache()) {
-            this.totalCachedBytesRead += (long)bytesRead;
-          }
+        return this.onReadCompleted(bytesRead) ? this.read(buffer, offset, readLength) : bytesRead;
+      } catch (IOException var5) {
+        return this.onReadFailed(var5);
+      }
+    }
+  }
 
-          this.readPosition += (long)bytesRead;
-          if (this.bytesRemaining != -1L) {
-            this.bytesRemaining -= (long)bytesRead;
-          }
-        } else if (this.currentDataSpecLengthUnset) {
-          this.setNoBytesRemainingAndMaybeStoreLength();
-        } else if (this.bytesRemaining > 0L || this.bytesRemaining == -1L) {
-          this.closeCurrentSource();
-          this.openNextSource(false);
-          return this.read(buffer, offset, readLength);
+  public int read(ByteBuffer buffer) throws IOException {
+    if (!buffer.hasRemaining()) {
+      return 0;
+    } else if (this.bytesRemaining == 0L) {
+      return -1;
+    } else {
+      try {
+        if (this.readPosition >= this.checkCachePosition) {
+          this.openNextSource(true);
         }
 
-        return bytesRead;
-      } catch (IOException var5) {
-        if (this.currentDataSpecLengthUnset && isCausedByPositionOutOfRange(var5)) {
-          this.setNoBytesRemainingAndMaybeStoreLength();
-          return -1;
-        } else {
-          this.handleBeforeThrow(var5);
-          throw var5;
-        }
+        int bytesRead = this.currentDataSource.read(buffer);
+        return this.onReadCompleted(bytesRead) ? this.read(buffer) : bytesRead;
+      } catch (IOException var3) {
+        return this.onReadFailed(var3);
       }
     }
   }
 
+  private boolean onReadCompleted(int bytesRead) throws IOException {
+    if (bytesRead != -1) {
+      if (this.isReadingFromCache()) {
+        this.totalCachedBytesRead += (long)bytesRead;
+      }
+
+      this.readPosition += (long)bytesRead;
+      if (this.bytesRemaining != -1L) {
+        this.bytesRemaining -= (long)bytesRead;
+      }
+    } else if (this.currentDataSpecLengthUnset) {
+      this.setNoBytesRemainingAndMaybeStoreLength();
+    } else if (this.bytesRemaining > 0L || this.bytesRemaining == -1L) {
+      this.closeCurrentSource();
+      this.openNextSource(false);
+      return true;
+    }
+
+    return false;
+  }
+
+  private int onReadFailed(IOException e) throws IOException {
+    if (this.currentDataSpecLengthUnset && isCausedByPositionOutOfRange(e)) {
+      this.setNoBytesRemainingAndMaybeStoreLength();
+      return -1;
+    } else {
+      this.handleBeforeThrow(e);
+      throw e;
+    }
+  }
+
   @Nullable
   public Uri getUri() {
     return this.actualUri;
@@ -4,8 +4,11 @@ import android.net.Uri;
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TeeDataSource;
+import com.google.android.exoplayer2.upstream.DataSource.Factory;
 import com.google.android.exoplayer2.upstream.cache.Cache.CacheException;
 import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.LongArray;
 import com.google.android.exoplayer2.util.PriorityTaskManager;
 import com.google.android.exoplayer2.util.Util;
 import com.google.android.exoplayer2.util.PriorityTaskManager.PriorityTooLowException;
@@ -13,10 +16,16 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.NavigableSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public final class CacheUtil {
   public static final int DEFAULT_BUFFER_SIZE_BYTES = 131072;
+  public static final long DEFAULT_MIN_SEGMENT_LENGTH_BYTES = 1048576L;
   public static final CacheKeyFactory DEFAULT_CACHE_KEY_FACTORY = CacheUtil::getKey;
 
   public static String generateKey(Uri uri) {
@@ -87,6 +96,187 @@ public final class CacheUtil {
 
   }
 
+  public static void cacheInParallel(DataSpec dataSpec, Cache cache, Factory upstreamFactory, ExecutorService executor, int maxParallelSegments, long maxCacheFileSize, @Nullable PriorityTaskManager priorityTaskManager, int priority, @Nullable CacheUtil.CachingCounters counters, @Nullable AtomicBoolean isCanceled) throws IOException, InterruptedException {
+    Assertions.checkArgument(maxParallelSegments > 0);
+    String key = getKey(dataSpec);
+    long start = dataSpec.absoluteStreamPosition;
+    long length = dataSpec.length != -1L ? dataSpec.length : cache.getContentLength(key);
+    if (length == -1L) {
+      cache(dataSpec, cache, new CacheDataSource(cache, upstreamFactory.createDataSource()), new byte[131072], priorityTaskManager, priority, counters, isCanceled, false);
+    } else {
+      if (counters != null) {
+        getCached(dataSpec, cache, counters);
+      } else {
+        counters = new CacheUtil.CachingCounters();
+      }
+
+      CacheSpan lockedHoleSpan = null;
+
+      while(lockedHoleSpan == null) {
+        throwExceptionIfInterruptedOrCancelled(isCanceled);
+        long holePosition = start;
+
+        long blockLength;
+        for(long left = length; left > 0L; left -= blockLength) {
+          blockLength = cache.getCachedLength(key, holePosition, left);
+          if (blockLength <= 0L) {
+            break;
+          }
+
+          holePosition += blockLength;
+        }
+
+        if (holePosition >= start + length) {
+          return;
+        }
+
+        CacheSpan span = cache.startReadWrite(key, holePosition);
+        if (span.isHoleSpan()) {
+          lockedHoleSpan = span;
+        }
+      }
+
+      try {
+        LongArray segmentPositions = new LongArray();
+        LongArray segmentLengths = new LongArray();
+        long holeBytes = -getCachedHoles(cache, key, start, length, (LongArray)null, (LongArray)null, 9223372036854775807L);
+        long segmentLength = Math.max(DEFAULT_MIN_SEGMENT_LENGTH_BYTES, (holeBytes + (long)maxParallelSegments - 1L) / (long)maxParallelSegments);
+        getCachedHoles(cache, key, start, length, segmentPositions, segmentLengths, segmentLength);
+        fetchSegments(dataSpec, key, cache, upstreamFactory, executor, maxParallelSegments, maxCacheFileSize, segmentPositions, segmentLengths, priorityTaskManager, priority, counters, isCanceled);
+      } finally {
+        cache.releaseHoleSpan(lockedHoleSpan);
+      }
+
+    }
+  }
+
+  private static long getCachedHoles(Cache cache, String key, long position, long length, @Nullable LongArray holePositions, @Nullable LongArray holeLengths, long maxHoleLength) {
+    long holeBytes = 0L;
+
+    long blockLength;
+    for(long left = length; left > 0L; left -= blockLength) {
+      blockLength = cache.getCachedLength(key, position, left);
+      if (blockLength <= 0L) {
+        blockLength = -blockLength;
+        holeBytes += blockLength;
+        if (holePositions != null) {
+          for(long offset = 0L; offset < blockLength; offset += maxHoleLength) {
+            holePositions.add(position + offset);
+            holeLengths.add(Math.min(maxHoleLength, blockLength - offset));
+          }
+        }
+      }
+
+      position += blockLength;
+    }
+
+    return -holeBytes;
+  }
+
+  private static void fetchSegments(DataSpec dataSpec, String key, Cache cache, Factory upstreamFactory, ExecutorService executor, int maxParallelSegments, long maxCacheFileSize, LongArray segmentPositions, LongArray segmentLengths, @Nullable PriorityTaskManager priorityTaskManager, int priority, CacheUtil.CachingCounters counters, @Nullable AtomicBoolean isCanceled) throws IOException, InterruptedException {
+    ExecutorCompletionService<Void> completionService = new ExecutorCompletionService(executor);
+    AtomicBoolean aborted = new AtomicBoolean();
+    Throwable failure = null;
+    boolean interrupted = false;
+    int nextSegment = 0;
+    int segmentsInFlight = 0;
+
+    while(nextSegment < segmentLengths.size() || segmentsInFlight > 0) {
+      while(failure == null && !interrupted && segmentsInFlight < maxParallelSegments && nextSegment < segmentLengths.size()) {
+        long position = segmentPositions.get(nextSegment);
+        long length = segmentLengths.get(nextSegment);
+        DataSource upstream = upstreamFactory.createDataSource();
+
+        try {
+          completionService.submit(() -> {
+            readSegment(dataSpec, key, position, length, cache, upstream, maxCacheFileSize, priorityTaskManager, priority, counters, isCanceled, aborted);
+            return null;
+          });
+        } catch (RejectedExecutionException var27) {
+          failure = var27;
+          aborted.set(true);
+          break;
+        }
+
+        ++segmentsInFlight;
+        ++nextSegment;
+      }
+
+      if (segmentsInFlight == 0) {
+        break;
+      }
+
+      Future future;
+      try {
+        future = completionService.take();
+      } catch (InterruptedException var26) {
+        interrupted = true;
+        aborted.set(true);
+        continue;
+      }
+
+      --segmentsInFlight;
+
+      try {
+        future.get();
+      } catch (ExecutionException var25) {
+        if (failure == null) {
+          failure = var25.getCause();
+        }
+
+        aborted.set(true);
+      }
+    }
+
+    if (interrupted) {
+      throw new InterruptedException();
+    } else if (failure instanceof IOException) {
+      throw (IOException)failure;
+    } else if (failure instanceof InterruptedException) {
+      throw (InterruptedException)failure;
+    } else if (failure != null) {
+      throw new IOException(failure);
+    }
+  }
+
+  private static void readSegment(DataSpec dataSpec, String key, long position, long length, Cache cache, DataSource upstream, long maxCacheFileSize, @Nullable PriorityTaskManager priorityTaskManager, int priority, CacheUtil.CachingCounters counters, @Nullable AtomicBoolean isCanceled, AtomicBoolean aborted) throws IOException, InterruptedException {
+    byte[] buffer = new byte[131072];
+    long totalRead = 0L;
+
+    while(totalRead < length) {
+      if (priorityTaskManager != null) {
+        priorityTaskManager.proceed(priority);
+      }
+
+      DataSource dataSource = new TeeDataSource(upstream, new CacheDataSink(cache, maxCacheFileSize));
+
+      try {
+        throwExceptionIfInterruptedOrCancelled(aborted);
+        throwExceptionIfInterruptedOrCancelled(isCanceled);
+        long segmentPosition = position + totalRead;
+        dataSource.open(new DataSpec(dataSpec.uri, dataSpec.httpMethod, dataSpec.httpBody, segmentPosition, dataSpec.position + segmentPosition - dataSpec.absoluteStreamPosition, length - totalRead, key, dataSpec.flags | 2));
+
+        while(totalRead < length) {
+          throwExceptionIfInterruptedOrCancelled(aborted);
+          throwExceptionIfInterruptedOrCancelled(isCanceled);
+          int read = dataSource.read(buffer, 0, (int)Math.min((long)buffer.length, length - totalRead));
+          if (read == -1) {
+            return;
+          }
+
+          totalRead += (long)read;
+          synchronized(counters) {
+            counters.newlyCachedBytes += (long)read;
+          }
+        }
+      } catch (PriorityTooLowException var25) {
+      } finally {
+        Util.closeQuietly(dataSource);
+      }
+    }
+
+  }
+
   private static long readAndDiscard(DataSpec dataSpec, long absoluteStreamPosition, long length, DataSource dataSource, byte[] buffer, PriorityTaskManager priorityTaskManager, int priority, CacheUtil.CachingCounters counters, AtomicBoolean isCanceled) throws IOException, InterruptedException {
     while(true) {
       if (priorityTaskManager != null) {
@@ -15,7 +15,8 @@ final class CachedContent {
   public final int id;
   public final String key;
   private final TreeSet<SimpleCacheSpan> cachedSpans;
-  private DefaultContentMetadata metadata;
+  private final CachedRanges cachedRanges;
+  private volatile DefaultContentMetadata metadata;
   private boolean locked;
 
   public static CachedContent readFromStream(int version, DataInputStream input) throws IOException {
@@ -39,6 +40,7 @@ final class CachedContent {
     this.key = key;
     this.metadata = DefaultContentMetadata.EMPTY;
     this.cachedSpans = new TreeSet();
+    this.cachedRanges = new CachedRanges();
   }
 
   public void writeToStream(DataOutputStream output) throws IOException {
@@ -67,6 +69,7 @@ final class CachedContent {
 
   public void addSpan(SimpleCacheSpan span) {
     this.cachedSpans.add(span);
+    this.cachedRanges.add(span.position, span.position + span.length);
   }
 
   public TreeSet<SimpleCacheSpan> getSpans() {
@@ -85,33 +88,17 @@ final class CachedContent {
   }
 
   public long getCachedBytesLength(long position, long length) {
-    SimpleCacheSpan span = this.getSpan(position);
-    if (span.isHoleSpan()) {
-      return -Math.min(span.isOpenEnded() ? 9223372036854775807L : span.length, length);
-    } else {
-      long queryEndPosition = position + length;
-      long currentEndPosition = span.position + span.length;
-      if (currentEndPosition < queryEndPosition) {
-        Iterator var10 = this.cachedSpans.tailSet(span, false).iterator();
-
-        while(var10.hasNext()) {
-          SimpleCacheSpan next = (SimpleCacheSpan)var10.next();
-          if (next.position > currentEndPosition) {
-            break;
-          }
-
-          currentEndPosition = Math.max(currentEndPosition, next.position + next.length);
-          if (currentEndPosition >= queryEndPosition) {
-            break;
-          }
-        }
-      }
+    return this.cachedRanges.getCachedLength(position, length);
+  }
 
-      return Math.min(currentEndPosition - position, length);
+  public SimpleCacheSpan touch(SimpleCacheSpan cacheSpan, boolean renameFile) throws CacheException {
+    if (!renameFile) {
+      SimpleCacheSpan newCacheSpan = cacheSpan.copyWithLastAccessTimestamp(System.currentTimeMillis());
+      Assertions.checkState(this.cachedSpans.remove(cacheSpan));
+      this.cachedSpans.add(newCacheSpan);
+      return newCacheSpan;
     }
-  }
 
-  public SimpleCacheSpan touch(SimpleCacheSpan cacheSpan) throws CacheException {
     SimpleCacheSpan newCacheSpan = cacheSpan.copyWithUpdatedLastAccessTime(this.id);
     if (!cacheSpan.file.renameTo(newCacheSpan.file)) {
       throw new CacheException("Renaming of " + cacheSpan.file + " to " + newCacheSpan.file + " failed.");
@@ -122,17 +109,57 @@ final class CachedContent {
     }
   }
 
+  public void replaceSpan(SimpleCacheSpan oldSpan, SimpleCacheSpan newSpan) {
+    Assertions.checkState(this.cachedSpans.remove(oldSpan));
+    this.cachedSpans.add(newSpan);
+  }
+
   public boolean isEmpty() {
     return this.cachedSpans.isEmpty();
   }
 
-  public boolean removeSpan(CacheSpan span) {
-    if (this.cachedSpans.remove(span)) {
-      span.file.delete();
-      return true;
+  @Nullable
+  public SimpleCacheSpan removeSpan(CacheSpan span) {
+    SimpleCacheSpan lookupSpan = SimpleCacheSpan.createLookup(span.key, span.position);
+    SimpleCacheSpan removedSpan = (SimpleCacheSpan)this.cachedSpans.floor(lookupSpan);
+    if (removedSpan != null && removedSpan.position == span.position && this.cachedSpans.remove(removedSpan)) {
+      removedSpan.file.delete();
+      this.removeCachedRange(removedSpan);
+      return removedSpan;
     } else {
-      return false;
+      return null;
+    }
+  }
+
+  private void removeCachedRange(SimpleCacheSpan removedSpan) {
+    long start = removedSpan.position;
+    long end = removedSpan.position + removedSpan.length;
+    this.cachedRanges.remove(start, end);
+    long runStart = this.cachedRanges.getRunStart(start);
+    Iterator var7 = this.cachedSpans.headSet(removedSpan, false).descendingIterator();
+
+    while(var7.hasNext()) {
+      SimpleCacheSpan previous = (SimpleCacheSpan)var7.next();
+      if (previous.position < runStart) {
+        break;
+      }
+
+      if (previous.position + previous.length > start) {
+        this.cachedRanges.add(start, Math.min(end, previous.position + previous.length));
+      }
     }
+
+    Iterator var8 = this.cachedSpans.tailSet(removedSpan, false).iterator();
+
+    while(var8.hasNext()) {
+      SimpleCacheSpan next = (SimpleCacheSpan)var8.next();
+      if (next.position >= end) {
+        break;
+      }
+
+      this.cachedRanges.add(next.position, Math.min(end, next.position + next.length));
+    }
+
   }
 
   public int headerHashCode(int version) {
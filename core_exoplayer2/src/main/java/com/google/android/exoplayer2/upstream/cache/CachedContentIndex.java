@@ -7,9 +7,14 @@ import com.google.android.exoplayer2.util.AtomicFile;
 import com.google.android.exoplayer2.util.ReusableBufferedOutputStream;
 import com.google.android.exoplayer2.util.Util;
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -17,29 +22,45 @@ import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
 import javax.crypto.CipherOutputStream;
+import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
 class CachedContentIndex {
   public static final String FILE_NAME = "cached_content_index.exi";
+  public static final String JOURNAL_FILE_NAME = "cached_content_index.exj";
   private static final int VERSION = 2;
+  private static final int JOURNAL_VERSION = 1;
   private static final int FLAG_ENCRYPTED_INDEX = 1;
-  private final HashMap<String, CachedContent> keyToContent;
+  private static final int JOURNAL_RECORD_TYPE_PUT = 1;
+  private static final int JOURNAL_RECORD_TYPE_REMOVE = 2;
+  private static final int MIN_JOURNAL_RECORDS_BEFORE_COMPACTION = 1024;
+  private final ConcurrentHashMap<String, CachedContent> keyToContent;
   private final SparseArray<String> idToKey;
   private final AtomicFile atomicFile;
+  private final File journalFile;
+  private final HashSet<String> dirtyKeys;
+  private final HashSet<Integer> removedIds;
   private final Cipher cipher;
   private final SecretKeySpec secretKeySpec;
   private final boolean encrypt;
-  private boolean changed;
+  private volatile boolean changed;
   private ReusableBufferedOutputStream bufferedOutputStream;
+  private ByteArrayOutputStream journalRecordBuffer;
+  private int snapshotHashCode;
+  private int journalRecordCount;
+  private boolean compactionRequired;
 
   public CachedContentIndex(File cacheDir) {
     this(cacheDir, (byte[])null);
@@ -66,25 +87,58 @@ class CachedContentIndex {
       this.secretKeySpec = null;
     }
 
-    this.keyToContent = new HashMap();
+    this.keyToContent = new ConcurrentHashMap();
     this.idToKey = new SparseArray();
     this.atomicFile = new AtomicFile(new File(cacheDir, "cached_content_index.exi"));
+    this.journalFile = new File(cacheDir, "cached_content_index.exj");
+    this.dirtyKeys = new HashSet();
+    this.removedIds = new HashSet();
+    this.compactionRequired = true;
   }
 
-  public void load() {
+  public static boolean isIndexFile(String fileName) {
+    return fileName.startsWith("cached_content_index.");
+  }
+
+  public synchronized void load() {
     Assertions.checkState(!this.changed);
     if (!this.readFile()) {
       this.atomicFile.delete();
+      this.journalFile.delete();
       this.keyToContent.clear();
       this.idToKey.clear();
+      this.journalRecordCount = 0;
+      this.compactionRequired = true;
+    } else {
+      this.compactionRequired = this.changed;
+      if (!this.readJournal()) {
+        this.compactionRequired = true;
+        this.changed = true;
+      }
     }
 
   }
 
-  public void store() throws CacheException {
+  public synchronized void store() throws CacheException {
     if (this.changed) {
-      this.writeFile();
       this.changed = false;
+
+      try {
+        if (!this.compactionRequired && this.journalRecordCount + this.removedIds.size() + this.dirtyKeys.size() <= Math.max(1024, this.keyToContent.size())) {
+          this.appendJournal();
+        } else {
+          this.writeFile();
+          this.journalFile.delete();
+          this.journalRecordCount = 0;
+          this.compactionRequired = false;
+        }
+
+        this.dirtyKeys.clear();
+        this.removedIds.clear();
+      } catch (CacheException var2) {
+        this.changed = true;
+        throw var2;
+      }
     }
   }
 
@@ -101,25 +155,27 @@ class CachedContentIndex {
     return this.keyToContent.values();
   }
 
-  public int assignIdForKey(String key) {
+  public synchronized int assignIdForKey(String key) {
     return this.getOrAdd(key).id;
   }
 
-  public String getKeyForId(int id) {
+  public synchronized String getKeyForId(int id) {
     return (String)this.idToKey.get(id);
   }
 
-  public void maybeRemove(String key) {
+  public synchronized void maybeRemove(String key) {
     CachedContent cachedContent = (CachedContent)this.keyToContent.get(key);
     if (cachedContent != null && cachedContent.isEmpty() && !cachedContent.isLocked()) {
       this.keyToContent.remove(key);
       this.idToKey.remove(cachedContent.id);
+      this.dirtyKeys.remove(key);
+      this.removedIds.add(cachedContent.id);
       this.changed = true;
     }
 
   }
 
-  public void removeEmpty() {
+  public synchronized void removeEmpty() {
     String[] keys = new String[this.keyToContent.size()];
     this.keyToContent.keySet().toArray(keys);
     String[] var2 = keys;
@@ -139,7 +195,10 @@ class CachedContentIndex {
   public void applyContentMetadataMutations(String key, ContentMetadataMutations mutations) {
     CachedContent cachedContent = this.getOrAdd(key);
     if (cachedContent.applyMetadataMutations(mutations)) {
-      this.changed = true;
+      synchronized(this) {
+        this.dirtyKeys.add(key);
+        this.changed = true;
+      }
     }
 
   }
@@ -195,6 +254,7 @@ class CachedContentIndex {
         fileHashCode = input.readInt();
         boolean isEOF = input.read() == -1;
         if (fileHashCode == hashCode && isEOF) {
+          this.snapshotHashCode = hashCode;
           return true;
         } else {
           boolean var9 = false;
@@ -243,18 +303,20 @@ class CachedContentIndex {
         output = new DataOutputStream(new CipherOutputStream(this.bufferedOutputStream, this.cipher));
       }
 
-      output.writeInt(this.keyToContent.size());
+      CachedContent[] cachedContents = (CachedContent[])this.keyToContent.values().toArray(new CachedContent[0]);
+      output.writeInt(cachedContents.length);
       int hashCode = 0;
 
-      CachedContent cachedContent;
-      for(Iterator var15 = this.keyToContent.values().iterator(); var15.hasNext(); hashCode += cachedContent.headerHashCode(2)) {
-        cachedContent = (CachedContent)var15.next();
+      for(int i = 0; i < cachedContents.length; ++i) {
+        CachedContent cachedContent = cachedContents[i];
         cachedContent.writeToStream(output);
+        hashCode += cachedContent.headerHashCode(2);
       }
 
       output.writeInt(hashCode);
       this.atomicFile.endWrite(output);
       output = null;
+      this.snapshotHashCode = hashCode;
     } catch (IOException var12) {
       throw new CacheException(var12);
     } finally {
@@ -262,14 +324,202 @@ class CachedContentIndex {
     }
   }
 
-  private CachedContent addNew(String key) {
+  private synchronized CachedContent addNew(String key) {
+    CachedContent existingContent = (CachedContent)this.keyToContent.get(key);
+    if (existingContent != null) {
+      return existingContent;
+    }
+
     int id = getNewId(this.idToKey);
     CachedContent cachedContent = new CachedContent(id, key);
     this.add(cachedContent);
+    this.dirtyKeys.add(key);
     this.changed = true;
     return cachedContent;
   }
 
+  private boolean readJournal() {
+    if (!this.journalFile.exists()) {
+      return true;
+    } else {
+      DataInputStream input = null;
+
+      try {
+        input = new DataInputStream(new BufferedInputStream(new FileInputStream(this.journalFile)));
+        int version = input.readInt();
+        int flags = input.readInt();
+        int baseHashCode = input.readInt();
+        if (version == 1 && baseHashCode == this.snapshotHashCode && ((flags & 1) == 0 || this.cipher != null)) {
+          if ((flags & 1) != 0 != this.encrypt) {
+            this.changed = true;
+            this.compactionRequired = true;
+          }
+
+          CRC32 crc = new CRC32();
+
+          while(true) {
+            int firstByte = input.read();
+            if (firstByte == -1) {
+              return true;
+            }
+
+            int length = firstByte << 24 | input.readUnsignedByte() << 16 | input.readUnsignedByte() << 8 | input.readUnsignedByte();
+            if (length <= 0) {
+              return false;
+            }
+
+            byte[] record = new byte[length];
+            input.readFully(record);
+            crc.reset();
+            crc.update(record, 0, length);
+            if (input.readInt() != (int)crc.getValue()) {
+              return false;
+            }
+
+            if ((flags & 1) != 0) {
+              record = this.decryptJournalRecord(record);
+            }
+
+            this.replayJournalRecord(new DataInputStream(new ByteArrayInputStream(record)));
+            ++this.journalRecordCount;
+          }
+        } else {
+          this.journalFile.delete();
+          return true;
+        }
+      } catch (IOException var15) {
+        return false;
+      } finally {
+        Util.closeQuietly(input);
+      }
+    }
+  }
+
+  private void replayJournalRecord(DataInputStream input) throws IOException {
+    int type = input.readByte();
+    if (type == 1) {
+      CachedContent cachedContent = CachedContent.readFromStream(2, input);
+      CachedContent oldContent = (CachedContent)this.keyToContent.get(cachedContent.key);
+      if (oldContent != null) {
+        this.idToKey.remove(oldContent.id);
+      }
+
+      String oldKey = (String)this.idToKey.get(cachedContent.id);
+      if (oldKey != null) {
+        this.keyToContent.remove(oldKey);
+      }
+
+      this.add(cachedContent);
+    } else if (type == 2) {
+      int id = input.readInt();
+      String key = (String)this.idToKey.get(id);
+      if (key != null) {
+        this.keyToContent.remove(key);
+        this.idToKey.remove(id);
+      }
+    } else {
+      throw new IOException("Unexpected journal record type: " + type);
+    }
+  }
+
+  private void appendJournal() throws CacheException {
+    boolean writeHeader = this.journalRecordCount == 0 || !this.journalFile.exists();
+    FileOutputStream fileOutputStream = null;
+
+    try {
+      fileOutputStream = new FileOutputStream(this.journalFile, !writeHeader);
+      DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutputStream));
+      if (writeHeader) {
+        this.journalRecordCount = 0;
+        output.writeInt(1);
+        output.writeInt(this.encrypt ? 1 : 0);
+        output.writeInt(this.snapshotHashCode);
+      }
+
+      if (this.journalRecordBuffer == null) {
+        this.journalRecordBuffer = new ByteArrayOutputStream();
+      }
+
+      DataOutputStream recordOutput = new DataOutputStream(this.journalRecordBuffer);
+      Iterator var5 = this.removedIds.iterator();
+
+      while(var5.hasNext()) {
+        int id = (Integer)var5.next();
+        this.journalRecordBuffer.reset();
+        recordOutput.writeByte(2);
+        recordOutput.writeInt(id);
+        this.writeJournalRecord(output, this.journalRecordBuffer.toByteArray());
+      }
+
+      var5 = this.dirtyKeys.iterator();
+
+      while(var5.hasNext()) {
+        String key = (String)var5.next();
+        CachedContent cachedContent = (CachedContent)this.keyToContent.get(key);
+        if (cachedContent != null) {
+          this.journalRecordBuffer.reset();
+          recordOutput.writeByte(1);
+          cachedContent.writeToStream(recordOutput);
+          this.writeJournalRecord(output, this.journalRecordBuffer.toByteArray());
+        }
+      }
+
+      output.flush();
+      fileOutputStream.getFD().sync();
+    } catch (IOException var10) {
+      this.compactionRequired = true;
+      throw new CacheException(var10);
+    } finally {
+      Util.closeQuietly(fileOutputStream);
+    }
+  }
+
+  private void writeJournalRecord(DataOutputStream output, byte[] record) throws IOException {
+    if (this.encrypt) {
+      record = this.encryptJournalRecord(record);
+    }
+
+    CRC32 crc = new CRC32();
+    crc.update(record, 0, record.length);
+    output.writeInt(record.length);
+    output.write(record);
+    output.writeInt((int)crc.getValue());
+    ++this.journalRecordCount;
+  }
+
+  private byte[] encryptJournalRecord(byte[] record) throws IOException {
+    byte[] initializationVector = new byte[16];
+    (new Random()).nextBytes(initializationVector);
+
+    try {
+      this.cipher.init(1, this.secretKeySpec, new IvParameterSpec(initializationVector));
+      byte[] encryptedRecord = this.cipher.doFinal(record);
+      byte[] result = new byte[16 + encryptedRecord.length];
+      System.arraycopy(initializationVector, 0, result, 0, 16);
+      System.arraycopy(encryptedRecord, 0, result, 16, encryptedRecord.length);
+      return result;
+    } catch (InvalidAlgorithmParameterException | InvalidKeyException var5) {
+      throw new IllegalStateException(var5);
+    } catch (BadPaddingException | IllegalBlockSizeException var6) {
+      throw new IOException(var6);
+    }
+  }
+
+  private byte[] decryptJournalRecord(byte[] record) throws IOException {
+    if (record.length <= 16) {
+      throw new IOException("Truncated journal record");
+    } else {
+      try {
+        this.cipher.init(2, this.secretKeySpec, new IvParameterSpec(record, 0, 16));
+        return this.cipher.doFinal(record, 16, record.length - 16);
+      } catch (InvalidAlgorithmParameterException | InvalidKeyException var3) {
+        throw new IllegalStateException(var3);
+      } catch (BadPaddingException | IllegalBlockSizeException var4) {
+        throw new IOException(var4);
+      }
+    }
+  }
+
   private void add(CachedContent cachedContent) {
     this.keyToContent.put(cachedContent.key, cachedContent);
     this.idToKey.put(cachedContent.id, cachedContent.key);
@@ -0,0 +1,110 @@
+package com.google.android.exoplayer2.upstream.cache;
+
+import java.util.Arrays;
+
+final class CachedRanges {
+  private static final int INITIAL_CAPACITY = 8;
+  private long[] starts = new long[8];
+  private long[] ends = new long[8];
+  private int size;
+
+  public CachedRanges() {
+  }
+
+  public int size() {
+    return this.size;
+  }
+
+  public long getCachedLength(long position, long length) {
+    int index = this.floorIndex(position);
+    if (index >= 0 && this.ends[index] > position) {
+      return Math.min(this.ends[index] - position, length);
+    } else {
+      int nextIndex = index + 1;
+      return nextIndex < this.size ? -Math.min(this.starts[nextIndex] - position, length) : -length;
+    }
+  }
+
+  public long getRunStart(long end) {
+    int index = this.floorIndex(end - 1L);
+    return index >= 0 && this.ends[index] == end ? this.starts[index] : end;
+  }
+
+  public void add(long start, long end) {
+    if (end > start) {
+      int first = this.floorIndex(start);
+      if (first < 0 || this.ends[first] < start) {
+        ++first;
+      }
+
+      int last = this.floorIndex(end);
+      if (first <= last) {
+        start = Math.min(start, this.starts[first]);
+        end = Math.max(end, this.ends[last]);
+        this.starts[first] = start;
+        this.ends[first] = end;
+        this.removeRanges(first + 1, last + 1);
+      } else {
+        this.insertRange(first, start, end);
+      }
+
+    }
+  }
+
+  public void remove(long start, long end) {
+    if (end > start) {
+      int index = this.floorIndex(start);
+      if (index < 0 || this.ends[index] <= start) {
+        ++index;
+      }
+
+      while(index < this.size && this.starts[index] < end) {
+        long rangeStart = this.starts[index];
+        long rangeEnd = this.ends[index];
+        if (rangeStart < start) {
+          this.ends[index] = start;
+          if (rangeEnd > end) {
+            this.insertRange(index + 1, end, rangeEnd);
+            return;
+          }
+
+          ++index;
+        } else if (rangeEnd > end) {
+          this.starts[index] = end;
+          return;
+        } else {
+          this.removeRanges(index, index + 1);
+        }
+      }
+
+    }
+  }
+
+  private int floorIndex(long position) {
+    int index = Arrays.binarySearch(this.starts, 0, this.size, position);
+    return index >= 0 ? index : -index - 2;
+  }
+
+  private void insertRange(int index, long start, long end) {
+    if (this.size == this.starts.length) {
+      this.starts = Arrays.copyOf(this.starts, this.size * 2);
+      this.ends = Arrays.copyOf(this.ends, this.size * 2);
+    }
+
+    System.arraycopy(this.starts, index, this.starts, index + 1, this.size - index);
+    System.arraycopy(this.ends, index, this.ends, index + 1, this.size - index);
+    this.starts[index] = start;
+    this.ends[index] = end;
+    ++this.size;
+  }
+
+  private void removeRanges(int fromIndex, int toIndex) {
+    int count = toIndex - fromIndex;
+    if (count > 0) {
+      System.arraycopy(this.starts, toIndex, this.starts, fromIndex, this.size - toIndex);
+      System.arraycopy(this.ends, toIndex, this.ends, fromIndex, this.size - toIndex);
+      this.size -= count;
+    }
+
+  }
+}
@@ -0,0 +1,82 @@
+package com.google.android.exoplayer2.upstream.cache;
+
+final class FrequencySketch {
+  private static final int DEPTH = 4;
+  private static final int MIN_WIDTH = 256;
+  private static final int MAX_WIDTH = 4194304;
+  private static final int MAX_COUNT = 15;
+  private static final int SAMPLE_FACTOR = 10;
+  private static final int[] SEEDS = new int[]{-1640531535, -2048144777, -1028477379, 668265263};
+  private byte[] table;
+  private int widthMask;
+  private int sampleSize;
+  private int additions;
+
+  public FrequencySketch(int expectedEntries) {
+    this.allocate(expectedEntries);
+  }
+
+  public void ensureCapacity(int expectedEntries) {
+    if (expectedEntries > this.widthMask + 1 && this.widthMask + 1 < 4194304) {
+      this.allocate(expectedEntries);
+    }
+
+  }
+
+  public int frequency(String key, long position) {
+    int hash = hash(key, position);
+    int frequency = 15;
+
+    for(int i = 0; i < 4; ++i) {
+      frequency = Math.min(frequency, this.table[this.indexOf(hash, i)]);
+    }
+
+    return frequency;
+  }
+
+  public void increment(String key, long position) {
+    int hash = hash(key, position);
+    boolean added = false;
+
+    for(int i = 0; i < 4; ++i) {
+      int index = this.indexOf(hash, i);
+      if (this.table[index] < 15) {
+        ++this.table[index];
+        added = true;
+      }
+    }
+
+    if (added && ++this.additions >= this.sampleSize) {
+      this.halve();
+    }
+
+  }
+
+  private void halve() {
+    for(int i = 0; i < this.table.length; ++i) {
+      this.table[i] = (byte)(this.table[i] >>> 1);
+    }
+
+    this.additions /= 2;
+  }
+
+  private void allocate(int expectedEntries) {
+    int width = Integer.highestOneBit(Math.max(256, Math.min(4194304, expectedEntries)) - 1) << 1;
+    this.table = new byte[width * 4];
+    this.widthMask = width - 1;
+    this.sampleSize = width * 10;
+    this.additions = 0;
+  }
+
+  private int indexOf(int hash, int row) {
+    int h = hash * SEEDS[row];
+    h ^= h >>> 17;
+    return row * (this.widthMask + 1) + (h & this.widthMask);
+  }
+
+  private static int hash(String key, long position) {
+    int h = key.hashCode() * 31 + (int)(position ^ position >>> 32);
+    h *= -1640531535;
+    return h ^ h >>> 16;
+  }
+}
@@ -8,24 +8,42 @@ import com.google.android.exoplayer2.upstream.cache.Cache.Listener;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Log;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.NavigableSet;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 public final class SimpleCache implements Cache {
   private static final String TAG = "SimpleCache";
+  private static final int LOCK_STRIPE_COUNT = 64;
+  private static final long MANIFEST_STORE_INTERVAL_MS = 5000L;
   private static final HashSet<File> lockedCacheDirs = new HashSet();
   private static boolean cacheFolderLockingDisabled;
   private final File cacheDir;
   private final CacheEvictor evictor;
   private final CachedContentIndex index;
-  private final HashMap<String, ArrayList<Listener>> listeners;
-  private long totalSpace;
-  private boolean released;
+  private final SpanManifest manifest;
+  private final boolean stableSpanFileNames;
+  private final ConcurrentHashMap<String, ArrayList<Listener>> listeners;
+  private final Object[] keyLocks;
+  private final Object evictorLock;
+  private final ConcurrentLinkedQueue<SimpleCache.EvictorEvent> pendingEvictorEvents;
+  private final ConditionVariable initializationCondition;
+  private final AtomicLong totalSpace;
+  @Nullable
+  private volatile Runnable compactionCopyListener;
+  private volatile long lastManifestStoreTimeMs;
+  private volatile boolean initialized;
+  private volatile boolean released;
 
   public static synchronized boolean isCacheFolderLocked(File cacheFolder) {
     return lockedCacheDirs.contains(cacheFolder.getAbsoluteFile());
@@ -47,37 +65,68 @@ public final class SimpleCache implements Cache {
   }
 
   public SimpleCache(File cacheDir, CacheEvictor evictor, byte[] secretKey, boolean encrypt) {
-    this(cacheDir, evictor, new CachedContentIndex(cacheDir, secretKey, encrypt));
+    this(cacheDir, evictor, secretKey, encrypt, false);
+  }
+
+  public SimpleCache(File cacheDir, CacheEvictor evictor, byte[] secretKey, boolean encrypt, boolean stableSpanFileNames) {
+    this(cacheDir, evictor, new CachedContentIndex(cacheDir, secretKey, encrypt), stableSpanFileNames);
   }
 
   SimpleCache(File cacheDir, CacheEvictor evictor, CachedContentIndex index) {
+    this(cacheDir, evictor, index, false);
+  }
+
+  SimpleCache(File cacheDir, CacheEvictor evictor, CachedContentIndex index, boolean stableSpanFileNames) {
     if (!lockFolder(cacheDir)) {
       throw new IllegalStateException("Another SimpleCache instance uses the folder: " + cacheDir);
     } else {
       this.cacheDir = cacheDir;
       this.evictor = evictor;
       this.index = index;
-      this.listeners = new HashMap();
-      final ConditionVariable conditionVariable = new ConditionVariable();
+      this.manifest = new SpanManifest(cacheDir);
+      this.stableSpanFileNames = stableSpanFileNames;
+      this.listeners = new ConcurrentHashMap();
+      this.keyLocks = new Object[LOCK_STRIPE_COUNT];
+      for(int i = 0; i < LOCK_STRIPE_COUNT; ++i) {
+        this.keyLocks[i] = new Object();
+      }
+
+      this.evictorLock = new Object();
+      this.pendingEvictorEvents = new ConcurrentLinkedQueue();
+      this.initializationCondition = new ConditionVariable();
+      this.totalSpace = new AtomicLong();
       (new Thread("SimpleCache.initialize()") {
         public void run() {
-          synchronized(SimpleCache.this) {
-            conditionVariable.open();
-            SimpleCache.this.initialize();
+          long initializationStartTimeMs = System.currentTimeMillis();
+          boolean initializedFromManifest = false;
+          synchronized(SimpleCache.this.evictorLock) {
+            try {
+              initializedFromManifest = SimpleCache.this.initialize();
+            } finally {
+              SimpleCache.this.initialized = true;
+              SimpleCache.this.initializationCondition.open();
+            }
+
+            SimpleCache.this.dispatchPendingEvictorEvents();
             SimpleCache.this.evictor.onCacheInitialized();
           }
+
+          if (initializedFromManifest) {
+            SimpleCache.this.reconcileWithCacheDir(initializationStartTimeMs);
+          }
         }
       }).start();
-      conditionVariable.block();
     }
   }
 
   public synchronized void release() throws CacheException {
     if (!this.released) {
+      this.blockUntilInitialized();
       this.listeners.clear();
 
       try {
         this.removeStaleSpansAndCachedContents();
+        this.maybeStoreManifest(true);
       } finally {
         unlockFolder(this.cacheDir);
         this.released = true;
@@ -86,25 +135,30 @@ public final class SimpleCache implements Cache {
     }
   }
 
-  public synchronized NavigableSet<CacheSpan> addListener(String key, Listener listener) {
+  public NavigableSet<CacheSpan> addListener(String key, Listener listener) {
+    this.blockUntilInitialized();
     Assertions.checkState(!this.released);
-    ArrayList<Listener> listenersForKey = (ArrayList)this.listeners.get(key);
-    if (listenersForKey == null) {
-      listenersForKey = new ArrayList();
-      this.listeners.put(key, listenersForKey);
-    }
+    synchronized(this.getLockForKey(key)) {
+      ArrayList<Listener> listenersForKey = (ArrayList)this.listeners.get(key);
+      if (listenersForKey == null) {
+        listenersForKey = new ArrayList();
+        this.listeners.put(key, listenersForKey);
+      }
 
-    listenersForKey.add(listener);
-    return this.getCachedSpans(key);
+      listenersForKey.add(listener);
+      return this.getCachedSpansLocked(key);
+    }
   }
 
-  public synchronized void removeListener(String key, Listener listener) {
+  public void removeListener(String key, Listener listener) {
     if (!this.released) {
-      ArrayList<Listener> listenersForKey = (ArrayList)this.listeners.get(key);
-      if (listenersForKey != null) {
-        listenersForKey.remove(listener);
-        if (listenersForKey.isEmpty()) {
-          this.listeners.remove(key);
+      synchronized(this.getLockForKey(key)) {
+        ArrayList<Listener> listenersForKey = (ArrayList)this.listeners.get(key);
+        if (listenersForKey != null) {
+          listenersForKey.remove(listener);
+          if (listenersForKey.isEmpty()) {
+            this.listeners.remove(key);
+          }
         }
       }
 
@@ -112,170 +166,308 @@ public final class SimpleCache implements Cache {
   }
 
   @NonNull
-  public synchronized NavigableSet<CacheSpan> getCachedSpans(String key) {
+  public NavigableSet<CacheSpan> getCachedSpans(String key) {
+    this.blockUntilInitialized();
     Assertions.checkState(!this.released);
-    CachedContent cachedContent = this.index.get(key);
-    return cachedContent != null && !cachedContent.isEmpty() ? new TreeSet(cachedContent.getSpans()) : new TreeSet();
+    synchronized(this.getLockForKey(key)) {
+      return this.getCachedSpansLocked(key);
+    }
   }
 
-  public synchronized Set<String> getKeys() {
+  public Set<String> getKeys() {
+    this.blockUntilInitialized();
     Assertions.checkState(!this.released);
     return new HashSet(this.index.getKeys());
   }
 
-  public synchronized long getCacheSpace() {
+  public long getCacheSpace() {
+    this.blockUntilInitialized();
     Assertions.checkState(!this.released);
-    return this.totalSpace;
+    return this.totalSpace.get();
   }
 
-  public synchronized SimpleCacheSpan startReadWrite(String key, long position) throws InterruptedException, CacheException {
+  public SimpleCacheSpan startReadWrite(String key, long position) throws InterruptedException, CacheException {
+    Object lock = this.getLockForKey(key);
     while(true) {
       SimpleCacheSpan span = this.startReadWriteNonBlocking(key, position);
       if (span != null) {
         return span;
       }
 
-      this.wait();
+      synchronized(lock) {
+        CachedContent cachedContent = this.index.get(key);
+        if (cachedContent != null && cachedContent.isLocked()) {
+          lock.wait();
+        }
+      }
     }
   }
 
   @Nullable
-  public synchronized SimpleCacheSpan startReadWriteNonBlocking(String key, long position) throws CacheException {
+  public SimpleCacheSpan startReadWriteNonBlocking(String key, long position) throws CacheException {
+    this.blockUntilInitialized();
     Assertions.checkState(!this.released);
-    SimpleCacheSpan cacheSpan = this.getSpan(key, position);
-    if (cacheSpan.isCached) {
-      try {
-        SimpleCacheSpan newCacheSpan = this.index.get(key).touch(cacheSpan);
-        this.notifySpanTouched(cacheSpan, newCacheSpan);
-        return newCacheSpan;
-      } catch (CacheException var6) {
-        return cacheSpan;
-      }
-    } else {
-      CachedContent cachedContent = this.index.getOrAdd(key);
-      if (!cachedContent.isLocked()) {
-        cachedContent.setLocked(true);
-        return cacheSpan;
-      } else {
-        return null;
+
+    try {
+      synchronized(this.getLockForKey(key)) {
+        SimpleCacheSpan cacheSpan = this.getSpan(key, position);
+        if (cacheSpan.isCached) {
+          try {
+            CachedContent cachedContent = this.index.get(key);
+            SimpleCacheSpan newCacheSpan = cachedContent.touch(cacheSpan, !this.stableSpanFileNames);
+            this.manifest.touch(cachedContent.id, newCacheSpan.position, newCacheSpan.lastAccessTimestamp, !this.stableSpanFileNames);
+            this.notifySpanTouched(cacheSpan, newCacheSpan);
+            return newCacheSpan;
+          } catch (CacheException var8) {
+            return cacheSpan;
+          }
+        } else {
+          CachedContent cachedContent = this.index.getOrAdd(key);
+          if (!cachedContent.isLocked()) {
+            cachedContent.setLocked(true);
+            return cacheSpan;
+          } else {
+            return null;
+          }
+        }
       }
+    } finally {
+      this.flushEvictorEvents();
+      this.maybeStoreManifest(false);
     }
   }
 
-  public synchronized File startFile(String key, long position, long maxLength) throws CacheException {
+  public File startFile(String key, long position, long maxLength) throws CacheException {
+    this.blockUntilInitialized();
     Assertions.checkState(!this.released);
-    CachedContent cachedContent = this.index.get(key);
-    Assertions.checkNotNull(cachedContent);
-    Assertions.checkState(cachedContent.isLocked());
+    CachedContent cachedContent;
+    synchronized(this.getLockForKey(key)) {
+      cachedContent = this.index.get(key);
+      Assertions.checkNotNull(cachedContent);
+      Assertions.checkState(cachedContent.isLocked());
+    }
+
     if (!this.cacheDir.exists()) {
       this.cacheDir.mkdirs();
       this.removeStaleSpansAndCachedContents();
     }
 
-    this.evictor.onStartFile(this, key, position, maxLength);
+    synchronized(this.evictorLock) {
+      this.dispatchPendingEvictorEvents();
+      this.evictor.onStartFile(this, key, position, maxLength);
+    }
+
     return SimpleCacheSpan.getCacheFile(this.cacheDir, cachedContent.id, position, System.currentTimeMillis());
   }
 
-  public synchronized void commitFile(File file) throws CacheException {
+  public void commitFile(File file) throws CacheException {
+    this.blockUntilInitialized();
     Assertions.checkState(!this.released);
     SimpleCacheSpan span = SimpleCacheSpan.createCacheEntry(file, this.index);
     Assertions.checkState(span != null);
-    CachedContent cachedContent = this.index.get(span.key);
-    Assertions.checkNotNull(cachedContent);
-    Assertions.checkState(cachedContent.isLocked());
-    if (file.exists()) {
+    Object lock = this.getLockForKey(span.key);
+    synchronized(lock) {
+      CachedContent cachedContent = this.index.get(span.key);
+      Assertions.checkNotNull(cachedContent);
+      Assertions.checkState(cachedContent.isLocked());
+      if (!file.exists()) {
+        return;
+      }
+
       if (file.length() == 0L) {
         file.delete();
-      } else {
-        long length = ContentMetadataInternal.getContentLength(cachedContent.getMetadata());
-        if (length != -1L) {
-          Assertions.checkState(span.position + span.length <= length);
-        }
+        return;
+      }
 
-        this.addSpan(span);
-        this.index.store();
-        this.notifyAll();
+      long length = ContentMetadataInternal.getContentLength(cachedContent.getMetadata());
+      if (length != -1L) {
+        Assertions.checkState(span.position + span.length <= length);
       }
+
+      this.addSpan(span);
+      lock.notifyAll();
+    }
+
+    try {
+      this.index.store();
+      this.maybeStoreManifest(false);
+    } finally {
+      this.flushEvictorEvents();
     }
   }
 
-  public synchronized void releaseHoleSpan(CacheSpan holeSpan) {
+  public void releaseHoleSpan(CacheSpan holeSpan) {
     Assertions.checkState(!this.released);
-    CachedContent cachedContent = this.index.get(holeSpan.key);
-    Assertions.checkNotNull(cachedContent);
-    Assertions.checkState(cachedContent.isLocked());
-    cachedContent.setLocked(false);
-    this.index.maybeRemove(cachedContent.key);
-    this.notifyAll();
+    Object lock = this.getLockForKey(holeSpan.key);
+    synchronized(lock) {
+      CachedContent cachedContent = this.index.get(holeSpan.key);
+      Assertions.checkNotNull(cachedContent);
+      Assertions.checkState(cachedContent.isLocked());
+      cachedContent.setLocked(false);
+      this.index.maybeRemove(cachedContent.key);
+      lock.notifyAll();
+    }
   }
 
-  public synchronized void removeSpan(CacheSpan span) throws CacheException {
+  public void removeSpan(CacheSpan span) throws CacheException {
     Assertions.checkState(!this.released);
-    this.removeSpan(span, true);
+
+    try {
+      boolean removed;
+      synchronized(this.getLockForKey(span.key)) {
+        removed = this.removeSpan(span, true);
+      }
+
+      if (removed) {
+        this.index.store();
+        this.maybeStoreManifest(false);
+      }
+    } finally {
+      this.flushEvictorEvents();
+    }
   }
 
-  public synchronized boolean isCached(String key, long position, long length) {
+  public boolean isCached(String key, long position, long length) {
+    this.blockUntilInitialized();
     Assertions.checkState(!this.released);
-    CachedContent cachedContent = this.index.get(key);
-    return cachedContent != null && cachedContent.getCachedBytesLength(position, length) >= length;
+    synchronized(this.getLockForKey(key)) {
+      CachedContent cachedContent = this.index.get(key);
+      return cachedContent != null && cachedContent.getCachedBytesLength(position, length) >= length;
+    }
   }
 
-  public synchronized long getCachedLength(String key, long position, long length) {
+  public long getCachedLength(String key, long position, long length) {
+    this.blockUntilInitialized();
     Assertions.checkState(!this.released);
-    CachedContent cachedContent = this.index.get(key);
-    return cachedContent != null ? cachedContent.getCachedBytesLength(position, length) : -length;
+    synchronized(this.getLockForKey(key)) {
+      CachedContent cachedContent = this.index.get(key);
+      return cachedContent != null ? cachedContent.getCachedBytesLength(position, length) : -length;
+    }
   }
 
-  public synchronized void setContentLength(String key, long length) throws CacheException {
+  public void setContentLength(String key, long length) throws CacheException {
     ContentMetadataMutations mutations = new ContentMetadataMutations();
     ContentMetadataInternal.setContentLength(mutations, length);
     this.applyContentMetadataMutations(key, mutations);
   }
 
-  public synchronized long getContentLength(String key) {
+  public long getContentLength(String key) {
     return ContentMetadataInternal.getContentLength(this.getContentMetadata(key));
   }
 
-  public synchronized void applyContentMetadataMutations(String key, ContentMetadataMutations mutations) throws CacheException {
+  public void applyContentMetadataMutations(String key, ContentMetadataMutations mutations) throws CacheException {
+    this.blockUntilInitialized();
     Assertions.checkState(!this.released);
-    this.index.applyContentMetadataMutations(key, mutations);
+    synchronized(this.getLockForKey(key)) {
+      this.index.applyContentMetadataMutations(key, mutations);
+    }
+
     this.index.store();
   }
 
-  public synchronized ContentMetadata getContentMetadata(String key) {
+  public ContentMetadata getContentMetadata(String key) {
+    this.blockUntilInitialized();
     Assertions.checkState(!this.released);
     return this.index.getContentMetadata(key);
   }
 
-  private SimpleCacheSpan getSpan(String key, long position) throws CacheException {
+  public boolean compact(long maxCompactedFileSize, long timeBudgetMs) throws CacheException {
+    this.blockUntilInitialized();
+    Assertions.checkState(!this.released);
+    long deadlineMs = System.currentTimeMillis() + timeBudgetMs;
+    Iterator var6 = this.index.getKeys().iterator();
+
+    while(var6.hasNext()) {
+      String key = (String)var6.next();
+
+      do {
+        if (this.released || System.currentTimeMillis() >= deadlineMs) {
+          return true;
+        }
+      } while(this.compactNextRun(key, maxCompactedFileSize));
+    }
+
+    return false;
+  }
+
+  void setCompactionCopyListener(@Nullable Runnable compactionCopyListener) {
+    this.compactionCopyListener = compactionCopyListener;
+  }
+
+  private void blockUntilInitialized() {
+    if (!this.initialized) {
+      this.initializationCondition.block();
+    }
+
+  }
+
+  private void maybeStoreManifest(boolean force) {
+    if (this.manifest.isDirty()) {
+      long nowMs = System.currentTimeMillis();
+      if (force || nowMs - this.lastManifestStoreTimeMs >= 5000L) {
+        this.lastManifestStoreTimeMs = nowMs;
+
+        try {
+          this.manifest.store();
+        } catch (CacheException var5) {
+          Log.e("SimpleCache", "Storing span manifest failed", var5);
+        }
+      }
+    }
+
+  }
+
+  private Object getLockForKey(String key) {
+    int hash = key.hashCode();
+    hash ^= hash >>> 16;
+    return this.keyLocks[hash & LOCK_STRIPE_COUNT - 1];
+  }
+
+  private NavigableSet<CacheSpan> getCachedSpansLocked(String key) {
+    CachedContent cachedContent = this.index.get(key);
+    return cachedContent != null && !cachedContent.isEmpty() ? new TreeSet(cachedContent.getSpans()) : new TreeSet();
+  }
+
+  private SimpleCacheSpan getSpan(String key, long position) {
     CachedContent cachedContent = this.index.get(key);
     if (cachedContent == null) {
       return SimpleCacheSpan.createOpenHole(key, position);
     } else {
       while(true) {
         SimpleCacheSpan span = cachedContent.getSpan(position);
-        if (!span.isCached || span.file.exists()) {
+        if (!span.isCached || span.file.length() == span.length) {
           return span;
         }
 
-        this.removeStaleSpansAndCachedContents();
+        this.removeStaleSpans(cachedContent);
       }
     }
   }
 
-  private void initialize() {
+  private boolean initialize() {
     if (!this.cacheDir.exists()) {
       this.cacheDir.mkdirs();
+      return false;
     } else {
       this.index.load();
-      File[] files = this.cacheDir.listFiles();
-      if (files != null) {
-        File[] var2 = files;
-        int var3 = files.length;
-
-        for(int var4 = 0; var4 < var3; ++var4) {
-          File file = var2[var4];
-          if (!file.getName().equals("cached_content_index.exi")) {
+      boolean manifestLoaded = this.manifest.load();
+      if (manifestLoaded) {
+        ArrayList<SimpleCacheSpan> spans = this.manifest.createSpans(this.cacheDir, this.index);
+        for(int i = 0; i < spans.size(); ++i) {
+          this.addSpan((SimpleCacheSpan)spans.get(i));
+        }
+      } else {
+        File[] files = this.cacheDir.listFiles();
+        if (files == null) {
+          return false;
+        }
+
+        File[] var3 = files;
+        int var4 = files.length;
+
+        for(int var5 = 0; var5 < var4; ++var5) {
+          File file = var3[var5];
+          if (!CachedContentIndex.isIndexFile(file.getName())) {
             SimpleCacheSpan span = file.length() > 0L ? SimpleCacheSpan.createCacheEntry(file, this.index) : null;
             if (span != null) {
               this.addSpan(span);
@@ -284,55 +476,288 @@ public final class SimpleCache implements Cache {
             }
           }
         }
+      }
 
-        this.index.removeEmpty();
+      this.index.removeEmpty();
 
-        try {
-          this.index.store();
-        } catch (CacheException var7) {
-          Log.e("SimpleCache", "Storing index file failed", var7);
+      try {
+        this.index.store();
+      } catch (CacheException var7) {
+        Log.e("SimpleCache", "Storing index file failed", var7);
+      }
+
+      this.maybeStoreManifest(true);
+      return manifestLoaded;
+    }
+  }
+
+  private void reconcileWithCacheDir(long initializationStartTimeMs) {
+    File[] files = this.cacheDir.listFiles();
+    if (files != null && !this.released) {
+      HashSet<String> fileNames = new HashSet();
+      File[] var4 = files;
+      int var5 = files.length;
+
+      for(int var6 = 0; var6 < var5 && !this.released; ++var6) {
+        File file = var4[var6];
+        String fileName = file.getName();
+        fileNames.add(fileName);
+        if (!CachedContentIndex.isIndexFile(fileName)) {
+          SimpleCacheSpan span = file.length() > 0L ? SimpleCacheSpan.createCacheEntry(file, this.index) : null;
+          if (span == null) {
+            if (file.lastModified() < initializationStartTimeMs) {
+              file.delete();
+            }
+          } else if (span.lastAccessTimestamp < initializationStartTimeMs) {
+            this.maybeAdoptSpan(span);
+          }
+        }
+      }
+
+      Iterator var10 = this.index.getAll().iterator();
+
+      while(var10.hasNext() && !this.released) {
+        CachedContent cachedContent = (CachedContent)var10.next();
+        synchronized(this.getLockForKey(cachedContent.key)) {
+          ArrayList<CacheSpan> spansToBeRemoved = new ArrayList();
+          Iterator var8 = cachedContent.getSpans().iterator();
+
+          while(var8.hasNext()) {
+            CacheSpan span = (CacheSpan)var8.next();
+            if (!fileNames.contains(span.file.getName()) && !span.file.exists()) {
+              spansToBeRemoved.add(span);
+            }
+          }
+
+          for(int i = 0; i < spansToBeRemoved.size(); ++i) {
+            this.removeSpan((CacheSpan)spansToBeRemoved.get(i), true);
+          }
+        }
+      }
+
+      try {
+        this.index.store();
+      } catch (CacheException var12) {
+        Log.e("SimpleCache", "Storing index file failed", var12);
+      } finally {
+        this.flushEvictorEvents();
+      }
+
+      this.maybeStoreManifest(false);
+    }
+  }
+
+  private void maybeAdoptSpan(SimpleCacheSpan span) {
+    synchronized(this.getLockForKey(span.key)) {
+      CachedContent cachedContent = this.index.get(span.key);
+      if (cachedContent != null && !cachedContent.isLocked()) {
+        SimpleCacheSpan existingSpan = cachedContent.getSpan(span.position);
+        if (existingSpan.isHoleSpan()) {
+          if (existingSpan.isOpenEnded() || existingSpan.length >= span.length) {
+            this.addSpan(span);
+          } else {
+            span.file.delete();
+          }
+        } else if (!span.file.equals(existingSpan.file)) {
+          if (existingSpan.position == span.position && existingSpan.length == span.length && !existingSpan.file.exists()) {
+            cachedContent.replaceSpan(existingSpan, span);
+            this.manifest.touch(cachedContent.id, span.position, span.lastAccessTimestamp, true);
+            this.notifySpanTouched(existingSpan, span);
+          } else {
+            span.file.delete();
+          }
         }
+      }
+    }
+  }
+
+  private boolean compactNextRun(String key, long maxCompactedFileSize) throws CacheException {
+    Object lock = this.getLockForKey(key);
+    CachedContent cachedContent;
+    ArrayList<SimpleCacheSpan> run;
+    synchronized(lock) {
+      cachedContent = this.index.get(key);
+      if (cachedContent == null || cachedContent.isLocked()) {
+        return false;
+      }
+
+      run = findCompactionRun(cachedContent, maxCompactedFileSize);
+      if (run == null) {
+        return false;
+      }
+
+      cachedContent.setLocked(true);
+    }
+
+    SimpleCacheSpan firstSpan = (SimpleCacheSpan)run.get(0);
+    long length = 0L;
+    long lastAccessTimestamp = 0L;
+
+    for(int i = 0; i < run.size(); ++i) {
+      length += ((SimpleCacheSpan)run.get(i)).length;
+      lastAccessTimestamp = Math.max(lastAccessTimestamp, ((SimpleCacheSpan)run.get(i)).lastAccessTimestamp);
+    }
+
+    File compactedFile;
+    for(compactedFile = SimpleCacheSpan.getCacheFile(this.cacheDir, cachedContent.id, firstSpan.position, lastAccessTimestamp); compactedFile.exists(); compactedFile = SimpleCacheSpan.getCacheFile(this.cacheDir, cachedContent.id, firstSpan.position, ++lastAccessTimestamp)) {
+    }
+
+    File tempFile = new File(compactedFile.getPath() + ".tmp");
+
+    try {
+      try {
+        copySpans(run, tempFile);
+      } catch (IOException var22) {
+        Log.w("SimpleCache", "Compacting spans of " + key + " failed", var22);
+        return false;
+      }
+
+      Runnable compactionCopyListener = this.compactionCopyListener;
+      if (compactionCopyListener != null) {
+        compactionCopyListener.run();
+      }
+
+      synchronized(lock) {
+        for(int i = 0; i < run.size(); ++i) {
+          SimpleCacheSpan span = (SimpleCacheSpan)run.get(i);
+          SimpleCacheSpan currentSpan = cachedContent.getSpan(span.position);
+          if (!currentSpan.isCached || currentSpan.position != span.position || currentSpan.length != span.length) {
+            return false;
+          }
+        }
+
+        if (this.index.get(key) != cachedContent || !tempFile.renameTo(compactedFile)) {
+          return false;
+        }
+
+        for(int i = 0; i < run.size(); ++i) {
+          this.removeSpan((CacheSpan)run.get(i), false);
+        }
+
+        this.addSpan(SimpleCacheSpan.createCacheEntry(key, firstSpan.position, length, lastAccessTimestamp, compactedFile));
+      }
+    } finally {
+      tempFile.delete();
+      synchronized(lock) {
+        cachedContent.setLocked(false);
+        lock.notifyAll();
+      }
+
+    }
+
+    try {
+      this.index.store();
+      this.maybeStoreManifest(false);
+    } finally {
+      this.flushEvictorEvents();
+    }
+
+    return true;
+  }
+
+  @Nullable
+  private static ArrayList<SimpleCacheSpan> findCompactionRun(CachedContent cachedContent, long maxCompactedFileSize) {
+    ArrayList<SimpleCacheSpan> run = new ArrayList();
+    long runLength = 0L;
+    Iterator var5 = cachedContent.getSpans().iterator();
+
+    while(var5.hasNext()) {
+      SimpleCacheSpan span = (SimpleCacheSpan)var5.next();
+      if (!run.isEmpty()) {
+        SimpleCacheSpan lastSpan = (SimpleCacheSpan)run.get(run.size() - 1);
+        if (lastSpan.position + lastSpan.length == span.position && runLength + span.length <= maxCompactedFileSize) {
+          run.add(span);
+          runLength += span.length;
+          continue;
+        }
+
+        if (run.size() > 1) {
+          return run;
+        }
+
+        run.clear();
+        runLength = 0L;
+      }
+
+      if (span.length < maxCompactedFileSize) {
+        run.add(span);
+        runLength = span.length;
+      }
+    }
+
+    return run.size() > 1 ? run : null;
+  }
+
+  private static void copySpans(ArrayList<SimpleCacheSpan> run, File file) throws IOException {
+    FileOutputStream outputStream = new FileOutputStream(file);
+
+    try {
+      FileChannel outputChannel = outputStream.getChannel();
+
+      for(int i = 0; i < run.size(); ++i) {
+        SimpleCacheSpan span = (SimpleCacheSpan)run.get(i);
+        FileInputStream inputStream = new FileInputStream(span.file);
+
+        try {
+          FileChannel inputChannel = inputStream.getChannel();
 
+          long transferred;
+          for(long position = 0L; position < span.length; position += transferred) {
+            transferred = inputChannel.transferTo(position, span.length - position, outputChannel);
+            if (transferred <= 0L) {
+              throw new IOException("Unexpected end of span file " + span.file);
+            }
+          }
+        } finally {
+          inputStream.close();
+        }
       }
+
+      outputStream.getFD().sync();
+    } finally {
+      outputStream.close();
     }
+
   }
 
   private void addSpan(SimpleCacheSpan span) {
-    this.index.getOrAdd(span.key).addSpan(span);
-    this.totalSpace += span.length;
+    CachedContent cachedContent = this.index.getOrAdd(span.key);
+    cachedContent.addSpan(span);
+    this.manifest.add(cachedContent.id, span.position, span.length, span.lastAccessTimestamp);
+
+    this.totalSpace.addAndGet(span.length);
     this.notifySpanAdded(span);
   }
 
-  private void removeSpan(CacheSpan span, boolean removeEmptyCachedContent) throws CacheException {
+  private boolean removeSpan(CacheSpan span, boolean removeEmptyCachedContent) {
     CachedContent cachedContent = this.index.get(span.key);
-    if (cachedContent != null && cachedContent.removeSpan(span)) {
-      this.totalSpace -= span.length;
+    SimpleCacheSpan removedSpan = cachedContent != null ? cachedContent.removeSpan(span) : null;
+    if (removedSpan == null) {
+      return false;
+    } else {
+      this.totalSpace.addAndGet(-removedSpan.length);
+      this.manifest.remove(cachedContent.id, removedSpan.position);
 
       try {
         if (removeEmptyCachedContent) {
           this.index.maybeRemove(cachedContent.key);
-          this.index.store();
         }
       } finally {
-        this.notifySpanRemoved(span);
+        this.notifySpanRemoved(removedSpan);
       }
 
+      return true;
     }
   }
 
-  private void removeStaleSpansAndCachedContents() throws CacheException {
+  private void removeStaleSpans(CachedContent cachedContent) {
     ArrayList<CacheSpan> spansToBeRemoved = new ArrayList();
-    Iterator var2 = this.index.getAll().iterator();
-
-    while(var2.hasNext()) {
-      CachedContent cachedContent = (CachedContent)var2.next();
-      Iterator var4 = cachedContent.getSpans().iterator();
+    Iterator var3 = cachedContent.getSpans().iterator();
 
-      while(var4.hasNext()) {
-        CacheSpan span = (CacheSpan)var4.next();
-        if (!span.file.exists()) {
-          spansToBeRemoved.add(span);
-        }
+    while(var3.hasNext()) {
+      CacheSpan span = (CacheSpan)var3.next();
+      if (span.file.length() != span.length) {
+        spansToBeRemoved.add(span);
       }
     }
 
@@ -340,8 +765,78 @@ public final class SimpleCache implements Cache {
       this.removeSpan((CacheSpan)spansToBeRemoved.get(i), false);
     }
 
-    this.index.removeEmpty();
-    this.index.store();
+  }
+
+  private void removeStaleSpansAndCachedContents() throws CacheException {
+    try {
+      Iterator var1 = this.index.getAll().iterator();
+
+      while(var1.hasNext()) {
+        CachedContent cachedContent = (CachedContent)var1.next();
+        synchronized(this.getLockForKey(cachedContent.key)) {
+          this.removeStaleSpans(cachedContent);
+        }
+      }
+
+      String[] keys = (String[])this.index.getKeys().toArray(new String[0]);
+      for(int i = 0; i < keys.length; ++i) {
+        synchronized(this.getLockForKey(keys[i])) {
+          this.index.maybeRemove(keys[i]);
+        }
+      }
+
+      this.index.store();
+    } finally {
+      this.flushEvictorEvents();
+    }
+  }
+
+  private void flushEvictorEvents() {
+    if (!this.pendingEvictorEvents.isEmpty()) {
+      if (Thread.holdsLock(this.evictorLock)) {
+        this.dispatchCallbackEvictorEvents();
+      } else {
+        synchronized(this.evictorLock) {
+          this.dispatchPendingEvictorEvents();
+        }
+      }
+    }
+
+  }
+
+  private void dispatchPendingEvictorEvents() {
+    SimpleCache.EvictorEvent event;
+    while((event = (SimpleCache.EvictorEvent)this.pendingEvictorEvents.poll()) != null) {
+      this.dispatchEvictorEvent(event);
+    }
+
+  }
+
+  private void dispatchCallbackEvictorEvents() {
+    Thread thread = Thread.currentThread();
+    Iterator var2 = this.pendingEvictorEvents.iterator();
+
+    while(var2.hasNext()) {
+      SimpleCache.EvictorEvent event = (SimpleCache.EvictorEvent)var2.next();
+      if (event.callbackThread == thread && this.pendingEvictorEvents.remove(event)) {
+        this.dispatchEvictorEvent(event);
+      }
+    }
+
+  }
+
+  private void dispatchEvictorEvent(SimpleCache.EvictorEvent event) {
+    switch(event.type) {
+      case 0:
+        this.evictor.onSpanAdded(this, event.span);
+        break;
+      case 1:
+        this.evictor.onSpanRemoved(this, event.span);
+        break;
+      case 2:
+        this.evictor.onSpanTouched(this, event.span, event.newSpan);
+    }
+
   }
 
   private void notifySpanRemoved(CacheSpan span) {
@@ -352,7 +847,7 @@ public final class SimpleCache implements Cache {
       }
     }
 
-    this.evictor.onSpanRemoved(this, span);
+    this.pendingEvictorEvents.add(new SimpleCache.EvictorEvent(1, span, (CacheSpan)null, Thread.holdsLock(this.evictorLock)));
   }
 
   private void notifySpanAdded(SimpleCacheSpan span) {
@@ -363,7 +858,7 @@ public final class SimpleCache implements Cache {
       }
     }
 
-    this.evictor.onSpanAdded(this, span);
+    this.pendingEvictorEvents.add(new SimpleCache.EvictorEvent(0, span, (CacheSpan)null, Thread.holdsLock(this.evictorLock)));
   }
 
   private void notifySpanTouched(SimpleCacheSpan oldSpan, CacheSpan newSpan) {
@@ -374,7 +869,7 @@ public final class SimpleCache implements Cache {
       }
     }
 
-    this.evictor.onSpanTouched(this, oldSpan, newSpan);
+    this.pendingEvictorEvents.add(new SimpleCache.EvictorEvent(2, oldSpan, newSpan, Thread.holdsLock(this.evictorLock)));
   }
 
   private static synchronized boolean lockFolder(File cacheDir) {
@@ -387,4 +882,20 @@ public final class SimpleCache implements Cache {
     }
 
   }
+
+  private static final class EvictorEvent {
+    public final int type;
+    public final CacheSpan span;
+    @Nullable
+    public final CacheSpan newSpan;
+    @Nullable
+    public final Thread callbackThread;
+
+    public EvictorEvent(int type, CacheSpan span, @Nullable CacheSpan newSpan, boolean inCallback) {
+      this.type = type;
+      this.span = span;
+      this.newSpan = newSpan;
+      this.callbackThread = inCallback ? Thread.currentThread() : null;
+    }
+  }
 }
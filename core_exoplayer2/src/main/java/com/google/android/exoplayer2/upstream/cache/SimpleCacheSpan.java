@@ -29,6 +29,10 @@ final class SimpleCacheSpan extends CacheSpan {
     return new SimpleCacheSpan(key, position, length, -9223372036854775807L, (File)null);
   }
 
+  public static SimpleCacheSpan createCacheEntry(String key, long position, long length, long lastAccessTimestamp, File file) {
+    return new SimpleCacheSpan(key, position, length, lastAccessTimestamp, file);
+  }
+
   @Nullable
   public static SimpleCacheSpan createCacheEntry(File file, CachedContentIndex index) {
     String name = file.getName();
@@ -79,6 +83,11 @@ final class SimpleCacheSpan extends CacheSpan {
     super(key, position, length, lastAccessTimestamp, file);
   }
 
+  public SimpleCacheSpan copyWithLastAccessTimestamp(long lastAccessTimestamp) {
+    Assertions.checkState(this.isCached);
+    return new SimpleCacheSpan(this.key, this.position, this.length, lastAccessTimestamp, this.file);
+  }
+
   public SimpleCacheSpan copyWithUpdatedLastAccessTime(int id) {
     Assertions.checkState(this.isCached);
     long now = System.currentTimeMillis();
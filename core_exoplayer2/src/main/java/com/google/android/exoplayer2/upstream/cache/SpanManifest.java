@@ -0,0 +1,278 @@
+package com.google.android.exoplayer2.upstream.cache;
+
+import com.google.android.exoplayer2.upstream.cache.Cache.CacheException;
+import com.google.android.exoplayer2.util.AtomicFile;
+import com.google.android.exoplayer2.util.LongArray;
+import com.google.android.exoplayer2.util.Util;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+final class SpanManifest {
+  public static final String FILE_NAME = "cached_content_index.exm";
+  private static final int VERSION = 1;
+  private static final int INITIAL_CAPACITY = 64;
+  private final AtomicFile atomicFile;
+  private int[] ids;
+  private long[] positions;
+  private long[] lengths;
+  private long[] fileTimestamps;
+  private long[] lastAccessTimestamps;
+  private boolean[] occupied;
+  private int size;
+  private boolean dirty;
+
+  public SpanManifest(File cacheDir) {
+    this.atomicFile = new AtomicFile(new File(cacheDir, "cached_content_index.exm"));
+    this.allocate(64);
+  }
+
+  public synchronized void add(int id, long position, long length, long timestamp) {
+    int slot = this.findSlot(id, position);
+    if (!this.occupied[slot]) {
+      if ((this.size + 1) * 4 > this.occupied.length * 3) {
+        this.resize(this.occupied.length * 2);
+        slot = this.findSlot(id, position);
+      }
+
+      this.occupied[slot] = true;
+      this.ids[slot] = id;
+      this.positions[slot] = position;
+      this.lengths[slot] = length;
+      this.fileTimestamps[slot] = timestamp;
+      this.lastAccessTimestamps[slot] = timestamp;
+      ++this.size;
+      this.dirty = true;
+    }
+  }
+
+  public synchronized void touch(int id, long position, long lastAccessTimestamp, boolean fileRenamed) {
+    int slot = this.findSlot(id, position);
+    if (this.occupied[slot]) {
+      this.lastAccessTimestamps[slot] = lastAccessTimestamp;
+      if (fileRenamed) {
+        this.fileTimestamps[slot] = lastAccessTimestamp;
+      }
+
+      this.dirty = true;
+    }
+  }
+
+  public synchronized void remove(int id, long position) {
+    int slot = this.findSlot(id, position);
+    if (this.occupied[slot]) {
+      this.occupied[slot] = false;
+      --this.size;
+      this.dirty = true;
+      int mask = this.occupied.length - 1;
+      int next = slot + 1 & mask;
+
+      while(this.occupied[next]) {
+        int home = hash(this.ids[next], this.positions[next]) & mask;
+        if ((next - home & mask) >= (next - slot & mask)) {
+          this.moveSlot(next, slot);
+          slot = next;
+        }
+
+        next = next + 1 & mask;
+      }
+
+    }
+  }
+
+  public synchronized void clear() {
+    if (this.size > 0) {
+      this.allocate(64);
+      this.dirty = true;
+    }
+
+  }
+
+  public synchronized int size() {
+    return this.size;
+  }
+
+  public synchronized boolean isDirty() {
+    return this.dirty;
+  }
+
+  public synchronized ArrayList<SimpleCacheSpan> createSpans(File cacheDir, CachedContentIndex index) {
+    ArrayList<SimpleCacheSpan> spans = new ArrayList(this.size);
+    LongArray orphanedSlots = new LongArray();
+
+    for(int slot = 0; slot < this.occupied.length; ++slot) {
+      if (this.occupied[slot]) {
+        String key = index.getKeyForId(this.ids[slot]);
+        if (key != null) {
+          File file = SimpleCacheSpan.getCacheFile(cacheDir, this.ids[slot], this.positions[slot], this.fileTimestamps[slot]);
+          spans.add(SimpleCacheSpan.createCacheEntry(key, this.positions[slot], this.lengths[slot], this.lastAccessTimestamps[slot], file));
+        } else {
+          orphanedSlots.add((long)slot);
+        }
+      }
+    }
+
+    int[] orphanedIds = new int[orphanedSlots.size()];
+    long[] orphanedPositions = new long[orphanedSlots.size()];
+    for(int i = 0; i < orphanedSlots.size(); ++i) {
+      int slot = (int)orphanedSlots.get(i);
+      orphanedIds[i] = this.ids[slot];
+      orphanedPositions[i] = this.positions[slot];
+    }
+
+    for(int i = 0; i < orphanedIds.length; ++i) {
+      this.remove(orphanedIds[i], orphanedPositions[i]);
+    }
+
+    return spans;
+  }
+
+  public synchronized boolean load() {
+    this.allocate(64);
+    this.dirty = false;
+    DataInputStream input = null;
+
+    try {
+      input = new DataInputStream(new BufferedInputStream(this.atomicFile.openRead()));
+      int version = input.readInt();
+      if (version == 1) {
+        int count = input.readInt();
+        long hashCode = 0L;
+
+        for(int i = 0; i < count; ++i) {
+          int id = input.readInt();
+          long position = input.readLong();
+          long length = input.readLong();
+          long fileTimestamp = input.readLong();
+          long lastAccessTimestamp = input.readLong();
+          this.add(id, position, length, fileTimestamp);
+          this.touch(id, position, lastAccessTimestamp, false);
+          hashCode += entryHashCode(id, position, length, fileTimestamp, lastAccessTimestamp);
+        }
+
+        if (input.readLong() == hashCode && input.read() == -1 && this.size == count) {
+          this.dirty = false;
+          return true;
+        }
+      }
+    } catch (IOException var17) {
+    } finally {
+      Util.closeQuietly(input);
+    }
+
+    this.allocate(64);
+    this.atomicFile.delete();
+    this.dirty = false;
+    return false;
+  }
+
+  public synchronized void store() throws CacheException {
+    if (this.dirty) {
+      DataOutputStream output = null;
+
+      try {
+        output = new DataOutputStream(new BufferedOutputStream(this.atomicFile.startWrite()));
+        output.writeInt(1);
+        output.writeInt(this.size);
+        long hashCode = 0L;
+
+        for(int slot = 0; slot < this.occupied.length; ++slot) {
+          if (this.occupied[slot]) {
+            output.writeInt(this.ids[slot]);
+            output.writeLong(this.positions[slot]);
+            output.writeLong(this.lengths[slot]);
+            output.writeLong(this.fileTimestamps[slot]);
+            output.writeLong(this.lastAccessTimestamps[slot]);
+            hashCode += entryHashCode(this.ids[slot], this.positions[slot], this.lengths[slot], this.fileTimestamps[slot], this.lastAccessTimestamps[slot]);
+          }
+        }
+
+        output.writeLong(hashCode);
+        this.atomicFile.endWrite(output);
+        output = null;
+        this.dirty = false;
+      } catch (IOException var8) {
+        throw new CacheException(var8);
+      } finally {
+        Util.closeQuietly(output);
+      }
+    }
+  }
+
+  public void delete() {
+    this.atomicFile.delete();
+  }
+
+  private int findSlot(int id, long position) {
+    int mask = this.occupied.length - 1;
+
+    int slot;
+    for(slot = hash(id, position) & mask; this.occupied[slot] && (this.ids[slot] != id || this.positions[slot] != position); slot = slot + 1 & mask) {
+    }
+
+    return slot;
+  }
+
+  private void moveSlot(int from, int to) {
+    this.ids[to] = this.ids[from];
+    this.positions[to] = this.positions[from];
+    this.lengths[to] = this.lengths[from];
+    this.fileTimestamps[to] = this.fileTimestamps[from];
+    this.lastAccessTimestamps[to] = this.lastAccessTimestamps[from];
+    this.occupied[to] = true;
+    this.occupied[from] = false;
+  }
+
+  private void resize(int capacity) {
+    int[] oldIds = this.ids;
+    long[] oldPositions = this.positions;
+    long[] oldLengths = this.lengths;
+    long[] oldFileTimestamps = this.fileTimestamps;
+    long[] oldLastAccessTimestamps = this.lastAccessTimestamps;
+    boolean[] oldOccupied = this.occupied;
+    this.allocate(capacity);
+
+    for(int i = 0; i < oldOccupied.length; ++i) {
+      if (oldOccupied[i]) {
+        int slot = this.findSlot(oldIds[i], oldPositions[i]);
+        this.occupied[slot] = true;
+        this.ids[slot] = oldIds[i];
+        this.positions[slot] = oldPositions[i];
+        this.lengths[slot] = oldLengths[i];
+        this.fileTimestamps[slot] = oldFileTimestamps[i];
+        this.lastAccessTimestamps[slot] = oldLastAccessTimestamps[i];
+        ++this.size;
+      }
+    }
+
+  }
+
+  private void allocate(int capacity) {
+    this.ids = new int[capacity];
+    this.positions = new long[capacity];
+    this.lengths = new long[capacity];
+    this.fileTimestamps = new long[capacity];
+    this.lastAccessTimestamps = new long[capacity];
+    this.occupied = new boolean[capacity];
+    this.size = 0;
+  }
+
+  private static long entryHashCode(int id, long position, long length, long fileTimestamp, long lastAccessTimestamp) {
+    long result = (long)hash(id, position);
+    result = 31L * result + length;
+    result = 31L * result + fileTimestamp;
+    result = 31L * result + lastAccessTimestamp;
+    return result;
+  }
+
+  private static int hash(int id, long position) {
+    long hash = (long)id * -7046029254386353131L + position;
+    hash ^= hash >>> 32;
+    hash *= -7046029254386353131L;
+    return (int)(hash ^ hash >>> 29);
+  }
+}
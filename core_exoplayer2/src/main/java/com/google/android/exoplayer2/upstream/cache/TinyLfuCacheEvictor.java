@@ -0,0 +1,184 @@
+package com.google.android.exoplayer2.upstream.cache;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.upstream.cache.Cache.CacheException;
+import com.google.android.exoplayer2.util.Assertions;
+import java.util.TreeMap;
+
+public final class TinyLfuCacheEvictor implements CacheEvictor {
+  private static final float DEFAULT_WINDOW_FRACTION = 0.01F;
+  private static final float PROTECTED_FRACTION = 0.8F;
+  private static final int SEGMENT_WINDOW = 0;
+  private static final int SEGMENT_PROBATION = 1;
+  private static final int SEGMENT_PROTECTED = 2;
+  private final long maxBytes;
+  private final long maxWindowBytes;
+  private final long maxProtectedBytes;
+  private final TreeMap<CacheSpan, TinyLfuCacheEvictor.Node> nodes;
+  private final TinyLfuCacheEvictor.Node[] segments;
+  private final long[] segmentSizes;
+  private final FrequencySketch sketch;
+  private long currentSize;
+
+  public TinyLfuCacheEvictor(long maxBytes) {
+    this(maxBytes, 0.01F);
+  }
+
+  public TinyLfuCacheEvictor(long maxBytes, float windowFraction) {
+    Assertions.checkArgument(windowFraction >= 0.0F && windowFraction < 1.0F);
+    this.maxBytes = maxBytes;
+    this.maxWindowBytes = (long)((float)maxBytes * windowFraction);
+    this.maxProtectedBytes = (long)((float)(maxBytes - this.maxWindowBytes) * 0.8F);
+    this.nodes = new TreeMap();
+    this.segments = new TinyLfuCacheEvictor.Node[3];
+    this.segmentSizes = new long[3];
+
+    for(int i = 0; i < 3; ++i) {
+      TinyLfuCacheEvictor.Node head = new TinyLfuCacheEvictor.Node((CacheSpan)null, i);
+      head.previous = head;
+      head.next = head;
+      this.segments[i] = head;
+    }
+
+    this.sketch = new FrequencySketch(0);
+  }
+
+  public void onCacheInitialized() {
+  }
+
+  public void onStartFile(Cache cache, String key, long position, long maxLength) {
+    this.sketch.increment(key, position);
+    this.evictCache(cache, maxLength);
+  }
+
+  public void onSpanAdded(Cache cache, CacheSpan span) {
+    TinyLfuCacheEvictor.Node node = (TinyLfuCacheEvictor.Node)this.nodes.get(span);
+    if (node != null) {
+      this.unlink(node);
+      this.currentSize -= node.span.length;
+      node.span = span;
+    } else {
+      node = new TinyLfuCacheEvictor.Node(span, 0);
+      this.nodes.put(span, node);
+      this.sketch.ensureCapacity(this.nodes.size());
+    }
+
+    this.linkFirst(node, 0);
+    this.currentSize += span.length;
+    this.evictCache(cache, 0L);
+  }
+
+  public void onSpanRemoved(Cache cache, CacheSpan span) {
+    TinyLfuCacheEvictor.Node node = (TinyLfuCacheEvictor.Node)this.nodes.remove(span);
+    if (node != null) {
+      this.unlink(node);
+      this.currentSize -= node.span.length;
+    }
+
+  }
+
+  public void onSpanTouched(Cache cache, CacheSpan oldSpan, CacheSpan newSpan) {
+    this.sketch.increment(newSpan.key, newSpan.position);
+    TinyLfuCacheEvictor.Node node = (TinyLfuCacheEvictor.Node)this.nodes.remove(oldSpan);
+    if (node == null) {
+      this.onSpanAdded(cache, newSpan);
+    } else {
+      this.unlink(node);
+      this.currentSize += newSpan.length - node.span.length;
+      node.span = newSpan;
+      this.nodes.put(newSpan, node);
+      if (node.segment == 0) {
+        this.linkFirst(node, 0);
+      } else {
+        this.linkFirst(node, 2);
+
+        while(this.segmentSizes[2] > this.maxProtectedBytes) {
+          TinyLfuCacheEvictor.Node demoted = this.segments[2].previous;
+          this.unlink(demoted);
+          this.linkFirst(demoted, 1);
+        }
+      }
+
+      this.evictCache(cache, 0L);
+    }
+  }
+
+  private void evictCache(Cache cache, long requiredSpace) {
+    while(this.currentSize + requiredSpace > this.maxBytes && !this.nodes.isEmpty()) {
+      TinyLfuCacheEvictor.Node candidate = this.segmentSizes[0] + requiredSpace > this.maxWindowBytes && this.segments[0].previous != this.segments[0] ? this.segments[0].previous : null;
+      TinyLfuCacheEvictor.Node victim = this.getMainVictim();
+      if (victim == null) {
+        this.evict(cache, candidate != null ? candidate : this.segments[0].previous);
+      } else if (candidate == null) {
+        this.evict(cache, victim);
+      } else if (this.sketch.frequency(candidate.span.key, candidate.span.position) > this.sketch.frequency(victim.span.key, victim.span.position)) {
+        this.unlink(candidate);
+        this.linkFirst(candidate, 1);
+        this.evict(cache, victim);
+      } else {
+        this.evict(cache, candidate);
+      }
+    }
+
+    while(this.segmentSizes[0] > this.maxWindowBytes) {
+      TinyLfuCacheEvictor.Node overflow = this.segments[0].previous;
+      this.unlink(overflow);
+      this.linkFirst(overflow, 1);
+    }
+
+  }
+
+  @Nullable
+  private TinyLfuCacheEvictor.Node getMainVictim() {
+    if (this.segments[1].previous != this.segments[1]) {
+      return this.segments[1].previous;
+    } else {
+      return this.segments[2].previous != this.segments[2] ? this.segments[2].previous : null;
+    }
+  }
+
+  private void evict(Cache cache, TinyLfuCacheEvictor.Node node) {
+    CacheSpan span = node.span;
+
+    try {
+      cache.removeSpan(span);
+    } catch (CacheException var4) {
+    }
+
+    if (this.nodes.get(span) == node) {
+      this.onSpanRemoved(cache, span);
+    }
+
+  }
+
+  private void linkFirst(TinyLfuCacheEvictor.Node node, int segment) {
+    TinyLfuCacheEvictor.Node head = this.segments[segment];
+    node.segment = segment;
+    node.previous = head;
+    node.next = head.next;
+    head.next.previous = node;
+    head.next = node;
+    this.segmentSizes[segment] += node.span.length;
+  }
+
+  private void unlink(TinyLfuCacheEvictor.Node node) {
+    node.previous.next = node.next;
+    node.next.previous = node.previous;
+    node.previous = null;
+    node.next = null;
+    this.segmentSizes[node.segment] -= node.span.length;
+  }
+
+  private static final class Node {
+    @Nullable
+    public CacheSpan span;
+    public int segment;
+    public TinyLfuCacheEvictor.Node previous;
+    public TinyLfuCacheEvictor.Node next;
+
+    public Node(@Nullable CacheSpan span, int segment) {
+      this.span = span;
+      this.segment = segment;
+    }
+  }
+}
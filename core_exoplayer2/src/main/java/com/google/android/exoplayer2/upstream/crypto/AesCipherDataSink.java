@@ -23,7 +23,11 @@ public final class AesCipherDataSink implements DataSink {
   public void open(DataSpec dataSpec) throws IOException {
     this.wrappedDataSink.open(dataSpec);
     long nonce = CryptoUtil.getFNV64Hash(dataSpec.key);
-    this.cipher = new AesFlushingCipher(1, this.secretKey, nonce, dataSpec.absoluteStreamPosition);
+    if (this.cipher == null) {
+      this.cipher = new AesFlushingCipher(1, this.secretKey, nonce, dataSpec.absoluteStreamPosition);
+    } else {
+      this.cipher.reset(nonce, dataSpec.absoluteStreamPosition);
+    }
   }
 
   public void write(byte[] data, int offset, int length) throws IOException {
@@ -42,7 +46,6 @@ public final class AesCipherDataSink implements DataSink {
   }
 
   public void close() throws IOException {
-    this.cipher = null;
     this.wrappedDataSink.close();
   }
 }
@@ -6,6 +6,7 @@ import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.DataSpec;
 import com.google.android.exoplayer2.upstream.TransferListener;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 
@@ -27,7 +28,12 @@ public final class AesCipherDataSource implements DataSource {
   public long open(DataSpec dataSpec) throws IOException {
     long dataLength = this.upstream.open(dataSpec);
     long nonce = CryptoUtil.getFNV64Hash(dataSpec.key);
-    this.cipher = new AesFlushingCipher(2, this.secretKey, nonce, dataSpec.absoluteStreamPosition);
+    if (this.cipher == null) {
+      this.cipher = new AesFlushingCipher(2, this.secretKey, nonce, dataSpec.absoluteStreamPosition);
+    } else {
+      this.cipher.reset(nonce, dataSpec.absoluteStreamPosition);
+    }
+
     return dataLength;
   }
 
@@ -45,6 +51,30 @@ public final class AesCipherDataSource implements DataSource {
     }
   }
 
+  public int read(ByteBuffer buffer) throws IOException {
+    if (!buffer.hasRemaining()) {
+      return 0;
+    } else {
+      int position = buffer.position();
+      int read = this.upstream.read(buffer);
+      if (read == -1) {
+        return -1;
+      } else {
+        if (buffer.hasArray()) {
+          this.cipher.updateInPlace(buffer.array(), buffer.arrayOffset() + position, read);
+        } else {
+          ByteBuffer input = buffer.duplicate();
+          input.position(position);
+          ByteBuffer output = input.duplicate();
+          input.limit(position + read);
+          this.cipher.update(input, output);
+        }
+
+        return read;
+      }
+    }
+  }
+
   @Nullable
   public Uri getUri() {
     return this.upstream.getUri();
@@ -55,7 +85,6 @@ public final class AesCipherDataSource implements DataSource {
   }
 
   public void close() throws IOException {
-    this.cipher = null;
     this.upstream.close();
   }
 }
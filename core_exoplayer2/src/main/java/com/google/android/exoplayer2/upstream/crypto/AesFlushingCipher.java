@@ -14,27 +14,47 @@ import javax.crypto.spec.SecretKeySpec;
 
 public final class AesFlushingCipher {
   private final Cipher cipher;
+  private final int mode;
+  private final SecretKeySpec secretKeySpec;
   private final int blockSize;
   private final byte[] zerosBlock;
   private final byte[] flushedBlock;
+  private final byte[] paddingBlock;
+  private final byte[] initializationVector;
   private int pendingXorBytes;
 
   public AesFlushingCipher(int mode, byte[] secretKey, long nonce, long offset) {
     try {
       this.cipher = Cipher.getInstance("AES/CTR/NoPadding");
+      this.mode = mode;
+      this.secretKeySpec = new SecretKeySpec(secretKey, Util.splitAtFirst(this.cipher.getAlgorithm(), "/")[0]);
       this.blockSize = this.cipher.getBlockSize();
       this.zerosBlock = new byte[this.blockSize];
       this.flushedBlock = new byte[this.blockSize];
-      long counter = offset / (long)this.blockSize;
-      int startPadding = (int)(offset % (long)this.blockSize);
-      this.cipher.init(mode, new SecretKeySpec(secretKey, Util.splitAtFirst(this.cipher.getAlgorithm(), "/")[0]), new IvParameterSpec(this.getInitializationVector(nonce, counter)));
-      if (startPadding != 0) {
-        this.updateInPlace(new byte[startPadding], 0, startPadding);
-      }
+      this.paddingBlock = new byte[this.blockSize];
+      this.initializationVector = new byte[16];
+    } catch (NoSuchPaddingException | NoSuchAlgorithmException var7) {
+      throw new RuntimeException(var7);
+    }
+
+    this.reset(nonce, offset);
+  }
+
+  public void reset(long nonce, long offset) {
+    long counter = offset / (long)this.blockSize;
+    int startPadding = (int)(offset % (long)this.blockSize);
+    this.pendingXorBytes = 0;
 
-    } catch (NoSuchPaddingException | InvalidKeyException | InvalidAlgorithmParameterException | NoSuchAlgorithmException var10) {
-      throw new RuntimeException(var10);
+    try {
+      this.cipher.init(this.mode, this.secretKeySpec, new IvParameterSpec(this.getInitializationVector(nonce, counter)));
+    } catch (InvalidKeyException | InvalidAlgorithmParameterException var8) {
+      throw new RuntimeException(var8);
+    }
+
+    if (startPadding != 0) {
+      this.update(this.zerosBlock, 0, startPadding, this.paddingBlock, 0);
     }
+
   }
 
   public void updateInPlace(byte[] data, int offset, int length) {
@@ -42,40 +62,67 @@ public final class AesFlushingCipher {
   }
 
   public void update(byte[] in, int inOffset, int length, byte[] out, int outOffset) {
-    while(true) {
-      if (this.pendingXorBytes > 0) {
-        out[outOffset] = (byte)(in[inOffset] ^ this.flushedBlock[this.blockSize - this.pendingXorBytes]);
-        ++outOffset;
-        ++inOffset;
-        --this.pendingXorBytes;
-        --length;
-        if (length != 0) {
-          continue;
-        }
+    if (this.pendingXorBytes > 0) {
+      int bytesToXor = Math.min(this.pendingXorBytes, length);
+      int flushedOffset = this.blockSize - this.pendingXorBytes;
 
-        return;
+      for(int i = 0; i < bytesToXor; ++i) {
+        out[outOffset + i] = (byte)(in[inOffset + i] ^ this.flushedBlock[flushedOffset + i]);
       }
 
-      int written = this.nonFlushingUpdate(in, inOffset, length, out, outOffset);
-      if (length == written) {
+      this.pendingXorBytes -= bytesToXor;
+      inOffset += bytesToXor;
+      outOffset += bytesToXor;
+      length -= bytesToXor;
+      if (length == 0) {
         return;
       }
+    }
 
-      int bytesToFlush = length - written;
-      Assertions.checkState(bytesToFlush < this.blockSize);
-      outOffset += written;
-      this.pendingXorBytes = this.blockSize - bytesToFlush;
-      written = this.nonFlushingUpdate(this.zerosBlock, 0, this.pendingXorBytes, this.flushedBlock, 0);
-      Assertions.checkState(written == this.blockSize);
+    int written = this.nonFlushingUpdate(in, inOffset, length, out, outOffset);
+    if (length != written) {
+      this.flushPartialBlock(length - written);
+      System.arraycopy(this.flushedBlock, 0, out, outOffset + written, length - written);
+    }
+  }
+
+  public void update(ByteBuffer in, ByteBuffer out) {
+    int length = in.remaining();
+    if (this.pendingXorBytes > 0) {
+      int bytesToXor = Math.min(this.pendingXorBytes, length);
+      int flushedOffset = this.blockSize - this.pendingXorBytes;
 
-      for(int i = 0; i < bytesToFlush; ++i) {
-        out[outOffset++] = this.flushedBlock[i];
+      for(int i = 0; i < bytesToXor; ++i) {
+        out.put((byte)(in.get() ^ this.flushedBlock[flushedOffset + i]));
+      }
+
+      this.pendingXorBytes -= bytesToXor;
+      length -= bytesToXor;
+      if (length == 0) {
+        return;
       }
+    }
+
+    int written;
+    try {
+      written = this.cipher.update(in, out);
+    } catch (ShortBufferException var6) {
+      throw new RuntimeException(var6);
+    }
 
-      return;
+    if (length != written) {
+      this.flushPartialBlock(length - written);
+      out.put(this.flushedBlock, 0, length - written);
     }
   }
 
+  private void flushPartialBlock(int bytesToFlush) {
+    Assertions.checkState(bytesToFlush < this.blockSize);
+    this.pendingXorBytes = this.blockSize - bytesToFlush;
+    int written = this.nonFlushingUpdate(this.zerosBlock, 0, this.pendingXorBytes, this.flushedBlock, 0);
+    Assertions.checkState(written == this.blockSize);
+  }
+
   private int nonFlushingUpdate(byte[] in, int inOffset, int length, byte[] out, int outOffset) {
     try {
       return this.cipher.update(in, inOffset, length, out, outOffset);
@@ -85,6 +132,6 @@ public final class AesFlushingCipher {
   }
 
   private byte[] getInitializationVector(long nonce, long counter) {
-    return ByteBuffer.allocate(16).putLong(nonce).putLong(counter).array();
+    return ByteBuffer.wrap(this.initializationVector).putLong(nonce).putLong(counter).array();
   }
 }
@@ -5,6 +5,7 @@ import android.view.Surface;
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.ExoPlaybackException;
 import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.PlaybackLoopProfiler;
 import com.google.android.exoplayer2.PlaybackParameters;
 import com.google.android.exoplayer2.Timeline.Period;
 import com.google.android.exoplayer2.Timeline.Window;
@@ -34,6 +35,8 @@ public class EventLogger implements AnalyticsListener {
   private final Window window;
   private final Period period;
   private final long startTimeMs;
+  @Nullable
+  private PlaybackLoopProfiler playbackLoopProfiler;
 
   public EventLogger(@Nullable MappingTrackSelector trackSelector) {
     this(trackSelector, "EventLogger");
@@ -47,12 +50,20 @@ public class EventLogger implements AnalyticsListener {
     this.startTimeMs = SystemClock.elapsedRealtime();
   }
 
+  public void setPlaybackLoopProfiler(@Nullable PlaybackLoopProfiler playbackLoopProfiler) {
+    this.playbackLoopProfiler = playbackLoopProfiler;
+  }
+
   public void onLoadingChanged(EventTime eventTime, boolean isLoading) {
     this.logd(eventTime, "loading", Boolean.toString(isLoading));
   }
 
   public void onPlayerStateChanged(EventTime eventTime, boolean playWhenReady, int state) {
     this.logd(eventTime, "state", playWhenReady + ", " + getStateString(state));
+    if (this.playbackLoopProfiler != null) {
+      this.printPlaybackLoopProfile(this.playbackLoopProfiler.getSnapshot());
+    }
+
   }
 
   public void onRepeatModeChanged(EventTime eventTime, int repeatMode) {
@@ -321,6 +332,25 @@ public class EventLogger implements AnalyticsListener {
 
   }
 
+  private void printPlaybackLoopProfile(PlaybackLoopProfiler.Snapshot snapshot) {
+    if (snapshot.getPhaseSnapshot(0).count != 0L) {
+      this.logd("PlaybackLoop [");
+
+      for(int phase = 0; phase < 6; ++phase) {
+        this.logd("  " + getPlaybackLoopPhaseString(phase) + ": " + getLatencyString(snapshot.getPhaseSnapshot(phase)));
+      }
+
+      for(int i = 0; i < snapshot.getRendererCount(); ++i) {
+        LatencyHistogram.Snapshot rendererSnapshot = snapshot.getRendererSnapshot(i);
+        if (rendererSnapshot != null) {
+          this.logd("  renderer " + i + " (" + getTrackTypeString(snapshot.getRendererTrackType(i)) + "): " + getLatencyString(rendererSnapshot));
+        }
+      }
+
+      this.logd("]");
+    }
+  }
+
   private String getEventString(EventTime eventTime, String eventName) {
     return eventName + " [" + this.getEventTimeString(eventTime) + "]";
   }
@@ -446,6 +476,29 @@ public class EventLogger implements AnalyticsListener {
     }
   }
 
+  private static String getPlaybackLoopPhaseString(int phase) {
+    switch(phase) {
+      case 0:
+        return "doSomeWork";
+      case 1:
+        return "updatePeriods";
+      case 2:
+        return "updatePlaybackPositions";
+      case 3:
+        return "discardBuffer";
+      case 4:
+        return "render";
+      case 5:
+        return "maybeThrowStreamError";
+      default:
+        return "?";
+    }
+  }
+
+  private static String getLatencyString(LatencyHistogram.Snapshot snapshot) {
+    return "count=" + snapshot.count + ", meanUs=" + snapshot.getMean() / 1000L + ", p50Us=" + snapshot.getValueAtPercentile(50.0D) / 1000L + ", p99Us=" + snapshot.getValueAtPercentile(99.0D) / 1000L + ", maxUs=" + snapshot.max / 1000L;
+  }
+
   private static String getTrackTypeString(int trackType) {
     switch(trackType) {
       case 0:
@@ -0,0 +1,114 @@
+package com.google.android.exoplayer2.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public final class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKET_COUNT = 32;
+  private static final int MAX_VALUE_BITS = 40;
+  private static final long MAX_VALUE = 1099511627775L;
+  private static final int BUCKET_COUNT = 1152;
+  private final AtomicLongArray counts;
+  private final AtomicLong totalValue;
+  private final AtomicLong maxValue;
+
+  public LatencyHistogram() {
+    this.counts = new AtomicLongArray(1152);
+    this.totalValue = new AtomicLong();
+    this.maxValue = new AtomicLong();
+  }
+
+  public void record(long value) {
+    if (value < 0L) {
+      value = 0L;
+    } else if (value > 1099511627775L) {
+      value = 1099511627775L;
+    }
+
+    long currentMax;
+    do {
+      currentMax = this.maxValue.get();
+    } while(value > currentMax && !this.maxValue.compareAndSet(currentMax, value));
+
+    this.totalValue.addAndGet(value);
+    this.counts.incrementAndGet(getBucketIndex(value));
+  }
+
+  public LatencyHistogram.Snapshot getSnapshot() {
+    long[] bucketCounts = new long[1152];
+    long count = 0L;
+
+    for(int i = 0; i < 1152; ++i) {
+      bucketCounts[i] = this.counts.get(i);
+      count += bucketCounts[i];
+    }
+
+    return new LatencyHistogram.Snapshot(bucketCounts, count, this.totalValue.get(), this.maxValue.get());
+  }
+
+  public void reset() {
+    for(int i = 0; i < 1152; ++i) {
+      this.counts.set(i, 0L);
+    }
+
+    this.totalValue.set(0L);
+    this.maxValue.set(0L);
+  }
+
+  static int getBucketIndex(long value) {
+    int highestBit = 63 - Long.numberOfLeadingZeros(value);
+    if (highestBit < 5) {
+      return (int)value;
+    } else {
+      int shift = highestBit - 5;
+      return (shift + 1) * 32 + (int)(value >>> shift & 31L);
+    }
+  }
+
+  static long getBucketUpperBound(int index) {
+    int shift = index / 32 - 1;
+    if (shift < 0) {
+      return (long)index;
+    } else {
+      long lowerBound = (long)(32 + index % 32) << shift;
+      return lowerBound + (1L << shift) - 1L;
+    }
+  }
+
+  public static final class Snapshot {
+    private final long[] bucketCounts;
+    public final long count;
+    public final long total;
+    public final long max;
+
+    private Snapshot(long[] bucketCounts, long count, long total, long max) {
+      this.bucketCounts = bucketCounts;
+      this.count = count;
+      this.total = total;
+      this.max = max;
+    }
+
+    public long getMean() {
+      return this.count == 0L ? 0L : this.total / this.count;
+    }
+
+    public long getValueAtPercentile(double percentile) {
+      if (this.count == 0L) {
+        return 0L;
+      } else {
+        long targetCount = Math.max(1L, (long)Math.ceil(percentile / 100.0D * (double)this.count));
+        long accumulatedCount = 0L;
+
+        for(int i = 0; i < this.bucketCounts.length; ++i) {
+          accumulatedCount += this.bucketCounts[i];
+          if (accumulatedCount >= targetCount) {
+            return Math.min(LatencyHistogram.getBucketUpperBound(i), this.max);
+          }
+        }
+
+        return this.max;
+      }
+    }
+  }
+}
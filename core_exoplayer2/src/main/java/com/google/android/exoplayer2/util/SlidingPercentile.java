@@ -1,51 +1,61 @@
 package com.google.android.exoplayer2.util;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-
 public class SlidingPercentile {
-  private static final Comparator<SlidingPercentile.Sample> INDEX_COMPARATOR = (a, b) -> a.index - b.index;
-  private static final Comparator<SlidingPercentile.Sample> VALUE_COMPARATOR = (a, b) -> Float.compare(a.value, b.value);
-  private static final int SORT_ORDER_NONE = -1;
-  private static final int SORT_ORDER_BY_VALUE = 0;
-  private static final int SORT_ORDER_BY_INDEX = 1;
-  private static final int MAX_RECYCLED_SAMPLES = 5;
+  private static final int INITIAL_CAPACITY = 16;
+  private static final int NO_NODE = -1;
   private final int maxWeight;
-  private final ArrayList<SlidingPercentile.Sample> samples;
-  private final SlidingPercentile.Sample[] recycledSamples;
-  private int currentSortOrder;
+  private float[] values;
+  private int[] weights;
+  private int[] indices;
+  private int[] priorities;
+  private int[] left;
+  private int[] right;
+  private int[] subtreeWeights;
+  private int head;
+  private int size;
+  private int root;
   private int nextSampleIndex;
   private int totalWeight;
-  private int recycledSampleCount;
+  private int randomState;
 
   public SlidingPercentile(int maxWeight) {
     this.maxWeight = maxWeight;
-    this.recycledSamples = new SlidingPercentile.Sample[5];
-    this.samples = new ArrayList<>();
-    this.currentSortOrder = -1;
+    this.allocate(16);
+    this.root = -1;
+    this.randomState = 1831565813;
   }
 
   public void addSample(int weight, float value) {
-    this.ensureSortedByIndex();
-    SlidingPercentile.Sample newSample = this.recycledSampleCount > 0 ? this.recycledSamples[--this.recycledSampleCount] : new SlidingPercentile.Sample();
-    newSample.index = this.nextSampleIndex++;
-    newSample.weight = weight;
-    newSample.value = value;
-    this.samples.add(newSample);
+    if (this.size == this.values.length) {
+      this.grow();
+    }
+
+    int node = this.head + this.size;
+    if (node >= this.values.length) {
+      node -= this.values.length;
+    }
+
+    this.values[node] = value;
+    this.weights[node] = weight;
+    this.indices[node] = this.nextSampleIndex++;
+    this.priorities[node] = this.nextRandom();
+    this.left[node] = -1;
+    this.right[node] = -1;
+    this.subtreeWeights[node] = weight;
+    this.root = this.insert(this.root, node);
+    ++this.size;
     this.totalWeight += weight;
 
     while(this.totalWeight > this.maxWeight) {
       int excessWeight = this.totalWeight - this.maxWeight;
-      SlidingPercentile.Sample oldestSample = (SlidingPercentile.Sample)this.samples.get(0);
-      if (oldestSample.weight <= excessWeight) {
-        this.totalWeight -= oldestSample.weight;
-        this.samples.remove(0);
-        if (this.recycledSampleCount < 5) {
-          this.recycledSamples[this.recycledSampleCount++] = oldestSample;
-        }
+      int oldestNode = this.head;
+      if (this.weights[oldestNode] <= excessWeight) {
+        this.totalWeight -= this.weights[oldestNode];
+        this.root = this.remove(this.root, oldestNode);
+        this.head = this.head + 1 == this.values.length ? 0 : this.head + 1;
+        --this.size;
       } else {
-        oldestSample.weight -= excessWeight;
+        this.reduceWeight(oldestNode, excessWeight);
         this.totalWeight -= excessWeight;
       }
     }
@@ -53,44 +63,206 @@ public class SlidingPercentile {
   }
 
   public float getPercentile(float percentile) {
-    this.ensureSortedByValue();
+    if (this.size == 0) {
+      return 0.0F / 0.0F;
+    }
+
     float desiredWeight = percentile * (float)this.totalWeight;
     int accumulatedWeight = 0;
+    int node = this.root;
 
-    for(int i = 0; i < this.samples.size(); ++i) {
-      SlidingPercentile.Sample currentSample = (SlidingPercentile.Sample)this.samples.get(i);
-      accumulatedWeight += currentSample.weight;
-      if ((float)accumulatedWeight >= desiredWeight) {
-        return currentSample.value;
+    while(node != -1) {
+      int leftNode = this.left[node];
+      if (leftNode != -1 && (float)(accumulatedWeight + this.subtreeWeights[leftNode]) >= desiredWeight) {
+        node = leftNode;
+      } else {
+        if (leftNode != -1) {
+          accumulatedWeight += this.subtreeWeights[leftNode];
+        }
+
+        accumulatedWeight += this.weights[node];
+        if ((float)accumulatedWeight >= desiredWeight) {
+          return this.values[node];
+        }
+
+        node = this.right[node];
       }
     }
 
-    return this.samples.isEmpty() ? 0.0F / 0.0F : ((SlidingPercentile.Sample)this.samples.get(this.samples.size() - 1)).value;
+    node = this.root;
+
+    while(this.right[node] != -1) {
+      node = this.right[node];
+    }
+
+    return this.values[node];
+  }
+
+  public void reset() {
+    this.head = 0;
+    this.size = 0;
+    this.root = -1;
+    this.totalWeight = 0;
   }
 
-  private void ensureSortedByIndex() {
-    if (this.currentSortOrder != 1) {
-      Collections.sort(this.samples, INDEX_COMPARATOR);
-      this.currentSortOrder = 1;
+  private int insert(int tree, int node) {
+    if (tree == -1) {
+      return node;
+    }
+
+    if (this.compare(node, tree) < 0) {
+      this.left[tree] = this.insert(this.left[tree], node);
+      if (this.priorities[this.left[tree]] > this.priorities[tree]) {
+        tree = this.rotateRight(tree);
+      }
+    } else {
+      this.right[tree] = this.insert(this.right[tree], node);
+      if (this.priorities[this.right[tree]] > this.priorities[tree]) {
+        tree = this.rotateLeft(tree);
+      }
     }
 
+    this.updateSubtreeWeight(tree);
+    return tree;
   }
 
-  private void ensureSortedByValue() {
-    if (this.currentSortOrder != 0) {
-      Collections.sort(this.samples, VALUE_COMPARATOR);
-      this.currentSortOrder = 0;
+  private int remove(int tree, int node) {
+    if (tree == node) {
+      return this.merge(this.left[tree], this.right[tree]);
     }
 
+    if (this.compare(node, tree) < 0) {
+      this.left[tree] = this.remove(this.left[tree], node);
+    } else {
+      this.right[tree] = this.remove(this.right[tree], node);
+    }
+
+    this.updateSubtreeWeight(tree);
+    return tree;
   }
 
-  private static class Sample {
-    public int index;
-    public int weight;
-    public float value;
+  private int merge(int a, int b) {
+    if (a == -1) {
+      return b;
+    } else if (b == -1) {
+      return a;
+    } else if (this.priorities[a] > this.priorities[b]) {
+      this.right[a] = this.merge(this.right[a], b);
+      this.updateSubtreeWeight(a);
+      return a;
+    } else {
+      this.left[b] = this.merge(a, this.left[b]);
+      this.updateSubtreeWeight(b);
+      return b;
+    }
+  }
+
+  private void reduceWeight(int node, int weightDelta) {
+    this.weights[node] -= weightDelta;
+    int tree = this.root;
+
+    while(tree != -1) {
+      this.subtreeWeights[tree] -= weightDelta;
+      if (tree == node) {
+        return;
+      }
 
-    private Sample() {
+      tree = this.compare(node, tree) < 0 ? this.left[tree] : this.right[tree];
     }
+
+  }
+
+  private int rotateRight(int tree) {
+    int pivot = this.left[tree];
+    this.left[tree] = this.right[pivot];
+    this.right[pivot] = tree;
+    this.updateSubtreeWeight(tree);
+    this.updateSubtreeWeight(pivot);
+    return pivot;
+  }
+
+  private int rotateLeft(int tree) {
+    int pivot = this.right[tree];
+    this.right[tree] = this.left[pivot];
+    this.left[pivot] = tree;
+    this.updateSubtreeWeight(tree);
+    this.updateSubtreeWeight(pivot);
+    return pivot;
+  }
+
+  private void updateSubtreeWeight(int node) {
+    int weight = this.weights[node];
+    if (this.left[node] != -1) {
+      weight += this.subtreeWeights[this.left[node]];
+    }
+
+    if (this.right[node] != -1) {
+      weight += this.subtreeWeights[this.right[node]];
+    }
+
+    this.subtreeWeights[node] = weight;
+  }
+
+  private int compare(int a, int b) {
+    int result = Float.compare(this.values[a], this.values[b]);
+    return result != 0 ? result : Integer.compare(this.indices[a], this.indices[b]);
   }
-}
 
+  private int nextRandom() {
+    int x = this.randomState;
+    x ^= x << 13;
+    x ^= x >>> 17;
+    x ^= x << 5;
+    this.randomState = x;
+    return x;
+  }
+
+  private void grow() {
+    int oldCapacity = this.values.length;
+    float[] oldValues = this.values;
+    int[] oldWeights = this.weights;
+    int[] oldIndices = this.indices;
+    int[] oldPriorities = this.priorities;
+    int[] oldLeft = this.left;
+    int[] oldRight = this.right;
+    int[] oldSubtreeWeights = this.subtreeWeights;
+    this.allocate(oldCapacity * 2);
+
+    for(int i = 0; i < this.size; ++i) {
+      int oldNode = this.head + i;
+      if (oldNode >= oldCapacity) {
+        oldNode -= oldCapacity;
+      }
+
+      this.values[i] = oldValues[oldNode];
+      this.weights[i] = oldWeights[oldNode];
+      this.indices[i] = oldIndices[oldNode];
+      this.priorities[i] = oldPriorities[oldNode];
+      this.left[i] = this.relocate(oldLeft[oldNode], oldCapacity);
+      this.right[i] = this.relocate(oldRight[oldNode], oldCapacity);
+      this.subtreeWeights[i] = oldSubtreeWeights[oldNode];
+    }
+
+    this.root = this.relocate(this.root, oldCapacity);
+    this.head = 0;
+  }
+
+  private int relocate(int oldNode, int oldCapacity) {
+    if (oldNode == -1) {
+      return -1;
+    } else {
+      int newNode = oldNode - this.head;
+      return newNode < 0 ? newNode + oldCapacity : newNode;
+    }
+  }
+
+  private void allocate(int capacity) {
+    this.values = new float[capacity];
+    this.weights = new int[capacity];
+    this.indices = new int[capacity];
+    this.priorities = new int[capacity];
+    this.left = new int[capacity];
+    this.right = new int[capacity];
+    this.subtreeWeights = new int[capacity];
+  }
+}
@@ -83,6 +83,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
   private int tunnelingAudioSessionId;
   MediaCodecVideoRenderer.OnFrameRenderedListenerV23 tunnelingOnFrameRenderedListener;
   private long lastInputTimeUs;
+  private long nextWorkElapsedRealtimeUs;
   private long outputStreamOffsetUs;
   private int pendingOutputStreamOffsetCount;
   @Nullable
@@ -112,6 +113,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     this.pendingOutputStreamSwitchTimesUs = new long[10];
     this.outputStreamOffsetUs = -9223372036854775807L;
     this.lastInputTimeUs = -9223372036854775807L;
+    this.nextWorkElapsedRealtimeUs = -9223372036854775807L;
     this.joiningDeadlineMs = -9223372036854775807L;
     this.currentWidth = -1;
     this.currentHeight = -1;
@@ -183,6 +185,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     this.initialPositionUs = -9223372036854775807L;
     this.consecutiveDroppedFrameCount = 0;
     this.lastInputTimeUs = -9223372036854775807L;
+    this.nextWorkElapsedRealtimeUs = -9223372036854775807L;
     if (this.pendingOutputStreamOffsetCount != 0) {
       this.outputStreamOffsetUs = this.pendingOutputStreamOffsetsUs[this.pendingOutputStreamOffsetCount - 1];
       this.pendingOutputStreamOffsetCount = 0;
@@ -217,8 +220,13 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     this.lastRenderTimeUs = SystemClock.elapsedRealtime() * 1000L;
   }
 
+  public long getNextWorkElapsedRealtimeUs() {
+    return this.isEnded() ? 9223372036854775807L : this.nextWorkElapsedRealtimeUs;
+  }
+
   protected void onStopped() {
     this.joiningDeadlineMs = -9223372036854775807L;
+    this.nextWorkElapsedRealtimeUs = -9223372036854775807L;
     this.maybeNotifyDroppedFrames();
     super.onStopped();
   }
@@ -230,6 +238,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     this.pendingPixelWidthHeightRatio = -1.0F;
     this.outputStreamOffsetUs = -9223372036854775807L;
     this.lastInputTimeUs = -9223372036854775807L;
+    this.nextWorkElapsedRealtimeUs = -9223372036854775807L;
     this.pendingOutputStreamOffsetCount = 0;
     this.clearReportedVideoSize();
     this.clearRenderedFirstFrame();
@@ -417,6 +426,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     }
 
     long presentationTimeUs = bufferPresentationTimeUs - this.outputStreamOffsetUs;
+    this.nextWorkElapsedRealtimeUs = -9223372036854775807L;
     if (shouldSkip) {
       this.skipOutputBuffer(codec, bufferIndex, presentationTimeUs);
       return true;
@@ -462,6 +472,8 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
                 this.renderOutputBufferV21(codec, bufferIndex, presentationTimeUs, adjustedReleaseTimeNs);
                 return true;
               }
+
+              this.nextWorkElapsedRealtimeUs = getReleaseWindowStartElapsedRealtimeUs(elapsedRealtimeNowUs, earlyUs, Util.SDK_INT);
             } else if (earlyUs < 30000L) {
               if (earlyUs > 11000L) {
                 try {
@@ -475,6 +487,8 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
               this.notifyFrameMetadataListener(presentationTimeUs, adjustedReleaseTimeNs, format);
               this.renderOutputBuffer(codec, bufferIndex, presentationTimeUs);
               return true;
+            } else {
+              this.nextWorkElapsedRealtimeUs = getReleaseWindowStartElapsedRealtimeUs(elapsedRealtimeNowUs, earlyUs, Util.SDK_INT);
             }
 
             return false;
@@ -686,6 +700,10 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     return earlyUs < -30000L;
   }
 
+  static long getReleaseWindowStartElapsedRealtimeUs(long elapsedRealtimeNowUs, long earlyUs, int sdkInt) {
+    return elapsedRealtimeNowUs + earlyUs - (sdkInt >= 21 ? 50000L : 30000L);
+  }
+
   private static boolean isBufferVeryLate(long earlyUs) {
     return earlyUs < -500000L;
   }
@@ -0,0 +1,141 @@
+package com.google.android.exoplayer2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.LoadControlSimulator.LoadControlFactory;
+import com.google.android.exoplayer2.LoadControlSimulator.Result;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+import com.google.android.exoplayer2.upstream.Allocation;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit tests for {@link AdaptiveLoadControl}. */
+@RunWith(RobolectricTestRunner.class)
+public final class AdaptiveLoadControlTest {
+
+  private static final int ALLOCATION_LENGTH = 65536;
+  private static final int TARGET_BUFFER_BYTES = 256 * ALLOCATION_LENGTH;
+  private static final long MEDIA_BITRATE = 2_000_000;
+  private static final long SEGMENT_DURATION_MS = 4000;
+  private static final long MEDIA_DURATION_MS = 300_000;
+
+  private static final LoadControlFactory DEFAULT =
+      (allocator, bandwidthMeter, clock) ->
+          new DefaultLoadControl.Builder()
+              .setAllocator(allocator)
+              .setTargetBufferBytes(16 * 1024 * 1024)
+              .createDefaultLoadControl();
+
+  private DefaultAllocator allocator;
+
+  @Before
+  public void setUp() {
+    allocator = new DefaultAllocator(/* trimOnReset= */ true, ALLOCATION_LENGTH);
+  }
+
+  @Test
+  public void stopsLoadingAtTheArbiterGrantOnceBufferedForPlayback() {
+    BufferMemoryArbiter arbiter = new BufferMemoryArbiter(/* totalBudgetBytes= */ 16 * ALLOCATION_LENGTH);
+    AdaptiveLoadControl loadControl =
+        new AdaptiveLoadControl.Builder()
+            .setAllocator(allocator)
+            .setTargetBufferBytes(TARGET_BUFFER_BYTES)
+            .setBufferMemoryArbiter(arbiter, BufferMemoryArbiter.PRIORITY_FOREGROUND)
+            .createAdaptiveLoadControl();
+    prepare(loadControl);
+    assertEquals(16 * ALLOCATION_LENGTH, arbiter.getTotalGrantedBytes());
+
+    allocate(16);
+
+    assertTrue(loadControl.shouldContinueLoading(/* bufferedDurationUs= */ 1_000_000, 1f));
+    assertFalse(loadControl.shouldContinueLoading(/* bufferedDurationUs= */ 6_000_000, 1f));
+  }
+
+  @Test
+  public void highWatermarkFollowsTheArbiterGrant() {
+    BufferMemoryArbiter arbiter = new BufferMemoryArbiter(/* totalBudgetBytes= */ 64 * ALLOCATION_LENGTH);
+    AdaptiveLoadControl loadControl =
+        new AdaptiveLoadControl.Builder()
+            .setAllocator(allocator)
+            .setTargetBufferBytes(TARGET_BUFFER_BYTES)
+            .setBufferMemoryArbiter(arbiter, BufferMemoryArbiter.PRIORITY_FOREGROUND)
+            .createAdaptiveLoadControl();
+    prepare(loadControl);
+    // 2 Mbit/s of media: 32 allocations hold about 8.4 seconds.
+    allocate(32);
+
+    loadControl.shouldContinueLoading(/* bufferedDurationUs= */ 8_388_608, 1f);
+
+    // The 64 allocation grant holds about 16.8 seconds, well below the 50 second maximum buffer.
+    assertEquals(16_777_216, loadControl.getHighWatermarkUs());
+  }
+
+  @Test
+  public void steadyLinkPlaysWithoutRebufferingInFewerBurstsThanDefaultLoadControl() {
+    long[] capacities = new long[] {8_000_000};
+
+    Result defaultResult = simulate(DEFAULT, capacities);
+    Result adaptiveResult = simulate(adaptive(/* arbiter= */ null), capacities);
+
+    assertEquals(0, adaptiveResult.rebufferCount);
+    assertTrue(
+        defaultResult + " / " + adaptiveResult,
+        adaptiveResult.loadingBurstCount < defaultResult.loadingBurstCount);
+  }
+
+  @Test
+  public void simulatedPlaybackStaysWithinTheArbiterGrant() {
+    int budgetBytes = 4 * 1024 * 1024;
+    BufferMemoryArbiter arbiter = new BufferMemoryArbiter(budgetBytes);
+
+    Result result = simulate(adaptive(arbiter), new long[] {8_000_000});
+
+    long segmentBytes = MEDIA_BITRATE * SEGMENT_DURATION_MS / 8000;
+    assertEquals(0, result.rebufferCount);
+    assertTrue(result.toString(), result.peakBytesAllocated <= budgetBytes + segmentBytes);
+  }
+
+  private void prepare(AdaptiveLoadControl loadControl) {
+    loadControl.onPrepared();
+    loadControl.onTracksSelected(new Renderer[0], /* trackGroups= */ null, new TrackSelectionArray());
+  }
+
+  private void allocate(int count) {
+    for (int i = 0; i < count; i++) {
+      Allocation allocation = allocator.allocate();
+      assertNotNull(allocation);
+    }
+  }
+
+  private static Result simulate(LoadControlFactory factory, long[] capacities) {
+    return LoadControlSimulator.simulate(
+        factory,
+        capacities,
+        /* periodMs= */ 1000,
+        MEDIA_BITRATE,
+        SEGMENT_DURATION_MS,
+        MEDIA_DURATION_MS);
+  }
+
+  private static LoadControlFactory adaptive(@Nullable BufferMemoryArbiter arbiter) {
+    return (allocator, bandwidthMeter, clock) -> {
+      AdaptiveLoadControl.Builder builder =
+          new AdaptiveLoadControl.Builder()
+              .setAllocator(allocator)
+              .setBandwidthMeter(bandwidthMeter)
+              .setTargetBufferBytes(16 * 1024 * 1024)
+              .setClock(clock);
+      if (arbiter != null) {
+        builder.setBufferMemoryArbiter(arbiter, BufferMemoryArbiter.PRIORITY_FOREGROUND);
+      }
+      return builder.createAdaptiveLoadControl();
+    };
+  }
+}
@@ -0,0 +1,221 @@
+package com.google.android.exoplayer2;
+
+import static org.junit.Assert.assertEquals;
+
+import android.os.Handler.Callback;
+import android.os.Looper;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.HandlerWrapper;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit tests for {@link AdaptiveWorkScheduler}. */
+public final class AdaptiveWorkSchedulerTest {
+
+  private static final long NOW_MS = 1000;
+  private static final long NOW_US = NOW_MS * 1000;
+  private static final Object PERIOD_UID = new Object();
+
+  private FakeClock clock;
+  private AdaptiveWorkScheduler scheduler;
+
+  @Before
+  public void setUp() {
+    clock = new FakeClock(NOW_MS);
+    scheduler = new AdaptiveWorkScheduler(clock);
+  }
+
+  @Test
+  public void rendererNextWorkTimesCombineToTheEarliest() {
+    assertEquals(NOW_US + 5000, nextWork(NOW_US + 20000, NOW_US + 5000));
+    assertEquals(NOW_US + 5000, nextWork(Long.MAX_VALUE, NOW_US + 5000));
+    assertEquals(C.TIME_UNSET, nextWork(NOW_US + 5000, C.TIME_UNSET));
+    assertEquals(C.TIME_UNSET, nextWork(Long.MAX_VALUE, C.TIME_UNSET));
+    assertEquals(C.TIME_UNSET, nextWork(C.TIME_UNSET, Long.MAX_VALUE));
+    assertEquals(Long.MAX_VALUE, nextWork(Long.MAX_VALUE, Long.MAX_VALUE));
+    assertEquals(Long.MAX_VALUE, nextWork());
+  }
+
+  @Test
+  public void intervalFollowsTheEarliestRendererDeadline() {
+    assertEquals(20, scheduler.getIntervalMs(nextWork(NOW_US + 20000), C.TIME_UNSET));
+    assertEquals(5, scheduler.getIntervalMs(nextWork(NOW_US + 20000, NOW_US + 5000), C.TIME_UNSET));
+    // An idle renderer does not hold back one with a deadline.
+    assertEquals(5, scheduler.getIntervalMs(nextWork(Long.MAX_VALUE, NOW_US + 5000), C.TIME_UNSET));
+
+    clock.advanceTime(3);
+
+    assertEquals(2, scheduler.getIntervalMs(nextWork(NOW_US + 5000), C.TIME_UNSET));
+  }
+
+  @Test
+  public void unsetOrPastDeadlineFallsBackToTheDefaultInterval() {
+    assertEquals(10, scheduler.getIntervalMs(nextWork(C.TIME_UNSET), C.TIME_UNSET));
+    assertEquals(10, scheduler.getIntervalMs(nextWork(NOW_US + 5000, C.TIME_UNSET), C.TIME_UNSET));
+    assertEquals(10, scheduler.getIntervalMs(nextWork(Long.MAX_VALUE, C.TIME_UNSET), C.TIME_UNSET));
+    assertEquals(10, scheduler.getIntervalMs(nextWork(NOW_US), C.TIME_UNSET));
+    assertEquals(10, scheduler.getIntervalMs(nextWork(NOW_US - 1), C.TIME_UNSET));
+  }
+
+  @Test
+  public void intervalIsCappedAndFloored() {
+    assertEquals(100, scheduler.getIntervalMs(nextWork(), C.TIME_UNSET));
+    assertEquals(100, scheduler.getIntervalMs(nextWork(Long.MAX_VALUE), C.TIME_UNSET));
+    assertEquals(100, scheduler.getIntervalMs(nextWork(NOW_US + 500_000), C.TIME_UNSET));
+    assertEquals(1, scheduler.getIntervalMs(nextWork(NOW_US + 1), C.TIME_UNSET));
+    assertEquals(
+        1, scheduler.getIntervalMs(nextWork(NOW_US + 500_000), /* nextMessageDelayUs= */ 0));
+  }
+
+  @Test
+  public void positionBasedMessageShortensTheSleep() {
+    PendingMessageQueue.PendingMessageInfo nextInfo =
+        createResolvedMessage(/* periodIndex= */ 0, /* periodTimeUs= */ 1_030_000);
+
+    long delayUs =
+        AdaptiveWorkScheduler.getNextMessageDelayUs(
+            nextInfo, /* playingPeriodIndex= */ 0, /* positionUs= */ 1_000_000, 1f);
+
+    assertEquals(30000, delayUs);
+    assertEquals(30, scheduler.getIntervalMs(nextWork(Long.MAX_VALUE), delayUs));
+    assertEquals(20, scheduler.getIntervalMs(nextWork(NOW_US + 20000), delayUs));
+    // The renderer fallback is not lengthened by a later message.
+    assertEquals(10, scheduler.getIntervalMs(nextWork(C.TIME_UNSET), delayUs));
+  }
+
+  @Test
+  public void messageDelayScalesWithPlaybackSpeed() {
+    PendingMessageQueue.PendingMessageInfo nextInfo =
+        createResolvedMessage(/* periodIndex= */ 0, /* periodTimeUs= */ 1_040_000);
+
+    long delayUs =
+        AdaptiveWorkScheduler.getNextMessageDelayUs(
+            nextInfo, /* playingPeriodIndex= */ 0, /* positionUs= */ 1_000_000, 2f);
+
+    assertEquals(20000, delayUs);
+    assertEquals(20, scheduler.getIntervalMs(nextWork(), delayUs));
+  }
+
+  @Test
+  public void overdueMessageWakesAsSoonAsPossible() {
+    PendingMessageQueue.PendingMessageInfo nextInfo =
+        createResolvedMessage(/* periodIndex= */ 0, /* periodTimeUs= */ 900_000);
+
+    long delayUs =
+        AdaptiveWorkScheduler.getNextMessageDelayUs(
+            nextInfo, /* playingPeriodIndex= */ 0, /* positionUs= */ 1_000_000, 1f);
+
+    assertEquals(1, scheduler.getIntervalMs(nextWork(), delayUs));
+  }
+
+  @Test
+  public void messagesOutsideThePlayingPeriodDoNotShortenTheSleep() {
+    PendingMessageQueue.PendingMessageInfo otherPeriodInfo =
+        createResolvedMessage(/* periodIndex= */ 1, /* periodTimeUs= */ 0);
+    PendingMessageQueue.PendingMessageInfo unresolvedInfo =
+        new PendingMessageQueue.PendingMessageInfo(createMessage());
+
+    assertEquals(
+        C.TIME_UNSET,
+        AdaptiveWorkScheduler.getNextMessageDelayUs(
+            otherPeriodInfo, /* playingPeriodIndex= */ 0, /* positionUs= */ 0, 1f));
+    assertEquals(
+        C.TIME_UNSET,
+        AdaptiveWorkScheduler.getNextMessageDelayUs(
+            unresolvedInfo, /* playingPeriodIndex= */ 0, /* positionUs= */ 0, 1f));
+    assertEquals(
+        C.TIME_UNSET,
+        AdaptiveWorkScheduler.getNextMessageDelayUs(
+            /* nextInfo= */ null, /* playingPeriodIndex= */ 0, /* positionUs= */ 0, 1f));
+  }
+
+  @Test
+  public void wakeupsBeforeEveryRendererDeadlineAreCountedAsWasted() {
+    scheduler.onWakeup(/* isPlaying= */ true, nextWork(NOW_US + 5000, NOW_US + 20000));
+    scheduler.onWakeup(/* isPlaying= */ true, nextWork(Long.MAX_VALUE));
+    assertEquals(2, scheduler.getWakeupCount());
+    assertEquals(2, scheduler.getWastedWakeupCount());
+
+    // Deadlines within a millisecond, past or unset mean the renderers have work to do.
+    scheduler.onWakeup(/* isPlaying= */ true, nextWork(NOW_US + 1000, NOW_US + 20000));
+    scheduler.onWakeup(/* isPlaying= */ true, nextWork(NOW_US - 1000));
+    scheduler.onWakeup(/* isPlaying= */ true, nextWork(C.TIME_UNSET, NOW_US + 20000));
+    assertEquals(5, scheduler.getWakeupCount());
+    assertEquals(2, scheduler.getWastedWakeupCount());
+
+    clock.advanceTime(19);
+    scheduler.onWakeup(/* isPlaying= */ true, nextWork(NOW_US + 20000));
+    assertEquals(6, scheduler.getWakeupCount());
+    assertEquals(2, scheduler.getWastedWakeupCount());
+  }
+
+  @Test
+  public void wakeupsWhileNotPlayingAreNeverWasted() {
+    scheduler.onWakeup(/* isPlaying= */ false, nextWork(NOW_US + 20000));
+    scheduler.onWakeup(/* isPlaying= */ false, nextWork(Long.MAX_VALUE));
+    scheduler.onWakeup(/* isPlaying= */ false, C.TIME_UNSET);
+
+    assertEquals(3, scheduler.getWakeupCount());
+    assertEquals(0, scheduler.getWastedWakeupCount());
+  }
+
+  private static long nextWork(long... rendererNextWorkElapsedRealtimeUs) {
+    long nextWorkElapsedRealtimeUs = Long.MAX_VALUE;
+    for (long rendererNextWork : rendererNextWorkElapsedRealtimeUs) {
+      nextWorkElapsedRealtimeUs =
+          AdaptiveWorkScheduler.getEarlierNextWork(nextWorkElapsedRealtimeUs, rendererNextWork);
+    }
+    return nextWorkElapsedRealtimeUs;
+  }
+
+  private static PendingMessageQueue.PendingMessageInfo createResolvedMessage(
+      int periodIndex, long periodTimeUs) {
+    PendingMessageQueue.PendingMessageInfo pendingMessageInfo =
+        new PendingMessageQueue.PendingMessageInfo(createMessage());
+    pendingMessageInfo.setResolvedPosition(periodIndex, periodTimeUs, PERIOD_UID);
+    return pendingMessageInfo;
+  }
+
+  private static PlayerMessage createMessage() {
+    return new PlayerMessage(
+        message -> {},
+        (messageType, payload) -> {},
+        Timeline.EMPTY,
+        /* defaultWindowIndex= */ 0,
+        /* defaultHandler= */ null);
+  }
+
+  private static final class FakeClock implements Clock {
+
+    private long elapsedRealtimeMs;
+
+    public FakeClock(long elapsedRealtimeMs) {
+      this.elapsedRealtimeMs = elapsedRealtimeMs;
+    }
+
+    public void advanceTime(long timeDiffMs) {
+      elapsedRealtimeMs += timeDiffMs;
+    }
+
+    @Override
+    public long elapsedRealtime() {
+      return elapsedRealtimeMs;
+    }
+
+    @Override
+    public long uptimeMillis() {
+      return elapsedRealtimeMs;
+    }
+
+    @Override
+    public void sleep(long sleepTimeMs) {
+      advanceTime(sleepTimeMs);
+    }
+
+    @Override
+    public HandlerWrapper createHandler(Looper looper, @Nullable Callback callback) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package com.google.android.exoplayer2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit tests for {@link BufferMemoryArbiter}. */
+@RunWith(RobolectricTestRunner.class)
+public final class BufferMemoryArbiterTest {
+
+  private static final long TIMEOUT_MS = 5000;
+
+  @Test
+  public void foregroundIsServedBeforePreviewAndBackgroundGetsNothing() {
+    BufferMemoryArbiter arbiter = new BufferMemoryArbiter(/* totalBudgetBytes= */ 1000);
+    RecordingParticipant foreground = new RecordingParticipant();
+    RecordingParticipant preview = new RecordingParticipant();
+    RecordingParticipant background = new RecordingParticipant();
+    arbiter.register(foreground, BufferMemoryArbiter.PRIORITY_FOREGROUND);
+    arbiter.register(preview, BufferMemoryArbiter.PRIORITY_PREVIEW);
+    arbiter.register(background, BufferMemoryArbiter.PRIORITY_BACKGROUND);
+
+    arbiter.setDemand(foreground, 700);
+    arbiter.setDemand(preview, 700);
+    arbiter.setDemand(background, 700);
+
+    assertEquals(700, foreground.grantedBytes.get());
+    assertEquals(300, preview.grantedBytes.get());
+    assertEquals(0, background.grantedBytes.get());
+  }
+
+  @Test
+  public void setPriorityMovesTheGrant() {
+    BufferMemoryArbiter arbiter = new BufferMemoryArbiter(/* totalBudgetBytes= */ 1000);
+    RecordingParticipant first = new RecordingParticipant();
+    RecordingParticipant second = new RecordingParticipant();
+    arbiter.register(first, BufferMemoryArbiter.PRIORITY_FOREGROUND);
+    arbiter.register(second, BufferMemoryArbiter.PRIORITY_FOREGROUND);
+    arbiter.setDemand(first, 800);
+    arbiter.setDemand(second, 800);
+    assertEquals(500, first.grantedBytes.get());
+
+    arbiter.setPriority(second, BufferMemoryArbiter.PRIORITY_BACKGROUND);
+
+    assertEquals(800, first.grantedBytes.get());
+    assertEquals(0, second.grantedBytes.get());
+  }
+
+  @Test
+  public void setPriorityIgnoresUnregisteredParticipants() {
+    BufferMemoryArbiter arbiter = new BufferMemoryArbiter(/* totalBudgetBytes= */ 1000);
+    RecordingParticipant participant = new RecordingParticipant();
+
+    arbiter.setPriority(participant, BufferMemoryArbiter.PRIORITY_BACKGROUND);
+
+    assertEquals(0, participant.callCount.get());
+    assertEquals(0, arbiter.getTotalGrantedBytes());
+  }
+
+  @Test
+  public void grantsAreDeliveredOutsideTheArbiterLock() {
+    BufferMemoryArbiter arbiter = new BufferMemoryArbiter(/* totalBudgetBytes= */ 1000);
+    AtomicBoolean heldLock = new AtomicBoolean();
+    BufferMemoryArbiter.Participant participant =
+        grantedBytes -> heldLock.set(heldLock.get() || Thread.holdsLock(arbiter));
+    arbiter.register(participant, BufferMemoryArbiter.PRIORITY_FOREGROUND);
+
+    arbiter.setDemand(participant, 500);
+    arbiter.setTotalBudgetBytes(200);
+
+    assertFalse(heldLock.get());
+  }
+
+  @Test
+  public void grantsAreDeliveredOnTheRegisteringThread() throws Exception {
+    BufferMemoryArbiter arbiter = new BufferMemoryArbiter(/* totalBudgetBytes= */ 1000);
+    HandlerThread playbackThread = new HandlerThread("BufferMemoryArbiterTest");
+    playbackThread.start();
+    try {
+      Handler handler = new Handler(playbackThread.getLooper());
+      AtomicReference<Thread> callbackThread = new AtomicReference<>();
+      CountDownLatch granted = new CountDownLatch(1);
+      BufferMemoryArbiter.Participant participant =
+          grantedBytes -> {
+            if (grantedBytes == 300) {
+              callbackThread.set(Thread.currentThread());
+              granted.countDown();
+            }
+          };
+      CountDownLatch registered = new CountDownLatch(1);
+      handler.post(
+          () -> {
+            arbiter.register(participant, BufferMemoryArbiter.PRIORITY_FOREGROUND);
+            registered.countDown();
+          });
+      assertTrue(registered.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+      arbiter.setDemand(participant, 300);
+
+      assertTrue(granted.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+      assertSame(playbackThread, callbackThread.get());
+    } finally {
+      playbackThread.quit();
+    }
+  }
+
+  @Test
+  public void collectedParticipantReleasesItsShare() throws Exception {
+    BufferMemoryArbiter arbiter = new BufferMemoryArbiter(/* totalBudgetBytes= */ 1000);
+    RecordingParticipant survivor = new RecordingParticipant();
+    arbiter.register(survivor, BufferMemoryArbiter.PRIORITY_FOREGROUND);
+    arbiter.setDemand(survivor, 1000);
+    WeakReference<RecordingParticipant> collected = registerTemporaryParticipant(arbiter, 1000);
+    assertEquals(500, survivor.grantedBytes.get());
+
+    long deadlineMs = System.currentTimeMillis() + TIMEOUT_MS;
+    while (collected.get() != null && System.currentTimeMillis() < deadlineMs) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertNull(collected.get());
+    arbiter.setTotalBudgetBytes(1000);
+
+    assertEquals(1000, survivor.grantedBytes.get());
+  }
+
+  private static WeakReference<RecordingParticipant> registerTemporaryParticipant(
+      BufferMemoryArbiter arbiter, int demandBytes) {
+    RecordingParticipant participant = new RecordingParticipant();
+    arbiter.register(participant, BufferMemoryArbiter.PRIORITY_FOREGROUND);
+    arbiter.setDemand(participant, demandBytes);
+    return new WeakReference<>(participant);
+  }
+
+  private static final class RecordingParticipant implements BufferMemoryArbiter.Participant {
+
+    public final AtomicInteger grantedBytes = new AtomicInteger(-1);
+    public final AtomicInteger callCount = new AtomicInteger();
+
+    @Override
+    public void onBufferBudgetChanged(int grantedBytes) {
+      this.grantedBytes.set(grantedBytes);
+      callCount.incrementAndGet();
+    }
+  }
+}
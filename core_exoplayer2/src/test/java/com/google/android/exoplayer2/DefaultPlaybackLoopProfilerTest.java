@@ -0,0 +1,70 @@
+package com.google.android.exoplayer2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.google.android.exoplayer2.util.LatencyHistogram;
+import org.junit.Test;
+
+/** Unit tests for {@link DefaultPlaybackLoopProfiler}. */
+public final class DefaultPlaybackLoopProfilerTest {
+
+  @Test
+  public void phasesAreRecordedSeparately() {
+    DefaultPlaybackLoopProfiler profiler = new DefaultPlaybackLoopProfiler();
+    profiler.onPhaseEnded(PlaybackLoopProfiler.PHASE_DO_SOME_WORK, 1000);
+    profiler.onPhaseEnded(PlaybackLoopProfiler.PHASE_DO_SOME_WORK, 3000);
+    profiler.onPhaseEnded(PlaybackLoopProfiler.PHASE_RENDER, 500);
+
+    PlaybackLoopProfiler.Snapshot snapshot = profiler.getSnapshot();
+
+    LatencyHistogram.Snapshot doSomeWork =
+        snapshot.getPhaseSnapshot(PlaybackLoopProfiler.PHASE_DO_SOME_WORK);
+    assertEquals(2, doSomeWork.count);
+    assertEquals(2000, doSomeWork.getMean());
+    assertEquals(3000, doSomeWork.max);
+    assertEquals(1, snapshot.getPhaseSnapshot(PlaybackLoopProfiler.PHASE_RENDER).count);
+    assertEquals(0, snapshot.getPhaseSnapshot(PlaybackLoopProfiler.PHASE_DISCARD_BUFFER).count);
+    assertEquals(0, snapshot.getRendererCount());
+  }
+
+  @Test
+  public void renderersAreRecordedByIndexWithTheirTrackType() {
+    DefaultPlaybackLoopProfiler profiler = new DefaultPlaybackLoopProfiler();
+    profiler.onRenderEnded(/* rendererIndex= */ 0, C.TRACK_TYPE_VIDEO, 2000);
+    profiler.onRenderEnded(/* rendererIndex= */ 2, C.TRACK_TYPE_AUDIO, 1000);
+    profiler.onRenderEnded(/* rendererIndex= */ 2, C.TRACK_TYPE_AUDIO, 1000);
+
+    PlaybackLoopProfiler.Snapshot snapshot = profiler.getSnapshot();
+
+    assertEquals(3, snapshot.getRendererCount());
+    assertEquals(1, snapshot.getRendererSnapshot(0).count);
+    assertEquals(C.TRACK_TYPE_VIDEO, snapshot.getRendererTrackType(0));
+    assertNull(snapshot.getRendererSnapshot(1));
+    assertEquals(2, snapshot.getRendererSnapshot(2).count);
+    assertEquals(C.TRACK_TYPE_AUDIO, snapshot.getRendererTrackType(2));
+  }
+
+  @Test
+  public void outOfRangeRendererIndicesAreIgnored() {
+    DefaultPlaybackLoopProfiler profiler = new DefaultPlaybackLoopProfiler();
+    profiler.onRenderEnded(/* rendererIndex= */ -1, C.TRACK_TYPE_VIDEO, 1000);
+    profiler.onRenderEnded(/* rendererIndex= */ 16, C.TRACK_TYPE_VIDEO, 1000);
+
+    assertEquals(0, profiler.getSnapshot().getRendererCount());
+  }
+
+  @Test
+  public void resetClearsPhasesAndRenderers() {
+    DefaultPlaybackLoopProfiler profiler = new DefaultPlaybackLoopProfiler();
+    profiler.onPhaseEnded(PlaybackLoopProfiler.PHASE_RENDER, 1000);
+    profiler.onRenderEnded(/* rendererIndex= */ 0, C.TRACK_TYPE_VIDEO, 1000);
+
+    profiler.reset();
+
+    PlaybackLoopProfiler.Snapshot snapshot = profiler.getSnapshot();
+    assertEquals(0, snapshot.getPhaseSnapshot(PlaybackLoopProfiler.PHASE_RENDER).count);
+    assertEquals(1, snapshot.getRendererCount());
+    assertEquals(0, snapshot.getRendererSnapshot(0).count);
+  }
+}
@@ -0,0 +1,89 @@
+package com.google.android.exoplayer2;
+
+import com.google.android.exoplayer2.LoadControlSimulator.LoadControlFactory;
+import com.google.android.exoplayer2.LoadControlSimulator.Result;
+import com.google.android.exoplayer2.testutil.BenchmarkUtil;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/**
+ * Compares {@link DefaultLoadControl} and {@link AdaptiveLoadControl} on simulated links with
+ * {@link LoadControlSimulator}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public final class LoadControlSimulationBenchmark {
+
+  private static final long MEDIA_BITRATE = 2_000_000;
+  private static final long SEGMENT_DURATION_MS = 4000;
+  private static final long MEDIA_DURATION_MS = 600_000;
+  private static final long PERIOD_MS = 1000;
+  private static final int TARGET_BUFFER_BYTES = 16 * 1024 * 1024;
+
+  private static final LoadControlFactory DEFAULT =
+      (allocator, bandwidthMeter, clock) ->
+          new DefaultLoadControl.Builder()
+              .setAllocator(allocator)
+              .setTargetBufferBytes(TARGET_BUFFER_BYTES)
+              .createDefaultLoadControl();
+
+  private static final LoadControlFactory ADAPTIVE =
+      (allocator, bandwidthMeter, clock) ->
+          new AdaptiveLoadControl.Builder()
+              .setAllocator(allocator)
+              .setBandwidthMeter(bandwidthMeter)
+              .setTargetBufferBytes(TARGET_BUFFER_BYTES)
+              .setClock(clock)
+              .createAdaptiveLoadControl();
+
+  @Test
+  public void steadyLink() {
+    BenchmarkUtil.assumeBenchmarksEnabled();
+    long[] capacities = new long[] {8_000_000};
+    run("steady 8 Mbit/s", capacities);
+  }
+
+  @Test
+  public void variableLink() {
+    BenchmarkUtil.assumeBenchmarksEnabled();
+    for (int seed = 0; seed < 3; seed++) {
+      run("variable seed " + seed, createVariableCapacities(seed));
+    }
+  }
+
+  private static void run(String name, long[] capacities) {
+    report(name, "DefaultLoadControl", simulate(DEFAULT, capacities));
+    report(name, "AdaptiveLoadControl", simulate(ADAPTIVE, capacities));
+  }
+
+  private static Result simulate(LoadControlFactory factory, long[] capacities) {
+    return LoadControlSimulator.simulate(
+        factory, capacities, PERIOD_MS, MEDIA_BITRATE, SEGMENT_DURATION_MS, MEDIA_DURATION_MS);
+  }
+
+  private static void report(String name, String loadControl, Result result) {
+    BenchmarkUtil.report("LoadControl " + name, "%s %s", loadControl, result);
+  }
+
+  /**
+   * Returns ten minutes of capacities that hold for 5 to 30 seconds each, drawn between 0.5 and 8
+   * Mbit/s, with a quarter of the periods below the 2 Mbit/s media bitrate.
+   */
+  private static long[] createVariableCapacities(long seed) {
+    Random random = new Random(seed);
+    long[] capacities = new long[(int) (MEDIA_DURATION_MS * 2 / PERIOD_MS)];
+    int i = 0;
+    while (i < capacities.length) {
+      long capacity =
+          random.nextInt(4) == 0
+              ? 500_000 + random.nextInt(1_500_000)
+              : 2_000_000 + random.nextInt(6_000_000);
+      int holdPeriods = 5 + random.nextInt(26);
+      for (int j = 0; j < holdPeriods && i < capacities.length; j++) {
+        capacities[i++] = capacity;
+      }
+    }
+    return capacities;
+  }
+}
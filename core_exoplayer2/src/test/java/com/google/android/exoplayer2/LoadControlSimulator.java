@@ -0,0 +1,224 @@
+package com.google.android.exoplayer2;
+
+import android.net.Uri;
+import android.os.Handler.Callback;
+import android.os.Looper;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+import com.google.android.exoplayer2.upstream.Allocation;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.HandlerWrapper;
+import java.util.Locale;
+
+/**
+ * Plays a constant bitrate stream over a simulated link and reports how a {@link LoadControl}
+ * behaved.
+ *
+ * <p>The link capacity in bits per second is {@code capacities[i]} for the {@code i}-th period of
+ * {@code periodMs}, and the last entry holds for the rest of the simulation. Media is loaded one
+ * segment at a time at the link capacity, and the load control is consulted when the player is
+ * idle and after each segment, as the player does. Bytes are counted as allocated from the time
+ * they arrive until the media they hold has been played. A {@link DefaultBandwidthMeter} sees
+ * every transfer and is passed to the load control.
+ *
+ * <p>Loading time counts the time a transfer was in progress. It is a lower bound for the time the
+ * radio is on, which also includes the radio's tail after every burst.
+ */
+final class LoadControlSimulator {
+
+  private static final long TICK_MS = 10;
+  private static final DataSpec DATA_SPEC = new DataSpec(Uri.parse("https://simulation.invalid/"));
+
+  /** Creates the load control under test from the simulation's allocator, meter and clock. */
+  public interface LoadControlFactory {
+
+    LoadControl createLoadControl(Allocator allocator, BandwidthMeter bandwidthMeter, Clock clock);
+  }
+
+  /** The outcome of one simulated playback. */
+  public static final class Result {
+
+    public int rebufferCount;
+    public long rebufferTimeMs;
+    public long loadingTimeMs;
+    public int loadingBurstCount;
+    public int peakBytesAllocated;
+    public long durationMs;
+
+    @Override
+    public String toString() {
+      return String.format(
+          Locale.US,
+          "rebuffers=%d rebufferTime=%dms loadingTime=%dms bursts=%d peakBytes=%d duration=%dms",
+          rebufferCount,
+          rebufferTimeMs,
+          loadingTimeMs,
+          loadingBurstCount,
+          peakBytesAllocated,
+          durationMs);
+    }
+  }
+
+  private LoadControlSimulator() {}
+
+  public static Result simulate(
+      LoadControlFactory loadControlFactory,
+      long[] capacities,
+      long periodMs,
+      long mediaBitrate,
+      long segmentDurationMs,
+      long mediaDurationMs) {
+    FakeClock clock = new FakeClock();
+    FakeAllocator allocator = new FakeAllocator();
+    DefaultBandwidthMeter bandwidthMeter =
+        new DefaultBandwidthMeter.Builder(/* context= */ null).setClock(clock).build();
+    LoadControl loadControl =
+        loadControlFactory.createLoadControl(allocator, bandwidthMeter, clock);
+    loadControl.onPrepared();
+    loadControl.onTracksSelected(
+        new Renderer[0], /* trackGroups= */ null, new TrackSelectionArray());
+
+    Result result = new Result();
+    long mediaDurationUs = mediaDurationMs * 1000;
+    long segmentDurationUs = segmentDurationMs * 1000;
+    long segmentBytes = mediaBitrate * segmentDurationMs / 8000;
+    long loadedUs = 0;
+    long playedUs = 0;
+    double segmentBytesLoaded = 0;
+    boolean loading = false;
+    boolean playing = false;
+    boolean started = false;
+    boolean rebuffering = false;
+
+    while (playedUs < mediaDurationUs) {
+      if (!loading
+          && loadedUs < mediaDurationUs
+          && loadControl.shouldContinueLoading(loadedUs - playedUs, /* playbackSpeed= */ 1f)) {
+        loading = true;
+        result.loadingBurstCount++;
+        bandwidthMeter.onTransferStart(/* source= */ null, DATA_SPEC, /* isNetwork= */ true);
+      }
+
+      if (loading) {
+        long capacity = capacities[(int) Math.min(capacities.length - 1, clock.timeMs / periodMs)];
+        double bytes = Math.min(capacity * TICK_MS / 8000.0, segmentBytes - segmentBytesLoaded);
+        int wholeBytes = (int) (segmentBytesLoaded + bytes) - (int) segmentBytesLoaded;
+        segmentBytesLoaded += bytes;
+        result.loadingTimeMs += TICK_MS;
+        clock.timeMs += TICK_MS;
+        if (wholeBytes > 0) {
+          bandwidthMeter.onBytesTransferred(
+              /* source= */ null, DATA_SPEC, /* isNetwork= */ true, wholeBytes);
+        }
+        if (segmentBytesLoaded >= segmentBytes) {
+          bandwidthMeter.onTransferEnd(/* source= */ null, DATA_SPEC, /* isNetwork= */ true);
+          loadedUs = Math.min(mediaDurationUs, loadedUs + segmentDurationUs);
+          segmentBytesLoaded = 0;
+          allocator.totalBytesAllocated = getBytesAllocated(loadedUs - playedUs, mediaBitrate, 0);
+          loading =
+              loadedUs < mediaDurationUs
+                  && loadControl.shouldContinueLoading(loadedUs - playedUs, 1f);
+          if (loading) {
+            bandwidthMeter.onTransferStart(/* source= */ null, DATA_SPEC, /* isNetwork= */ true);
+          }
+        }
+      } else {
+        clock.timeMs += TICK_MS;
+      }
+
+      long bufferedUs = loadedUs - playedUs;
+      if (playing) {
+        playedUs += Math.min(TICK_MS * 1000, bufferedUs);
+        if (playedUs == loadedUs && playedUs < mediaDurationUs) {
+          playing = false;
+          rebuffering = true;
+          result.rebufferCount++;
+        }
+      } else {
+        if (started) {
+          result.rebufferTimeMs += TICK_MS;
+        }
+        if (loadedUs == mediaDurationUs
+            || loadControl.shouldStartPlayback(bufferedUs, /* playbackSpeed= */ 1f, rebuffering)) {
+          playing = true;
+          started = true;
+          rebuffering = false;
+        }
+      }
+
+      allocator.totalBytesAllocated =
+          getBytesAllocated(loadedUs - playedUs, mediaBitrate, (long) segmentBytesLoaded);
+      result.peakBytesAllocated = Math.max(result.peakBytesAllocated, allocator.totalBytesAllocated);
+    }
+
+    loadControl.onReleased();
+    result.durationMs = clock.timeMs;
+    return result;
+  }
+
+  private static int getBytesAllocated(long bufferedUs, long mediaBitrate, long partialBytes) {
+    return (int) (bufferedUs * mediaBitrate / 8_000_000 + partialBytes);
+  }
+
+  private static final class FakeAllocator implements Allocator {
+
+    public int totalBytesAllocated;
+
+    @Override
+    public Allocation allocate() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void release(Allocation allocation) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void release(Allocation[] allocations) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void trim() {}
+
+    @Override
+    public int getTotalBytesAllocated() {
+      return totalBytesAllocated;
+    }
+
+    @Override
+    public int getIndividualAllocationLength() {
+      return 65536;
+    }
+  }
+
+  private static final class FakeClock implements Clock {
+
+    public long timeMs;
+
+    @Override
+    public long elapsedRealtime() {
+      return timeMs;
+    }
+
+    @Override
+    public long uptimeMillis() {
+      return timeMs;
+    }
+
+    @Override
+    public void sleep(long sleepTimeMs) {
+      timeMs += sleepTimeMs;
+    }
+
+    @Override
+    public HandlerWrapper createHandler(Looper looper, @Nullable Callback callback) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -0,0 +1,257 @@
+package com.google.android.exoplayer2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit tests for {@link PendingMessageQueue}. */
+@RunWith(RobolectricTestRunner.class)
+public final class PendingMessageQueueTest {
+
+  private static final Object PERIOD_UID_0 = new Object();
+  private static final Object PERIOD_UID_1 = new Object();
+
+  private PendingMessageQueue queue;
+  private List<Object> deliveredPayloads;
+
+  @Before
+  public void setUp() {
+    queue = new PendingMessageQueue();
+    deliveredPayloads = new ArrayList<>();
+  }
+
+  @Test
+  public void messagesAreDeliveredInPositionOrderAndFifoForEqualPositions() throws Exception {
+    add("c", /* periodIndex= */ 1, PERIOD_UID_1, /* positionUs= */ 0);
+    add("b2", /* periodIndex= */ 0, PERIOD_UID_0, /* positionUs= */ 200);
+    add("a", /* periodIndex= */ 0, PERIOD_UID_0, /* positionUs= */ 100);
+    add("b1", /* periodIndex= */ 0, PERIOD_UID_0, /* positionUs= */ 200);
+
+    queue.deliverMessages(/* periodIndex= */ 0, -1, 200, this::deliver);
+    queue.deliverMessages(/* periodIndex= */ 1, -1, 0, this::deliver);
+
+    assertEquals(Arrays.asList("a", "b2", "b1", "c"), deliveredPayloads);
+    assertTrue(queue.isEmpty());
+  }
+
+  @Test
+  public void messagesOutsideTheWindowAreNotDelivered() throws Exception {
+    add("before", /* periodIndex= */ 0, PERIOD_UID_0, /* positionUs= */ 100);
+    add("inside", /* periodIndex= */ 0, PERIOD_UID_0, /* positionUs= */ 200);
+    add("after", /* periodIndex= */ 0, PERIOD_UID_0, /* positionUs= */ 301);
+    add("otherPeriod", /* periodIndex= */ 1, PERIOD_UID_1, /* positionUs= */ 0);
+
+    queue.deliverMessages(/* periodIndex= */ 0, 100, 300, this::deliver);
+
+    assertEquals(Arrays.asList("inside"), deliveredPayloads);
+    assertEquals(3, queue.size());
+    assertEquals("after", queue.getNextMessage().message.getPayload());
+  }
+
+  @Test
+  public void seekBackRedeliversMessagesThatAreNotDeletedAfterDelivery() throws Exception {
+    add("kept", /* periodIndex= */ 0, PERIOD_UID_0, /* positionUs= */ 100)
+        .setDeleteAfterDelivery(false);
+    add("deleted", /* periodIndex= */ 0, PERIOD_UID_0, /* positionUs= */ 200);
+    queue.deliverMessages(/* periodIndex= */ 0, -1, 300, this::deliver);
+    assertEquals(1, queue.size());
+    assertNull(queue.getNextMessage());
+
+    // Seek back to 50 and play to 300 again.
+    queue.deliverMessages(/* periodIndex= */ 0, 50, 300, this::deliver);
+
+    assertEquals(Arrays.asList("kept", "deleted", "kept"), deliveredPayloads);
+    assertEquals(1, queue.size());
+  }
+
+  @Test
+  public void canceledMessagesAreDroppedWithoutDelivery() throws Exception {
+    PlayerMessage canceledBeforeDelivery =
+        add("canceledBefore", /* periodIndex= */ 0, PERIOD_UID_0, /* positionUs= */ 100);
+    PlayerMessage canceledAfterDelivery =
+        add("canceledAfter", /* periodIndex= */ 0, PERIOD_UID_0, /* positionUs= */ 200)
+            .setDeleteAfterDelivery(false);
+    add("kept", /* periodIndex= */ 0, PERIOD_UID_0, /* positionUs= */ 300)
+        .setDeleteAfterDelivery(false);
+    sendAll(canceledBeforeDelivery, canceledAfterDelivery);
+    canceledBeforeDelivery.cancel();
+
+    queue.deliverMessages(/* periodIndex= */ 0, -1, 300, this::deliver);
+    assertEquals(Arrays.asList("canceledAfter", "kept"), deliveredPayloads);
+    assertEquals(2, queue.size());
+
+    canceledAfterDelivery.cancel();
+    queue.deliverMessages(/* periodIndex= */ 0, -1, 300, this::deliver);
+
+    assertEquals(Arrays.asList("canceledAfter", "kept", "kept"), deliveredPayloads);
+    assertEquals(1, queue.size());
+  }
+
+  @Test
+  public void insertionBeforeTheNextMessageKeepsTheNextMessage() throws Exception {
+    add("first", /* periodIndex= */ 0, PERIOD_UID_0, /* positionUs= */ 100)
+        .setDeleteAfterDelivery(false);
+    add("next", /* periodIndex= */ 0, PERIOD_UID_0, /* positionUs= */ 200);
+    queue.deliverMessages(/* periodIndex= */ 0, -1, 150, this::deliver);
+    assertEquals("next", queue.getNextMessage().message.getPayload());
+
+    add("earlier", /* periodIndex= */ 0, PERIOD_UID_0, /* positionUs= */ 50);
+
+    assertEquals("next", queue.getNextMessage().message.getPayload());
+    add("sooner", /* periodIndex= */ 0, PERIOD_UID_0, /* positionUs= */ 180);
+    assertEquals("sooner", queue.getNextMessage().message.getPayload());
+  }
+
+  @Test
+  public void throwPartWayThroughDeliveryLeavesTheQueueConsistent() throws Exception {
+    add("first", /* periodIndex= */ 0, PERIOD_UID_0, /* positionUs= */ 100);
+    add("kept", /* periodIndex= */ 0, PERIOD_UID_0, /* positionUs= */ 150)
+        .setDeleteAfterDelivery(false);
+    PlayerMessage throwing = createMessage("throwing", new ThrowOnceTarget());
+    addResolved(throwing, /* periodIndex= */ 0, PERIOD_UID_0, /* positionUs= */ 200);
+    add("last", /* periodIndex= */ 0, PERIOD_UID_0, /* positionUs= */ 300);
+
+    try {
+      queue.deliverMessages(/* periodIndex= */ 0, -1, 300, this::deliver);
+      fail();
+    } catch (ExoPlaybackException e) {
+      // Expected.
+    }
+
+    assertEquals(Arrays.asList("first", "kept"), deliveredPayloads);
+    assertEquals(3, queue.size());
+    assertSame(throwing, queue.getNextMessage().message);
+
+    queue.deliverMessages(/* periodIndex= */ 0, 150, 300, this::deliver);
+
+    assertEquals(Arrays.asList("first", "kept", "throwing", "last"), deliveredPayloads);
+    assertEquals(1, queue.size());
+    assertNull(queue.getNextMessage());
+  }
+
+  @Test
+  public void resolvePositionsReordersMessagesAndDropsUnresolvableOnes() throws Exception {
+    PlayerMessage dropped =
+        add("dropped", /* periodIndex= */ 0, PERIOD_UID_0, /* positionUs= */ 50);
+    add("a", /* periodIndex= */ 0, PERIOD_UID_0, /* positionUs= */ 100);
+    add("b", /* periodIndex= */ 1, PERIOD_UID_1, /* positionUs= */ 100);
+    add("c", /* periodIndex= */ 1, PERIOD_UID_1, /* positionUs= */ 200);
+    PlayerMessage unresolved = createMessage("unresolved", this::record);
+    queue.addUnresolved(unresolved);
+    // The new timeline swaps the two periods.
+    Map<Object, Integer> newPeriodIndices = new HashMap<>();
+    newPeriodIndices.put(PERIOD_UID_0, 1);
+    newPeriodIndices.put(PERIOD_UID_1, 0);
+
+    queue.resolvePositions(
+        pendingMessageInfo -> {
+          if (pendingMessageInfo.message == dropped) {
+            return false;
+          } else if (pendingMessageInfo.message == unresolved) {
+            pendingMessageInfo.setResolvedPosition(/* periodIndex= */ 0, 150, PERIOD_UID_1);
+          } else {
+            pendingMessageInfo.resolvedPeriodIndex =
+                newPeriodIndices.get(pendingMessageInfo.resolvedPeriodUid);
+          }
+          return true;
+        });
+
+    assertEquals(4, queue.size());
+    queue.deliverMessages(/* periodIndex= */ 0, -1, 1000, this::deliver);
+    queue.deliverMessages(/* periodIndex= */ 1, -1, 1000, this::deliver);
+    assertEquals(Arrays.asList("b", "unresolved", "c", "a"), deliveredPayloads);
+    assertTrue(queue.isEmpty());
+  }
+
+  @Test
+  public void clearMarksMessagesAsProcessed() throws Exception {
+    HandlerThread handlerThread = new HandlerThread("PendingMessageQueueTest");
+    handlerThread.start();
+    try {
+      PlayerMessage message =
+          createMessage("message", this::record).setHandler(new Handler(handlerThread.getLooper()));
+      addResolved(message, /* periodIndex= */ 0, PERIOD_UID_0, /* positionUs= */ 0);
+      sendAll(message);
+
+      queue.clear();
+
+      assertTrue(queue.isEmpty());
+      assertNull(queue.getNextMessage());
+      assertFalse(message.blockUntilDelivered());
+    } finally {
+      handlerThread.quit();
+    }
+  }
+
+  private PlayerMessage add(Object payload, int periodIndex, Object periodUid, long positionUs) {
+    PlayerMessage message = createMessage(payload, this::record);
+    addResolved(message, periodIndex, periodUid, positionUs);
+    return message;
+  }
+
+  private void addResolved(
+      PlayerMessage message, int periodIndex, Object periodUid, long positionUs) {
+    message.setPosition(positionUs / 1000);
+    PendingMessageQueue.PendingMessageInfo pendingMessageInfo =
+        new PendingMessageQueue.PendingMessageInfo(message);
+    pendingMessageInfo.setResolvedPosition(periodIndex, positionUs, periodUid);
+    queue.add(pendingMessageInfo);
+  }
+
+  private static PlayerMessage createMessage(Object payload, PlayerMessage.Target target) {
+    PlayerMessage.Sender sender = message -> {};
+    return new PlayerMessage(
+            sender, target, Timeline.EMPTY, /* defaultWindowIndex= */ 0, /* defaultHandler= */ null)
+        .setPayload(payload);
+  }
+
+  private static void sendAll(PlayerMessage... messages) {
+    for (PlayerMessage message : messages) {
+      message.send();
+    }
+  }
+
+  private void record(int messageType, Object payload) {
+    deliveredPayloads.add(payload);
+  }
+
+  /** Delivers a message the way {@link ExoPlayerImplInternal} does on the playback thread. */
+  private void deliver(PlayerMessage message) throws ExoPlaybackException {
+    if (!message.isCanceled()) {
+      try {
+        message.getTarget().handleMessage(message.getType(), message.getPayload());
+      } finally {
+        message.markAsProcessed(/* isDelivered= */ true);
+      }
+    }
+  }
+
+  private final class ThrowOnceTarget implements PlayerMessage.Target {
+
+    private boolean thrown;
+
+    @Override
+    public void handleMessage(int messageType, Object payload) throws ExoPlaybackException {
+      if (!thrown) {
+        thrown = true;
+        throw ExoPlaybackException.createForRenderer(new Exception(), /* rendererIndex= */ 0);
+      }
+      record(messageType, payload);
+    }
+  }
+}
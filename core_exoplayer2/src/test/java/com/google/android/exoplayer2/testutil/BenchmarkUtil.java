@@ -0,0 +1,27 @@
+package com.google.android.exoplayer2.testutil;
+
+import static org.junit.Assume.assumeTrue;
+
+import java.util.Locale;
+
+/**
+ * Helpers for the micro-benchmarks under {@code src/test}.
+ *
+ * <p>Benchmarks are skipped by default. Run them with {@code ./gradlew test -Dbenchmark=true}.
+ */
+public final class BenchmarkUtil {
+
+  public static final String BENCHMARK_PROPERTY = "benchmark";
+
+  private BenchmarkUtil() {}
+
+  /** Skips the calling test unless benchmarks were enabled on the command line. */
+  public static void assumeBenchmarksEnabled() {
+    assumeTrue("Benchmarks disabled, run with -Dbenchmark=true", Boolean.getBoolean(BENCHMARK_PROPERTY));
+  }
+
+  /** Prints a single benchmark result line. */
+  public static void report(String benchmark, String format, Object... args) {
+    System.out.println("[benchmark] " + benchmark + ": " + String.format(Locale.US, format, args));
+  }
+}
@@ -0,0 +1,300 @@
+package com.google.android.exoplayer2.testutil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A minimal HTTP/1.1 server on the loopback interface for tests of the socket-level HTTP stack.
+ *
+ * <p>Every path serves the same body. Requests are answered in order on each connection, which
+ * keeps the connection alive unless {@link #setKeepAlive(boolean)} turned that off, and range
+ * requests get a {@code 206} response. Requests whose target is in absolute form are counted as
+ * proxied, so the server also stands in for a plain HTTP proxy.
+ *
+ * <p>{@link #setResponseLatencyMs(long)} delays every response until the given time has passed
+ * since its request arrived. Requests are read on a separate thread from responses, so pipelined
+ * requests wait concurrently and the latency is paid once per pipeline rather than per request.
+ */
+public final class LocalHttpServer implements Closeable {
+
+  private static final Pattern RANGE_HEADER = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+  private final byte[] body;
+  private final ServerSocket serverSocket;
+  private final Thread acceptThread;
+  private final List<Socket> sockets;
+  private final List<String> requestLines;
+  private final AtomicInteger connectionCount;
+  private final AtomicInteger requestCount;
+  private final AtomicInteger proxiedRequestCount;
+
+  private volatile boolean keepAlive;
+  private volatile long responseLatencyMs;
+  private volatile boolean closed;
+
+  public LocalHttpServer(byte[] body) throws IOException {
+    this.body = body;
+    serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+    sockets = new ArrayList<>();
+    requestLines = new ArrayList<>();
+    connectionCount = new AtomicInteger();
+    requestCount = new AtomicInteger();
+    proxiedRequestCount = new AtomicInteger();
+    keepAlive = true;
+    acceptThread = new Thread(this::acceptConnections, "LocalHttpServer");
+    acceptThread.setDaemon(true);
+    acceptThread.start();
+  }
+
+  /** Returns the URL of {@code path} on this server. */
+  public String getUrl(String path) {
+    return "http://127.0.0.1:" + serverSocket.getLocalPort() + path;
+  }
+
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /** Sets whether responses keep the connection open. */
+  public void setKeepAlive(boolean keepAlive) {
+    this.keepAlive = keepAlive;
+  }
+
+  /** Sets the minimum time between the arrival of a request and its response. */
+  public void setResponseLatencyMs(long responseLatencyMs) {
+    this.responseLatencyMs = responseLatencyMs;
+  }
+
+  /** Returns the number of accepted TCP connections, i.e. the number of handshakes. */
+  public int getConnectionCount() {
+    return connectionCount.get();
+  }
+
+  public int getRequestCount() {
+    return requestCount.get();
+  }
+
+  /** Returns the number of requests whose target was in absolute form. */
+  public int getProxiedRequestCount() {
+    return proxiedRequestCount.get();
+  }
+
+  /** Closes every accepted connection, as a server does when its keep-alive timeout expires. */
+  public void closeConnections() throws IOException {
+    synchronized (sockets) {
+      for (Socket socket : sockets) {
+        socket.close();
+      }
+      sockets.clear();
+    }
+  }
+
+  /** Returns the request lines and headers received so far, one entry per line. */
+  public List<String> getRequestLines() {
+    synchronized (requestLines) {
+      return new ArrayList<>(requestLines);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    serverSocket.close();
+    synchronized (sockets) {
+      for (Socket socket : sockets) {
+        socket.close();
+      }
+    }
+  }
+
+  private void acceptConnections() {
+    while (!closed) {
+      Socket socket;
+      try {
+        socket = serverSocket.accept();
+        socket.setTcpNoDelay(true);
+      } catch (IOException e) {
+        return;
+      }
+      connectionCount.incrementAndGet();
+      synchronized (sockets) {
+        sockets.add(socket);
+      }
+      BlockingQueue<Response> responses = new LinkedBlockingQueue<>();
+      Thread reader = new Thread(() -> readRequests(socket, responses), "LocalHttpServer:reader");
+      Thread writer = new Thread(() -> writeResponses(socket, responses), "LocalHttpServer:writer");
+      reader.setDaemon(true);
+      writer.setDaemon(true);
+      reader.start();
+      writer.start();
+    }
+  }
+
+  private void readRequests(Socket socket, BlockingQueue<Response> responses) {
+    try {
+      InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+      while (true) {
+        String requestLine = readLine(inputStream);
+        if (requestLine == null) {
+          break;
+        }
+        if (requestLine.isEmpty()) {
+          continue;
+        }
+        long arrivalTimeNs = System.nanoTime();
+        String range = null;
+        long requestBodyLength = 0;
+        addRequestLine(requestLine);
+        String line;
+        while ((line = readLine(inputStream)) != null && !line.isEmpty()) {
+          addRequestLine(line);
+          int colon = line.indexOf(':');
+          if (colon <= 0) {
+            continue;
+          }
+          String name = line.substring(0, colon).trim().toLowerCase(Locale.US);
+          String value = line.substring(colon + 1).trim();
+          if (name.equals("range")) {
+            range = value;
+          } else if (name.equals("content-length")) {
+            requestBodyLength = Long.parseLong(value);
+          }
+        }
+        for (long i = 0; i < requestBodyLength; i++) {
+          if (inputStream.read() == -1) {
+            break;
+          }
+        }
+        requestCount.incrementAndGet();
+        String[] parts = requestLine.split(" ");
+        if (parts.length > 1 && !parts[1].startsWith("/")) {
+          proxiedRequestCount.incrementAndGet();
+        }
+        Response response =
+            new Response(arrivalTimeNs, range, parts[0].equals("HEAD"), keepAlive);
+        responses.add(response);
+        if (!response.keepAlive) {
+          break;
+        }
+      }
+    } catch (IOException e) {
+      // The connection was closed.
+    }
+    responses.add(Response.END_OF_STREAM);
+  }
+
+  private void writeResponses(Socket socket, BlockingQueue<Response> responses) {
+    try {
+      OutputStream outputStream = new BufferedOutputStream(socket.getOutputStream());
+      while (true) {
+        Response response = responses.take();
+        if (response == Response.END_OF_STREAM) {
+          break;
+        }
+        long dueTimeNs = response.arrivalTimeNs + TimeUnit.MILLISECONDS.toNanos(responseLatencyMs);
+        long delayNs = dueTimeNs - System.nanoTime();
+        if (delayNs > 0) {
+          TimeUnit.NANOSECONDS.sleep(delayNs);
+        }
+        writeResponse(outputStream, response);
+        outputStream.flush();
+        if (!response.keepAlive) {
+          break;
+        }
+      }
+    } catch (IOException | InterruptedException e) {
+      // The connection was closed.
+    }
+    try {
+      socket.close();
+    } catch (IOException e) {
+      // Ignore.
+    }
+  }
+
+  private void writeResponse(OutputStream outputStream, Response response) throws IOException {
+    int start = 0;
+    int end = body.length;
+    StringBuilder head = new StringBuilder();
+    Matcher matcher = response.range == null ? null : RANGE_HEADER.matcher(response.range);
+    if (matcher != null && matcher.matches()) {
+      start = (int) Math.min(Long.parseLong(matcher.group(1)), body.length);
+      if (!matcher.group(2).isEmpty()) {
+        end = (int) Math.min(Long.parseLong(matcher.group(2)) + 1, body.length);
+      }
+      head.append("HTTP/1.1 206 Partial Content\r\n");
+      head.append("Content-Range: bytes ")
+          .append(start)
+          .append('-')
+          .append(end - 1)
+          .append('/')
+          .append(body.length)
+          .append("\r\n");
+    } else {
+      head.append("HTTP/1.1 200 OK\r\n");
+    }
+    head.append("Content-Type: application/octet-stream\r\n");
+    head.append("Content-Length: ").append(end - start).append("\r\n");
+    if (!response.keepAlive) {
+      head.append("Connection: close\r\n");
+    }
+    head.append("\r\n");
+    outputStream.write(head.toString().getBytes(StandardCharsets.US_ASCII));
+    if (!response.head) {
+      outputStream.write(body, start, end - start);
+    }
+  }
+
+  private void addRequestLine(String line) {
+    synchronized (requestLines) {
+      requestLines.add(line);
+    }
+  }
+
+  private static String readLine(InputStream inputStream) throws IOException {
+    StringBuilder line = new StringBuilder();
+    int c;
+    while ((c = inputStream.read()) != -1) {
+      if (c == '\n') {
+        return line.toString();
+      } else if (c != '\r') {
+        line.append((char) c);
+      }
+    }
+    return line.length() == 0 ? null : line.toString();
+  }
+
+  private static final class Response {
+
+    public static final Response END_OF_STREAM = new Response(0, null, false, false);
+
+    public final long arrivalTimeNs;
+    public final String range;
+    public final boolean head;
+    public final boolean keepAlive;
+
+    public Response(long arrivalTimeNs, String range, boolean head, boolean keepAlive) {
+      this.arrivalTimeNs = arrivalTimeNs;
+      this.range = range;
+      this.head = head;
+      this.keepAlive = keepAlive;
+    }
+  }
+}
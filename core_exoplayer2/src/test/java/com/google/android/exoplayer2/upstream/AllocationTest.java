@@ -0,0 +1,65 @@
+package com.google.android.exoplayer2.upstream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import org.junit.Test;
+
+/** Unit tests for {@link Allocation}. */
+public final class AllocationTest {
+
+  @Test
+  public void arrayAllocationHasNoByteBuffer() {
+    byte[] data = new byte[8];
+    Allocation allocation = new Allocation(data, 4);
+    assertSame(data, allocation.data);
+    assertEquals(4, allocation.offset);
+    assertFalse(allocation.isDirect());
+    assertNull(allocation.getByteBuffer());
+  }
+
+  @Test
+  public void heapBufferAllocationStartsAtBufferPosition() {
+    byte[] data = new byte[16];
+    ByteBuffer buffer = ByteBuffer.wrap(data);
+    buffer.position(8);
+    buffer.limit(12);
+    Allocation allocation = new Allocation(buffer);
+
+    assertSame(data, allocation.data);
+    assertEquals(8, allocation.offset);
+    assertFalse(allocation.isDirect());
+    allocation.asByteBuffer(4).put(new byte[] {1, 2, 3, 4});
+    assertEquals(1, data[8]);
+    assertEquals(4, data[11]);
+  }
+
+  @Test
+  public void heapBufferSliceAllocationIncludesArrayOffset() {
+    ByteBuffer slab = ByteBuffer.allocate(16);
+    slab.position(4);
+    ByteBuffer slice = slab.slice();
+    slice.position(2);
+    Allocation allocation = new Allocation(slice);
+    assertEquals(6, allocation.offset);
+  }
+
+  @Test
+  public void directBufferAllocationKeepsNonNullData() {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(16);
+    buffer.position(4);
+    Allocation allocation = new Allocation(buffer);
+
+    assertNotNull(allocation.data);
+    assertTrue(allocation.isDirect());
+    ByteBuffer byteBuffer = allocation.getByteBuffer();
+    assertEquals(12, byteBuffer.remaining());
+    allocation.asByteBuffer(2).put((byte) 7);
+    assertEquals(7, buffer.get(4));
+  }
+}
@@ -0,0 +1,94 @@
+package com.google.android.exoplayer2.upstream;
+
+import com.google.android.exoplayer2.testutil.BenchmarkUtil;
+import com.google.android.exoplayer2.upstream.BandwidthTraceReplayer.Result;
+import com.google.android.exoplayer2.upstream.BandwidthTraceReplayer.Transfer;
+import java.io.FileReader;
+import java.io.Reader;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/**
+ * Compares the {@link BandwidthEstimator} implementations on transfer traces.
+ *
+ * <p>Synthetic traces with known capacity report the steady-state error and the time taken to
+ * follow a capacity change. Recorded traces can be replayed as well by passing a comma-separated
+ * list of files in the trace format of {@link BandwidthTraceReplayer} with {@code
+ * -DbandwidthTraces=...}; for those the final estimate of each estimator is reported.
+ */
+@RunWith(RobolectricTestRunner.class)
+public final class BandwidthEstimatorTraceReplayBenchmark {
+
+  private static final long SEGMENT_BYTES = 500_000;
+  private static final long SEGMENT_INTERVAL_MS = 2000;
+  private static final long PERIOD_MS = 1000;
+
+  @Test
+  public void syntheticTraces() {
+    BenchmarkUtil.assumeBenchmarksEnabled();
+    runStep("drop 8->2 Mbit/s", 8_000_000, 2_000_000);
+    runStep("rise 2->8 Mbit/s", 2_000_000, 8_000_000);
+    runStep("drop 3->1 Mbit/s", 3_000_000, 1_000_000);
+  }
+
+  @Test
+  public void recordedTraces() throws Exception {
+    BenchmarkUtil.assumeBenchmarksEnabled();
+    String traces = System.getProperty("bandwidthTraces");
+    if (traces == null || traces.isEmpty()) {
+      return;
+    }
+    for (String path : traces.split(",")) {
+      List<Transfer> transfers;
+      try (Reader reader = new FileReader(path)) {
+        transfers = BandwidthTraceReplayer.parse(reader);
+      }
+      for (Result result : replay(transfers)) {
+        long total = 0;
+        int count = 0;
+        for (long estimate : result.estimates) {
+          if (estimate != BandwidthEstimator.ESTIMATE_NOT_AVAILABLE) {
+            total += estimate;
+            count++;
+          }
+        }
+        BenchmarkUtil.report(
+            "Bandwidth trace " + path,
+            "%s samples=%d mean estimate=%d final estimate=%d",
+            result.estimator.getClass().getSimpleName(),
+            result.estimates.length,
+            count == 0 ? 0 : total / count,
+            result.getEstimateAt(Long.MAX_VALUE));
+      }
+    }
+  }
+
+  private static void runStep(String name, long fromCapacity, long toCapacity) {
+    long[] capacities = new long[90];
+    for (int i = 0; i < capacities.length; i++) {
+      capacities[i] = i < 45 ? fromCapacity : toCapacity;
+    }
+    List<Transfer> transfers =
+        BandwidthTraceReplayer.createSegmentTrace(
+            capacities, PERIOD_MS, SEGMENT_BYTES, SEGMENT_INTERVAL_MS);
+    for (Result result : replay(transfers)) {
+      BenchmarkUtil.report(
+          "Bandwidth step " + name,
+          "%s steady error=%.3f reaction to 20%%=%dms settled error=%.3f",
+          result.estimator.getClass().getSimpleName(),
+          result.getMeanRelativeError(15_000, 45_000, fromCapacity),
+          result.getTimeToReach(45_000, toCapacity, /* tolerance= */ 0.2),
+          result.getMeanRelativeError(60_000, 90_000, toCapacity));
+    }
+  }
+
+  private static List<Result> replay(List<Transfer> transfers) {
+    return BandwidthTraceReplayer.replay(
+        transfers,
+        new PercentileBandwidthEstimator(),
+        new EwmaBandwidthEstimator(),
+        new TimeSlicedBandwidthEstimator());
+  }
+}
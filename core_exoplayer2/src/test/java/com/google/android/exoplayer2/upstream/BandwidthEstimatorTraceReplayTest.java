@@ -0,0 +1,98 @@
+package com.google.android.exoplayer2.upstream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.android.exoplayer2.upstream.BandwidthTraceReplayer.Result;
+import com.google.android.exoplayer2.upstream.BandwidthTraceReplayer.Transfer;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Replays synthetic transfer traces through each {@link BandwidthEstimator}. */
+@RunWith(RobolectricTestRunner.class)
+public final class BandwidthEstimatorTraceReplayTest {
+
+  private static final long SEGMENT_BYTES = 500_000;
+  private static final long SEGMENT_INTERVAL_MS = 2000;
+
+  @Test
+  public void parseReadsTransfersAndSkipsComments() throws Exception {
+    List<Transfer> transfers =
+        BandwidthTraceReplayer.parse(
+            new StringReader("# start duration bytes\n0 1000 125000\n\n1500  500 62500\n"));
+
+    assertEquals(2, transfers.size());
+    assertEquals(1500, transfers.get(1).startTimeMs);
+    assertEquals(500, transfers.get(1).durationMs);
+    assertEquals(62500, transfers.get(1).bytes);
+  }
+
+  @Test
+  public void everyEstimatorSeesEverySample() {
+    List<Transfer> transfers = createTrace(new long[] {4_000_000, 4_000_000});
+    List<Result> results = replay(transfers);
+
+    for (Result result : results) {
+      assertEquals(transfers.size(), result.sampleTimesMs.length);
+      assertEquals(transfers.size(), result.estimates.length);
+    }
+  }
+
+  @Test
+  public void steadyLinkEstimatesConvergeToTheCapacity() {
+    long[] capacities = new long[60];
+    Arrays.fill(capacities, 4_000_000);
+
+    for (Result result : replay(createTrace(capacities))) {
+      double error = result.getMeanRelativeError(20_000, 60_000, 4_000_000);
+      assertTrue(result.estimator + " error " + error, error < 0.05);
+    }
+  }
+
+  @Test
+  public void estimatesFollowACapacityDrop() {
+    long[] capacities = new long[60];
+    for (int i = 0; i < capacities.length; i++) {
+      capacities[i] = i < 30 ? 8_000_000 : 2_000_000;
+    }
+
+    for (Result result : replay(createTrace(capacities))) {
+      assertTrue(result.estimator.toString(), result.getEstimateAt(29_999) > 6_000_000);
+      long reactionTimeMs = result.getTimeToReach(30_000, 2_000_000, /* tolerance= */ 0.25);
+      assertTrue(result.estimator + " took " + reactionTimeMs, reactionTimeMs <= 15_000);
+    }
+  }
+
+  @Test
+  public void concurrentTransfersAreMeasuredInAggregate() {
+    List<Transfer> transfers = new ArrayList<>();
+    // Two streams share a 4 Mbit/s link, so each one transfers 250 KB per second.
+    for (int i = 0; i < 30; i++) {
+      transfers.add(new Transfer(i * 1000L, 1000, 250_000));
+      transfers.add(new Transfer(i * 1000L + 500, 1000, 250_000));
+    }
+
+    for (Result result : replay(transfers)) {
+      long estimate = result.getEstimateAt(Long.MAX_VALUE);
+      assertTrue(result.estimator + " estimated " + estimate, Math.abs(estimate - 4_000_000) < 400_000);
+    }
+  }
+
+  private static List<Transfer> createTrace(long[] capacities) {
+    return BandwidthTraceReplayer.createSegmentTrace(
+        capacities, /* periodMs= */ 1000, SEGMENT_BYTES, SEGMENT_INTERVAL_MS);
+  }
+
+  private static List<Result> replay(List<Transfer> transfers) {
+    return BandwidthTraceReplayer.replay(
+        transfers,
+        new PercentileBandwidthEstimator(),
+        new EwmaBandwidthEstimator(),
+        new TimeSlicedBandwidthEstimator());
+  }
+}
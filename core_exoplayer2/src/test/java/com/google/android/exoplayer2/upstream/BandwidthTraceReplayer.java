@@ -0,0 +1,265 @@
+package com.google.android.exoplayer2.upstream;
+
+import android.net.Uri;
+import android.os.Handler.Callback;
+import android.os.Looper;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.HandlerWrapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Replays recorded network transfers through a {@link DefaultBandwidthMeter} and records the
+ * estimates of every {@link BandwidthEstimator} after each sample.
+ *
+ * <p>A trace has one transfer per line: start time in milliseconds, duration in milliseconds and
+ * bytes transferred, separated by whitespace. Lines starting with {@code #} are ignored. Transfers
+ * may overlap, and each one delivers its bytes at a constant rate, so the meter sees the same
+ * start, byte and end callbacks in the same order as it would have on the recorded network.
+ */
+final class BandwidthTraceReplayer {
+
+  private static final DataSpec DATA_SPEC = new DataSpec(Uri.parse("https://trace.invalid/"));
+
+  /** One recorded transfer. */
+  public static final class Transfer {
+
+    public final long startTimeMs;
+    public final long durationMs;
+    public final long bytes;
+
+    public Transfer(long startTimeMs, long durationMs, long bytes) {
+      this.startTimeMs = startTimeMs;
+      this.durationMs = durationMs;
+      this.bytes = bytes;
+    }
+
+    public long getEndTimeMs() {
+      return startTimeMs + durationMs;
+    }
+
+    private long getBytesTransferredAt(long timeMs) {
+      if (timeMs >= getEndTimeMs()) {
+        return bytes;
+      }
+      return timeMs <= startTimeMs ? 0 : bytes * (timeMs - startTimeMs) / durationMs;
+    }
+  }
+
+  /** The estimates of one estimator, one entry per meter sample. */
+  public static final class Result {
+
+    public final BandwidthEstimator estimator;
+    public final long[] sampleTimesMs;
+    public final long[] estimates;
+
+    private Result(BandwidthEstimator estimator, long[] sampleTimesMs, long[] estimates) {
+      this.estimator = estimator;
+      this.sampleTimesMs = sampleTimesMs;
+      this.estimates = estimates;
+    }
+
+    /** Returns the latest estimate at or before {@code timeMs}. */
+    public long getEstimateAt(long timeMs) {
+      long estimate = BandwidthEstimator.ESTIMATE_NOT_AVAILABLE;
+      for (int i = 0; i < sampleTimesMs.length && sampleTimesMs[i] <= timeMs; i++) {
+        estimate = estimates[i];
+      }
+      return estimate;
+    }
+
+    /**
+     * Returns the time of the first sample after {@code fromTimeMs} with an estimate within {@code
+     * tolerance} of {@code targetBitrate}, or {@link Long#MAX_VALUE} if the estimate never got
+     * there.
+     */
+    public long getTimeToReach(long fromTimeMs, long targetBitrate, double tolerance) {
+      for (int i = 0; i < sampleTimesMs.length; i++) {
+        if (sampleTimesMs[i] >= fromTimeMs
+            && estimates[i] != BandwidthEstimator.ESTIMATE_NOT_AVAILABLE
+            && Math.abs(estimates[i] - targetBitrate) <= targetBitrate * tolerance) {
+          return sampleTimesMs[i] - fromTimeMs;
+        }
+      }
+      return Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the mean of |estimate - reference| / reference over the samples in {@code
+     * [fromTimeMs, toTimeMs)} that have an estimate.
+     */
+    public double getMeanRelativeError(long fromTimeMs, long toTimeMs, long referenceBitrate) {
+      double errorSum = 0;
+      int count = 0;
+      for (int i = 0; i < sampleTimesMs.length; i++) {
+        if (sampleTimesMs[i] >= fromTimeMs
+            && sampleTimesMs[i] < toTimeMs
+            && estimates[i] != BandwidthEstimator.ESTIMATE_NOT_AVAILABLE) {
+          errorSum += Math.abs(estimates[i] - referenceBitrate) / (double) referenceBitrate;
+          count++;
+        }
+      }
+      return count == 0 ? Double.NaN : errorSum / count;
+    }
+  }
+
+  private BandwidthTraceReplayer() {}
+
+  /** Parses a trace in the format described in the class documentation. */
+  public static List<Transfer> parse(Reader reader) throws IOException {
+    List<Transfer> transfers = new ArrayList<>();
+    BufferedReader bufferedReader = new BufferedReader(reader);
+    String line;
+    while ((line = bufferedReader.readLine()) != null) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] fields = line.split("\\s+");
+      long durationMs = fields.length == 3 ? Long.parseLong(fields[1]) : 0;
+      if (durationMs <= 0) {
+        throw new IOException("Malformed trace line: " + line);
+      }
+      transfers.add(
+          new Transfer(Long.parseLong(fields[0]), durationMs, Long.parseLong(fields[2])));
+    }
+    return transfers;
+  }
+
+  /**
+   * Returns a trace of back-to-back segment downloads of {@code segmentBytes} each, over a link
+   * whose capacity in bits per second is {@code capacities[i]} for the {@code i}-th period of
+   * {@code periodMs}. A segment is requested every {@code segmentIntervalMs}, or as soon as the
+   * previous one finishes if that is later, so the link is idle between downloads on fast links.
+   */
+  public static List<Transfer> createSegmentTrace(
+      long[] capacities, long periodMs, long segmentBytes, long segmentIntervalMs) {
+    List<Transfer> transfers = new ArrayList<>();
+    long endTimeMs = capacities.length * periodMs;
+    long timeMs = 0;
+    while (timeMs < endTimeMs) {
+      long startTimeMs = timeMs;
+      double remainingBits = segmentBytes * 8.0;
+      while (remainingBits > 0 && timeMs < endTimeMs) {
+        long capacity = capacities[(int) (timeMs / periodMs)];
+        remainingBits -= capacity / 1000.0;
+        timeMs++;
+      }
+      if (remainingBits > 0) {
+        break;
+      }
+      transfers.add(new Transfer(startTimeMs, Math.max(1, timeMs - startTimeMs), segmentBytes));
+      timeMs = Math.max(timeMs, startTimeMs + segmentIntervalMs);
+    }
+    return transfers;
+  }
+
+  /**
+   * Replays {@code transfers} through a meter driven by {@code estimators[0]}, with the others as
+   * secondary estimators, and returns one result per estimator in the same order.
+   */
+  public static List<Result> replay(List<Transfer> transfers, BandwidthEstimator... estimators) {
+    FakeClock clock = new FakeClock();
+    DefaultBandwidthMeter.Builder builder =
+        new DefaultBandwidthMeter.Builder(/* context= */ null)
+            .setBandwidthEstimator(estimators[0])
+            .setClock(clock);
+    for (int i = 1; i < estimators.length; i++) {
+      builder.addSecondaryBandwidthEstimator(estimators[i]);
+    }
+    DefaultBandwidthMeter meter = builder.build();
+
+    TreeSet<Long> eventTimesMs = new TreeSet<>();
+    for (Transfer transfer : transfers) {
+      eventTimesMs.add(transfer.startTimeMs);
+      eventTimesMs.add(transfer.getEndTimeMs());
+    }
+    long[] bytesReported = new long[transfers.size()];
+    // 0 until a transfer starts, 1 while it is running and 2 once it has ended.
+    int[] states = new int[transfers.size()];
+    List<Long> sampleTimesMs = new ArrayList<>();
+    List<List<Long>> estimates = new ArrayList<>();
+    for (int i = 0; i < estimators.length; i++) {
+      estimates.add(new ArrayList<>());
+    }
+
+    for (long timeMs : eventTimesMs) {
+      clock.timeMs = timeMs;
+      for (int i = 0; i < transfers.size(); i++) {
+        if (states[i] == 1) {
+          long bytes = transfers.get(i).getBytesTransferredAt(timeMs) - bytesReported[i];
+          while (bytes > 0) {
+            int chunk = (int) Math.min(bytes, Integer.MAX_VALUE);
+            meter.onBytesTransferred(/* source= */ null, DATA_SPEC, /* isNetwork= */ true, chunk);
+            bytesReported[i] += chunk;
+            bytes -= chunk;
+          }
+        }
+      }
+      // Transfers ending at this time end before transfers starting at it, as they do when a
+      // player requests the next segment once the previous one has finished.
+      for (int i = 0; i < transfers.size(); i++) {
+        if (states[i] == 1 && transfers.get(i).getEndTimeMs() == timeMs) {
+          states[i] = 2;
+          meter.onTransferEnd(/* source= */ null, DATA_SPEC, /* isNetwork= */ true);
+          sampleTimesMs.add(timeMs);
+          for (int j = 0; j < estimators.length; j++) {
+            estimates.get(j).add(estimators[j].getBandwidthEstimate());
+          }
+        }
+      }
+      for (int i = 0; i < transfers.size(); i++) {
+        if (states[i] == 0 && transfers.get(i).startTimeMs == timeMs) {
+          states[i] = 1;
+          meter.onTransferStart(/* source= */ null, DATA_SPEC, /* isNetwork= */ true);
+        }
+      }
+    }
+
+    List<Result> results = new ArrayList<>();
+    for (int i = 0; i < estimators.length; i++) {
+      results.add(
+          new Result(estimators[i], toArray(sampleTimesMs), toArray(estimates.get(i))));
+    }
+    return Collections.unmodifiableList(results);
+  }
+
+  private static long[] toArray(List<Long> values) {
+    long[] array = new long[values.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = values.get(i);
+    }
+    return array;
+  }
+
+  private static final class FakeClock implements Clock {
+
+    public long timeMs;
+
+    @Override
+    public long elapsedRealtime() {
+      return timeMs;
+    }
+
+    @Override
+    public long uptimeMillis() {
+      return timeMs;
+    }
+
+    @Override
+    public void sleep(long sleepTimeMs) {
+      timeMs += sleepTimeMs;
+    }
+
+    @Override
+    public HandlerWrapper createHandler(Looper looper, @Nullable Callback callback) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package com.google.android.exoplayer2.upstream;
+
+import static org.junit.Assert.assertEquals;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import androidx.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit tests for the transfer event batching in {@link BaseDataSource}. */
+@RunWith(RobolectricTestRunner.class)
+public final class BaseDataSourceTest {
+
+  private static final DataSpec DATA_SPEC = new DataSpec(Uri.parse("https://test.invalid/media"));
+
+  private TestDataSource dataSource;
+  private List<Integer> transfers;
+
+  @Before
+  public void setUp() {
+    dataSource = new TestDataSource();
+    transfers = new ArrayList<>();
+    dataSource.addTransferListener(
+        new TransferListener() {
+          @Override
+          public void onTransferInitializing(DataSource source, DataSpec dataSpec, boolean isNetwork) {}
+
+          @Override
+          public void onTransferStart(DataSource source, DataSpec dataSpec, boolean isNetwork) {}
+
+          @Override
+          public void onBytesTransferred(
+              DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
+            transfers.add(bytesTransferred);
+          }
+
+          @Override
+          public void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {}
+        });
+  }
+
+  @Test
+  public void withoutBatchingEveryReadIsReported() {
+    dataSource.transferStarted(DATA_SPEC);
+    dataSource.bytesTransferred(10);
+    dataSource.bytesTransferred(20);
+
+    assertEquals(2, transfers.size());
+  }
+
+  @Test
+  public void byteThresholdBatchesReads() {
+    dataSource.setTransferBatching(/* batchBytesThreshold= */ 100, /* batchIntervalMs= */ 0);
+    dataSource.transferStarted(DATA_SPEC);
+    for (int i = 0; i < 25; i++) {
+      dataSource.bytesTransferred(10);
+    }
+    assertEquals(2, transfers.size());
+
+    dataSource.transferEnded();
+
+    assertEquals(3, transfers.size());
+    assertEquals(100, (int) transfers.get(0));
+    assertEquals(100, (int) transfers.get(1));
+    assertEquals(50, (int) transfers.get(2));
+  }
+
+  @Test
+  public void intervalOnlyBatchingDoesNotFlushEveryRead() {
+    dataSource.setTransferBatching(/* batchBytesThreshold= */ 0, /* batchIntervalMs= */ 60000);
+    dataSource.transferStarted(DATA_SPEC);
+    for (int i = 0; i < 10; i++) {
+      dataSource.bytesTransferred(10);
+    }
+    assertEquals(0, transfers.size());
+
+    dataSource.transferEnded();
+
+    assertEquals(1, transfers.size());
+    assertEquals(100, (int) transfers.get(0));
+  }
+
+  @Test
+  public void byteThresholdFlushRestartsTheInterval() {
+    dataSource.setTransferBatching(/* batchBytesThreshold= */ 100, /* batchIntervalMs= */ 400);
+    dataSource.transferStarted(DATA_SPEC);
+    SystemClock.sleep(300);
+    dataSource.bytesTransferred(100);
+    assertEquals(1, transfers.size());
+
+    SystemClock.sleep(200);
+    dataSource.bytesTransferred(1);
+
+    // Only 200ms passed since the threshold flush, so the interval has not elapsed yet.
+    assertEquals(1, transfers.size());
+  }
+
+  @Test
+  public void intervalFlushesPendingBytes() {
+    dataSource.setTransferBatching(/* batchBytesThreshold= */ 0, /* batchIntervalMs= */ 100);
+    dataSource.transferStarted(DATA_SPEC);
+    dataSource.bytesTransferred(1);
+    SystemClock.sleep(150);
+    dataSource.bytesTransferred(1);
+
+    assertEquals(1, transfers.size());
+    assertEquals(2, (int) transfers.get(0));
+  }
+
+  private static final class TestDataSource extends BaseDataSource {
+
+    public TestDataSource() {
+      super(/* isNetwork= */ true);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+      return null;
+    }
+
+    @Override
+    public void close() {}
+  }
+}
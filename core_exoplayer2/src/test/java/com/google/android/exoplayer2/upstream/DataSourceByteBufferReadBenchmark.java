@@ -0,0 +1,105 @@
+package com.google.android.exoplayer2.upstream;
+
+import static org.junit.Assert.assertEquals;
+
+import android.net.Uri;
+import com.google.android.exoplayer2.testutil.BenchmarkUtil;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/**
+ * Compares reading a 1 GB file through {@link FileDataSource} into a direct buffer using {@link
+ * DataSource#read(byte[], int, int)} plus a copy against {@link DataSource#read(ByteBuffer)}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public final class DataSourceByteBufferReadBenchmark {
+
+  private static final long FILE_LENGTH = 1L << 30;
+  private static final int BUFFER_SIZE = 65536;
+  private static final int ROUNDS = 3;
+
+  private File file;
+
+  @Before
+  public void setUp() throws Exception {
+    BenchmarkUtil.assumeBenchmarksEnabled();
+    file = File.createTempFile("DataSourceByteBufferReadBenchmark", null);
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+      byte[] chunk = new byte[1 << 20];
+      for (int i = 0; i < chunk.length; i++) {
+        chunk[i] = (byte) i;
+      }
+      for (long written = 0; written < FILE_LENGTH; written += chunk.length) {
+        randomAccessFile.write(chunk);
+      }
+    }
+  }
+
+  @After
+  public void tearDown() {
+    if (file != null) {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void byteBufferReadThroughput() throws Exception {
+    ByteBuffer target = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    byte[] scratch = new byte[BUFFER_SIZE];
+    double bestArrayMbPerSecond = 0;
+    double bestByteBufferMbPerSecond = 0;
+    for (int round = 0; round < ROUNDS; round++) {
+      bestArrayMbPerSecond = Math.max(bestArrayMbPerSecond, readWithArray(target, scratch));
+      bestByteBufferMbPerSecond = Math.max(bestByteBufferMbPerSecond, readWithByteBuffer(target));
+    }
+    BenchmarkUtil.report(
+        "FileDataSource 1 GB into direct buffer",
+        "read(byte[])+copy MB/s=%.0f read(ByteBuffer) MB/s=%.0f speedup=%.2fx",
+        bestArrayMbPerSecond,
+        bestByteBufferMbPerSecond,
+        bestByteBufferMbPerSecond / bestArrayMbPerSecond);
+  }
+
+  private double readWithArray(ByteBuffer target, byte[] scratch) throws IOException {
+    FileDataSource dataSource = new FileDataSource();
+    long startTimeNs = System.nanoTime();
+    dataSource.open(new DataSpec(Uri.fromFile(file)));
+    long totalRead = 0;
+    int read;
+    while ((read = dataSource.read(scratch, 0, scratch.length)) != -1) {
+      target.clear();
+      target.put(scratch, 0, read);
+      totalRead += read;
+    }
+    dataSource.close();
+    assertEquals(FILE_LENGTH, totalRead);
+    return toMbPerSecond(totalRead, System.nanoTime() - startTimeNs);
+  }
+
+  private double readWithByteBuffer(ByteBuffer target) throws IOException {
+    FileDataSource dataSource = new FileDataSource();
+    long startTimeNs = System.nanoTime();
+    dataSource.open(new DataSpec(Uri.fromFile(file)));
+    long totalRead = 0;
+    int read;
+    target.clear();
+    while ((read = dataSource.read(target)) != -1) {
+      target.clear();
+      totalRead += read;
+    }
+    dataSource.close();
+    assertEquals(FILE_LENGTH, totalRead);
+    return toMbPerSecond(totalRead, System.nanoTime() - startTimeNs);
+  }
+
+  private static double toMbPerSecond(long bytes, long elapsedNs) {
+    return bytes / (1024.0 * 1024.0) / (elapsedNs / 1e9);
+  }
+}
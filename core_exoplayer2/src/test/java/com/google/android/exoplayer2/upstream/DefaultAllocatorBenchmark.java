@@ -0,0 +1,140 @@
+package com.google.android.exoplayer2.upstream;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.android.exoplayer2.testutil.BenchmarkUtil;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+
+/**
+ * Measures allocate/release throughput of {@link DefaultAllocator} with several threads, against a
+ * baseline that synchronizes every call and notifies on release like the allocator used to.
+ */
+public final class DefaultAllocatorBenchmark {
+
+  private static final int ALLOCATION_SIZE = 65536;
+  private static final int BATCH_SIZE = 16;
+  private static final int BATCHES_PER_THREAD = 200000;
+  private static final int[] THREAD_COUNTS = {1, 2, 4};
+
+  @Test
+  public void allocateReleaseThroughput() throws Exception {
+    BenchmarkUtil.assumeBenchmarksEnabled();
+    for (int threadCount : THREAD_COUNTS) {
+      // Warm up both allocators before measuring.
+      run(new DefaultAllocator(true, ALLOCATION_SIZE), threadCount, BATCHES_PER_THREAD / 10);
+      run(new SynchronizedAllocator(ALLOCATION_SIZE), threadCount, BATCHES_PER_THREAD / 10);
+      DefaultAllocator allocator = new DefaultAllocator(true, ALLOCATION_SIZE);
+      double magazineOpsPerSecond = run(allocator, threadCount, BATCHES_PER_THREAD);
+      double synchronizedOpsPerSecond =
+          run(new SynchronizedAllocator(ALLOCATION_SIZE), threadCount, BATCHES_PER_THREAD);
+      BenchmarkUtil.report(
+          "DefaultAllocator allocate/release",
+          "threads=%d magazine ops/s=%.0f synchronized ops/s=%.0f speedup=%.2fx",
+          threadCount,
+          magazineOpsPerSecond,
+          synchronizedOpsPerSecond,
+          magazineOpsPerSecond / synchronizedOpsPerSecond);
+      assertEquals(0, allocator.getTotalBytesAllocated());
+    }
+  }
+
+  private static double run(Allocator allocator, int threadCount, int batches) throws Exception {
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < threadCount; i++) {
+      Thread thread =
+          new Thread(
+              () -> {
+                Allocation[] allocations = new Allocation[BATCH_SIZE];
+                try {
+                  start.await();
+                } catch (InterruptedException e) {
+                  return;
+                }
+                for (int batch = 0; batch < batches; batch++) {
+                  for (int j = 0; j < BATCH_SIZE; j++) {
+                    allocations[j] = allocator.allocate();
+                  }
+                  // Release one by one, as sample queues do when discarding.
+                  for (int j = 0; j < BATCH_SIZE; j++) {
+                    allocator.release(allocations[j]);
+                  }
+                }
+              });
+      threads.add(thread);
+      thread.start();
+    }
+    long startTimeNs = System.nanoTime();
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    double elapsedSeconds = (System.nanoTime() - startTimeNs) / 1e9;
+    return 2.0 * threadCount * batches * BATCH_SIZE / elapsedSeconds;
+  }
+
+  /** A pool that synchronizes every call and notifies on release. */
+  private static final class SynchronizedAllocator implements Allocator {
+
+    private final int individualAllocationSize;
+    private final Allocation[] singleAllocationReleaseHolder;
+    private Allocation[] availableAllocations;
+    private int availableCount;
+    private int allocatedCount;
+
+    public SynchronizedAllocator(int individualAllocationSize) {
+      this.individualAllocationSize = individualAllocationSize;
+      singleAllocationReleaseHolder = new Allocation[1];
+      availableAllocations = new Allocation[100];
+    }
+
+    @Override
+    public synchronized Allocation allocate() {
+      allocatedCount++;
+      if (availableCount > 0) {
+        Allocation allocation = availableAllocations[--availableCount];
+        availableAllocations[availableCount] = null;
+        return allocation;
+      }
+      return new Allocation(new byte[individualAllocationSize], 0);
+    }
+
+    @Override
+    public synchronized void release(Allocation allocation) {
+      singleAllocationReleaseHolder[0] = allocation;
+      release(singleAllocationReleaseHolder);
+    }
+
+    @Override
+    public synchronized void release(Allocation[] allocations) {
+      if (availableCount + allocations.length >= availableAllocations.length) {
+        availableAllocations =
+            Arrays.copyOf(
+                availableAllocations,
+                Math.max(availableAllocations.length * 2, availableCount + allocations.length));
+      }
+      for (Allocation allocation : allocations) {
+        availableAllocations[availableCount++] = allocation;
+      }
+      allocatedCount -= allocations.length;
+      notifyAll();
+    }
+
+    @Override
+    public synchronized void trim() {}
+
+    @Override
+    public synchronized int getTotalBytesAllocated() {
+      return allocatedCount * individualAllocationSize;
+    }
+
+    @Override
+    public int getIndividualAllocationLength() {
+      return individualAllocationSize;
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package com.google.android.exoplayer2.upstream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import org.junit.Test;
+
+/** Unit tests for {@link DefaultAllocator}. */
+public final class DefaultAllocatorTest {
+
+  private static final int ALLOCATION_SIZE = 16;
+
+  @Test
+  public void trimMakesAllocationsReleasedOnOtherThreadsAvailable() throws Exception {
+    DefaultAllocator allocator = new DefaultAllocator(/* trimOnReset= */ true, ALLOCATION_SIZE);
+    allocator.setTargetBufferSize(10 * ALLOCATION_SIZE);
+    Set<Allocation> released = allocateAndReleaseOnOtherThread(allocator, 4);
+
+    allocator.trim();
+
+    assertTrue(released.contains(allocator.allocate()));
+  }
+
+  @Test
+  public void trimToZeroDiscardsAllocationsCachedByOtherThreads() throws Exception {
+    DefaultAllocator allocator = new DefaultAllocator(/* trimOnReset= */ true, ALLOCATION_SIZE);
+    allocator.setTargetBufferSize(10 * ALLOCATION_SIZE);
+    Set<Allocation> released = allocateAndReleaseOnOtherThread(allocator, 4);
+
+    allocator.reset();
+
+    for (int i = 0; i < 4; i++) {
+      assertFalse(released.contains(allocator.allocate()));
+    }
+  }
+
+  @Test
+  public void trimKeepsInitialAllocationsFromOtherThreads() throws Exception {
+    DefaultAllocator allocator =
+        new DefaultAllocator(/* trimOnReset= */ true, ALLOCATION_SIZE, /* initialAllocationCount= */ 4);
+    allocateAndReleaseOnOtherThread(allocator, 4);
+
+    allocator.trim();
+
+    for (int i = 0; i < 4; i++) {
+      assertEquals(0, allocator.allocate().offset % ALLOCATION_SIZE);
+    }
+    assertEquals(4 * ALLOCATION_SIZE, allocator.getTotalBytesAllocated());
+  }
+
+  @Test
+  public void totalBytesAllocatedIsSharedAcrossThreads() throws Exception {
+    DefaultAllocator allocator = new DefaultAllocator(/* trimOnReset= */ true, ALLOCATION_SIZE);
+    Allocation allocation = allocator.allocate();
+    Thread thread = new Thread(() -> allocator.release(allocation));
+    thread.start();
+    thread.join();
+    assertEquals(0, allocator.getTotalBytesAllocated());
+  }
+
+  private static Set<Allocation> allocateAndReleaseOnOtherThread(
+      DefaultAllocator allocator, int count) throws InterruptedException {
+    Allocation[] allocations = new Allocation[count];
+    Thread thread =
+        new Thread(
+            () -> {
+              for (int i = 0; i < count; i++) {
+                allocations[i] = allocator.allocate();
+              }
+              allocator.release(allocations);
+            });
+    thread.start();
+    thread.join();
+    Set<Allocation> released = Collections.newSetFromMap(new IdentityHashMap<>());
+    Collections.addAll(released, allocations);
+    return released;
+  }
+}
@@ -0,0 +1,37 @@
+package com.google.android.exoplayer2.upstream;
+
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit tests for {@link DefaultBandwidthMeter.Builder}. */
+@RunWith(RobolectricTestRunner.class)
+public final class DefaultBandwidthMeterTest {
+
+  @Test
+  public void slidingWindowMaxWeightAfterCustomEstimatorIsRejected() {
+    DefaultBandwidthMeter.Builder builder =
+        new DefaultBandwidthMeter.Builder(/* context= */ null)
+            .setBandwidthEstimator(new EwmaBandwidthEstimator());
+    try {
+      builder.setSlidingWindowMaxWeight(1000);
+      fail();
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void customEstimatorAfterSlidingWindowMaxWeightIsRejected() {
+    DefaultBandwidthMeter.Builder builder =
+        new DefaultBandwidthMeter.Builder(/* context= */ null).setSlidingWindowMaxWeight(1000);
+    try {
+      builder.setBandwidthEstimator(new EwmaBandwidthEstimator());
+      fail();
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+  }
+}
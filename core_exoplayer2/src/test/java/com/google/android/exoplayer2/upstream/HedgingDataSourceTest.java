@@ -0,0 +1,325 @@
+package com.google.android.exoplayer2.upstream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit tests for {@link HedgingDataSource}. */
+@RunWith(RobolectricTestRunner.class)
+public final class HedgingDataSourceTest {
+
+  private static final Uri URI = Uri.parse("https://hedge.invalid/segment");
+  private static final long TIMEOUT_MS = 5000;
+
+  private ExecutorService executorService;
+  private HedgedRequestPolicy policy;
+  private List<FakeDataSource> upstreams;
+  private List<FakeDataSource> pendingUpstreams;
+  private List<DataSource> transferSources;
+
+  @Before
+  public void setUp() {
+    executorService = Executors.newCachedThreadPool();
+    // Every request earns a hedge token and the hedge delay is the 10ms minimum.
+    policy =
+        new HedgedRequestPolicy(
+            /* latencyPercentile= */ 0.95f,
+            /* minHedgeDelayMs= */ 10,
+            /* maxHedgeDelayMs= */ 10,
+            /* maxHedgeRatio= */ 1f,
+            /* minSamples= */ 1,
+            /* maxSamplesPerHost= */ 10);
+    policy.onFirstByteLatency(URI.getHost(), 10);
+    upstreams = new ArrayList<>();
+    pendingUpstreams = new ArrayList<>();
+    transferSources = Collections.synchronizedList(new ArrayList<>());
+  }
+
+  @After
+  public void tearDown() {
+    executorService.shutdownNow();
+  }
+
+  @Test
+  public void postRequestIsNotHedged() throws Exception {
+    CountDownLatch openLatch = new CountDownLatch(1);
+    FakeDataSource upstream = addUpstream(openLatch, /* openException= */ null);
+    addUpstream(/* openLatch= */ null, /* openException= */ null);
+    HedgingDataSource dataSource = createHedgingDataSource();
+    // Release the open long after the hedge delay would have expired.
+    executorService.execute(
+        () -> {
+          try {
+            Thread.sleep(100);
+          } catch (InterruptedException e) {
+            // Do nothing.
+          }
+          openLatch.countDown();
+        });
+
+    dataSource.open(
+        new DataSpec(
+            URI,
+            DataSpec.HTTP_METHOD_POST,
+            /* httpBody= */ new byte[] {1},
+            /* absoluteStreamPosition= */ 0,
+            /* position= */ 0,
+            C.LENGTH_UNSET,
+            /* key= */ null,
+            /* flags= */ 0));
+    dataSource.close();
+
+    assertEquals(1, pendingUpstreams.size());
+    assertEquals(0, policy.getRequestCount());
+    assertEquals(0, policy.getHedgeCount());
+    assertEquals(3, transferSources.size());
+    assertSame(upstream, transferSources.get(0));
+  }
+
+  @Test
+  public void onlyTheWinnerReportsTransfers() throws Exception {
+    CountDownLatch primaryLatch = new CountDownLatch(1);
+    FakeDataSource primary = addUpstream(primaryLatch, /* openException= */ null);
+    FakeDataSource hedge = addUpstream(/* openLatch= */ null, /* openException= */ null);
+    HedgingDataSource dataSource = createHedgingDataSource();
+
+    dataSource.open(new DataSpec(URI));
+    primaryLatch.countDown();
+    assertTrue(primary.awaitClosed());
+    dataSource.read(new byte[10], 0, 10);
+    dataSource.close();
+
+    assertEquals(1, policy.getHedgeWinCount());
+    assertEquals(4, transferSources.size());
+    for (DataSource source : transferSources) {
+      assertSame(hedge, source);
+    }
+  }
+
+  @Test
+  public void runtimeExceptionWaitsForTheOutstandingAttempt() throws Exception {
+    CountDownLatch primaryLatch = new CountDownLatch(1);
+    FakeDataSource primary = addUpstream(primaryLatch, new IllegalStateException());
+    FakeDataSource hedge = addUpstream(/* openLatch= */ null, /* openException= */ null);
+    HedgingDataSource dataSource = createHedgingDataSource();
+    // Let the primary fail before the hedge is consumed.
+    hedge.openListener = primaryLatch::countDown;
+
+    assertEquals(100, dataSource.open(new DataSpec(URI)));
+    dataSource.close();
+
+    assertTrue(primary.awaitClosed());
+    assertTrue(hedge.awaitClosed());
+    for (DataSource source : transferSources) {
+      assertSame(hedge, source);
+    }
+  }
+
+  @Test
+  public void runtimeExceptionIsRethrownOnceEveryAttemptFailed() throws Exception {
+    CountDownLatch primaryLatch = new CountDownLatch(1);
+    CountDownLatch hedgeLatch = new CountDownLatch(1);
+    IllegalStateException primaryException = new IllegalStateException();
+    FakeDataSource primary = addUpstream(primaryLatch, primaryException);
+    FakeDataSource hedge = addUpstream(hedgeLatch, new IOException());
+    HedgingDataSource dataSource = createHedgingDataSource();
+    // Fail the primary once the hedge has been started, and the hedge after that.
+    executorService.execute(
+        () -> {
+          while (!hedge.openStarted) {
+            Thread.yield();
+          }
+          primaryLatch.countDown();
+          try {
+            Thread.sleep(50);
+          } catch (InterruptedException e) {
+            // Do nothing.
+          }
+          hedgeLatch.countDown();
+        });
+
+    try {
+      dataSource.open(new DataSpec(URI));
+      fail();
+    } catch (IllegalStateException e) {
+      assertSame(primaryException, e);
+    }
+
+    assertTrue(hedge.openFinished);
+    assertTrue(primary.awaitClosed());
+    assertTrue(hedge.awaitClosed());
+    assertTrue(transferSources.isEmpty());
+  }
+
+  @Test
+  public void abandonedAttemptsThatAreStillOpeningLimitHedging() throws Exception {
+    CountDownLatch primaryLatch = new CountDownLatch(1);
+    List<FakeDataSource> primaries = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      primaries.add(addUpstream(primaryLatch, /* openException= */ null));
+      addUpstream(/* openLatch= */ null, /* openException= */ null);
+      HedgingDataSource dataSource = createHedgingDataSource();
+      dataSource.open(new DataSpec(URI));
+      dataSource.close();
+    }
+    assertEquals(4, policy.getHedgeCount());
+    assertEquals(4, policy.getAbandonedAttemptCount());
+
+    // The losers still hold four executor threads, so the next request is not hedged.
+    CountDownLatch lateLatch = new CountDownLatch(1);
+    addUpstream(lateLatch, /* openException= */ null);
+    addUpstream(/* openLatch= */ null, /* openException= */ null);
+    HedgingDataSource dataSource = createHedgingDataSource();
+    executorService.execute(
+        () -> {
+          try {
+            Thread.sleep(100);
+          } catch (InterruptedException e) {
+            // Do nothing.
+          }
+          lateLatch.countDown();
+        });
+    dataSource.open(new DataSpec(URI));
+    dataSource.close();
+    assertEquals(4, policy.getHedgeCount());
+    assertEquals(1, pendingUpstreams.size());
+
+    primaryLatch.countDown();
+    for (FakeDataSource primary : primaries) {
+      assertTrue(primary.awaitClosed());
+    }
+    assertEquals(0, policy.getAbandonedAttemptCount());
+    assertTrue(policy.tryAcquireHedge());
+  }
+
+  private HedgingDataSource createHedgingDataSource() {
+    HedgingDataSource dataSource =
+        new HedgingDataSource(
+            () -> {
+              synchronized (pendingUpstreams) {
+                return pendingUpstreams.remove(0);
+              }
+            },
+            policy,
+            executorService);
+    dataSource.addTransferListener(
+        new TransferListener() {
+          @Override
+          public void onTransferInitializing(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+            transferSources.add(source);
+          }
+
+          @Override
+          public void onTransferStart(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+            transferSources.add(source);
+          }
+
+          @Override
+          public void onBytesTransferred(
+              DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
+            transferSources.add(source);
+          }
+
+          @Override
+          public void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+            transferSources.add(source);
+          }
+        });
+    return dataSource;
+  }
+
+  private FakeDataSource addUpstream(
+      @Nullable CountDownLatch openLatch, @Nullable Exception openException) {
+    FakeDataSource dataSource = new FakeDataSource(openLatch, openException);
+    upstreams.add(dataSource);
+    pendingUpstreams.add(dataSource);
+    return dataSource;
+  }
+
+  private static final class FakeDataSource extends BaseDataSource {
+
+    @Nullable private final CountDownLatch openLatch;
+    @Nullable private final Exception openException;
+    private final CountDownLatch closedLatch;
+
+    @Nullable public volatile Runnable openListener;
+    public volatile boolean openStarted;
+    public volatile boolean openFinished;
+    public volatile boolean opened;
+
+    public FakeDataSource(@Nullable CountDownLatch openLatch, @Nullable Exception openException) {
+      super(/* isNetwork= */ true);
+      this.openLatch = openLatch;
+      this.openException = openException;
+      closedLatch = new CountDownLatch(1);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+      transferInitializing(dataSpec);
+      openStarted = true;
+      if (openListener != null) {
+        openListener.run();
+      }
+      if (openLatch != null) {
+        try {
+          openLatch.await();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+      }
+      openFinished = true;
+      if (openException instanceof IOException) {
+        throw (IOException) openException;
+      } else if (openException != null) {
+        throw (RuntimeException) openException;
+      }
+      opened = true;
+      transferStarted(dataSpec);
+      return 100;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) {
+      bytesTransferred(readLength);
+      return readLength;
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+      return URI;
+    }
+
+    @Override
+    public void close() {
+      if (opened) {
+        opened = false;
+        transferEnded();
+      }
+      closedLatch.countDown();
+    }
+
+    public boolean awaitClosed() throws InterruptedException {
+      return closedLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package com.google.android.exoplayer2.upstream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit tests for {@link LoadScheduler}. */
+@RunWith(RobolectricTestRunner.class)
+public final class LoadSchedulerTest {
+
+  private static final long TIMEOUT_MS = 5000;
+
+  private final List<CountDownLatch> blockers = new ArrayList<>();
+  private LoadScheduler scheduler;
+
+  @After
+  public void tearDown() {
+    for (CountDownLatch blocker : blockers) {
+      blocker.countDown();
+    }
+    if (scheduler != null) {
+      scheduler.release();
+    }
+  }
+
+  @Test
+  public void queuedTasksRunAfterRelease() throws Exception {
+    scheduler = new LoadScheduler(/* maxWorkerCount= */ 1, "LoadSchedulerTest");
+    Executor executor = scheduler.createExecutor(new Object(), LoadScheduler.PRIORITY_PLAYBACK);
+    CountDownLatch blocker = newBlocker();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch secondTaskRan = new CountDownLatch(1);
+    executor.execute(() -> block(started, blocker));
+    executor.execute(secondTaskRan::countDown);
+    assertTrue(started.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+    scheduler.release();
+    blocker.countDown();
+
+    assertTrue(secondTaskRan.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void busyExecutorAcceptsTasksAfterRelease() throws Exception {
+    scheduler = new LoadScheduler(/* maxWorkerCount= */ 1, "LoadSchedulerTest");
+    Executor executor = scheduler.createExecutor(new Object(), LoadScheduler.PRIORITY_PLAYBACK);
+    CountDownLatch blocker = newBlocker();
+    CountDownLatch started = new CountDownLatch(1);
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    executor.execute(
+        () -> {
+          block(started, blocker);
+          order.add("load");
+        });
+    assertTrue(started.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    scheduler.release();
+
+    CountDownLatch releaseTaskRan = new CountDownLatch(1);
+    executor.execute(
+        () -> {
+          order.add("release");
+          releaseTaskRan.countDown();
+        });
+    blocker.countDown();
+
+    assertTrue(releaseTaskRan.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    assertEquals(2, order.size());
+    assertEquals("load", order.get(0));
+    assertEquals("release", order.get(1));
+  }
+
+  @Test
+  public void idleExecutorRejectsTasksAfterRelease() {
+    scheduler = new LoadScheduler(/* maxWorkerCount= */ 1, "LoadSchedulerTest");
+    Executor executor = scheduler.createExecutor(new Object(), LoadScheduler.PRIORITY_PLAYBACK);
+    scheduler.release();
+    try {
+      executor.execute(() -> {});
+      fail();
+    } catch (RejectedExecutionException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void loaderReleasedAfterSchedulerStillCallsBack() {
+    scheduler = new LoadScheduler(/* maxWorkerCount= */ 1, "LoadSchedulerTest");
+    Loader loader = new Loader(scheduler, new Object(), LoadScheduler.PRIORITY_PLAYBACK);
+    scheduler.release();
+    boolean[] released = new boolean[1];
+
+    loader.release(() -> released[0] = true);
+
+    assertTrue(released[0]);
+  }
+
+  @Test
+  public void blockedBackgroundLoadsLeaveAWorkerForPlayback() throws Exception {
+    scheduler = new LoadScheduler(/* maxWorkerCount= */ 2, "LoadSchedulerTest");
+    CountDownLatch blocker = newBlocker();
+    CountDownLatch firstStarted = new CountDownLatch(1);
+    CountDownLatch secondStarted = new CountDownLatch(1);
+    scheduler
+        .createExecutor(new Object(), LoadScheduler.PRIORITY_PREFETCH)
+        .execute(() -> block(firstStarted, blocker));
+    scheduler
+        .createExecutor(new Object(), LoadScheduler.PRIORITY_METADATA)
+        .execute(() -> block(secondStarted, blocker));
+    assertTrue(firstStarted.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+    CountDownLatch playbackRan = new CountDownLatch(1);
+    scheduler
+        .createExecutor(new Object(), LoadScheduler.PRIORITY_PLAYBACK)
+        .execute(playbackRan::countDown);
+
+    assertTrue(playbackRan.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    assertFalse(secondStarted.await(50, TimeUnit.MILLISECONDS));
+    blocker.countDown();
+    assertTrue(secondStarted.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void singleWorkerStillRunsBackgroundLoads() throws Exception {
+    scheduler = new LoadScheduler(/* maxWorkerCount= */ 1, "LoadSchedulerTest");
+    CountDownLatch ran = new CountDownLatch(2);
+    Executor executor = scheduler.createExecutor(new Object(), LoadScheduler.PRIORITY_PREFETCH);
+    executor.execute(ran::countDown);
+    executor.execute(ran::countDown);
+
+    assertTrue(ran.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+  }
+
+  private CountDownLatch newBlocker() {
+    CountDownLatch blocker = new CountDownLatch(1);
+    blockers.add(blocker);
+    return blocker;
+  }
+
+  private static void block(CountDownLatch started, CountDownLatch blocker) {
+    started.countDown();
+    try {
+      blocker.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
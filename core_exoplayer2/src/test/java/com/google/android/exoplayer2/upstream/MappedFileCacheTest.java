@@ -0,0 +1,168 @@
+package com.google.android.exoplayer2.upstream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit tests for {@link MappedFileCache}. */
+public final class MappedFileCacheTest {
+
+  private static final int FILE_LENGTH = 1000;
+
+  private File directory;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("MappedFileCacheTest").toFile();
+  }
+
+  @After
+  public void tearDown() {
+    Util.recursiveDelete(directory);
+  }
+
+  @Test
+  public void unreferencedMappingIsReused() throws Exception {
+    MappedFileCache cache = new MappedFileCache();
+    File file = createFile("a", FILE_LENGTH);
+    MappedFileCache.Mapping mapping = cache.acquire(file);
+    cache.release(mapping);
+    assertSame(mapping, cache.acquire(file));
+    assertEquals(FILE_LENGTH, cache.getMappedBytes());
+  }
+
+  @Test
+  public void mappedBytesAreBoundedByEvictingLeastRecentlyUsed() throws Exception {
+    MappedFileCache cache =
+        new MappedFileCache(/* maxUnreferencedMappings= */ 16, /* maxMappedBytes= */ 2 * FILE_LENGTH);
+    File a = createFile("a", FILE_LENGTH);
+    File b = createFile("b", FILE_LENGTH);
+    File c = createFile("c", FILE_LENGTH);
+    MappedFileCache.Mapping mappingA = cache.acquire(a);
+    cache.release(mappingA);
+    cache.release(cache.acquire(b));
+    // Touch a, so that b is the least recently used mapping.
+    cache.release(cache.acquire(a));
+    cache.release(cache.acquire(c));
+
+    assertEquals(2 * FILE_LENGTH, cache.getMappedBytes());
+    assertSame(mappingA, cache.acquire(a));
+  }
+
+  @Test
+  public void referencedMappingsAreNotEvicted() throws Exception {
+    MappedFileCache cache =
+        new MappedFileCache(/* maxUnreferencedMappings= */ 0, /* maxMappedBytes= */ FILE_LENGTH);
+    MappedFileCache.Mapping mappingA = cache.acquire(createFile("a", FILE_LENGTH));
+    MappedFileCache.Mapping mappingB = cache.acquire(createFile("b", FILE_LENGTH));
+    assertEquals(2 * FILE_LENGTH, cache.getMappedBytes());
+
+    cache.release(mappingA);
+    assertEquals(FILE_LENGTH, cache.getMappedBytes());
+    cache.release(mappingB);
+    assertEquals(0, cache.getMappedBytes());
+  }
+
+  @Test
+  public void modifiedFileDetachesMappingUntilReleased() throws Exception {
+    MappedFileCache cache = new MappedFileCache();
+    File file = createFile("a", FILE_LENGTH);
+    MappedFileCache.Mapping oldMapping = cache.acquire(file);
+    writeFile(file, 2 * FILE_LENGTH);
+
+    MappedFileCache.Mapping newMapping = cache.acquire(file);
+    assertNotSame(oldMapping, newMapping);
+    assertEquals(3 * FILE_LENGTH, cache.getMappedBytes());
+
+    cache.release(oldMapping);
+    assertEquals(2 * FILE_LENGTH, cache.getMappedBytes());
+  }
+
+  @Test
+  public void clearUnmapsAllUnreferencedMappings() throws Exception {
+    MappedFileCache cache = new MappedFileCache();
+    cache.release(cache.acquire(createFile("a", FILE_LENGTH)));
+    MappedFileCache.Mapping referenced = cache.acquire(createFile("b", FILE_LENGTH));
+    cache.clear();
+    assertEquals(FILE_LENGTH, cache.getMappedBytes());
+    cache.release(referenced);
+  }
+
+  @Test
+  public void mappingOfARenamedFileIsDroppedOnTheNextMiss() throws Exception {
+    MappedFileCache cache = new MappedFileCache();
+    File file = createFile("a", FILE_LENGTH);
+    MappedFileCache.Mapping oldMapping = cache.acquire(file);
+    cache.release(oldMapping);
+    File renamedFile = new File(directory, "b");
+    assertTrue(file.renameTo(renamedFile));
+
+    MappedFileCache.Mapping newMapping = cache.acquire(renamedFile);
+
+    assertNotSame(oldMapping, newMapping);
+    assertEquals(FILE_LENGTH, cache.getMappedBytes());
+    cache.release(newMapping);
+    assertSame(newMapping, cache.acquire(renamedFile));
+  }
+
+  @Test
+  public void invalidateDetachesReferencedMappingUntilReleased() throws Exception {
+    MappedFileCache cache = new MappedFileCache();
+    File file = createFile("a", FILE_LENGTH);
+    MappedFileCache.Mapping oldMapping = cache.acquire(file);
+
+    cache.invalidate(file);
+    MappedFileCache.Mapping newMapping = cache.acquire(file);
+
+    assertNotSame(oldMapping, newMapping);
+    assertEquals(2 * FILE_LENGTH, cache.getMappedBytes());
+    cache.release(oldMapping);
+    assertEquals(FILE_LENGTH, cache.getMappedBytes());
+    cache.release(newMapping);
+    cache.invalidate(file);
+    assertEquals(0, cache.getMappedBytes());
+  }
+
+  @Test
+  public void detachedMappingRemainsReadable() throws Exception {
+    MappedFileCache cache =
+        new MappedFileCache(/* maxUnreferencedMappings= */ 0, /* maxMappedBytes= */ 0);
+    File file = new File(directory, "a");
+    try (FileOutputStream output = new FileOutputStream(file)) {
+      output.write(new byte[] {1, 2, 3});
+    }
+    MappedFileCache.Mapping mapping = cache.acquire(file);
+    ByteBuffer buffer = mapping.buffer.duplicate();
+
+    cache.invalidate(file);
+    cache.release(mapping);
+    cache.clear();
+
+    assertEquals(0, cache.getMappedBytes());
+    assertEquals(3, buffer.remaining());
+    assertEquals(3, buffer.get(2));
+  }
+
+  private File createFile(String name, int length) throws IOException {
+    File file = new File(directory, name);
+    writeFile(file, length);
+    return file;
+  }
+
+  private static void writeFile(File file, int length) throws IOException {
+    try (FileOutputStream output = new FileOutputStream(file)) {
+      output.write(new byte[length]);
+    }
+  }
+}
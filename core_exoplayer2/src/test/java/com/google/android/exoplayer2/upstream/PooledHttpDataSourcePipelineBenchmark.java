@@ -0,0 +1,101 @@
+package com.google.android.exoplayer2.upstream;
+
+import static org.junit.Assert.assertEquals;
+
+import android.net.Uri;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.testutil.BenchmarkUtil;
+import com.google.android.exoplayer2.testutil.LocalHttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/**
+ * Measures how request pipelining in {@link PooledHttpDataSource} hides round-trip latency, using a
+ * {@link LocalHttpServer} that delays every response.
+ *
+ * <p>The adaptive scenario switches URL every few segments, as an ABR switch does, and reports how
+ * many pipelined requests were thrown away.
+ */
+@RunWith(RobolectricTestRunner.class)
+public final class PooledHttpDataSourcePipelineBenchmark {
+
+  private static final int LATENCY_MS = 25;
+  private static final int SEGMENT_LENGTH = 32 * 1024;
+  private static final int SEGMENT_COUNT = 40;
+  private static final int SEGMENTS_PER_SWITCH = 5;
+  private static final int[] PIPELINE_DEPTHS = {0, 1, 2, 4};
+
+  private LocalHttpServer server;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new LocalHttpServer(new byte[SEGMENT_LENGTH * SEGMENT_COUNT]);
+    server.setResponseLatencyMs(LATENCY_MS);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.close();
+  }
+
+  @Test
+  public void sequentialSegments() throws Exception {
+    BenchmarkUtil.assumeBenchmarksEnabled();
+    for (int pipelineDepth : PIPELINE_DEPTHS) {
+      run("sequential", pipelineDepth, /* segmentsPerSwitch= */ SEGMENT_COUNT);
+    }
+  }
+
+  @Test
+  public void segmentsWithAdaptiveSwitches() throws Exception {
+    BenchmarkUtil.assumeBenchmarksEnabled();
+    for (int pipelineDepth : PIPELINE_DEPTHS) {
+      run("adaptive switches", pipelineDepth, SEGMENTS_PER_SWITCH);
+    }
+  }
+
+  private void run(String scenario, int pipelineDepth, int segmentsPerSwitch) throws Exception {
+    HttpConnectionPool connectionPool = new HttpConnectionPool();
+    PooledHttpDataSource dataSource =
+        new PooledHttpDataSource(
+            connectionPool,
+            "PooledHttpDataSourcePipelineBenchmark",
+            /* contentTypePredicate= */ null,
+            /* connectTimeoutMillis= */ 8000,
+            /* readTimeoutMillis= */ 8000,
+            /* allowCrossProtocolRedirects= */ false,
+            /* defaultRequestProperties= */ null,
+            pipelineDepth);
+    int startConnectionCount = server.getConnectionCount();
+    int startRequestCount = server.getRequestCount();
+    byte[] buffer = new byte[SEGMENT_LENGTH];
+    long startTimeNs = System.nanoTime();
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      String url = server.getUrl("/track" + (i / segmentsPerSwitch));
+      DataSpec dataSpec =
+          new DataSpec(Uri.parse(url), (long) i * SEGMENT_LENGTH, SEGMENT_LENGTH, /* key= */ null);
+      dataSource.open(dataSpec);
+      int bytesRead = 0;
+      int read;
+      while ((read = dataSource.read(buffer, 0, buffer.length)) != C.RESULT_END_OF_INPUT) {
+        bytesRead += read;
+      }
+      dataSource.close();
+      assertEquals(SEGMENT_LENGTH, bytesRead);
+    }
+    double elapsedMs = (System.nanoTime() - startTimeNs) / 1e6;
+    dataSource.releasePipeline();
+    connectionPool.evictAll();
+    BenchmarkUtil.report(
+        "PooledHttpDataSource " + scenario,
+        "latency=%dms depth=%d ms/segment=%.1f handshakes=%d wasted requests=%d",
+        LATENCY_MS,
+        pipelineDepth,
+        elapsedMs / SEGMENT_COUNT,
+        server.getConnectionCount() - startConnectionCount,
+        server.getRequestCount() - startRequestCount - SEGMENT_COUNT);
+  }
+}
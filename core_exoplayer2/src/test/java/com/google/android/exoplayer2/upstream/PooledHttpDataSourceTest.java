@@ -0,0 +1,400 @@
+package com.google.android.exoplayer2.upstream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.net.Uri;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.testutil.LocalHttpServer;
+import com.google.android.exoplayer2.upstream.HttpDataSource.HttpDataSourceException;
+import com.google.android.exoplayer2.upstream.HttpDataSource.RequestProperties;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Tests {@link PooledHttpDataSource} against a {@link LocalHttpServer}. */
+@RunWith(RobolectricTestRunner.class)
+public final class PooledHttpDataSourceTest {
+
+  private static final int LENGTH = 64 * 1024;
+  private static final int SEGMENT_LENGTH = 4096;
+
+  private byte[] data;
+  private LocalHttpServer server;
+  private HttpConnectionPool connectionPool;
+  private ProxySelector defaultProxySelector;
+
+  @Before
+  public void setUp() throws Exception {
+    data = new byte[LENGTH];
+    for (int i = 0; i < LENGTH; i++) {
+      data[i] = (byte) (i * 31);
+    }
+    server = new LocalHttpServer(data);
+    connectionPool = new HttpConnectionPool();
+    defaultProxySelector = ProxySelector.getDefault();
+    ProxySelector.setDefault(new FixedProxySelector(Proxy.NO_PROXY));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    ProxySelector.setDefault(defaultProxySelector);
+    connectionPool.evictAll();
+    server.close();
+  }
+
+  @Test
+  public void sequentialRangeRequestsReuseOneConnection() throws Exception {
+    PooledHttpDataSource dataSource = createDataSource(/* pipelineDepth= */ 0);
+    for (int i = 0; i < 5; i++) {
+      assertArrayEquals(
+          Arrays.copyOfRange(data, i * SEGMENT_LENGTH, (i + 1) * SEGMENT_LENGTH),
+          readRange(dataSource, server.getUrl("/media"), i * SEGMENT_LENGTH, SEGMENT_LENGTH));
+    }
+
+    assertEquals(1, server.getConnectionCount());
+    assertEquals(5, server.getRequestCount());
+    assertEquals(1, connectionPool.getConnectionsCreated());
+    assertEquals(4, connectionPool.getConnectionsReused());
+    assertEquals(1, connectionPool.getIdleConnectionCount());
+  }
+
+  @Test
+  public void dataSourcesSharingAPoolShareConnections() throws Exception {
+    for (int i = 0; i < 3; i++) {
+      PooledHttpDataSource dataSource = createDataSource(/* pipelineDepth= */ 0);
+      assertArrayEquals(data, readRange(dataSource, server.getUrl("/media"), 0, C.LENGTH_UNSET));
+    }
+
+    assertEquals(1, server.getConnectionCount());
+  }
+
+  @Test
+  public void connectionCloseResponsesOpenANewConnectionPerRequest() throws Exception {
+    server.setKeepAlive(false);
+    PooledHttpDataSource dataSource = createDataSource(/* pipelineDepth= */ 0);
+    for (int i = 0; i < 3; i++) {
+      readRange(dataSource, server.getUrl("/media"), i * SEGMENT_LENGTH, SEGMENT_LENGTH);
+    }
+
+    assertEquals(3, server.getConnectionCount());
+    assertEquals(0, connectionPool.getConnectionsReused());
+    assertEquals(0, connectionPool.getIdleConnectionCount());
+  }
+
+  @Test
+  public void zeroKeepAliveDurationOpensANewConnectionPerRequest() throws Exception {
+    connectionPool = new HttpConnectionPool(/* maxIdleConnectionsPerHost= */ 5, /* keepAliveDurationMs= */ 0);
+    PooledHttpDataSource dataSource = createDataSource(/* pipelineDepth= */ 0);
+    for (int i = 0; i < 3; i++) {
+      readRange(dataSource, server.getUrl("/media"), i * SEGMENT_LENGTH, SEGMENT_LENGTH);
+    }
+
+    assertEquals(3, server.getConnectionCount());
+    assertEquals(3, connectionPool.getConnectionsCreated());
+  }
+
+  @Test
+  public void closingWithALargeUnreadBodyDropsTheConnection() throws Exception {
+    PooledHttpDataSource dataSource = createDataSource(/* pipelineDepth= */ 0);
+    dataSource.open(new DataSpec(Uri.parse(server.getUrl("/media"))));
+    byte[] buffer = new byte[16];
+    assertEquals(16, dataSource.read(buffer, 0, buffer.length));
+    dataSource.close();
+    readRange(dataSource, server.getUrl("/media"), 0, SEGMENT_LENGTH);
+
+    assertEquals(2, server.getConnectionCount());
+    assertEquals(0, connectionPool.getConnectionsReused());
+  }
+
+  @Test
+  public void connectionClosedByTheServerWhileIdleIsNotReused() throws Exception {
+    PooledHttpDataSource dataSource = createDataSource(/* pipelineDepth= */ 0);
+    readRange(dataSource, server.getUrl("/media"), 0, SEGMENT_LENGTH);
+    server.closeConnections();
+    Thread.sleep(50);
+
+    readRange(dataSource, server.getUrl("/media"), 0, SEGMENT_LENGTH);
+
+    assertEquals(0, connectionPool.getConnectionsReused());
+    assertEquals(1, connectionPool.getConnectionsEvicted());
+    assertEquals(2, connectionPool.getConnectionsCreated());
+  }
+
+  @Test
+  public void setRequestPropertyRejectsLineBreaks() {
+    PooledHttpDataSource dataSource = createDataSource(/* pipelineDepth= */ 0);
+    try {
+      dataSource.setRequestProperty("X-Token", "a\r\nX-Injected: b");
+      fail();
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+    try {
+      dataSource.setRequestProperty("X Token", "a");
+      fail();
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void invalidDefaultRequestPropertyFailsBeforeAnythingIsSent() throws Exception {
+    RequestProperties defaultRequestProperties = new RequestProperties();
+    defaultRequestProperties.set("X-Token", "a\r\n\r\nGET /injected HTTP/1.1");
+    PooledHttpDataSource dataSource =
+        new PooledHttpDataSource(
+            connectionPool,
+            "PooledHttpDataSourceTest",
+            /* contentTypePredicate= */ null,
+            /* connectTimeoutMillis= */ 8000,
+            /* readTimeoutMillis= */ 8000,
+            /* allowCrossProtocolRedirects= */ false,
+            defaultRequestProperties);
+
+    try {
+      dataSource.open(new DataSpec(Uri.parse(server.getUrl("/media"))));
+      fail();
+    } catch (HttpDataSourceException e) {
+      assertTrue(e.getCause() instanceof ProtocolException);
+    }
+    assertEquals(0, server.getConnectionCount());
+  }
+
+  @Test
+  public void userAgentWithLineBreaksIsRejected() {
+    try {
+      new PooledHttpDataSource(
+          connectionPool, "Agent\r\nX-Injected: b", /* contentTypePredicate= */ null);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void requestPropertiesAreSent() throws Exception {
+    PooledHttpDataSource dataSource = createDataSource(/* pipelineDepth= */ 0);
+    dataSource.setRequestProperty("X-Token", "value\twith tab");
+
+    readRange(dataSource, server.getUrl("/media"), 0, SEGMENT_LENGTH);
+
+    List<String> requestLines = server.getRequestLines();
+    assertTrue(requestLines.contains("X-Token: value\twith tab"));
+  }
+
+  @Test
+  public void requestsGoThroughTheSelectedHttpProxy() throws Exception {
+    ProxySelector.setDefault(
+        new FixedProxySelector(
+            new Proxy(Proxy.Type.HTTP, new InetSocketAddress("127.0.0.1", server.getPort()))));
+    PooledHttpDataSource dataSource = createDataSource(/* pipelineDepth= */ 0);
+    // The origin host does not resolve, so the request only succeeds if it goes to the proxy.
+    for (int i = 0; i < 3; i++) {
+      assertArrayEquals(
+          Arrays.copyOfRange(data, i * SEGMENT_LENGTH, (i + 1) * SEGMENT_LENGTH),
+          readRange(dataSource, "http://origin.invalid/media", i * SEGMENT_LENGTH, SEGMENT_LENGTH));
+    }
+
+    assertEquals(1, server.getConnectionCount());
+    assertEquals(3, server.getProxiedRequestCount());
+  }
+
+  @Test
+  public void directAndProxiedConnectionsAreNotShared() throws Exception {
+    PooledHttpDataSource dataSource = createDataSource(/* pipelineDepth= */ 0);
+    readRange(dataSource, server.getUrl("/media"), 0, SEGMENT_LENGTH);
+    ProxySelector.setDefault(
+        new FixedProxySelector(
+            new Proxy(Proxy.Type.HTTP, new InetSocketAddress("127.0.0.1", server.getPort()))));
+    readRange(dataSource, server.getUrl("/media"), 0, SEGMENT_LENGTH);
+
+    assertEquals(2, server.getConnectionCount());
+    assertEquals(1, server.getProxiedRequestCount());
+  }
+
+  @Test
+  public void pipelinedSegmentsShareOneConnection() throws Exception {
+    PooledHttpDataSource dataSource = createDataSource(/* pipelineDepth= */ 2);
+    for (int i = 0; i < 6; i++) {
+      assertArrayEquals(
+          Arrays.copyOfRange(data, i * SEGMENT_LENGTH, (i + 1) * SEGMENT_LENGTH),
+          readRange(dataSource, server.getUrl("/media"), i * SEGMENT_LENGTH, SEGMENT_LENGTH));
+    }
+
+    assertEquals(1, server.getConnectionCount());
+    assertEquals(1, connectionPool.getConnectionsCreated());
+    assertEquals(1, connectionPool.getPipelineCount());
+  }
+
+  @Test
+  public void pipelineOfAClosedSourceIsOwnedByThePool() throws Exception {
+    PooledHttpDataSource dataSource = createDataSource(/* pipelineDepth= */ 2);
+    readRange(dataSource, server.getUrl("/media"), 0, SEGMENT_LENGTH);
+    readRange(dataSource, server.getUrl("/media"), SEGMENT_LENGTH, SEGMENT_LENGTH);
+    assertEquals(1, connectionPool.getPipelineCount());
+
+    connectionPool.evictAll();
+
+    assertEquals(0, connectionPool.getPipelineCount());
+    assertEquals(1, connectionPool.getConnectionsEvicted());
+  }
+
+  @Test
+  public void idlePipelineIsEvictedAfterTheKeepAliveDuration() throws Exception {
+    connectionPool = new HttpConnectionPool(/* maxIdleConnectionsPerHost= */ 5, /* keepAliveDurationMs= */ 10);
+    PooledHttpDataSource dataSource = createDataSource(/* pipelineDepth= */ 2);
+    readRange(dataSource, server.getUrl("/media"), 0, SEGMENT_LENGTH);
+    assertEquals(1, connectionPool.getPipelineCount());
+
+    Thread.sleep(20);
+    connectionPool.evictIdleConnections();
+
+    assertEquals(0, connectionPool.getPipelineCount());
+  }
+
+  @Test
+  public void releasePipelineClosesThePipeline() throws Exception {
+    PooledHttpDataSource dataSource = createDataSource(/* pipelineDepth= */ 2);
+    readRange(dataSource, server.getUrl("/media"), 0, SEGMENT_LENGTH);
+
+    dataSource.releasePipeline();
+
+    assertEquals(0, connectionPool.getPipelineCount());
+    readRange(dataSource, server.getUrl("/media"), SEGMENT_LENGTH, SEGMENT_LENGTH);
+    assertEquals(2, server.getConnectionCount());
+  }
+
+  @Test
+  public void pipelineIsDiscardedWhenRequestPropertiesChange() throws Exception {
+    PooledHttpDataSource dataSource = createDataSource(/* pipelineDepth= */ 2);
+    dataSource.setRequestProperty("Authorization", "old");
+    readRange(dataSource, server.getUrl("/media"), 0, SEGMENT_LENGTH);
+    assertEquals(1, connectionPool.getPipelineCount());
+
+    dataSource.setRequestProperty("Authorization", "new");
+    assertArrayEquals(
+        Arrays.copyOfRange(data, SEGMENT_LENGTH, 2 * SEGMENT_LENGTH),
+        readRange(dataSource, server.getUrl("/media"), SEGMENT_LENGTH, SEGMENT_LENGTH));
+
+    // The second segment was requested again with the new header rather than taken from the
+    // pipeline.
+    List<String> requestLines = server.getRequestLines();
+    int authorizationIndex = requestLines.indexOf("Authorization: new");
+    assertEquals("Range: bytes=4096-8191", requestLines.get(authorizationIndex + 1));
+    assertEquals(2, server.getConnectionCount());
+  }
+
+  @Test
+  public void pipelineOfACollectedSourceIsEvicted() throws Exception {
+    readWithPipelinedSource();
+    assertEquals(1, connectionPool.getPipelineCount());
+
+    long deadlineMs = System.currentTimeMillis() + 5000;
+    while (connectionPool.getPipelineCount() != 0 && System.currentTimeMillis() < deadlineMs) {
+      System.gc();
+      Thread.sleep(10);
+      connectionPool.evictIdleConnections();
+    }
+
+    assertEquals(0, connectionPool.getPipelineCount());
+    assertEquals(1, connectionPool.getConnectionsEvicted());
+  }
+
+  @Test
+  public void pipelineDepthGrowsWithHitsAndHalvesOnAMiss() throws Exception {
+    PooledHttpDataSource dataSource = createDataSource(/* pipelineDepth= */ 4);
+    for (int i = 0; i < 4; i++) {
+      readRange(dataSource, server.getUrl("/media"), i * SEGMENT_LENGTH, SEGMENT_LENGTH);
+    }
+    // The depth grew from 1 to 4, so segments 4 to 7 are in flight.
+    assertRequestCount(8);
+
+    assertArrayEquals(
+        Arrays.copyOfRange(data, 0, SEGMENT_LENGTH),
+        readRange(dataSource, server.getUrl("/other"), 0, SEGMENT_LENGTH));
+
+    // The miss discarded the pipeline and halved the depth to 2.
+    assertRequestCount(11);
+    assertEquals(2, server.getConnectionCount());
+    assertEquals(1, connectionPool.getPipelineCount());
+  }
+
+  private void readWithPipelinedSource() throws IOException {
+    PooledHttpDataSource dataSource = createDataSource(/* pipelineDepth= */ 2);
+    readRange(dataSource, server.getUrl("/media"), 0, SEGMENT_LENGTH);
+  }
+
+  private void assertRequestCount(int expectedRequestCount) throws InterruptedException {
+    long deadlineMs = System.currentTimeMillis() + 5000;
+    while (server.getRequestCount() < expectedRequestCount
+        && System.currentTimeMillis() < deadlineMs) {
+      Thread.sleep(5);
+    }
+    Thread.sleep(50);
+    assertEquals(expectedRequestCount, server.getRequestCount());
+  }
+
+  private PooledHttpDataSource createDataSource(int pipelineDepth) {
+    return new PooledHttpDataSource(
+        connectionPool,
+        "PooledHttpDataSourceTest",
+        /* contentTypePredicate= */ null,
+        /* connectTimeoutMillis= */ 8000,
+        /* readTimeoutMillis= */ 8000,
+        /* allowCrossProtocolRedirects= */ false,
+        /* defaultRequestProperties= */ null,
+        pipelineDepth);
+  }
+
+  private static byte[] readRange(DataSource dataSource, String url, long position, long length)
+      throws IOException {
+    DataSpec dataSpec = new DataSpec(Uri.parse(url), position, length, /* key= */ null);
+    try {
+      long openedLength = dataSource.open(dataSpec);
+      byte[] result = new byte[(int) openedLength];
+      int offset = 0;
+      while (offset < result.length) {
+        int read = dataSource.read(result, offset, result.length - offset);
+        assertNotEquals(C.RESULT_END_OF_INPUT, read);
+        offset += read;
+      }
+      assertEquals(C.RESULT_END_OF_INPUT, dataSource.read(new byte[1], 0, 1));
+      return result;
+    } finally {
+      dataSource.close();
+    }
+  }
+
+  private static final class FixedProxySelector extends ProxySelector {
+
+    private final Proxy proxy;
+
+    public FixedProxySelector(Proxy proxy) {
+      this.proxy = proxy;
+    }
+
+    @Override
+    public List<Proxy> select(URI uri) {
+      return Collections.singletonList(proxy);
+    }
+
+    @Override
+    public void connectFailed(URI uri, SocketAddress address, IOException e) {}
+  }
+}
@@ -0,0 +1,82 @@
+package com.google.android.exoplayer2.upstream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.android.exoplayer2.DefaultLoadControl;
+import org.junit.Test;
+
+/** Unit tests for {@link SlabAllocator}. */
+public final class SlabAllocatorTest {
+
+  private static final int ALLOCATION_SIZE = 16;
+
+  @Test
+  public void defaultSlabsAreArrayBacked() {
+    SlabAllocator allocator =
+        new SlabAllocator(/* trimOnReset= */ true, ALLOCATION_SIZE, /* allocationsPerSlab= */ 4);
+    Allocation first = allocator.allocate();
+    Allocation second = allocator.allocate();
+
+    assertFalse(allocator.isDirect());
+    assertFalse(first.isDirect());
+    assertEquals(4 * ALLOCATION_SIZE, first.data.length);
+    assertEquals(first.data, second.data);
+    assertNotSame(first.offset, second.offset);
+    first.data[first.offset + ALLOCATION_SIZE - 1] = 1;
+    assertEquals(1, first.asByteBuffer(ALLOCATION_SIZE).get(ALLOCATION_SIZE - 1));
+    assertEquals(0, second.asByteBuffer(ALLOCATION_SIZE).get(0));
+  }
+
+  @Test
+  public void directSlabsAreReportedAsDirect() {
+    SlabAllocator allocator =
+        new SlabAllocator(
+            /* trimOnReset= */ true,
+            ALLOCATION_SIZE,
+            /* allocationsPerSlab= */ 4,
+            /* directSlabs= */ true,
+            /* mappedSlabDirectory= */ null);
+
+    assertTrue(allocator.isDirect());
+    assertTrue(allocator.allocate().isDirect());
+  }
+
+  @Test
+  public void loadControlRejectsDirectAllocator() {
+    SlabAllocator allocator =
+        new SlabAllocator(
+            /* trimOnReset= */ true,
+            ALLOCATION_SIZE,
+            /* allocationsPerSlab= */ 4,
+            /* directSlabs= */ true,
+            /* mappedSlabDirectory= */ null);
+
+    try {
+      new DefaultLoadControl.Builder().setAllocator(allocator).createDefaultLoadControl();
+      fail();
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void trimReleasesWholeUnusedSlabs() {
+    SlabAllocator allocator =
+        new SlabAllocator(/* trimOnReset= */ true, ALLOCATION_SIZE, /* allocationsPerSlab= */ 4);
+    Allocation[] allocations = new Allocation[8];
+    for (int i = 0; i < allocations.length; i++) {
+      allocations[i] = allocator.allocate();
+    }
+    assertEquals(8 * ALLOCATION_SIZE, allocator.getTotalSlabBytes());
+
+    allocator.release(allocations);
+    allocator.trim();
+
+    assertEquals(0, allocator.getTotalBytesAllocated());
+    assertEquals(0, allocator.getTotalSlabBytes());
+  }
+}
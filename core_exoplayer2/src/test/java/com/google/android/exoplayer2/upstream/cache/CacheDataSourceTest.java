@@ -0,0 +1,97 @@
+package com.google.android.exoplayer2.upstream.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.net.Uri;
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit tests for the read paths of {@link CacheDataSource}. */
+@RunWith(RobolectricTestRunner.class)
+public final class CacheDataSourceTest {
+
+  private static final String KEY = "key";
+  private static final int LENGTH = 100000;
+
+  private File cacheDir;
+  private SimpleCache cache;
+  private byte[] data;
+
+  @Before
+  public void setUp() throws Exception {
+    cacheDir = Files.createTempDirectory("CacheDataSourceTest").toFile();
+    cache = new SimpleCache(cacheDir, new NoOpCacheEvictor());
+    data = new byte[LENGTH];
+    for (int i = 0; i < LENGTH; i++) {
+      data[i] = (byte) (i * 31);
+    }
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    cache.release();
+    Util.recursiveDelete(cacheDir);
+  }
+
+  @Test
+  public void arrayAndByteBufferReadsReturnSameData() throws Exception {
+    byte[] fromUpstream = readWithArray(createDataSource(), 4096);
+    assertArrayEquals(data, fromUpstream);
+    assertTrue(cache.isCached(KEY, 0, LENGTH));
+
+    CacheDataSource dataSource = createDataSource();
+    byte[] fromCache = readWithByteBuffer(dataSource, ByteBuffer.allocateDirect(3000));
+    assertArrayEquals(data, fromCache);
+  }
+
+  @Test
+  public void byteBufferReadWritesThroughToCache() throws Exception {
+    byte[] fromUpstream = readWithByteBuffer(createDataSource(), ByteBuffer.allocateDirect(5000));
+    assertArrayEquals(data, fromUpstream);
+    assertEquals(LENGTH, cache.getCachedLength(KEY, 0, LENGTH));
+    assertArrayEquals(data, readWithArray(createDataSource(), 777));
+  }
+
+  private CacheDataSource createDataSource() {
+    return new CacheDataSource(cache, new ByteArrayDataSource(data));
+  }
+
+  private static byte[] readWithArray(CacheDataSource dataSource, int chunkSize) throws Exception {
+    dataSource.open(new DataSpec(Uri.parse("test://data"), 0, LENGTH, KEY));
+    byte[] result = new byte[LENGTH];
+    int position = 0;
+    int read;
+    while ((read = dataSource.read(result, position, Math.min(chunkSize, LENGTH - position)))
+        > 0) {
+      position += read;
+    }
+    dataSource.close();
+    assertEquals(LENGTH, position);
+    return result;
+  }
+
+  private static byte[] readWithByteBuffer(CacheDataSource dataSource, ByteBuffer buffer)
+      throws Exception {
+    dataSource.open(new DataSpec(Uri.parse("test://data"), 0, LENGTH, KEY));
+    ByteBuffer result = ByteBuffer.allocate(LENGTH);
+    while (dataSource.read(buffer) != -1) {
+      buffer.flip();
+      result.put(buffer);
+      buffer.clear();
+    }
+    dataSource.close();
+    assertEquals(LENGTH, result.position());
+    return result.array();
+  }
+}
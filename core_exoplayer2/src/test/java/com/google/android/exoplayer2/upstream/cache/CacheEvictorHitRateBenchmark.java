@@ -0,0 +1,90 @@
+package com.google.android.exoplayer2.upstream.cache;
+
+import static org.junit.Assert.assertTrue;
+
+import com.google.android.exoplayer2.testutil.BenchmarkUtil;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Replays a synthetic trace against {@link LeastRecentlyUsedCacheEvictor} and {@link
+ * TinyLfuCacheEvictor} and reports their hit rates. The trace mixes Zipf distributed requests for
+ * short clips with periodic one-time scans over long titles, which flush an LRU cache.
+ */
+public final class CacheEvictorHitRateBenchmark {
+
+  private static final long SEED = 0;
+  private static final int CLIP_COUNT = 2000;
+  private static final double ZIPF_EXPONENT = 0.9;
+  private static final int REQUEST_COUNT = 200000;
+  private static final int SCAN_INTERVAL = 5000;
+  private static final int SCAN_LENGTH = 500;
+  private static final long SPAN_LENGTH = 64 * 1024;
+  private static final long MAX_BYTES = 200 * SPAN_LENGTH;
+
+  @Test
+  public void tinyLfuBeatsLruOnScanPollutedTrace() {
+    BenchmarkUtil.assumeBenchmarksEnabled();
+    double lruHitRate = replay(new LeastRecentlyUsedCacheEvictor(MAX_BYTES));
+    double tinyLfuHitRate = replay(new TinyLfuCacheEvictor(MAX_BYTES));
+    BenchmarkUtil.report(
+        "CacheEvictor hit rate",
+        "clips=%d requests=%d lru=%.3f tinylfu=%.3f",
+        CLIP_COUNT,
+        REQUEST_COUNT,
+        lruHitRate,
+        tinyLfuHitRate);
+    assertTrue(tinyLfuHitRate > lruHitRate);
+  }
+
+  private static double replay(CacheEvictor evictor) {
+    SimulatedCache cache = new SimulatedCache(evictor);
+    Random random = new Random(SEED);
+    double[] cumulativeWeights = createZipfCumulativeWeights();
+    int hits = 0;
+    int clipRequests = 0;
+    int scanCount = 0;
+    for (int i = 0; i < REQUEST_COUNT; i++) {
+      if (i > 0 && i % SCAN_INTERVAL == 0) {
+        for (int j = 0; j < SCAN_LENGTH; j++) {
+          cache.access("scan" + scanCount + "-" + j, SPAN_LENGTH);
+        }
+        scanCount++;
+      }
+      int clip = sampleZipf(cumulativeWeights, random.nextDouble());
+      if (cache.access("clip" + clip, SPAN_LENGTH)) {
+        hits++;
+      }
+      clipRequests++;
+      assertTrue(cache.getCacheSpace() <= MAX_BYTES);
+    }
+    return (double) hits / clipRequests;
+  }
+
+  private static double[] createZipfCumulativeWeights() {
+    double[] weights = new double[CLIP_COUNT];
+    double sum = 0;
+    for (int i = 0; i < CLIP_COUNT; i++) {
+      sum += 1 / Math.pow(i + 1, ZIPF_EXPONENT);
+      weights[i] = sum;
+    }
+    for (int i = 0; i < CLIP_COUNT; i++) {
+      weights[i] /= sum;
+    }
+    return weights;
+  }
+
+  private static int sampleZipf(double[] cumulativeWeights, double value) {
+    int low = 0;
+    int high = cumulativeWeights.length - 1;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (cumulativeWeights[mid] < value) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
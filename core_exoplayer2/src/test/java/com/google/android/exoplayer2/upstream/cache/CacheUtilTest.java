@@ -0,0 +1,189 @@
+package com.google.android.exoplayer2.upstream.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit tests for {@link CacheUtil}. */
+@RunWith(RobolectricTestRunner.class)
+public final class CacheUtilTest {
+
+  private static final int SEGMENT_LENGTH = (int) CacheUtil.DEFAULT_MIN_SEGMENT_LENGTH_BYTES;
+
+  private File cacheDir;
+  private SimpleCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    cacheDir = Files.createTempDirectory("CacheUtilTest").toFile();
+    cache = new SimpleCache(cacheDir, new NoOpCacheEvictor());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    cache.release();
+    Util.recursiveDelete(cacheDir);
+  }
+
+  @Test
+  public void cacheInParallelWaitsForWorkersWhenSubmissionIsRejected() throws Exception {
+    CountDownLatch readStarted = new CountDownLatch(1);
+    CountDownLatch allowRead = new CountDownLatch(1);
+    AtomicBoolean workerClosed = new AtomicBoolean();
+    // A single worker and no queue, so the second segment is rejected while the first one runs.
+    // The rejection waits for the first read, so the first segment cannot see the abort first.
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            1,
+            1,
+            0,
+            TimeUnit.MILLISECONDS,
+            new SynchronousQueue<>(),
+            (runnable, pool) -> {
+              try {
+                readStarted.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              throw new RejectedExecutionException();
+            });
+    DataSpec dataSpec = new DataSpec(Uri.parse("test://data"), 0, 2 * SEGMENT_LENGTH, "key");
+    Thread releaser =
+        new Thread(
+            () -> {
+              try {
+                readStarted.await();
+                Thread.sleep(100);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              allowRead.countDown();
+            });
+    releaser.start();
+    try {
+      CacheUtil.cacheInParallel(
+          dataSpec,
+          cache,
+          () -> new BlockingDataSource(readStarted, allowRead, workerClosed),
+          executor,
+          /* maxParallelSegments= */ 2,
+          /* maxCacheFileSize= */ Long.MAX_VALUE,
+          /* priorityTaskManager= */ null,
+          /* priority= */ 0,
+          /* counters= */ null,
+          /* isCanceled= */ null);
+      fail();
+    } catch (IOException e) {
+      assertTrue(e.getCause() instanceof RejectedExecutionException);
+    } finally {
+      releaser.join();
+      executor.shutdown();
+    }
+    // The key must not be unlocked while the first segment is still being written.
+    assertTrue(workerClosed.get());
+  }
+
+  @Test
+  public void cacheInParallelSplitsIntoMinSegmentLength() throws Exception {
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(4, 4, 0, TimeUnit.MILLISECONDS, new SynchronousQueue<>());
+    DataSpec dataSpec = new DataSpec(Uri.parse("test://data"), 0, 2 * SEGMENT_LENGTH, "key");
+    CacheUtil.CachingCounters counters = new CacheUtil.CachingCounters();
+    try {
+      CacheUtil.cacheInParallel(
+          dataSpec,
+          cache,
+          () -> new BlockingDataSource(null, null, new AtomicBoolean()),
+          executor,
+          /* maxParallelSegments= */ 4,
+          /* maxCacheFileSize= */ Long.MAX_VALUE,
+          /* priorityTaskManager= */ null,
+          /* priority= */ 0,
+          counters,
+          /* isCanceled= */ null);
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(2 * SEGMENT_LENGTH, counters.newlyCachedBytes);
+    assertEquals(2, cache.getCachedSpans("key").size());
+  }
+
+  /** Serves zeros, optionally blocking the first read until released. */
+  private static final class BlockingDataSource implements DataSource {
+
+    @Nullable private final CountDownLatch readStarted;
+    @Nullable private final CountDownLatch allowRead;
+    private final AtomicBoolean closed;
+    @Nullable private Uri uri;
+    private long bytesRemaining;
+
+    public BlockingDataSource(
+        @Nullable CountDownLatch readStarted,
+        @Nullable CountDownLatch allowRead,
+        AtomicBoolean closed) {
+      this.readStarted = readStarted;
+      this.allowRead = allowRead;
+      this.closed = closed;
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {}
+
+    @Override
+    public long open(DataSpec dataSpec) {
+      uri = dataSpec.uri;
+      bytesRemaining = dataSpec.length;
+      return bytesRemaining;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+      if (readStarted != null) {
+        readStarted.countDown();
+        try {
+          allowRead.await();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+      }
+      if (bytesRemaining == 0) {
+        return -1;
+      }
+      int read = (int) Math.min(readLength, bytesRemaining);
+      bytesRemaining -= read;
+      return read;
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+      return uri;
+    }
+
+    @Override
+    public void close() {
+      closed.set(true);
+    }
+  }
+}
@@ -0,0 +1,231 @@
+package com.google.android.exoplayer2.upstream.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.android.exoplayer2.util.Util;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Tests the journal of {@link CachedContentIndex}. */
+@RunWith(RobolectricTestRunner.class)
+public final class CachedContentIndexTest {
+
+  private static final int JOURNAL_HEADER_LENGTH = 12;
+  private static final byte[] SECRET_KEY = new byte[16];
+
+  private File cacheDir;
+  private File journalFile;
+
+  @Before
+  public void setUp() throws Exception {
+    cacheDir = Files.createTempDirectory("CachedContentIndexTest").toFile();
+    journalFile = new File(cacheDir, CachedContentIndex.JOURNAL_FILE_NAME);
+  }
+
+  @After
+  public void tearDown() {
+    Util.recursiveDelete(cacheDir);
+  }
+
+  @Test
+  public void journalIsReplayedOnLoad() throws Exception {
+    CachedContentIndex index = loadIndex(/* secretKey= */ null);
+    index.getOrAdd("key1");
+    index.store();
+    assertFalse(journalFile.exists());
+
+    int id2 = index.getOrAdd("key2").id;
+    index.applyContentMetadataMutations("key1", new ContentMetadataMutations().set("name", 7));
+    index.store();
+    index.getOrAdd("key3");
+    index.maybeRemove("key2");
+    index.store();
+    assertTrue(journalFile.exists());
+
+    CachedContentIndex reloadedIndex = loadIndex(/* secretKey= */ null);
+    assertEquals(7, reloadedIndex.getContentMetadata("key1").get("name", 0));
+    assertNull(reloadedIndex.get("key2"));
+    assertNull(reloadedIndex.getKeyForId(id2));
+    assertNotNull(reloadedIndex.get("key3"));
+    assertEquals(index.get("key3").id, reloadedIndex.get("key3").id);
+    assertEquals(2, reloadedIndex.getAll().size());
+  }
+
+  @Test
+  public void journalTornInsideARecordKeepsEarlierRecordsAndCompacts() throws Exception {
+    writeIndexWithJournaledKeys("key1", "key2", "key3");
+    byte[] journal = Files.readAllBytes(journalFile.toPath());
+    writeJournal(Arrays.copyOf(journal, journal.length - 1));
+
+    CachedContentIndex index = loadIndex(/* secretKey= */ null);
+    assertNotNull(index.get("key1"));
+    assertNotNull(index.get("key2"));
+    assertNull(index.get("key3"));
+
+    index.store();
+    assertFalse(journalFile.exists());
+    assertEquals(2, loadIndex(/* secretKey= */ null).getAll().size());
+  }
+
+  @Test
+  public void journalTornInsideARecordLengthIsCompactedBeforeAppending() throws Exception {
+    writeIndexWithJournaledKeys("key1", "key2");
+    byte[] journal = Files.readAllBytes(journalFile.toPath());
+    // Half of the length of a record whose append was interrupted.
+    byte[] tornJournal = Arrays.copyOf(journal, journal.length + 2);
+    writeJournal(tornJournal);
+
+    CachedContentIndex index = loadIndex(/* secretKey= */ null);
+    assertEquals(2, index.getAll().size());
+    index.store();
+    assertFalse(journalFile.exists());
+    index.getOrAdd("key3");
+    index.store();
+
+    CachedContentIndex reloadedIndex = loadIndex(/* secretKey= */ null);
+    assertEquals(3, reloadedIndex.getAll().size());
+    assertNotNull(reloadedIndex.get("key3"));
+  }
+
+  @Test
+  public void crcFailureMidFileDropsLaterRecordsAndCompacts() throws Exception {
+    writeIndexWithJournaledKeys("key1", "key2", "key3", "key4");
+    byte[] journal = Files.readAllBytes(journalFile.toPath());
+    List<Integer> recordOffsets = getRecordOffsets(journal);
+    // Flip a byte in the payload of the second record, which holds key3.
+    journal[recordOffsets.get(1) + 4] ^= 0xFF;
+    writeJournal(journal);
+
+    CachedContentIndex index = loadIndex(/* secretKey= */ null);
+    assertNotNull(index.get("key1"));
+    assertNotNull(index.get("key2"));
+    assertNull(index.get("key3"));
+    assertNull(index.get("key4"));
+
+    index.store();
+    assertFalse(journalFile.exists());
+    CachedContentIndex reloadedIndex = loadIndex(/* secretKey= */ null);
+    assertEquals(2, reloadedIndex.getAll().size());
+    assertNotNull(reloadedIndex.get("key2"));
+  }
+
+  @Test
+  public void journalForADifferentIndexSnapshotIsIgnored() throws Exception {
+    CachedContentIndex index = loadIndex(/* secretKey= */ null);
+    index.getOrAdd("key1");
+    index.store();
+    index.getOrAdd("key2");
+    index.store();
+    byte[] journal = Files.readAllBytes(journalFile.toPath());
+    // Change the hash of the index snapshot the journal was written against.
+    journal[JOURNAL_HEADER_LENGTH - 1] ^= 0x01;
+    writeJournal(journal);
+
+    CachedContentIndex reloadedIndex = loadIndex(/* secretKey= */ null);
+
+    assertNotNull(reloadedIndex.get("key1"));
+    assertNull(reloadedIndex.get("key2"));
+    assertFalse(journalFile.exists());
+  }
+
+  @Test
+  public void encryptedJournalIsReplayedAndHidesKeys() throws Exception {
+    CachedContentIndex index = loadIndex(SECRET_KEY);
+    index.getOrAdd("key1");
+    index.store();
+    index.getOrAdd("secret-content-key");
+    index.store();
+    index.getOrAdd("secret-content-key-2");
+    index.store();
+
+    byte[] journal = Files.readAllBytes(journalFile.toPath());
+    assertFalse(
+        new String(journal, StandardCharsets.ISO_8859_1).contains("secret-content-key"));
+    List<Integer> recordOffsets = getRecordOffsets(journal);
+    assertEquals(2, recordOffsets.size());
+    // Every record starts with its own initialization vector.
+    assertFalse(
+        Arrays.equals(
+            Arrays.copyOfRange(journal, recordOffsets.get(0) + 4, recordOffsets.get(0) + 20),
+            Arrays.copyOfRange(journal, recordOffsets.get(1) + 4, recordOffsets.get(1) + 20)));
+
+    CachedContentIndex reloadedIndex = loadIndex(SECRET_KEY);
+    assertEquals(3, reloadedIndex.getAll().size());
+    assertNotNull(reloadedIndex.get("secret-content-key-2"));
+  }
+
+  @Test
+  public void journalIsCompactedOnceItOutgrowsTheIndex() throws Exception {
+    CachedContentIndex index = loadIndex(/* secretKey= */ null);
+    index.getOrAdd("key");
+    index.store();
+    for (int i = 1; i <= 1024; i++) {
+      index.applyContentMetadataMutations("key", new ContentMetadataMutations().set("name", i));
+      index.store();
+    }
+    assertEquals(1024, getRecordOffsets(Files.readAllBytes(journalFile.toPath())).size());
+
+    index.applyContentMetadataMutations("key", new ContentMetadataMutations().set("name", 1025));
+    index.store();
+
+    assertFalse(journalFile.exists());
+    assertEquals(1025, loadIndex(/* secretKey= */ null).getContentMetadata("key").get("name", 0));
+  }
+
+  private CachedContentIndex loadIndex(byte[] secretKey) {
+    CachedContentIndex index = new CachedContentIndex(cacheDir, secretKey);
+    index.load();
+    return index;
+  }
+
+  /** Stores the first key in the index file and journals every other key in its own record. */
+  private void writeIndexWithJournaledKeys(String... keys) throws Exception {
+    CachedContentIndex index = loadIndex(/* secretKey= */ null);
+    for (String key : keys) {
+      index.getOrAdd(key);
+      index.store();
+    }
+    assertEquals(keys.length - 1, getRecordOffsets(Files.readAllBytes(journalFile.toPath())).size());
+  }
+
+  private void writeJournal(byte[] journal) throws IOException {
+    try (FileOutputStream output = new FileOutputStream(journalFile)) {
+      output.write(journal);
+    }
+  }
+
+  /** Returns the offset of each complete record, which is the offset of its length field. */
+  private static List<Integer> getRecordOffsets(byte[] journal) throws IOException {
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(journal));
+    input.skipBytes(JOURNAL_HEADER_LENGTH);
+    List<Integer> recordOffsets = new ArrayList<>();
+    int offset = JOURNAL_HEADER_LENGTH;
+    while (offset + 4 <= journal.length) {
+      int length = input.readInt();
+      if (offset + 8 + length > journal.length) {
+        break;
+      }
+      recordOffsets.add(offset);
+      input.skipBytes(length + 4);
+      offset += 8 + length;
+    }
+    return recordOffsets;
+  }
+}
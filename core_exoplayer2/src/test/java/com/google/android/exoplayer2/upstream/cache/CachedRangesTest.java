@@ -0,0 +1,216 @@
+package com.google.android.exoplayer2.upstream.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/** Unit tests for {@link CachedRanges}. */
+public final class CachedRangesTest {
+
+  private static final String KEY = "key";
+
+  @Test
+  public void addDisjointRanges() {
+    CachedRanges ranges = new CachedRanges();
+    ranges.add(100, 200);
+    ranges.add(0, 50);
+    ranges.add(300, 400);
+
+    assertEquals(3, ranges.size());
+    assertEquals(50, ranges.getCachedLength(0, 1000));
+    assertEquals(-50, ranges.getCachedLength(50, 1000));
+    assertEquals(100, ranges.getCachedLength(100, 1000));
+    assertEquals(30, ranges.getCachedLength(120, 30));
+    assertEquals(-100, ranges.getCachedLength(200, 1000));
+    assertEquals(-1000, ranges.getCachedLength(400, 1000));
+  }
+
+  @Test
+  public void addMergesOverlappingAndAdjacentRanges() {
+    CachedRanges ranges = new CachedRanges();
+    ranges.add(0, 100);
+    ranges.add(200, 300);
+    ranges.add(400, 500);
+
+    ranges.add(100, 200);
+    assertEquals(2, ranges.size());
+    assertEquals(300, ranges.getCachedLength(0, 1000));
+
+    ranges.add(250, 450);
+    assertEquals(1, ranges.size());
+    assertEquals(500, ranges.getCachedLength(0, 1000));
+
+    ranges.add(600, 700);
+    ranges.add(550, 800);
+    assertEquals(2, ranges.size());
+    assertEquals(250, ranges.getCachedLength(550, 1000));
+  }
+
+  @Test
+  public void addInsideAnExistingRangeIsANoOp() {
+    CachedRanges ranges = new CachedRanges();
+    ranges.add(0, 100);
+    ranges.add(20, 80);
+    ranges.add(50, 50);
+
+    assertEquals(1, ranges.size());
+    assertEquals(100, ranges.getCachedLength(0, 1000));
+  }
+
+  @Test
+  public void removeTrimsAndDropsRanges() {
+    CachedRanges ranges = new CachedRanges();
+    ranges.add(0, 100);
+    ranges.add(200, 300);
+    ranges.add(400, 500);
+
+    ranges.remove(50, 450);
+
+    assertEquals(2, ranges.size());
+    assertEquals(50, ranges.getCachedLength(0, 1000));
+    assertEquals(-400, ranges.getCachedLength(50, 1000));
+    assertEquals(50, ranges.getCachedLength(450, 1000));
+  }
+
+  @Test
+  public void removeSplitsARange() {
+    CachedRanges ranges = new CachedRanges();
+    ranges.add(0, 300);
+
+    ranges.remove(100, 200);
+
+    assertEquals(2, ranges.size());
+    assertEquals(100, ranges.getCachedLength(0, 1000));
+    assertEquals(-100, ranges.getCachedLength(100, 1000));
+    assertEquals(100, ranges.getCachedLength(200, 1000));
+  }
+
+  @Test
+  public void removeOfAGapIsANoOp() {
+    CachedRanges ranges = new CachedRanges();
+    ranges.add(0, 100);
+    ranges.add(200, 300);
+
+    ranges.remove(100, 200);
+    ranges.remove(500, 600);
+
+    assertEquals(2, ranges.size());
+    assertEquals(100, ranges.getCachedLength(0, 1000));
+    assertEquals(100, ranges.getCachedLength(200, 1000));
+  }
+
+  @Test
+  public void growsBeyondTheInitialCapacity() {
+    CachedRanges ranges = new CachedRanges();
+    for (int i = 19; i >= 0; i--) {
+      ranges.add(i * 100, i * 100 + 50);
+    }
+
+    assertEquals(20, ranges.size());
+    for (int i = 0; i < 20; i++) {
+      assertEquals(50, ranges.getCachedLength(i * 100, 1000));
+      assertEquals(i < 19 ? -50 : -1000, ranges.getCachedLength(i * 100 + 50, 1000));
+    }
+  }
+
+  @Test
+  public void getRunStart() {
+    CachedRanges ranges = new CachedRanges();
+    ranges.add(100, 200);
+
+    assertEquals(100, ranges.getRunStart(200));
+    assertEquals(150, ranges.getRunStart(150));
+    assertEquals(300, ranges.getRunStart(300));
+    assertEquals(100, ranges.getRunStart(100));
+  }
+
+  @Test
+  public void removingASpanKeepsTheCoverageOfEarlierOverlappingSpans() {
+    CachedContent cachedContent = new CachedContent(/* id= */ 0, KEY);
+    // The first span reaches past the second one into the third.
+    SimpleCacheSpan longSpan = addSpan(cachedContent, /* position= */ 0, /* length= */ 500);
+    addSpan(cachedContent, /* position= */ 100, /* length= */ 100);
+    SimpleCacheSpan removedSpan = addSpan(cachedContent, /* position= */ 300, /* length= */ 400);
+
+    cachedContent.removeSpan(removedSpan);
+
+    assertEquals(500, cachedContent.getCachedBytesLength(0, 1000));
+    assertEquals(200, cachedContent.getCachedBytesLength(300, 1000));
+    assertEquals(-1000, cachedContent.getCachedBytesLength(500, 1000));
+
+    cachedContent.removeSpan(longSpan);
+
+    assertEquals(-100, cachedContent.getCachedBytesLength(0, 1000));
+    assertEquals(100, cachedContent.getCachedBytesLength(100, 1000));
+    assertEquals(-1000, cachedContent.getCachedBytesLength(200, 1000));
+  }
+
+  @Test
+  public void randomAddsAndRemovesMatchTheSpanWalk() {
+    Random random = new Random(0);
+    for (int round = 0; round < 50; round++) {
+      CachedContent cachedContent = new CachedContent(/* id= */ 0, KEY);
+      List<SimpleCacheSpan> spans = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        if (!spans.isEmpty() && random.nextInt(3) == 0) {
+          SimpleCacheSpan span = spans.remove(random.nextInt(spans.size()));
+          cachedContent.removeSpan(span);
+        } else {
+          long position = random.nextInt(100) * 10;
+          if (cachedContent.getSpan(position).position == position
+              && cachedContent.getSpan(position).isCached) {
+            // Spans are keyed by position.
+            continue;
+          }
+          long length = (random.nextInt(random.nextBoolean() ? 5 : 40) + 1) * 10;
+          spans.add(addSpan(cachedContent, position, length));
+        }
+        for (int j = 0; j < 10; j++) {
+          long position = random.nextInt(1200);
+          long length = random.nextInt(400) + 1;
+          assertEquals(
+              getSpanWalkCachedLength(spans, position, length),
+              cachedContent.getCachedBytesLength(position, length));
+        }
+      }
+    }
+  }
+
+  private static SimpleCacheSpan addSpan(CachedContent cachedContent, long position, long length) {
+    SimpleCacheSpan span =
+        SimpleCacheSpan.createCacheEntry(
+            KEY, position, length, /* lastAccessTimestamp= */ 0, new File("missing"));
+    cachedContent.addSpan(span);
+    return span;
+  }
+
+  /** Returns the cached length by walking every span that continues the covered run. */
+  private static long getSpanWalkCachedLength(
+      List<SimpleCacheSpan> spans, long position, long length) {
+    long end = position;
+    boolean extended = true;
+    while (extended && end < position + length) {
+      extended = false;
+      for (SimpleCacheSpan span : spans) {
+        if (span.position <= end && span.position + span.length > end) {
+          end = span.position + span.length;
+          extended = true;
+        }
+      }
+    }
+    if (end > position) {
+      return Math.min(end - position, length);
+    }
+    long nextStart = Long.MAX_VALUE;
+    for (SimpleCacheSpan span : spans) {
+      if (span.position > position) {
+        nextStart = Math.min(nextStart, span.position);
+      }
+    }
+    return -Math.min(nextStart - position, length);
+  }
+}
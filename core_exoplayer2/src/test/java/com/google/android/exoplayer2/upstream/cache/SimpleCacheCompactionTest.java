@@ -0,0 +1,179 @@
+package com.google.android.exoplayer2.upstream.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Tests {@link SimpleCache#compact(long, long)}. */
+@RunWith(RobolectricTestRunner.class)
+public final class SimpleCacheCompactionTest {
+
+  private static final String KEY = "key";
+  private static final int SPAN_LENGTH = 1024;
+  private static final long MAX_COMPACTED_FILE_SIZE = 1024 * 1024;
+  private static final long TIME_BUDGET_MS = 10_000;
+
+  private File cacheDir;
+  private SimpleCache cache;
+  private byte[] data;
+
+  @Before
+  public void setUp() throws Exception {
+    cacheDir = Files.createTempDirectory("SimpleCacheCompactionTest").toFile();
+    cache = new SimpleCache(cacheDir, new NoOpCacheEvictor());
+    data = new byte[3 * SPAN_LENGTH];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (i * 7);
+    }
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (cache != null) {
+      cache.release();
+    }
+    Util.recursiveDelete(cacheDir);
+  }
+
+  @Test
+  public void contiguousSpansAreMergedIntoOneFile() throws Exception {
+    List<File> originalFiles = writeSpans(3);
+
+    assertFalse(cache.compact(MAX_COMPACTED_FILE_SIZE, TIME_BUDGET_MS));
+
+    NavigableSet<CacheSpan> spans = cache.getCachedSpans(KEY);
+    assertEquals(1, spans.size());
+    CacheSpan span = spans.first();
+    assertEquals(0, span.position);
+    assertEquals(data.length, span.length);
+    assertArrayEquals(data, Files.readAllBytes(span.file.toPath()));
+    for (File file : originalFiles) {
+      assertFalse(file.exists());
+    }
+    assertEquals(data.length, cache.getCacheSpace());
+    assertTrue(cache.isCached(KEY, 0, data.length));
+    assertEquals(0, getTempFiles().length);
+  }
+
+  @Test
+  public void runsAreLimitedToTheMaximumCompactedFileSize() throws Exception {
+    writeSpans(3);
+
+    cache.compact(/* maxCompactedFileSize= */ 2 * SPAN_LENGTH, TIME_BUDGET_MS);
+
+    NavigableSet<CacheSpan> spans = cache.getCachedSpans(KEY);
+    assertEquals(2, spans.size());
+    assertEquals(2 * SPAN_LENGTH, spans.first().length);
+    assertEquals(SPAN_LENGTH, spans.last().length);
+  }
+
+  @Test
+  public void spanRemovedDuringCopyAbortsTheCompaction() throws Exception {
+    List<File> originalFiles = writeSpans(3);
+    cache.setCompactionCopyListener(
+        () -> {
+          try {
+            cache.removeSpan(cache.getCachedSpans(KEY).first());
+          } catch (Cache.CacheException e) {
+            throw new IllegalStateException(e);
+          }
+        });
+
+    assertFalse(cache.compact(MAX_COMPACTED_FILE_SIZE, TIME_BUDGET_MS));
+
+    NavigableSet<CacheSpan> spans = cache.getCachedSpans(KEY);
+    assertEquals(2, spans.size());
+    assertEquals(originalFiles.get(1), spans.first().file);
+    assertEquals(originalFiles.get(2), spans.last().file);
+    assertTrue(originalFiles.get(1).exists());
+    assertTrue(originalFiles.get(2).exists());
+    assertEquals(2 * SPAN_LENGTH, cache.getCacheSpace());
+    assertEquals(0, getTempFiles().length);
+    assertEquals(originalFiles.size() - 1, getSpanFiles().length);
+  }
+
+  @Test
+  public void copyFailureLeavesNoTemporaryFile() throws Exception {
+    List<File> originalFiles = writeSpans(3);
+    try (RandomAccessFile file = new RandomAccessFile(originalFiles.get(1), "rw")) {
+      file.setLength(SPAN_LENGTH - 1);
+    }
+
+    assertFalse(cache.compact(MAX_COMPACTED_FILE_SIZE, TIME_BUDGET_MS));
+
+    assertEquals(0, getTempFiles().length);
+    assertEquals(3, cache.getCachedSpans(KEY).size());
+    assertEquals(3, getSpanFiles().length);
+    // The key is unlocked again, so new writes can start.
+    CacheSpan holeSpan = cache.startReadWriteNonBlocking(KEY, data.length);
+    assertTrue(holeSpan != null && !holeSpan.isCached);
+    cache.releaseHoleSpan(holeSpan);
+  }
+
+  @Test
+  public void compactedSpanSurvivesReopeningTheCache() throws Exception {
+    writeSpans(3);
+    cache.compact(MAX_COMPACTED_FILE_SIZE, TIME_BUDGET_MS);
+    File compactedFile = cache.getCachedSpans(KEY).first().file;
+    cache.release();
+
+    cache = new SimpleCache(cacheDir, new NoOpCacheEvictor());
+    assertCompacted(compactedFile);
+    cache.release();
+
+    // Rebuilding from the directory without the manifest gives the same result.
+    assertTrue(new File(cacheDir, SpanManifest.FILE_NAME).delete());
+    cache = new SimpleCache(cacheDir, new NoOpCacheEvictor());
+    assertCompacted(compactedFile);
+  }
+
+  private void assertCompacted(File compactedFile) throws Exception {
+    NavigableSet<CacheSpan> spans = cache.getCachedSpans(KEY);
+    assertEquals(1, spans.size());
+    assertEquals(compactedFile, spans.first().file);
+    assertEquals(data.length, spans.first().length);
+    assertEquals(data.length, cache.getCacheSpace());
+    assertEquals(1, cache.getKeys().size());
+    assertEquals(1, getSpanFiles().length);
+    assertArrayEquals(data, Files.readAllBytes(compactedFile.toPath()));
+  }
+
+  private List<File> writeSpans(int count) throws Exception {
+    List<File> files = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      CacheSpan holeSpan = cache.startReadWrite(KEY, i * SPAN_LENGTH);
+      File file = cache.startFile(KEY, i * SPAN_LENGTH, SPAN_LENGTH);
+      try (FileOutputStream output = new FileOutputStream(file)) {
+        output.write(Arrays.copyOfRange(data, i * SPAN_LENGTH, (i + 1) * SPAN_LENGTH));
+      }
+      cache.commitFile(file);
+      cache.releaseHoleSpan(holeSpan);
+      files.add(cache.getCachedSpans(KEY).last().file);
+    }
+    return files;
+  }
+
+  private File[] getTempFiles() {
+    return cacheDir.listFiles((dir, name) -> name.endsWith(".tmp"));
+  }
+
+  private File[] getSpanFiles() {
+    return cacheDir.listFiles((dir, name) -> name.endsWith(".v3.exo"));
+  }
+}
@@ -0,0 +1,242 @@
+package com.google.android.exoplayer2.upstream.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Stress tests for concurrent use of a {@link SimpleCache} with an evicting evictor. */
+@RunWith(RobolectricTestRunner.class)
+public final class SimpleCacheConcurrencyTest {
+
+  private static final int THREAD_COUNT = 8;
+  private static final int OPERATIONS_PER_THREAD = 300;
+  private static final int KEY_COUNT = 6;
+  private static final int SPANS_PER_KEY = 8;
+  private static final int LENGTH = 256;
+  private static final long MAX_BYTES = 10 * LENGTH;
+
+  private File cacheDir;
+  private SimpleCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    cacheDir = Files.createTempDirectory("SimpleCacheConcurrencyTest").toFile();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (cache != null) {
+      cache.release();
+    }
+    Util.recursiveDelete(cacheDir);
+  }
+
+  @Test
+  public void concurrentWritesRemovalsAndEvictionsKeepTheIndexConsistent() throws Exception {
+    CheckingEvictor evictor = new CheckingEvictor(MAX_BYTES);
+    cache = new SimpleCache(cacheDir, evictor);
+    CountDownLatch startLatch = new CountDownLatch(1);
+    AtomicReference<Throwable> threadError = new AtomicReference<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < THREAD_COUNT; t++) {
+      Random random = new Random(t);
+      Thread thread =
+          new Thread(
+              () -> {
+                try {
+                  startLatch.await();
+                  for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    runRandomOperation(random);
+                  }
+                } catch (Throwable e) {
+                  threadError.compareAndSet(null, e);
+                }
+              });
+      thread.start();
+      threads.add(thread);
+    }
+
+    startLatch.countDown();
+    for (Thread thread : threads) {
+      thread.join(TimeUnit.SECONDS.toMillis(60));
+      assertTrue(!thread.isAlive());
+    }
+
+    if (threadError.get() != null) {
+      throw new AssertionError(threadError.get());
+    }
+    assertNull(evictor.error, evictor.error);
+    assertIndexConsistent(evictor);
+  }
+
+  private void runRandomOperation(Random random) throws Exception {
+    String key = "key" + random.nextInt(KEY_COUNT);
+    long position = (long) random.nextInt(SPANS_PER_KEY) * LENGTH;
+    if (random.nextInt(4) == 0) {
+      NavigableSet<CacheSpan> spans = cache.getCachedSpans(key);
+      if (!spans.isEmpty()) {
+        List<CacheSpan> spanList = new ArrayList<>(spans);
+        cache.removeSpan(spanList.get(random.nextInt(spanList.size())));
+      }
+      return;
+    }
+    CacheSpan span = cache.startReadWrite(key, position);
+    if (span.isCached) {
+      // A cache hit touches the span.
+      return;
+    }
+    try {
+      long length = span.isOpenEnded() ? LENGTH : Math.min(LENGTH, span.length);
+      File file = cache.startFile(key, position, length);
+      try (FileOutputStream output = new FileOutputStream(file)) {
+        output.write(new byte[(int) length]);
+      }
+      cache.commitFile(file);
+    } finally {
+      cache.releaseHoleSpan(span);
+    }
+  }
+
+  private void assertIndexConsistent(CheckingEvictor evictor) {
+    Set<File> spanFiles = new HashSet<>();
+    long totalLength = 0;
+    for (String key : cache.getKeys()) {
+      long end = 0;
+      for (CacheSpan span : cache.getCachedSpans(key)) {
+        assertTrue(span.file.exists());
+        assertEquals(span.length, span.file.length());
+        assertTrue(span.position >= end);
+        assertEquals(span.length, cache.getCachedLength(key, span.position, span.length));
+        end = span.position + span.length;
+        spanFiles.add(span.file);
+        totalLength += span.length;
+      }
+    }
+    File[] filesOnDisk = cacheDir.listFiles((dir, name) -> name.endsWith(".v3.exo"));
+    assertEquals(spanFiles.size(), filesOnDisk.length);
+    for (File file : filesOnDisk) {
+      assertTrue(spanFiles.contains(file));
+    }
+    assertEquals(totalLength, cache.getCacheSpace());
+    assertTrue(totalLength <= MAX_BYTES);
+    synchronized (evictor) {
+      assertEquals(spanFiles.size(), evictor.spans.size());
+      assertEquals(totalLength, evictor.currentSize);
+    }
+  }
+
+  /**
+   * Evicts in insertion order and checks that only the events of its own removals reach it while
+   * it is inside another callback.
+   */
+  private static final class CheckingEvictor implements CacheEvictor {
+
+    private final long maxBytes;
+    private final LinkedHashSet<CacheSpan> spans;
+    private final Set<String> removingSpans;
+
+    private long currentSize;
+    private int depth;
+    @Nullable private volatile String error;
+
+    public CheckingEvictor(long maxBytes) {
+      this.maxBytes = maxBytes;
+      spans = new LinkedHashSet<>();
+      removingSpans = new HashSet<>();
+    }
+
+    @Override
+    public void onCacheInitialized() {}
+
+    @Override
+    public synchronized void onStartFile(Cache cache, String key, long position, long length) {
+      enter(/* span= */ null);
+      evict(cache, length);
+      depth--;
+    }
+
+    @Override
+    public synchronized void onSpanAdded(Cache cache, CacheSpan span) {
+      enter(/* span= */ null);
+      if (spans.add(span)) {
+        currentSize += span.length;
+      }
+      evict(cache, 0);
+      depth--;
+    }
+
+    @Override
+    public synchronized void onSpanRemoved(Cache cache, CacheSpan span) {
+      enter(span);
+      remove(span);
+      depth--;
+    }
+
+    @Override
+    public synchronized void onSpanTouched(Cache cache, CacheSpan oldSpan, CacheSpan newSpan) {
+      enter(/* span= */ null);
+      if (remove(oldSpan)) {
+        spans.add(newSpan);
+        currentSize += newSpan.length;
+      }
+      depth--;
+    }
+
+    private void enter(@Nullable CacheSpan removedSpan) {
+      if (depth > 0 && (removedSpan == null || !removingSpans.contains(getId(removedSpan)))) {
+        error = "Unrelated event dispatched inside an evictor callback";
+      }
+      depth++;
+    }
+
+    /** Returns an id that matches the span the cache removes, which may be a newer touch. */
+    private static String getId(CacheSpan span) {
+      return span.key + ":" + span.position;
+    }
+
+    private boolean remove(CacheSpan span) {
+      if (spans.remove(span)) {
+        currentSize -= span.length;
+        return true;
+      }
+      return false;
+    }
+
+    private void evict(Cache cache, long requiredSpace) {
+      while (currentSize + requiredSpace > maxBytes && !spans.isEmpty()) {
+        CacheSpan span = spans.iterator().next();
+        removingSpans.add(getId(span));
+        try {
+          cache.removeSpan(span);
+        } catch (Cache.CacheException e) {
+          error = e.toString();
+        } finally {
+          removingSpans.remove(getId(span));
+        }
+        // Another thread may have removed the span already, its event is still on the way.
+        remove(span);
+      }
+    }
+  }
+}
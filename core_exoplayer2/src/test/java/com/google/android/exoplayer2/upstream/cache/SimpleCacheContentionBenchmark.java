@@ -0,0 +1,123 @@
+package com.google.android.exoplayer2.upstream.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.android.exoplayer2.testutil.BenchmarkUtil;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/**
+ * Measures {@link SimpleCache} throughput when several threads read and write disjoint keys, which
+ * is the case per-key lock striping is meant to speed up.
+ */
+@RunWith(RobolectricTestRunner.class)
+public final class SimpleCacheContentionBenchmark {
+
+  private static final int KEYS_PER_THREAD = 32;
+  private static final int SPAN_LENGTH = 4096;
+  private static final int READS_PER_KEY = 500;
+  private static final int[] THREAD_COUNTS = {1, 2, 4, 8};
+
+  private File cacheDir;
+
+  @Before
+  public void setUp() throws Exception {
+    cacheDir = Files.createTempDirectory("SimpleCacheContentionBenchmark").toFile();
+  }
+
+  @After
+  public void tearDown() {
+    Util.recursiveDelete(cacheDir);
+  }
+
+  @Test
+  public void disjointKeyThroughputScalesWithThreads() throws Exception {
+    BenchmarkUtil.assumeBenchmarksEnabled();
+    double singleThreadOpsPerSecond = 0;
+    for (int threadCount : THREAD_COUNTS) {
+      File dir = new File(cacheDir, "threads" + threadCount);
+      SimpleCache cache = new SimpleCache(dir, new NoOpCacheEvictor());
+      try {
+        long startTimeNs = System.nanoTime();
+        runWorkers(cache, threadCount);
+        double elapsedSeconds = (System.nanoTime() - startTimeNs) / 1e9;
+        int ops = threadCount * KEYS_PER_THREAD * (READS_PER_KEY + 1);
+        double opsPerSecond = ops / elapsedSeconds;
+        if (threadCount == 1) {
+          singleThreadOpsPerSecond = opsPerSecond;
+        }
+        BenchmarkUtil.report(
+            "SimpleCache disjoint keys",
+            "threads=%d ops/s=%.0f speedup=%.2fx",
+            threadCount,
+            opsPerSecond,
+            opsPerSecond / singleThreadOpsPerSecond);
+        assertEquals(threadCount * KEYS_PER_THREAD, cache.getKeys().size());
+        assertEquals((long) threadCount * KEYS_PER_THREAD * SPAN_LENGTH, cache.getCacheSpace());
+      } finally {
+        cache.release();
+      }
+    }
+  }
+
+  private static void runWorkers(SimpleCache cache, int threadCount) throws Exception {
+    CountDownLatch start = new CountDownLatch(1);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < threadCount; i++) {
+      int worker = i;
+      Thread thread =
+          new Thread(
+              () -> {
+                try {
+                  start.await();
+                  runWorker(cache, worker);
+                } catch (Throwable e) {
+                  failure.compareAndSet(null, e);
+                }
+              });
+      threads.add(thread);
+      thread.start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    if (failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+  }
+
+  private static void runWorker(SimpleCache cache, int worker) throws Exception {
+    byte[] data = new byte[SPAN_LENGTH];
+    for (int i = 0; i < KEYS_PER_THREAD; i++) {
+      String key = "worker" + worker + "-key" + i;
+      CacheSpan holeSpan = cache.startReadWrite(key, 0);
+      assertTrue(!holeSpan.isCached);
+      File file = cache.startFile(key, 0, SPAN_LENGTH);
+      try (FileOutputStream output = new FileOutputStream(file)) {
+        output.write(data);
+      }
+      cache.commitFile(file);
+      cache.releaseHoleSpan(holeSpan);
+    }
+    for (int read = 0; read < READS_PER_KEY; read++) {
+      for (int i = 0; i < KEYS_PER_THREAD; i++) {
+        CacheSpan span = cache.startReadWrite("worker" + worker + "-key" + i, 0);
+        assertTrue(span.isCached);
+      }
+    }
+  }
+}
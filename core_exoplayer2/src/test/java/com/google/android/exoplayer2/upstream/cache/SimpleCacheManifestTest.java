@@ -0,0 +1,142 @@
+package com.google.android.exoplayer2.upstream.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Tests the stable span file name mode and the span manifest of {@link SimpleCache}. */
+@RunWith(RobolectricTestRunner.class)
+public final class SimpleCacheManifestTest {
+
+  private static final String KEY = "key";
+  private static final int LENGTH = 1024;
+  private static final long MANIFEST_STORE_INTERVAL_MS = 5000;
+
+  private File cacheDir;
+  private SimpleCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    cacheDir = Files.createTempDirectory("SimpleCacheManifestTest").toFile();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (cache != null) {
+      cache.release();
+    }
+    Util.recursiveDelete(cacheDir);
+  }
+
+  @Test
+  public void touchKeepsStableSpanFileNameAndUpdatesAccessTime() throws Exception {
+    cache = createCache(/* stableSpanFileNames= */ true, new NoOpCacheEvictor());
+    writeSpan(KEY, 0);
+    CacheSpan span = cache.getCachedSpans(KEY).first();
+    Thread.sleep(2);
+
+    CacheSpan touchedSpan = cache.startReadWrite(KEY, 0);
+
+    assertTrue(touchedSpan.isCached);
+    assertEquals(span.file, touchedSpan.file);
+    assertTrue(span.file.exists());
+    assertTrue(touchedSpan.lastAccessTimestamp > span.lastAccessTimestamp);
+    assertEquals(1, getSpanFiles().length);
+
+    // The access time survives a restart although the file name still holds the old one.
+    cache.release();
+    cache = createCache(/* stableSpanFileNames= */ true, new NoOpCacheEvictor());
+    CacheSpan reloadedSpan = cache.getCachedSpans(KEY).first();
+    assertEquals(span.file, reloadedSpan.file);
+    assertEquals(touchedSpan.lastAccessTimestamp, reloadedSpan.lastAccessTimestamp);
+  }
+
+  @Test
+  public void touchRenamesSpanFileWithoutStableSpanFileNames() throws Exception {
+    cache = createCache(/* stableSpanFileNames= */ false, new NoOpCacheEvictor());
+    writeSpan(KEY, 0);
+    CacheSpan span = cache.getCachedSpans(KEY).first();
+    Thread.sleep(2);
+
+    CacheSpan touchedSpan = cache.startReadWrite(KEY, 0);
+
+    assertFalse(span.file.equals(touchedSpan.file));
+    assertFalse(span.file.exists());
+    assertTrue(touchedSpan.file.exists());
+  }
+
+  @Test
+  public void leastRecentlyUsedEvictionFollowsStableModeAccessTimes() throws Exception {
+    cache =
+        createCache(
+            /* stableSpanFileNames= */ true, new LeastRecentlyUsedCacheEvictor(2 * LENGTH));
+    writeSpan("first", 0);
+    Thread.sleep(2);
+    writeSpan("second", 0);
+    Thread.sleep(2);
+    assertTrue(cache.startReadWrite("first", 0).isCached);
+    Thread.sleep(2);
+
+    writeSpan("third", 0);
+
+    assertTrue(cache.isCached("first", 0, LENGTH));
+    assertFalse(cache.isCached("second", 0, LENGTH));
+    assertTrue(cache.isCached("third", 0, LENGTH));
+  }
+
+  @Test
+  public void manifestIsStoredLazilyAndOnRelease() throws Exception {
+    cache = createCache(/* stableSpanFileNames= */ true, new NoOpCacheEvictor());
+    // The first change is stored straight away, later ones wait for the store interval.
+    writeSpan(KEY, 0);
+    assertEquals(1, loadStoredManifestSize());
+    writeSpan(KEY, LENGTH);
+    writeSpan(KEY, 2 * LENGTH);
+    assertEquals(1, loadStoredManifestSize());
+
+    // Once the interval has passed, the next cache operation stores the pending changes.
+    Thread.sleep(MANIFEST_STORE_INTERVAL_MS + 100);
+    cache.releaseHoleSpan(cache.startReadWrite(KEY, 3 * LENGTH));
+    assertEquals(3, loadStoredManifestSize());
+
+    writeSpan(KEY, 3 * LENGTH);
+    assertEquals(3, loadStoredManifestSize());
+    cache.release();
+    cache = null;
+    assertEquals(4, loadStoredManifestSize());
+  }
+
+  private SimpleCache createCache(boolean stableSpanFileNames, CacheEvictor evictor) {
+    return new SimpleCache(
+        cacheDir, evictor, /* secretKey= */ null, /* encrypt= */ false, stableSpanFileNames);
+  }
+
+  private void writeSpan(String key, long position) throws Exception {
+    CacheSpan holeSpan = cache.startReadWrite(key, position);
+    File file = cache.startFile(key, position, LENGTH);
+    try (FileOutputStream output = new FileOutputStream(file)) {
+      output.write(new byte[LENGTH]);
+    }
+    cache.commitFile(file);
+    cache.releaseHoleSpan(holeSpan);
+  }
+
+  private int loadStoredManifestSize() {
+    SpanManifest storedManifest = new SpanManifest(cacheDir);
+    return storedManifest.load() ? storedManifest.size() : 0;
+  }
+
+  private File[] getSpanFiles() {
+    return cacheDir.listFiles((dir, name) -> name.endsWith(".v3.exo"));
+  }
+}
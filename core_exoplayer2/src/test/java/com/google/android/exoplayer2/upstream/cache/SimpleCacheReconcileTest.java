@@ -0,0 +1,86 @@
+package com.google.android.exoplayer2.upstream.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.NavigableSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Tests for reconciling a {@link SimpleCache} manifest with the files in its directory. */
+@RunWith(RobolectricTestRunner.class)
+public final class SimpleCacheReconcileTest {
+
+  private static final String KEY = "key";
+  private static final int LENGTH = 1024;
+  private static final long RECONCILE_TIMEOUT_MS = 5000;
+
+  private File cacheDir;
+
+  @Before
+  public void setUp() throws Exception {
+    cacheDir = Files.createTempDirectory("SimpleCacheReconcileTest").toFile();
+  }
+
+  @After
+  public void tearDown() {
+    Util.recursiveDelete(cacheDir);
+  }
+
+  @Test
+  public void staleManifestAfterRenameKeepsRenamedSpanFile() throws Exception {
+    SimpleCache cache = new SimpleCache(cacheDir, new NoOpCacheEvictor());
+    CacheSpan holeSpan = cache.startReadWrite(KEY, 0);
+    File file = cache.startFile(KEY, 0, LENGTH);
+    try (FileOutputStream output = new FileOutputStream(file)) {
+      output.write(new byte[LENGTH]);
+    }
+    cache.commitFile(file);
+    cache.releaseHoleSpan(holeSpan);
+    cache.release();
+
+    // Keep the manifest as it was before the span file gets renamed by a touch.
+    File manifestFile = new File(cacheDir, SpanManifest.FILE_NAME);
+    byte[] staleManifest = Files.readAllBytes(manifestFile.toPath());
+    Thread.sleep(2);
+    cache = new SimpleCache(cacheDir, new NoOpCacheEvictor());
+    File originalFile = cache.getCachedSpans(KEY).first().file;
+    assertTrue(cache.startReadWrite(KEY, 0).isCached);
+    File renamedFile = cache.getCachedSpans(KEY).first().file;
+    assertFalse(originalFile.equals(renamedFile));
+    cache.release();
+
+    // Simulate a process kill before the manifest was rewritten with the new file name.
+    Files.write(manifestFile.toPath(), staleManifest);
+    Thread.sleep(2);
+    cache = new SimpleCache(cacheDir, new NoOpCacheEvictor());
+    try {
+      NavigableSet<CacheSpan> spans = waitForReconcile(cache);
+      assertEquals(1, spans.size());
+      assertEquals(renamedFile, spans.first().file);
+      assertTrue(renamedFile.exists());
+      assertTrue(cache.isCached(KEY, 0, LENGTH));
+    } finally {
+      cache.release();
+    }
+  }
+
+  private static NavigableSet<CacheSpan> waitForReconcile(SimpleCache cache) throws Exception {
+    long deadlineMs = System.currentTimeMillis() + RECONCILE_TIMEOUT_MS;
+    NavigableSet<CacheSpan> spans = cache.getCachedSpans(KEY);
+    while (System.currentTimeMillis() < deadlineMs
+        && (spans.isEmpty() || !spans.first().file.exists())) {
+      Thread.sleep(10);
+      spans = cache.getCachedSpans(KEY);
+    }
+    return spans;
+  }
+}
@@ -0,0 +1,156 @@
+package com.google.android.exoplayer2.upstream.cache;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+
+/**
+ * An in-memory {@link Cache} that only tracks which spans are present, for driving a {@link
+ * CacheEvictor} with an access trace without touching the file system.
+ */
+final class SimulatedCache implements Cache {
+
+  private final CacheEvictor evictor;
+  private final HashMap<String, CacheSpan> spans;
+  private final List<CacheSpan> removedSpans;
+  private long clock;
+
+  public SimulatedCache(CacheEvictor evictor) {
+    this.evictor = evictor;
+    spans = new HashMap<>();
+    removedSpans = new ArrayList<>();
+    evictor.onCacheInitialized();
+  }
+
+  /**
+   * Reads the whole span for {@code key}, writing it first if it is not cached, and returns whether
+   * it was a hit.
+   */
+  public boolean access(String key, long length) {
+    long timestamp = ++clock;
+    CacheSpan oldSpan = spans.get(key);
+    if (oldSpan != null) {
+      CacheSpan newSpan = createSpan(key, oldSpan.length, timestamp);
+      spans.put(key, newSpan);
+      evictor.onSpanTouched(this, oldSpan, newSpan);
+      return true;
+    }
+    evictor.onStartFile(this, key, 0, length);
+    CacheSpan span = createSpan(key, length, timestamp);
+    spans.put(key, span);
+    evictor.onSpanAdded(this, span);
+    return false;
+  }
+
+  public boolean contains(String key) {
+    return spans.containsKey(key);
+  }
+
+  public List<CacheSpan> getRemovedSpans() {
+    return removedSpans;
+  }
+
+  @Override
+  public void removeSpan(CacheSpan span) {
+    if (spans.remove(span.key) != null) {
+      removedSpans.add(span);
+      evictor.onSpanRemoved(this, span);
+    }
+  }
+
+  @Override
+  public long getCacheSpace() {
+    long space = 0;
+    for (CacheSpan span : spans.values()) {
+      space += span.length;
+    }
+    return space;
+  }
+
+  @Override
+  public Set<String> getKeys() {
+    return spans.keySet();
+  }
+
+  @Override
+  public void release() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public NavigableSet<CacheSpan> addListener(String key, Listener listener) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void removeListener(String key, Listener listener) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public NavigableSet<CacheSpan> getCachedSpans(String key) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public CacheSpan startReadWrite(String key, long position) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public CacheSpan startReadWriteNonBlocking(String key, long position) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public File startFile(String key, long position, long length) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void commitFile(File file) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void releaseHoleSpan(CacheSpan holeSpan) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean isCached(String key, long position, long length) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public long getCachedLength(String key, long position, long length) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setContentLength(String key, long length) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public long getContentLength(String key) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void applyContentMetadataMutations(String key, ContentMetadataMutations mutations) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public ContentMetadata getContentMetadata(String key) {
+    throw new UnsupportedOperationException();
+  }
+
+  private static CacheSpan createSpan(String key, long length, long timestamp) {
+    return new CacheSpan(key, 0, length, timestamp, new File(key));
+  }
+}
@@ -0,0 +1,143 @@
+package com.google.android.exoplayer2.upstream.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit tests for {@link SpanManifest}. */
+@RunWith(RobolectricTestRunner.class)
+public final class SpanManifestTest {
+
+  private static final int ID = 0;
+  private static final long LENGTH = 10;
+  private static final long TIMESTAMP = 1000;
+
+  private File cacheDir;
+  private SpanManifest manifest;
+
+  @Before
+  public void setUp() throws Exception {
+    cacheDir = Files.createTempDirectory("SpanManifestTest").toFile();
+    manifest = new SpanManifest(cacheDir);
+  }
+
+  @After
+  public void tearDown() {
+    Util.recursiveDelete(cacheDir);
+  }
+
+  @Test
+  public void removeFromFullClustersKeepsRemainingEntriesReachable() {
+    // 47 entries in the initial 64 slots form long probe clusters that wrap around the table.
+    for (int i = 0; i < 47; i++) {
+      manifest.add(ID, i, LENGTH, TIMESTAMP);
+    }
+    assertEquals(47, manifest.size());
+
+    for (int i = 0; i < 47; i += 2) {
+      manifest.remove(ID, i);
+    }
+    assertEquals(23, manifest.size());
+
+    // Adding an entry that is still present is a no-op only if the probe sequence finds it.
+    for (int i = 1; i < 47; i += 2) {
+      manifest.add(ID, i, LENGTH, TIMESTAMP);
+    }
+    assertEquals(23, manifest.size());
+    for (int i = 1; i < 47; i += 2) {
+      manifest.remove(ID, i);
+    }
+    assertEquals(0, manifest.size());
+  }
+
+  @Test
+  public void randomAddsAndRemovesMatchASetModel() {
+    Random random = new Random(0);
+    Set<Long> model = new HashSet<>();
+    for (int i = 0; i < 20_000; i++) {
+      long position = random.nextInt(512);
+      if (random.nextBoolean()) {
+        manifest.add(ID, position, LENGTH, TIMESTAMP);
+        model.add(position);
+      } else {
+        manifest.remove(ID, position);
+        model.remove(position);
+      }
+      assertEquals(model.size(), manifest.size());
+    }
+
+    for (long position : model) {
+      manifest.add(ID, position, LENGTH, TIMESTAMP);
+    }
+    assertEquals(model.size(), manifest.size());
+  }
+
+  @Test
+  public void storedManifestIsLoadedWithTouchedTimestamps() throws Exception {
+    CachedContentIndex index = new CachedContentIndex(cacheDir);
+    int id = index.getOrAdd("key").id;
+    for (int i = 0; i < 100; i++) {
+      manifest.add(id, i * LENGTH, LENGTH, TIMESTAMP);
+    }
+    for (int i = 0; i < 100; i += 3) {
+      manifest.remove(id, i * LENGTH);
+    }
+    manifest.touch(id, LENGTH, TIMESTAMP + 1, /* fileRenamed= */ false);
+    manifest.touch(id, 2 * LENGTH, TIMESTAMP + 2, /* fileRenamed= */ true);
+    assertTrue(manifest.isDirty());
+    manifest.store();
+    assertFalse(manifest.isDirty());
+
+    SpanManifest loadedManifest = new SpanManifest(cacheDir);
+    assertTrue(loadedManifest.load());
+    assertEquals(66, loadedManifest.size());
+    List<SimpleCacheSpan> spans = loadedManifest.createSpans(cacheDir, index);
+    assertEquals(66, spans.size());
+    List<Long> positions = new ArrayList<>();
+    for (SimpleCacheSpan span : spans) {
+      positions.add(span.position);
+      if (span.position == LENGTH) {
+        assertEquals(TIMESTAMP + 1, span.lastAccessTimestamp);
+        assertEquals(SimpleCacheSpan.getCacheFile(cacheDir, id, LENGTH, TIMESTAMP), span.file);
+      } else if (span.position == 2 * LENGTH) {
+        assertEquals(TIMESTAMP + 2, span.lastAccessTimestamp);
+        assertEquals(
+            SimpleCacheSpan.getCacheFile(cacheDir, id, 2 * LENGTH, TIMESTAMP + 2), span.file);
+      } else {
+        assertEquals(TIMESTAMP, span.lastAccessTimestamp);
+      }
+    }
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i % 3 != 0, positions.contains(i * LENGTH));
+    }
+  }
+
+  @Test
+  public void corruptManifestIsDeletedOnLoad() throws Exception {
+    manifest.add(ID, 0, LENGTH, TIMESTAMP);
+    manifest.store();
+    File manifestFile = new File(cacheDir, SpanManifest.FILE_NAME);
+    byte[] data = Files.readAllBytes(manifestFile.toPath());
+    data[data.length - 1] ^= 0x01;
+    Files.write(manifestFile.toPath(), data);
+
+    SpanManifest loadedManifest = new SpanManifest(cacheDir);
+    assertFalse(loadedManifest.load());
+    assertEquals(0, loadedManifest.size());
+    assertFalse(manifestFile.exists());
+  }
+}
@@ -0,0 +1,109 @@
+package com.google.android.exoplayer2.upstream.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/** Unit tests for {@link TinyLfuCacheEvictor}. */
+public final class TinyLfuCacheEvictorTest {
+
+  private static final long SPAN_LENGTH = 10;
+
+  @Test
+  public void staysWithinMaxBytes() {
+    SimulatedCache cache = new SimulatedCache(new TinyLfuCacheEvictor(100, 0.1f));
+    for (int i = 0; i < 50; i++) {
+      cache.access("key" + i, SPAN_LENGTH);
+      assertTrue(cache.getCacheSpace() <= 100);
+    }
+    assertEquals(100, cache.getCacheSpace());
+    assertEquals(40, cache.getRemovedSpans().size());
+  }
+
+  @Test
+  public void withoutFrequencyDifferenceRejectsWindowCandidates() {
+    SimulatedCache cache = new SimulatedCache(new TinyLfuCacheEvictor(100, 0.1f));
+    for (int i = 0; i < 15; i++) {
+      cache.access("key" + i, SPAN_LENGTH);
+    }
+    // A tie keeps the main region, so each new span displaces the previous window span.
+    assertEquals(keys(9, 14), removedKeys(cache));
+    assertTrue(cache.contains("key14"));
+  }
+
+  @Test
+  public void oneTimeScanDoesNotDisplaceFrequentSpans() {
+    SimulatedCache cache = new SimulatedCache(new TinyLfuCacheEvictor(100, 0.1f));
+    for (int round = 0; round < 4; round++) {
+      for (int i = 0; i < 9; i++) {
+        cache.access("hot" + i, SPAN_LENGTH);
+      }
+    }
+    for (int i = 0; i < 100; i++) {
+      cache.access("scan" + i, SPAN_LENGTH);
+    }
+    for (int i = 0; i < 9; i++) {
+      assertTrue("hot" + i, cache.contains("hot" + i));
+    }
+    for (String key : removedKeys(cache)) {
+      assertTrue(key, key.startsWith("scan"));
+    }
+  }
+
+  @Test
+  public void frequentWindowCandidateIsAdmittedOverColdVictim() {
+    SimulatedCache cache = new SimulatedCache(new TinyLfuCacheEvictor(100, 0.1f));
+    for (int i = 0; i < 10; i++) {
+      cache.access("cold" + i, SPAN_LENGTH);
+    }
+    // The candidate was requested several times before, so it is more popular than any span in
+    // the main region even though all of them are more recent.
+    for (int i = 0; i < 3; i++) {
+      cache.access("popular", SPAN_LENGTH);
+      cache.getRemovedSpans().clear();
+    }
+    cache.access("next", SPAN_LENGTH);
+    assertTrue(cache.contains("popular"));
+    assertTrue(cache.contains("next"));
+    assertEquals(1, cache.getRemovedSpans().size());
+    assertTrue(cache.getRemovedSpans().get(0).key.startsWith("cold"));
+  }
+
+  @Test
+  public void protectedSpanOutlivesProbationSpans() {
+    SimulatedCache cache = new SimulatedCache(new TinyLfuCacheEvictor(100, 0.1f));
+    for (int i = 0; i < 10; i++) {
+      cache.access("key" + i, SPAN_LENGTH);
+    }
+    // Touching a probation span promotes it to the protected segment.
+    cache.access("key0", SPAN_LENGTH);
+    for (int i = 10; i < 30; i++) {
+      cache.access("key" + i, SPAN_LENGTH);
+      cache.access("key" + i, SPAN_LENGTH);
+    }
+    List<String> expectedPrefix = new ArrayList<>();
+    expectedPrefix.add("key9");
+    expectedPrefix.addAll(keys(1, 9));
+    assertEquals(expectedPrefix, removedKeys(cache).subList(0, expectedPrefix.size()));
+    assertTrue(cache.contains("key0"));
+  }
+
+  private static List<String> keys(int from, int to) {
+    List<String> keys = new ArrayList<>();
+    for (int i = from; i < to; i++) {
+      keys.add("key" + i);
+    }
+    return keys;
+  }
+
+  private static List<String> removedKeys(SimulatedCache cache) {
+    List<String> keys = new ArrayList<>();
+    for (CacheSpan span : cache.getRemovedSpans()) {
+      keys.add(span.key);
+    }
+    return keys;
+  }
+}
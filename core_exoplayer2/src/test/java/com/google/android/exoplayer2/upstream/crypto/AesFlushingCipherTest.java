@@ -0,0 +1,230 @@
+package com.google.android.exoplayer2.upstream.crypto;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import android.net.Uri;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import java.nio.ByteBuffer;
+import java.security.Security;
+import java.util.Arrays;
+import java.util.Random;
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/**
+ * Checks that every {@link AesFlushingCipher} path produces the same output as a single AES-CTR
+ * pass over the whole stream, whatever the start offset and chunking.
+ *
+ * <p>Each case runs twice: with the JDK's CTR cipher, which never holds back a partial block, and
+ * with {@link BlockBufferingAesCtrProvider}, which does, so that the partial block flushing runs.
+ */
+@RunWith(RobolectricTestRunner.class)
+public final class AesFlushingCipherTest {
+
+  private static final byte[] KEY = "Ride the Lightning".substring(0, 16).getBytes();
+  private static final long NONCE = 0x0123456789abcdefL;
+  private static final int DATA_LENGTH = 64 * 1024;
+  private static final int ITERATIONS = 200;
+
+  private Random random;
+  private byte[] data;
+
+  @Test
+  public void byteArrayUpdateMatchesReference() throws Exception {
+    runWithEachProvider(this::checkByteArrayUpdate);
+  }
+
+  @Test
+  public void byteBufferUpdateMatchesReference() throws Exception {
+    runWithEachProvider(this::checkByteBufferUpdate);
+  }
+
+  @Test
+  public void mixedUpdatesMatchReference() throws Exception {
+    runWithEachProvider(this::checkMixedUpdates);
+  }
+
+  @Test
+  public void resetToRandomOffsetsAndNoncesMatchesReference() throws Exception {
+    runWithEachProvider(this::checkReset);
+  }
+
+  @Test
+  public void dataSourceDecryptsIntoHeapAndDirectBuffers() throws Exception {
+    runWithEachProvider(this::checkDataSource);
+  }
+
+  private void runWithEachProvider(TestCase testCase) throws Exception {
+    for (boolean blockBuffering : new boolean[] {false, true}) {
+      random = new Random(0);
+      data = new byte[DATA_LENGTH];
+      random.nextBytes(data);
+      if (blockBuffering) {
+        Security.insertProviderAt(new BlockBufferingAesCtrProvider(), 1);
+      }
+      try {
+        testCase.run();
+      } catch (AssertionError e) {
+        throw new AssertionError("blockBuffering=" + blockBuffering, e);
+      } finally {
+        Security.removeProvider(BlockBufferingAesCtrProvider.NAME);
+      }
+    }
+  }
+
+  private void checkByteArrayUpdate() throws Exception {
+    byte[] expected = encryptReference(NONCE, data);
+    for (int i = 0; i < ITERATIONS; i++) {
+      int offset = random.nextInt(DATA_LENGTH);
+      AesFlushingCipher cipher = new AesFlushingCipher(Cipher.ENCRYPT_MODE, KEY, NONCE, offset);
+      byte[] output = new byte[DATA_LENGTH - offset];
+      int position = 0;
+      while (position < output.length) {
+        int length = nextChunkLength(output.length - position);
+        cipher.update(data, offset + position, length, output, position);
+        position += length;
+      }
+      assertArrayEquals(Arrays.copyOfRange(expected, offset, DATA_LENGTH), output);
+    }
+  }
+
+  private void checkByteBufferUpdate() throws Exception {
+    byte[] expected = encryptReference(NONCE, data);
+    for (int i = 0; i < ITERATIONS; i++) {
+      int offset = random.nextInt(DATA_LENGTH);
+      boolean direct = random.nextBoolean();
+      AesFlushingCipher cipher = new AesFlushingCipher(Cipher.ENCRYPT_MODE, KEY, NONCE, offset);
+      ByteBuffer input = allocate(DATA_LENGTH - offset, direct);
+      input.put(data, offset, DATA_LENGTH - offset).flip();
+      ByteBuffer output = allocate(DATA_LENGTH - offset, !direct);
+      while (input.hasRemaining()) {
+        ByteBuffer chunk = input.slice();
+        chunk.limit(nextChunkLength(input.remaining()));
+        cipher.update(chunk, output);
+        input.position(input.position() + chunk.limit());
+      }
+      assertArrayEquals(Arrays.copyOfRange(expected, offset, DATA_LENGTH), toArray(output));
+    }
+  }
+
+  private void checkMixedUpdates() throws Exception {
+    byte[] expected = encryptReference(NONCE, data);
+    int offset = 5;
+    AesFlushingCipher cipher = new AesFlushingCipher(Cipher.ENCRYPT_MODE, KEY, NONCE, offset);
+    byte[] output = new byte[DATA_LENGTH - offset];
+    int position = 0;
+    while (position < output.length) {
+      int length = nextChunkLength(output.length - position);
+      if (random.nextBoolean()) {
+        cipher.update(data, offset + position, length, output, position);
+      } else {
+        ByteBuffer in = ByteBuffer.allocateDirect(length);
+        in.put(data, offset + position, length).flip();
+        ByteBuffer out = ByteBuffer.wrap(output, position, length);
+        cipher.update(in, out);
+      }
+      position += length;
+    }
+    assertArrayEquals(Arrays.copyOfRange(expected, offset, DATA_LENGTH), output);
+  }
+
+  private void checkReset() throws Exception {
+    long[] nonces = {NONCE, 0, -1, 42};
+    byte[][] expected = new byte[nonces.length][];
+    for (int i = 0; i < nonces.length; i++) {
+      expected[i] = encryptReference(nonces[i], data);
+    }
+    AesFlushingCipher cipher = new AesFlushingCipher(Cipher.ENCRYPT_MODE, KEY, NONCE, 0);
+    // Leave the cipher part way through a block so reset() must drop the pending keystream.
+    cipher.update(data, 0, 7, new byte[7], 0);
+    for (int i = 0; i < ITERATIONS; i++) {
+      int nonceIndex = random.nextInt(nonces.length);
+      int offset = random.nextInt(DATA_LENGTH);
+      int length = Math.min(DATA_LENGTH - offset, 1 + random.nextInt(4096));
+      cipher.reset(nonces[nonceIndex], offset);
+      byte[] output = new byte[length];
+      int position = 0;
+      while (position < length) {
+        int chunkLength = nextChunkLength(length - position);
+        cipher.update(data, offset + position, chunkLength, output, position);
+        position += chunkLength;
+      }
+      assertArrayEquals(
+          Arrays.copyOfRange(expected[nonceIndex], offset, offset + length), output);
+    }
+  }
+
+  private void checkDataSource() throws Exception {
+    String key = "content key";
+    byte[] encrypted = encryptReference(CryptoUtil.getFNV64Hash(key), data);
+    AesCipherDataSource dataSource =
+        new AesCipherDataSource(KEY, new ByteArrayDataSource(encrypted));
+    for (int i = 0; i < 20; i++) {
+      int offset = random.nextInt(DATA_LENGTH);
+      boolean direct = random.nextBoolean();
+      dataSource.open(
+          new DataSpec(Uri.parse("test://data"), offset, C.LENGTH_UNSET, key));
+      ByteBuffer output = allocate(DATA_LENGTH - offset, direct);
+      while (output.hasRemaining()) {
+        ByteBuffer chunk = output.slice();
+        chunk.limit(nextChunkLength(output.remaining()));
+        int read = dataSource.read(chunk);
+        output.position(output.position() + read);
+      }
+      dataSource.close();
+      assertArrayEquals(Arrays.copyOfRange(data, offset, DATA_LENGTH), toArray(output));
+    }
+  }
+
+  private int nextChunkLength(int remaining) {
+    int length;
+    switch (random.nextInt(3)) {
+      case 0:
+        length = 1 + random.nextInt(16);
+        break;
+      case 1:
+        length = 1 + random.nextInt(100);
+        break;
+      default:
+        length = 1 + random.nextInt(5000);
+        break;
+    }
+    return Math.min(length, remaining);
+  }
+
+  /** Encrypts from offset 0 with a keystream built block by block from AES in ECB mode. */
+  private static byte[] encryptReference(long nonce, byte[] plaintext) throws Exception {
+    Cipher blockCipher = Cipher.getInstance("AES/ECB/NoPadding");
+    blockCipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(KEY, "AES"));
+    byte[] ciphertext = new byte[plaintext.length];
+    for (int offset = 0; offset < plaintext.length; offset += 16) {
+      byte[] counterBlock = ByteBuffer.allocate(16).putLong(nonce).putLong(offset / 16).array();
+      byte[] keystream = blockCipher.doFinal(counterBlock);
+      for (int i = 0; i < 16 && offset + i < plaintext.length; i++) {
+        ciphertext[offset + i] = (byte) (plaintext[offset + i] ^ keystream[i]);
+      }
+    }
+    return ciphertext;
+  }
+
+  private static ByteBuffer allocate(int capacity, boolean direct) {
+    return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+  }
+
+  private interface TestCase {
+
+    void run() throws Exception;
+  }
+
+  private static byte[] toArray(ByteBuffer buffer) {
+    buffer.flip();
+    byte[] array = new byte[buffer.remaining()];
+    buffer.get(array);
+    return array;
+  }
+}
@@ -0,0 +1,173 @@
+package com.google.android.exoplayer2.upstream.crypto;
+
+import java.nio.ByteBuffer;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.Provider;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import javax.crypto.Cipher;
+import javax.crypto.CipherSpi;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * A security provider whose {@code AES/CTR/NoPadding} only outputs whole blocks from {@code
+ * update} and buffers the rest, as the Android providers do. The JDK's own CTR cipher is a stream
+ * cipher, so without this provider the partial block flushing of {@link AesFlushingCipher} never
+ * runs in tests.
+ */
+final class BlockBufferingAesCtrProvider extends Provider {
+
+  public static final String NAME = "BlockBufferingAesCtr";
+
+  public BlockBufferingAesCtrProvider() {
+    super(NAME, 1.0, "AES/CTR/NoPadding that buffers partial blocks");
+    put("Cipher.AES/CTR/NoPadding", BlockBufferingAesCtrCipherSpi.class.getName());
+  }
+
+  /** The cipher implementation. Must be public for the provider framework to instantiate it. */
+  public static final class BlockBufferingAesCtrCipherSpi extends CipherSpi {
+
+    private static final int BLOCK_SIZE = 16;
+
+    private final byte[] pending;
+    private final byte[] counter;
+    private final byte[] keystream;
+    private Cipher blockCipher;
+    private int pendingLength;
+
+    public BlockBufferingAesCtrCipherSpi() {
+      pending = new byte[BLOCK_SIZE];
+      counter = new byte[BLOCK_SIZE];
+      keystream = new byte[BLOCK_SIZE];
+    }
+
+    @Override
+    protected void engineSetMode(String mode) {}
+
+    @Override
+    protected void engineSetPadding(String padding) throws NoSuchPaddingException {}
+
+    @Override
+    protected int engineGetBlockSize() {
+      return BLOCK_SIZE;
+    }
+
+    @Override
+    protected int engineGetOutputSize(int inputLen) {
+      return pendingLength + inputLen;
+    }
+
+    @Override
+    protected byte[] engineGetIV() {
+      return counter.clone();
+    }
+
+    @Override
+    protected AlgorithmParameters engineGetParameters() {
+      return null;
+    }
+
+    @Override
+    protected void engineInit(int opmode, Key key, SecureRandom random) throws InvalidKeyException {
+      throw new InvalidKeyException("An IV is required");
+    }
+
+    @Override
+    protected void engineInit(
+        int opmode, Key key, AlgorithmParameterSpec params, SecureRandom random)
+        throws InvalidKeyException {
+      try {
+        blockCipher = Cipher.getInstance("AES/ECB/NoPadding");
+        blockCipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key.getEncoded(), "AES"));
+      } catch (GeneralSecurityException e) {
+        throw new InvalidKeyException(e);
+      }
+      System.arraycopy(((IvParameterSpec) params).getIV(), 0, counter, 0, BLOCK_SIZE);
+      pendingLength = 0;
+    }
+
+    @Override
+    protected void engineInit(int opmode, Key key, AlgorithmParameters params, SecureRandom random)
+        throws InvalidKeyException {
+      throw new InvalidKeyException("Use an IvParameterSpec");
+    }
+
+    @Override
+    protected byte[] engineUpdate(byte[] input, int inputOffset, int inputLen) {
+      byte[] output = new byte[(pendingLength + inputLen) / BLOCK_SIZE * BLOCK_SIZE];
+      engineUpdate(input, inputOffset, inputLen, output, 0);
+      return output;
+    }
+
+    @Override
+    protected int engineUpdate(
+        byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset) {
+      int written = 0;
+      for (int i = 0; i < inputLen; i++) {
+        pending[pendingLength++] = input[inputOffset + i];
+        if (pendingLength == BLOCK_SIZE) {
+          nextKeystreamBlock();
+          for (int j = 0; j < BLOCK_SIZE; j++) {
+            output[outputOffset + written + j] = (byte) (pending[j] ^ keystream[j]);
+          }
+          written += BLOCK_SIZE;
+          pendingLength = 0;
+        }
+      }
+      return written;
+    }
+
+    @Override
+    protected int engineUpdate(ByteBuffer input, ByteBuffer output) throws ShortBufferException {
+      byte[] in = new byte[input.remaining()];
+      input.get(in);
+      byte[] out = engineUpdate(in, 0, in.length);
+      if (output.remaining() < out.length) {
+        throw new ShortBufferException();
+      }
+      output.put(out);
+      return out.length;
+    }
+
+    @Override
+    protected byte[] engineDoFinal(byte[] input, int inputOffset, int inputLen) {
+      byte[] output = new byte[pendingLength + inputLen];
+      engineDoFinal(input, inputOffset, inputLen, output, 0);
+      return output;
+    }
+
+    @Override
+    protected int engineDoFinal(
+        byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset) {
+      int written = engineUpdate(input, inputOffset, inputLen, output, outputOffset);
+      if (pendingLength > 0) {
+        nextKeystreamBlock();
+        for (int j = 0; j < pendingLength; j++) {
+          output[outputOffset + written + j] = (byte) (pending[j] ^ keystream[j]);
+        }
+        written += pendingLength;
+        pendingLength = 0;
+      }
+      return written;
+    }
+
+    private void nextKeystreamBlock() {
+      try {
+        blockCipher.doFinal(counter, 0, BLOCK_SIZE, keystream, 0);
+      } catch (GeneralSecurityException e) {
+        throw new IllegalStateException(e);
+      }
+      for (int i = BLOCK_SIZE - 1; i >= 0; i--) {
+        if (++counter[i] != 0) {
+          break;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,186 @@
+package com.google.android.exoplayer2.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+/** Unit tests for {@link LatencyHistogram}. */
+public final class LatencyHistogramTest {
+
+  private static final long MAX_VALUE = (1L << 40) - 1;
+  private static final int BUCKET_COUNT = 1152;
+  private static final double[] PERCENTILES = {0, 1, 10, 50, 90, 99, 99.9, 100};
+
+  @Test
+  public void bucketBoundaries() {
+    assertEquals(0, LatencyHistogram.getBucketIndex(0));
+    assertEquals(31, LatencyHistogram.getBucketIndex(31));
+    assertEquals(32, LatencyHistogram.getBucketIndex(32));
+    assertEquals(63, LatencyHistogram.getBucketIndex(63));
+    assertEquals(64, LatencyHistogram.getBucketIndex(64));
+    assertEquals(64, LatencyHistogram.getBucketIndex(65));
+    assertEquals(65, LatencyHistogram.getBucketIndex(66));
+    assertEquals(BUCKET_COUNT - 1, LatencyHistogram.getBucketIndex(MAX_VALUE));
+
+    assertEquals(31, LatencyHistogram.getBucketUpperBound(31));
+    assertEquals(32, LatencyHistogram.getBucketUpperBound(32));
+    assertEquals(63, LatencyHistogram.getBucketUpperBound(63));
+    assertEquals(65, LatencyHistogram.getBucketUpperBound(64));
+    assertEquals(MAX_VALUE, LatencyHistogram.getBucketUpperBound(BUCKET_COUNT - 1));
+  }
+
+  @Test
+  public void everyValueLiesWithinItsBucket() {
+    for (int index = 1; index < BUCKET_COUNT; index++) {
+      long lowerBound = LatencyHistogram.getBucketUpperBound(index - 1) + 1;
+      long upperBound = LatencyHistogram.getBucketUpperBound(index);
+      assertTrue(upperBound >= lowerBound);
+      assertEquals(index, LatencyHistogram.getBucketIndex(lowerBound));
+      assertEquals(index, LatencyHistogram.getBucketIndex(upperBound));
+      // The bucket width stays within 1/32 of the values it holds.
+      assertTrue(upperBound - lowerBound <= lowerBound / 32);
+    }
+  }
+
+  @Test
+  public void outOfRangeValuesAreClamped() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(-5);
+    histogram.record(Long.MAX_VALUE);
+
+    LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+    assertEquals(2, snapshot.count);
+    assertEquals(MAX_VALUE, snapshot.max);
+    assertEquals(0, snapshot.getValueAtPercentile(50));
+    assertEquals(MAX_VALUE, snapshot.getValueAtPercentile(100));
+  }
+
+  @Test
+  public void emptySnapshot() {
+    LatencyHistogram.Snapshot snapshot = new LatencyHistogram().getSnapshot();
+    assertEquals(0, snapshot.count);
+    assertEquals(0, snapshot.getMean());
+    assertEquals(0, snapshot.getValueAtPercentile(99));
+  }
+
+  @Test
+  public void percentilesMatchSortedSamples() {
+    Random random = new Random(0);
+    LatencyHistogram histogram = new LatencyHistogram();
+    long[] samples = new long[10_000];
+    long total = 0;
+    for (int i = 0; i < samples.length; i++) {
+      // Log-uniform values between 1 ns and about 1 s.
+      samples[i] = (long) Math.exp(random.nextDouble() * Math.log(1e9));
+      histogram.record(samples[i]);
+      total += samples[i];
+    }
+    Arrays.sort(samples);
+
+    LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+    assertEquals(samples.length, snapshot.count);
+    assertEquals(total, snapshot.total);
+    assertEquals(total / samples.length, snapshot.getMean());
+    assertEquals(samples[samples.length - 1], snapshot.max);
+    for (double percentile : PERCENTILES) {
+      int rank = (int) Math.max(1, Math.ceil(percentile / 100 * samples.length));
+      long expected = samples[rank - 1];
+      long actual = snapshot.getValueAtPercentile(percentile);
+      assertTrue(percentile + ": " + actual + " < " + expected, actual >= expected);
+      assertTrue(percentile + ": " + actual + " > " + expected, actual <= expected + expected / 32);
+    }
+  }
+
+  @Test
+  public void resetClearsAllValues() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(100);
+    histogram.reset();
+
+    LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+    assertEquals(0, snapshot.count);
+    assertEquals(0, snapshot.total);
+    assertEquals(0, snapshot.max);
+  }
+
+  @Test
+  public void concurrentRecordsAreAllCountedAndSnapshotsStayConsistent() throws Exception {
+    int threadCount = 4;
+    int recordsPerThread = 100_000;
+    LatencyHistogram histogram = new LatencyHistogram();
+    CountDownLatch startLatch = new CountDownLatch(1);
+    AtomicBoolean writersDone = new AtomicBoolean();
+    AtomicReference<Throwable> readerError = new AtomicReference<>();
+    List<Thread> writers = new ArrayList<>();
+    for (int t = 0; t < threadCount; t++) {
+      long value = (t + 1) * 1000;
+      Thread writer =
+          new Thread(
+              () -> {
+                awaitQuietly(startLatch);
+                for (int i = 0; i < recordsPerThread; i++) {
+                  histogram.record(value);
+                }
+              });
+      writer.start();
+      writers.add(writer);
+    }
+    Thread reader =
+        new Thread(
+            () -> {
+              try {
+                awaitQuietly(startLatch);
+                long lastCount = 0;
+                while (!writersDone.get()) {
+                  LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+                  assertTrue(snapshot.count >= lastCount);
+                  assertTrue(snapshot.count <= (long) threadCount * recordsPerThread);
+                  if (snapshot.count > 0) {
+                    long median = snapshot.getValueAtPercentile(50);
+                    assertTrue(median >= 1000 && median <= threadCount * 1000);
+                  }
+                  lastCount = snapshot.count;
+                }
+              } catch (Throwable e) {
+                readerError.set(e);
+              }
+            });
+    reader.start();
+
+    startLatch.countDown();
+    for (Thread writer : writers) {
+      writer.join(TimeUnit.SECONDS.toMillis(30));
+    }
+    writersDone.set(true);
+    reader.join(TimeUnit.SECONDS.toMillis(30));
+
+    if (readerError.get() != null) {
+      throw new AssertionError(readerError.get());
+    }
+    LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+    long expectedTotal = 0;
+    for (int t = 0; t < threadCount; t++) {
+      expectedTotal += (t + 1) * 1000L * recordsPerThread;
+    }
+    assertEquals((long) threadCount * recordsPerThread, snapshot.count);
+    assertEquals(expectedTotal, snapshot.total);
+    assertEquals(threadCount * 1000, snapshot.max);
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
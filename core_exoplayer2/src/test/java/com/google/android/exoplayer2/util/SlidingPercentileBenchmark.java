@@ -0,0 +1,69 @@
+package com.google.android.exoplayer2.util;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.android.exoplayer2.testutil.BenchmarkUtil;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Compares {@link SlidingPercentile} with the sort-based {@link SortingSlidingPercentile} on the
+ * bandwidth meter's access pattern, where every sample is followed by a median lookup.
+ */
+public final class SlidingPercentileBenchmark {
+
+  private static final int SAMPLE_COUNT = 100000;
+  private static final int WARMUP_SAMPLE_COUNT = 20000;
+  private static final int[] MAX_WEIGHTS = {2000, 20000};
+
+  @Test
+  public void addSampleThenGetMedian() {
+    BenchmarkUtil.assumeBenchmarksEnabled();
+    for (int maxWeight : MAX_WEIGHTS) {
+      runTreap(maxWeight, WARMUP_SAMPLE_COUNT);
+      runSorting(maxWeight, WARMUP_SAMPLE_COUNT);
+      long startTimeNs = System.nanoTime();
+      float treapChecksum = runTreap(maxWeight, SAMPLE_COUNT);
+      long treapTimeNs = System.nanoTime() - startTimeNs;
+      startTimeNs = System.nanoTime();
+      float sortingChecksum = runSorting(maxWeight, SAMPLE_COUNT);
+      long sortingTimeNs = System.nanoTime() - startTimeNs;
+      assertEquals(sortingChecksum, treapChecksum, 0);
+      BenchmarkUtil.report(
+          "SlidingPercentile add+median",
+          "maxWeight=%d samples=%d sorting=%.0fns/op treap=%.0fns/op speedup=%.1fx",
+          maxWeight,
+          SAMPLE_COUNT,
+          (double) sortingTimeNs / SAMPLE_COUNT,
+          (double) treapTimeNs / SAMPLE_COUNT,
+          (double) sortingTimeNs / treapTimeNs);
+    }
+  }
+
+  private static float runTreap(int maxWeight, int sampleCount) {
+    Random random = new Random(0);
+    SlidingPercentile slidingPercentile = new SlidingPercentile(maxWeight);
+    float checksum = 0;
+    for (int i = 0; i < sampleCount; i++) {
+      slidingPercentile.addSample(nextWeight(random), random.nextFloat() * 1e7f);
+      checksum += slidingPercentile.getPercentile(0.5f);
+    }
+    return checksum;
+  }
+
+  private static float runSorting(int maxWeight, int sampleCount) {
+    Random random = new Random(0);
+    SortingSlidingPercentile slidingPercentile = new SortingSlidingPercentile(maxWeight);
+    float checksum = 0;
+    for (int i = 0; i < sampleCount; i++) {
+      slidingPercentile.addSample(nextWeight(random), random.nextFloat() * 1e7f);
+      checksum += slidingPercentile.getPercentile(0.5f);
+    }
+    return checksum;
+  }
+
+  /** Returns a weight like the meter's sqrt(bytes) for transfers of up to 64 KB. */
+  private static int nextWeight(Random random) {
+    return 1 + (int) Math.sqrt(random.nextInt(64 * 1024));
+  }
+}
@@ -0,0 +1,92 @@
+package com.google.android.exoplayer2.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+
+/** Unit tests for {@link SlidingPercentile}, checked against {@link SortingSlidingPercentile}. */
+public final class SlidingPercentileTest {
+
+  private static final float[] PERCENTILES = {0f, 0.1f, 0.25f, 0.5f, 0.75f, 0.9f, 1f};
+
+  @Test
+  public void emptyReturnsNaN() {
+    assertTrue(Float.isNaN(new SlidingPercentile(100).getPercentile(0.5f)));
+  }
+
+  @Test
+  public void weightedMedian() {
+    SlidingPercentile slidingPercentile = new SlidingPercentile(100);
+    slidingPercentile.addSample(10, 3f);
+    slidingPercentile.addSample(30, 1f);
+    slidingPercentile.addSample(20, 2f);
+
+    assertEquals(1f, slidingPercentile.getPercentile(0.5f), 0);
+    assertEquals(2f, slidingPercentile.getPercentile(0.6f), 0);
+    assertEquals(3f, slidingPercentile.getPercentile(1f), 0);
+  }
+
+  @Test
+  public void oldestSampleIsTrimmedToTheMaxWeight() {
+    SlidingPercentile slidingPercentile = new SlidingPercentile(10);
+    slidingPercentile.addSample(8, 1f);
+    slidingPercentile.addSample(8, 2f);
+
+    // Only 2 of the first sample's weight is left, so it is below the median.
+    assertEquals(2f, slidingPercentile.getPercentile(0.5f), 0);
+    assertEquals(1f, slidingPercentile.getPercentile(0.2f), 0);
+  }
+
+  @Test
+  public void resetDiscardsSamples() {
+    SlidingPercentile slidingPercentile = new SlidingPercentile(100);
+    slidingPercentile.addSample(10, 5f);
+    slidingPercentile.reset();
+
+    assertTrue(Float.isNaN(slidingPercentile.getPercentile(0.5f)));
+    slidingPercentile.addSample(10, 7f);
+    assertEquals(7f, slidingPercentile.getPercentile(0.5f), 0);
+  }
+
+  @Test
+  public void matchesSortingImplementationOnRandomOperations() {
+    for (int maxWeight : new int[] {1, 50, 2000, 20000}) {
+      assertMatchesSortingImplementation(maxWeight, /* valueRange= */ 1000, /* seed= */ maxWeight);
+    }
+  }
+
+  @Test
+  public void matchesSortingImplementationWithTiesAndZeroWeights() {
+    // A small value range produces many equal values, which must be ordered by arrival.
+    assertMatchesSortingImplementation(/* maxWeight= */ 300, /* valueRange= */ 4, /* seed= */ 7);
+  }
+
+  private static void assertMatchesSortingImplementation(int maxWeight, int valueRange, long seed) {
+    Random random = new Random(seed);
+    SlidingPercentile slidingPercentile = new SlidingPercentile(maxWeight);
+    SortingSlidingPercentile reference = new SortingSlidingPercentile(maxWeight);
+    for (int i = 0; i < 20000; i++) {
+      int operation = random.nextInt(100);
+      if (operation < 60) {
+        int weight = random.nextInt(10) == 0 ? 0 : 1 + random.nextInt(Math.max(1, maxWeight / 4));
+        float value = random.nextInt(valueRange);
+        slidingPercentile.addSample(weight, value);
+        reference.addSample(weight, value);
+      } else if (operation < 99) {
+        float percentile = random.nextBoolean()
+            ? PERCENTILES[random.nextInt(PERCENTILES.length)]
+            : random.nextFloat();
+        assertEquals(
+            "operation " + i + " percentile " + percentile,
+            reference.getPercentile(percentile),
+            slidingPercentile.getPercentile(percentile),
+            0);
+      } else {
+        slidingPercentile.reset();
+        reference.reset();
+      }
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package com.google.android.exoplayer2.video;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.mediacodec.MediaCodecSelector;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+/** Unit tests for {@link MediaCodecVideoRenderer}. */
+@RunWith(RobolectricTestRunner.class)
+public final class MediaCodecVideoRendererTest {
+
+  @Test
+  public void nextWorkIsUnsetBeforeAnyBufferIsHeldBack() {
+    MediaCodecVideoRenderer renderer =
+        new MediaCodecVideoRenderer(RuntimeEnvironment.application, MediaCodecSelector.DEFAULT);
+
+    assertEquals(C.TIME_UNSET, renderer.getNextWorkElapsedRealtimeUs());
+  }
+
+  @Test
+  public void nextWorkIsWhenTheFrameEntersTheReleaseWindow() {
+    // From API 21 frames are queued for release up to 50 ms early.
+    assertEquals(
+        1_030_000,
+        MediaCodecVideoRenderer.getReleaseWindowStartElapsedRealtimeUs(
+            /* elapsedRealtimeNowUs= */ 1_000_000, /* earlyUs= */ 80_000, /* sdkInt= */ 21));
+    // Before API 21 frames are released from the playback thread up to 30 ms early.
+    assertEquals(
+        1_050_000,
+        MediaCodecVideoRenderer.getReleaseWindowStartElapsedRealtimeUs(
+            /* elapsedRealtimeNowUs= */ 1_000_000, /* earlyUs= */ 80_000, /* sdkInt= */ 19));
+  }
+}